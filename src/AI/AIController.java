@@ -17,8 +17,21 @@ public interface AIController
    * @return A GameAction to execute, or null if the AIPlayer is ready to end its turn.
    */
   public GameAction getNextAction(GameMap gameMap);
+
+  /**
+   * Deadline-aware variant of getNextAction(). The AI should try to return by deadlineNanos
+   * (a System.nanoTime() value) with the best action it has found so far.
+   * By default the deadline is ignored.
+   */
+  public default GameAction getNextAction(GameMap gameMap, long deadlineNanos)
+  {
+    return getNextAction(gameMap);
+  }
   
   public AIMaker getAIInfo();
 
   public void setLogging(boolean value);
+
+  /** @return Timing data for this AI's internals, if it keeps any. */
+  public default AIProfiler getProfiler() { return null; }
 }
@@ -8,7 +8,8 @@ public class AILibrary
 {  
   private static ArrayList<AIMaker> AIList = null;
 
-  public static ArrayList<AIMaker> getAIList()
+  // Synchronized so games starting on several threads at once don't see a half-built list.
+  public static synchronized ArrayList<AIMaker> getAIList()
   {
     if( null == AIList )
     {
@@ -19,13 +20,15 @@ public class AILibrary
 
   private static void buildAIInfoList()
   {
-    AIList = new ArrayList<AIMaker>();
-    AIList.add( new NotAnAI() );
-    AIList.add( InfantrySpamAI.info );
-    AIList.add( SpenderAI.info );
-    AIList.add( WallyAI.info );
-    AIList.add( Muriel.info );
-    AIList.add( JakeMan.info );
+    ArrayList<AIMaker> list = new ArrayList<AIMaker>();
+    list.add( new NotAnAI() );
+    list.add( InfantrySpamAI.info );
+    list.add( SpenderAI.info );
+    list.add( WallyAI.info );
+    list.add( Muriel.info );
+    list.add( JakeMan.info );
+    list.add( MCTSAI.info );
+    AIList = list;
   }
 
   public static class NotAnAI implements AIMaker
@@ -0,0 +1,167 @@
+package AI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import Engine.WorkCounter;
+
+/**
+ * Cheap, always-on timing for the pieces of an AI, so we can tell which one is worth optimizing
+ * without attaching a profiler to every FightClub run.
+ * <p>
+ * Each timed section records its call count, total/max time, a log2 latency histogram, and how many
+ * path searches and battle calculations ran inside it, as counted by the engine's WorkCounter.
+ */
+public class AIProfiler
+{
+  /** Histogram bucket i holds calls that took [2^i, 2^(i+1)) nanoseconds. */
+  public static final int NUM_BUCKETS = 40;
+
+  public static class PhaseStats
+  {
+    public final String name;
+    public long calls, totalNanos, maxNanos;
+    public long pathSearches, battleCalcs;
+    /** How many calls produced an action; only meaningful for action phases. */
+    public long actionsFound;
+    /** How many times this section was skipped to save time. */
+    public long skips;
+    public final long[] histogram = new long[NUM_BUCKETS];
+
+    PhaseStats(String name)
+    {
+      this.name = name;
+    }
+
+    void add(long nanos, long paths, long battles, boolean foundAction)
+    {
+      ++calls;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+      pathSearches += paths;
+      battleCalcs += battles;
+      if( foundAction )
+        ++actionsFound;
+      int bucket = (nanos <= 0) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+      histogram[Math.min(bucket, NUM_BUCKETS - 1)]++;
+    }
+
+    void merge(PhaseStats other)
+    {
+      calls += other.calls;
+      totalNanos += other.totalNanos;
+      maxNanos = Math.max(maxNanos, other.maxNanos);
+      pathSearches += other.pathSearches;
+      battleCalcs += other.battleCalcs;
+      actionsFound += other.actionsFound;
+      skips += other.skips;
+      for( int i = 0; i < NUM_BUCKETS; ++i )
+        histogram[i] += other.histogram[i];
+    }
+
+    public long meanNanos()
+    {
+      return (calls == 0) ? 0 : totalNanos / calls;
+    }
+
+    /** @return An upper bound on the latency of the given fraction of calls, from the histogram. */
+    public long percentileNanos(double fraction)
+    {
+      long target = (long) Math.ceil(calls * fraction);
+      long seen = 0;
+      for( int i = 0; i < NUM_BUCKETS; ++i )
+      {
+        seen += histogram[i];
+        if( seen >= target && seen > 0 )
+          return Math.min(maxNanos, (1L << (i + 1)) - 1);
+      }
+      return maxNanos;
+    }
+  }
+
+  private final LinkedHashMap<String, PhaseStats> phases = new LinkedHashMap<>();
+
+  // Timing frames, so sections can nest (e.g. CapPhaseAnalyzer setup inside a module's initTurn).
+  private long[] frameStarts = new long[8];
+  private long[] framePaths = new long[8];
+  private long[] frameBattles = new long[8];
+  private int depth = 0;
+
+  /** @return The stats for the named section, creating them if need be. Callers on hot paths should hold on to the result. */
+  public PhaseStats getStats(String name)
+  {
+    PhaseStats stats = phases.get(name);
+    if( null == stats )
+    {
+      stats = new PhaseStats(name);
+      phases.put(name, stats);
+    }
+    return stats;
+  }
+
+  public List<PhaseStats> getAllStats()
+  {
+    return new ArrayList<>(phases.values());
+  }
+
+  /** Starts timing a section; must be paired with end(), in a finally block so a throw can't leave it open. */
+  public void begin()
+  {
+    if( depth == frameStarts.length )
+    {
+      frameStarts = Arrays.copyOf(frameStarts, depth * 2);
+      framePaths = Arrays.copyOf(framePaths, depth * 2);
+      frameBattles = Arrays.copyOf(frameBattles, depth * 2);
+    }
+    framePaths[depth] = WorkCounter.getPathSearches();
+    frameBattles[depth] = WorkCounter.getBattleCalcs();
+    frameStarts[depth] = System.nanoTime();
+    ++depth;
+  }
+
+  /** Stops timing the most recent section, and charges it to the given stats. */
+  public void end(PhaseStats stats, boolean foundAction)
+  {
+    long now = System.nanoTime();
+    --depth;
+    stats.add(now - frameStarts[depth], WorkCounter.getPathSearches() - framePaths[depth],
+        WorkCounter.getBattleCalcs() - frameBattles[depth], foundAction);
+  }
+
+  /** Folds another profile (e.g. from another game with the same AI) into this one. */
+  public void merge(AIProfiler other)
+  {
+    for( PhaseStats ps : other.phases.values() )
+      getStats(ps.name).merge(ps);
+  }
+
+  /** @return A table of all sections, most expensive first. */
+  public String report(String indent)
+  {
+    List<PhaseStats> sorted = getAllStats();
+    sorted.sort(Comparator.comparingLong((PhaseStats ps) -> ps.totalNanos).reversed());
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(indent).append(String.format("%-36s %8s %10s %9s %9s %9s %9s %9s %8s %8s %6s\n",
+        "section", "calls", "total ms", "mean us", "p50 us", "p99 us", "max us", "paths", "battles", "actions", "skips"));
+    for( PhaseStats ps : sorted )
+    {
+      if( ps.calls == 0 && ps.skips == 0 )
+        continue;
+      sb.append(indent).append(String.format("%-36s %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9d %8d %8d %6d\n",
+          ps.name, ps.calls, ps.totalNanos / 1e6, ps.meanNanos() / 1e3,
+          ps.percentileNanos(0.5) / 1e3, ps.percentileNanos(0.99) / 1e3, ps.maxNanos / 1e3,
+          ps.pathSearches, ps.battleCalcs, ps.actionsFound, ps.skips));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString()
+  {
+    return report("");
+  }
+}
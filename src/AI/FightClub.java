@@ -1,24 +1,28 @@
 package AI;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.SplittableRandom;
 
 import CommandingOfficers.Commander;
 import CommandingOfficers.CommanderInfo;
 import CommandingOfficers.CommanderLibrary.NotACO;
 import Engine.Army;
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameAction.EndTurnAction;
 import Engine.GameInstance;
 import Engine.GameScenario;
 import Engine.GameScenario.FogMode;
 import Engine.GameScenario.TagMode;
+import Engine.HeadlessMode;
+import Engine.GameEvents.EventCoalescer;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
 import Engine.GameEvents.GameEventQueue;
@@ -60,11 +64,11 @@ public class FightClub
     System.out.println("All sets complete!");
   }
 
-  static class ContestantInfo
+  public static class ContestantInfo
   {
-    AIMaker myAi;
-    CommanderInfo myCo;
-    ContestantInfo(CommanderInfo co, AIMaker ai)
+    public AIMaker myAi;
+    public CommanderInfo myCo;
+    public ContestantInfo(CommanderInfo co, AIMaker ai)
     {
       myCo = co;
       myAi = ai;
@@ -75,6 +79,7 @@ public class FightClub
   {
     String mapName;
     HashMap<ContestantInfo, Integer> scores = new HashMap<ContestantInfo, Integer>();
+    HashMap<ContestantInfo, AIProfiler> profiles = new HashMap<ContestantInfo, AIProfiler>();
 
     public GameSetResults(String mapName, List<ContestantInfo> contestants)
     {
@@ -88,6 +93,13 @@ public class FightClub
       scores.put(cInfo, scores.get(cInfo) + 1);
     }
 
+    public void addProfile(ContestantInfo cInfo, AIProfiler profile)
+    {
+      if( !profiles.containsKey(cInfo) )
+        profiles.put(cInfo, new AIProfiler());
+      profiles.get(cInfo).merge(profile);
+    }
+
     @Override
     public String toString()
     {
@@ -101,21 +113,45 @@ public class FightClub
       for( int cc = 1; cc < cInfos.length; ++cc)
         sb.append(String.format(" to %d", scores.get(cInfos[cc])));
       sb.append('\n');
+      for( ContestantInfo cInfo : cInfos )
+      {
+        if( !profiles.containsKey(cInfo) )
+          continue;
+        sb.append(String.format("  %s (%s) profile, all games:\n", cInfo.myAi.getName(), cInfo.myCo.name));
+        sb.append(profiles.get(cInfo).report("    "));
+      }
       return sb.toString();
     }
   }
 
-  static class GameSetParams
+  public static class GameSetParams
   {
     // Primary settings; must be provided via the constructor.
-    MapInfo mapInfo;
-    int numGames = 3;
-    List<CommanderInfo> COs;
-    List<AIMaker> AIs;
+    public MapInfo mapInfo;
+    public int numGames = 3;
+    public List<CommanderInfo> COs;
+    public List<AIMaker> AIs;
 
     // Additional settings to mess with. Optional to provide, but public so defaults can be overridden.
-    boolean isFogOn = false;
-    Weathers defaultWeather = Weathers.CLEAR;
+    public boolean isFogOn = false;
+    public Weathers defaultWeather = Weathers.CLEAR;
+    /** Merge redundant events before running them; see EventCoalescer. */
+    public boolean coalesceEvents = false;
+    /** If set, each game's full EventJournal is written to a file in this directory. */
+    public File journalDir = null;
+    /** If positive, a game still going at the end of this day ends in a draw. */
+    public int maxTurns = 0;
+    /** If positive, a game still going after this much wall-clock time ends in a draw. Checked between actions. */
+    public long gameTimeoutMillis = 0;
+    /** If positive, how long an AI may think per action / per turn; see ThinkBudget. */
+    public long actionBudgetMillis = 0;
+    public long turnBudgetMillis = 0;
+    /** If set, game N of the set is seeded with seed+N, so the whole set can be played again exactly. */
+    public Long seed = null;
+    /** Whether to announce each game's combatants and results. */
+    public boolean verbose = true;
+    /** If set, each game's record is also written here. */
+    public ResultsStore resultsStore = null;
 
     public GameSetParams(MapInfo map, int nGames, List<CommanderInfo> cos, List<AIMaker> ais)
     {
@@ -126,9 +162,11 @@ public class FightClub
     }
   }
 
-  static class GameSet
+  public static class GameSet
   {
     GameSetParams params;
+    /** The most recent game this set ran; mostly for inspection by tests. */
+    public GameInstance lastGame;
 
     public GameSet(GameSetParams gameSetParams)
     {
@@ -138,77 +176,142 @@ public class FightClub
     public void run()
     {
       // suppress normal printing to avoid spam and speed stuff up a lil'
-      PrintStream defaultOut = System.out;
-      System.setOut(new PrintStream(new OutputStream(){
-        @Override
-        public void write(int b) throws IOException{}
-      }));
+      // We only mute this thread, so several sets can safely run side by side.
+      HeadlessMode.enable();
+      PrintStream defaultOut = HeadlessMode.getConsole();
+      HeadlessMode.setMuted(true);
+      try
+      {
+        runSet(defaultOut);
+      }
+      finally
+      {
+        HeadlessMode.setMuted(false);
+      }
+    }
 
+    private void runSet(PrintStream defaultOut)
+    {
       MapInfo mi = params.mapInfo;
       List<ContestantInfo> contestants = new ArrayList<ContestantInfo>();
       for( int cc = 0; cc < params.COs.size(); cc++)
         contestants.add(new ContestantInfo(params.COs.get(cc), params.AIs.get(cc)));
       GameSetResults results = new GameSetResults(mi.mapName, contestants);
+      Tournament.Matchup matchup = new Tournament.Matchup(mi, contestants);
 
       for( int gameIndex = 0; gameIndex < params.numGames; ++gameIndex )
       {
-        GameScenario scenario = new GameScenario(mi.getValidUnitModelSchemes()[0],
-            GameScenario.DEFAULT_INCOME, GameScenario.DEFAULT_STARTING_FUNDS, GameScenario.DEFAULT_UNIT_CAP, FogMode.OFF_DOR, TagMode.OFF);
-
-        int numCos = mi.getNumPlayers();
-
-        // Create all of the combatants.
-        HashMap<Integer, ContestantInfo> teamMapping = new HashMap<Integer, ContestantInfo>(); // TODO: This currently doesn't work for team games. 
-        List<Army> combatants = new ArrayList<>();
-        // Offset cc by gameIndex to rotate the contestant starting locations.
-        for( int cc = gameIndex; cc < (gameIndex + contestants.size()); ++cc){
-          int ci = cc % contestants.size();
-          ContestantInfo cInfo = contestants.get(ci);
-          Commander com = cInfo.myCo.create(scenario.rules);
-          com.myColor = UIUtils.getCOColors()[ci];
-          com.faction = UIUtils.getFactions()[ci];
-          Army army = new Army(scenario, com);
-          army.team = ci;
-          army.setAIController(cInfo.myAi.create(army));
-          combatants.add(army);
-          teamMapping.put(ci, cInfo);
-        }
-
-        if( numCos != combatants.size() )
-        {
-          defaultOut.println(String.format("WARNING: Wrong number of COs specified for this map (expected %d, got %d)!", numCos, combatants.size()));
+        // Offset by gameIndex to rotate the contestant starting locations.
+        long seed = (null == params.seed) ? new SplittableRandom().nextLong() : params.seed + gameIndex;
+        String gameName = String.format("%s_%d", mi.mapName, gameIndex);
+        GameResults gameResults = playGame(contestants, gameIndex, gameName, seed, defaultOut);
+        if( null != params.resultsStore )
+          params.resultsStore.record(new Tournament.GameRecord(matchup, gameIndex % contestants.size(), gameName, seed, gameResults,
+              (null == gameResults) ? "game setup failed" : null));
+        if( null == gameResults )
           return;
+        List<Army> winners = gameResults.winners;
+        if( params.verbose )
+        {
+          defaultOut.println("  Game " + gameIndex + " Results:");
+          defaultOut.println(gameResults);
         }
+//        defaultOut.println("Winners:");
+//        for( Commander winner : winners )
+//          defaultOut.println("\t" + winner.coInfo.name);
+
+        // Draws don't count for anyone.
+        if( winners.size() == 1 )
+          results.incrementScore(contestants.get(winners.get(0).team));
+        for( Army army : gameResults.contestants )
+          if( gameResults.profiles.containsKey(army) )
+            results.addProfile(contestants.get(army.team), gameResults.profiles.get(army));
+      }
+
+      if( params.verbose )
+      {
+        defaultOut.println("Set results:");
+        defaultOut.println(results);
+      }
+    }
+
+    /**
+     * Sets up and plays out a single game on our map.
+     * Each army's team is the index of its contestant, regardless of where it starts.
+     * @param firstSeat Which contestant gets the first starting location; the rest follow in order.
+     * @param gameName Used to label the game, and to name its journal file.
+     * @param seed Seeds the game's RNG.
+     * @return The results, or null if the game couldn't be set up.
+     */
+    public GameResults playGame(List<ContestantInfo> contestants, int firstSeat, String gameName, long seed, PrintStream defaultOut)
+    {
+      MapInfo mi = params.mapInfo;
+      GameScenario scenario = new GameScenario(mi.getValidUnitModelSchemes()[0],
+          GameScenario.DEFAULT_INCOME, GameScenario.DEFAULT_STARTING_FUNDS, GameScenario.DEFAULT_UNIT_CAP, FogMode.OFF_DOR, TagMode.OFF);
+
+      int numCos = mi.getNumPlayers();
+
+      // Create all of the combatants.
+      List<Army> combatants = new ArrayList<>(); // TODO: This currently doesn't work for team games.
+      for( int cc = firstSeat; cc < (firstSeat + contestants.size()); ++cc){
+        int ci = cc % contestants.size();
+        ContestantInfo cInfo = contestants.get(ci);
+        Commander com = cInfo.myCo.create(scenario.rules);
+        com.myColor = UIUtils.getCOColors()[ci];
+        com.faction = UIUtils.getFactions()[ci];
+        Army army = new Army(scenario, com);
+        army.team = ci;
+        army.setAIController(cInfo.myAi.create(army));
+        combatants.add(army);
+      }
 
-        defaultOut.println("  Starting game " + gameIndex + " on map " + mi.mapName + " with combatants:");
+      if( numCos != combatants.size() )
+      {
+        defaultOut.println(String.format("WARNING: Wrong number of COs specified for this map (expected %d, got %d)!", numCos, combatants.size()));
+        return null;
+      }
+
+      if( params.verbose )
+      {
+        defaultOut.println("  Starting game " + gameName + " with combatants:");
         for( int i = 0; i < numCos; ++i )
           defaultOut.println("    Team " + combatants.get(i).team + ": "
                                + combatants.get(i).getControllerName() + " controlling " + combatants.get(i).cos[0].coInfo.name);
+      }
 
-        // Build the CO list and the new map and create the game instance.
-        final Army[] combatantArray = combatants.toArray(new Army[0]);
-        MapMaster map = new MapMaster(combatantArray, mi);
-        GameInstance newGame = null;
-        if( map.initOK() )
+      // Build the CO list and the new map and create the game instance.
+      final Army[] combatantArray = combatants.toArray(new Army[0]);
+      MapMaster map = new MapMaster(combatantArray, mi);
+      if( !map.initOK() )
+      {
+        defaultOut.println("WARNING! Failed to initialize map " + mi.mapName);
+        return null;
+      }
+      GameInstance newGame = new GameInstance(scenario, combatantArray, map, params.defaultWeather, false, seed);
+      if( null != params.journalDir )
+      {
+        File journalFile = new File(params.journalDir, gameName + ".dpj");
+        try
         {
-          newGame = new GameInstance(scenario, combatantArray, map, params.defaultWeather, false);
+          newGame.setJournal(EventJournal.toFile(journalFile, newGame));
+        }
+        catch (IOException ex)
+        {
+          defaultOut.println("WARNING! Failed to create journal " + journalFile + ": " + ex.toString());
         }
-
-        GameResults gameResults = runGame(newGame, defaultOut);
-        List<Army> winners = gameResults.winners;
-        int winningTeam = winners.get(0).team;
-        defaultOut.println("  Game " + gameIndex + " Results:");
-        defaultOut.println(gameResults);
-//        defaultOut.println("Winners:");
-//        for( Commander winner : winners )
-//          defaultOut.println("\t" + winner.coInfo.name);
-
-        results.incrementScore(teamMapping.get(winningTeam));
       }
 
-      defaultOut.println("Set results:");
-      defaultOut.println(results);
-      System.setOut(defaultOut);
+      GameResults gameResults;
+      try
+      {
+        gameResults = runGame(newGame, defaultOut);
+      }
+      finally
+      {
+        newGame.setJournal(null); // Flushes the journal, if we're writing one.
+      }
+      lastGame = newGame;
+      return gameResults;
     }
 
     public static class GameResults
@@ -216,22 +319,34 @@ public class FightClub
       public static enum EndCondition{
         UNKNOWN,
         CONQUEST,
-        TURN_LIMIT
+        TURN_LIMIT,
+        TIMEOUT
       }
 
-      List<Army> winners, contestants;
-      int winningTeam;
-      int numTurns;
-      EndCondition endReason;
-      Long totalGameTimeNanos;
-      HashMap<Army, Long> stopwatches;
+      public List<Army> winners, contestants;
+      public int winningTeam;
+      public int numTurns;
+      public EndCondition endReason;
+      public Long totalGameTimeNanos;
+      public HashMap<Army, Long> stopwatches;
+      /** Each army's think time for each of its turns, in order. */
+      public HashMap<Army, ArrayList<Long>> turnThinkNanos = new HashMap<>();
+      public long seed;
+      /** How often the AIs overran their ThinkBudget. */
+      public int actionOverruns, turnOverruns;
+      /** How many AI actions were executed, not counting ends of turn. */
+      public int numActions;
+      /** Per-module timing for each army whose AI keeps it. */
+      public HashMap<Army, AIProfiler> profiles = new HashMap<>();
+      /** Fingerprint of the game's full action and RNG stream; see EventJournal.getDigest(). */
+      public long eventDigest;
 
       public GameResults(List<Army> victors, List<Army> players, int nTurns, EndCondition reason,
           Long gameRunTime, HashMap<Army, Long> playerRunTimes)
       {
         winners = victors;
         contestants = players;
-        winningTeam = winners.get(0).team;
+        winningTeam = (winners.size() == 1) ? winners.get(0).team : -1;
         numTurns = nTurns;
         endReason = reason;
         totalGameTimeNanos = gameRunTime;
@@ -245,8 +360,14 @@ public class FightClub
         double ns2s = 1./1000000000;
         DecimalFormat df = new DecimalFormat("#.##");
 
-        sb.append("    Team ").append(winningTeam).append(" wins by ").append(endReason).append(" after ").append(numTurns).append(" turns.\n")
-          .append("    Game took ").append(df.format(totalGameTimeNanos * ns2s)).append(" seconds").append('\n');
+        if( winningTeam < 0 )
+          sb.append("    Draw by ").append(endReason).append(" after ").append(numTurns).append(" turns.\n");
+        else
+          sb.append("    Team ").append(winningTeam).append(" wins by ").append(endReason).append(" after ").append(numTurns).append(" turns.\n");
+        sb.append("    Seed ").append(seed).append('\n');
+        if( actionOverruns > 0 || turnOverruns > 0 )
+          sb.append("    Think budget overruns: ").append(actionOverruns).append(" actions, ").append(turnOverruns).append(" turns cut short\n");
+        sb.append("    Game took ").append(df.format(totalGameTimeNanos * ns2s)).append(" seconds").append('\n');
         double totalThinkTimeNanos = 0;
         for( Long thinkTime : stopwatches.values() )
         {
@@ -261,6 +382,8 @@ public class FightClub
           String coTime = df.format(stopwatches.get(co) * ns2s);
           sb.append("      ").append(co.getControllerName()).append(" (").append(co.cos[0].coInfo.name).append("): ")
             .append("Used ").append(coPct).append("% (").append(coTime).append("s) of the thinking time.\n");
+          if( profiles.containsKey(co) )
+            sb.append(profiles.get(co).report("        "));
         }
 
         return sb.toString();
@@ -274,15 +397,21 @@ public class FightClub
     {
       long gameRunTimeNanos = System.nanoTime();
       HashMap<Army, Long> stopwatches = new HashMap<>();
+      HashMap<Army, ArrayList<Long>> turnThinkNanos = new HashMap<>();
       for( Army co : game.armies )
       {
         stopwatches.put(co, 0L);
+        turnThinkNanos.put(co, new ArrayList<Long>());
       }
       GameResults.EndCondition endReason = GameResults.EndCondition.UNKNOWN;
+      long deadlineNanos = gameRunTimeNanos + params.gameTimeoutMillis * 1000000;
+      ThinkBudget budget = new ThinkBudget(params.actionBudgetMillis, params.turnBudgetMillis);
 
+      int numActions = 0;
       boolean isGameOver = false;
       while (!isGameOver)
       {
+        budget.startTurn();
         startNextTurn(game, defaultOut);
 
         GameEventQueue actionEvents = new GameEventQueue();
@@ -291,8 +420,10 @@ public class FightClub
         while (!endAITurn && !isGameOver)
         {
           long thinkStartNanos = System.nanoTime();
-          GameAction aiAction = game.activeArmy.getNextAIAction(game.gameMap);
+          long aiDeadline = budget.nextDeadline();
+          GameAction aiAction = game.activeArmy.getNextAIAction(game.gameMap, aiDeadline);
           thinkTimeNanos += System.nanoTime() - thinkStartNanos;
+          budget.checkAction(game.activeArmy.getControllerName(), aiDeadline, defaultOut);
           if( aiAction != null )
           {
             if( !executeGameAction(aiAction, actionEvents, game, defaultOut) )
@@ -302,11 +433,18 @@ public class FightClub
               defaultOut.println("WARNING! AI Action " + aiAction.toString() + " Failed to execute!");
               endAITurn = true;
             }
+            else
+              ++numActions;
           }
           else
           {
             endAITurn = true;
           }
+          if( !endAITurn && budget.turnExpired() )
+          {
+            budget.noteTurnCut(game.activeArmy.getControllerName(), defaultOut);
+            endAITurn = true;
+          }
           if( endAITurn )
             executeGameAction(new EndTurnAction(game.activeArmy, game.getCurrentTurn()),
                 actionEvents, game, defaultOut);
@@ -333,11 +471,19 @@ public class FightClub
             isGameOver = true;
             endReason = GameResults.EndCondition.CONQUEST;
           }
+          // Out of time (or told to stop); nobody wins.
+          else if( (params.gameTimeoutMillis > 0 && System.nanoTime() > deadlineNanos)
+                   || Thread.currentThread().isInterrupted() )
+          {
+            isGameOver = true;
+            endReason = GameResults.EndCondition.TIMEOUT;
+          }
         }
         stopwatches.put(game.activeArmy, stopwatches.get(game.activeArmy) + thinkTimeNanos);
+        turnThinkNanos.get(game.activeArmy).add(thinkTimeNanos);
 
         // Map should-ish be covered in units by turncount == map area
-        if(game.getCurrentTurn() > Math.max(game.gameMap.mapWidth, game.gameMap.mapHeight))
+        if(!isGameOver && game.getCurrentTurn() > Math.max(game.gameMap.mapWidth, game.gameMap.mapHeight))
         {
           if(game.armies[0].getUnits().size()/2 > game.armies[1].getUnits().size() )
           {
@@ -352,6 +498,13 @@ public class FightClub
             endReason = GameResults.EndCondition.TURN_LIMIT;
           }
         }
+        // Only stop at the end of a day, so every army gets the same number of turns.
+        if( !isGameOver && params.maxTurns > 0 && game.getCurrentTurn() >= params.maxTurns && isLastTurnOfDay(game) )
+        {
+          // Nobody is defeated, so everyone left standing shares the draw.
+          isGameOver = true;
+          endReason = GameResults.EndCondition.TURN_LIMIT;
+        }
       }
 
       gameRunTimeNanos = System.nanoTime() - gameRunTimeNanos;
@@ -362,7 +515,18 @@ public class FightClub
         if( !game.armies[i].isDefeated )
           winners.add(game.armies[i]);
       }
-      return new GameResults(winners, Arrays.asList(game.armies), game.getCurrentTurn(), endReason, gameRunTimeNanos, stopwatches);
+      GameResults results = new GameResults(winners, Arrays.asList(game.armies), game.getCurrentTurn(), endReason, gameRunTimeNanos, stopwatches);
+      results.seed = game.rngSeed;
+      results.turnThinkNanos = turnThinkNanos;
+      results.actionOverruns = budget.actionOverruns;
+      results.numActions = numActions;
+      results.turnOverruns = budget.turnOverruns;
+      for( Army army : game.armies )
+        if( null != army.getAIController() && null != army.getAIController().getProfiler() )
+          results.profiles.put(army, army.getAIController().getProfiler());
+      if( null != game.getJournal() )
+        results.eventDigest = game.getJournal().getDigest();
+      return results;
     }
 
     /**
@@ -374,6 +538,7 @@ public class FightClub
       if( null != action )
       {
         // Compile the GameAction to its component events.
+        game.recordAction(action);
         GameEventQueue events = action.getEvents(game.gameMap);
 
         if( events.size() > 0 )
@@ -389,6 +554,15 @@ public class FightClub
       return actionOK;
     }
 
+    /** @return True if no army after the active one is still playing, so the next turn starts a new day. */
+    private static boolean isLastTurnOfDay(GameInstance game)
+    {
+      for( int i = Arrays.asList(game.armies).indexOf(game.activeArmy) + 1; i < game.armies.length; ++i )
+        if( !game.armies[i].isDefeated )
+          return false;
+      return true;
+    }
+
     private void startNextTurn(GameInstance game, PrintStream defaultOut)
     {
       // Tell the game a turn has changed. This will update the active CO.
@@ -410,12 +584,14 @@ public class FightClub
 
     public void executeEvent(GameEvent event, GameEventQueue eventQueue, GameInstance game, PrintStream defaultOut)
     {
+      if( params.coalesceEvents )
+        event = EventCoalescer.coalesce(event, eventQueue, game);
       if( null != event )
       {
-        event.performEvent(game.gameMap);
+        game.gameMap.performEvent(event);
 
         // Now that the event has been completed, let the world know.
-        eventQueue.addAll(GameEventListener.publishEvent(event, game));
+        GameEventListener.publishEvent(event, game, eventQueue);
       }
     }
   } // ~GameSet
@@ -1132,7 +1132,15 @@ public class JakeMan extends ModularAI
     if( null == copter ) // I clearly don't understand this unit set, so just grab something to hedge
       copter = myArmy.cos[0].getUnitModel(UnitModel.AIR_TO_AIR, false);
 
-    capPhase = new CapPhaseAnalyzer(map, myArmy);
+    profiler.begin();
+    try
+    {
+      capPhase = new CapPhaseAnalyzer(map, myArmy);
+    }
+    finally
+    {
+      profiler.end(profiler.getStats("CapPhaseAnalyzer init"), false);
+    }
   }
 
   private void counterBuildSetup()
@@ -0,0 +1,1021 @@
+package AI;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import AI.FightClub.ContestantInfo;
+import AI.FightClub.GameSet;
+import AI.FightClub.GameSetParams;
+import CommandingOfficers.Commander;
+import CommandingOfficers.CommanderAbility;
+import CommandingOfficers.CommanderLibrary.NotACO;
+import Engine.Army;
+import Engine.GameAction;
+import Engine.GameAction.EndTurnAction;
+import Engine.GameAction.UnitProductionAction;
+import Engine.GameActionSet;
+import Engine.GameInstance;
+import Engine.GamePath;
+import Engine.HeadlessMode;
+import Engine.PathCalcParams;
+import Engine.UnitActionFactory;
+import Engine.Utils;
+import Engine.XYCoord;
+import Engine.Combat.BattleSummary;
+import Engine.Combat.CombatContext.CalcType;
+import Engine.Combat.CombatEngine;
+import Engine.GameEvents.GameEvent;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventQueue;
+import Engine.UnitActionLifecycles.BattleLifecycle;
+import Engine.UnitActionLifecycles.CaptureLifecycle;
+import Engine.UnitActionLifecycles.WaitLifecycle;
+import Terrain.GameMap;
+import Terrain.MapInfo;
+import Terrain.MapLibrary;
+import Terrain.MapLocation;
+import Terrain.MapMaster;
+import Units.Unit;
+import Units.UnitModel;
+
+/**
+ * Picks each action by Monte Carlo tree search over the rest of its turn.
+ * <p>
+ * The search runs on forks of the real game (see GameInstance.fork()). A tree node is a point partway through
+ * our turn, and its children are a short list of candidate actions - the best attacks, a capture, an advance
+ * for each unit, a couple of purchases per factory, and ending the turn - each with a prior from cheap heuristics.
+ * At the root, CapPhaseAnalyzer's capture chains boost the priors of the moves that follow them.
+ * Each iteration walks down the tree by PUCT, hands every army to a fast rollout AI (SpenderAI by default)
+ * to finish our turn and play out the others' replies, and then scores the result by relative army value.
+ * <p>
+ * Searches use root parallelism: each thread grows its own tree from its own fork, and their root statistics
+ * are summed before picking the most-visited action. How long to think is set by Config, so the same AI can
+ * be run at several budgets to chart strength against compute (see main()).
+ * <p>
+ * The forks are trimmed down to what our army can see before searching (see hideWhatWeCantSee()), so fog
+ * hides as much from this AI as from any other; it plays as if fogged tiles were empty.
+ */
+public class MCTSAI implements AIController
+{
+  /** How hard to think. */
+  public static class Config
+  {
+    public String name = "Monte Carlo";
+    /** Most iterations per action, over all threads. Zero leaves it to the time limit. */
+    public int iterations = 48;
+    /** Most time per action. Zero leaves it to the iteration limit and the caller's deadline. */
+    public long millis = 300;
+    public int threads = 2;
+    /** How many full rounds of turns a rollout plays once our turn is over. */
+    public int rolloutRounds = 1;
+    /** The PUCT exploration constant; higher spends more iterations on low-prior actions. */
+    public double exploration = 1.0;
+    /** Most candidate actions to consider from any one position. */
+    public int maxChildren = 16;
+    /** Plays out the rest of each rollout, for every army. */
+    public AIMaker rolloutPolicy = SpenderAI.info;
+
+    public Config copy()
+    {
+      Config c = new Config();
+      c.name = name;
+      c.iterations = iterations;
+      c.millis = millis;
+      c.threads = threads;
+      c.rolloutRounds = rolloutRounds;
+      c.exploration = exploration;
+      c.maxChildren = maxChildren;
+      c.rolloutPolicy = rolloutPolicy;
+      return c;
+    }
+  }
+
+  private static class instantiator implements AIMaker
+  {
+    final Config config;
+    instantiator(Config config)
+    {
+      this.config = config;
+    }
+
+    @Override
+    public AIController create(Army army)
+    {
+      return new MCTSAI(army, config, this);
+    }
+
+    @Override
+    public String getName()
+    {
+      return config.name;
+    }
+
+    @Override
+    public String getDescription()
+    {
+      return
+          "Monte Carlo plays out each of its options many times with a fast, simple AI, and goes with whatever worked out best.\n" +
+          "It thinks harder than the others, so it may take a while on bigger maps.";
+    }
+  }
+  public static final AIMaker info = new instantiator(new Config());
+
+  /** @return An AIMaker for this AI with the given search budget (and otherwise default settings). */
+  public static AIMaker withBudget(int iterations, long millis, int threads)
+  {
+    Config config = new Config();
+    config.name = "Monte Carlo " + iterations;
+    config.iterations = iterations;
+    config.millis = millis;
+    config.threads = threads;
+    return new instantiator(config);
+  }
+
+  public static AIMaker withConfig(Config config)
+  {
+    return new instantiator(config.copy());
+  }
+
+  @Override
+  public AIMaker getAIInfo()
+  {
+    return maker;
+  }
+
+  // Prior weights for each kind of candidate, before normalizing.
+  private static final double ATTACK_PRIOR = 2.0;
+  private static final double CAPTURE_PRIOR = 2.5;
+  private static final double ADVANCE_PRIOR = 1.0;
+  private static final double BUY_PRIOR = 1.5;
+  private static final double END_TURN_PRIOR = 0.25;
+  private static final double CAP_CHAIN_BONUS = 2.0;
+  private static final int ATTACKS_PER_UNIT = 2;
+
+  // How rollouts are scored; see evaluate().
+  private static final int PROPERTY_VALUE = 2000;
+  private static final double MONEY_WEIGHT = 0.5;
+  /** Guards against rollout AIs that never end their turn. */
+  private static final int MAX_ROLLOUT_ACTIONS = 200;
+
+  private static ExecutorService searchPool = null;
+
+  private final Army myArmy;
+  private final Config config;
+  private final AIMaker maker;
+  private Queue<GameAction> actions = new ArrayDeque<GameAction>();
+  private CapPhaseAnalyzer capPhase;
+
+  private StringBuffer logger = new StringBuffer();
+  private boolean shouldLog = true;
+  private int turnNum = 0;
+
+  private final AIProfiler profiler = new AIProfiler();
+  /** How many iterations the last search ran, over all threads. */
+  public int lastIterations = 0;
+
+  public MCTSAI(Army army)
+  {
+    this(army, ((instantiator) info).config, info);
+  }
+  private MCTSAI(Army army, Config config, AIMaker maker)
+  {
+    myArmy = army;
+    this.config = config;
+    this.maker = maker;
+  }
+
+  @Override
+  public void initTurn(GameMap gameMap)
+  {
+    turnNum++;
+    log(String.format("[======== MCTS initializing turn %s for %s =========]", turnNum, myArmy));
+    actions.clear();
+
+    if( null == capPhase )
+    {
+      profiler.begin();
+      try
+      {
+        capPhase = new CapPhaseAnalyzer(gameMap, myArmy);
+      }
+      finally
+      {
+        profiler.end(profiler.getStats("CapPhaseAnalyzer init"), false);
+      }
+    }
+
+    // Abilities can do nearly anything, so we don't search over them; just use them when they're handy.
+    AIUtils.queueCromulentAbility(actions, myArmy, CommanderAbility.PHASE_TURN_START);
+  }
+
+  @Override
+  public void endTurn()
+  {
+    log(String.format("[======== MCTS ending turn %s for %s =========]", turnNum, myArmy));
+    logger = new StringBuffer();
+  }
+
+  private void log(String message)
+  {
+    if( shouldLog )
+    {
+      System.out.println(message);
+      logger.append(message).append('\n');
+    }
+  }
+  @Override
+  public void setLogging(boolean value) { shouldLog = value; }
+
+  @Override
+  public AIProfiler getProfiler()
+  {
+    return profiler;
+  }
+
+  @Override
+  public GameAction getNextAction(GameMap gameMap)
+  {
+    return getNextAction(gameMap, Long.MAX_VALUE);
+  }
+
+  @Override
+  public GameAction getNextAction(GameMap gameMap, long deadlineNanos)
+  {
+    if( actions.isEmpty() )
+    {
+      GameAction action = null;
+      profiler.begin();
+      try
+      {
+        action = search(gameMap, deadlineNanos);
+      }
+      finally
+      {
+        profiler.end(profiler.getStats("search"), null != action);
+      }
+      if( null != action )
+        actions.offer(action);
+      else
+        AIUtils.queueCromulentAbility(actions, myArmy, CommanderAbility.PHASE_TURN_END);
+    }
+
+    GameAction nextAction = actions.poll();
+    log(String.format("  Action: %s", nextAction));
+    return nextAction;
+  }
+
+  /** @return The best action found in the time allowed, or null to end the turn. */
+  private GameAction search(GameMap gameMap, long deadlineNanos)
+  {
+    long stopNanos = deadlineNanos;
+    if( config.millis > 0 )
+      stopNanos = Math.min(stopNanos, System.nanoTime() + config.millis * 1000000);
+    int iterations = config.iterations;
+    if( iterations <= 0 )
+      iterations = (stopNanos == Long.MAX_VALUE) ? new Config().iterations : Integer.MAX_VALUE;
+
+    // Hints from the capture planner, which only knows about the real game's units.
+    Map<Move, Double> hints = new LinkedHashMap<>();
+    for( Unit unit : myArmy.getUnits() )
+    {
+      if( null == capPhase )
+        break; // We were handed the turn already under way, e.g. after a load.
+      if( unit.isTurnOver || !gameMap.isLocationValid(unit.x, unit.y) )
+        continue;
+      GameAction capAction = capPhase.getCapAction(gameMap, unit);
+      if( null != capAction )
+        hints.put(Move.of(unit, capAction), CAP_CHAIN_BONUS);
+    }
+
+    // Fork once per thread here, so the workers never touch the real game.
+    int threads = Math.max(1, config.threads);
+    List<Searcher> searchers = new ArrayList<>();
+    for( int i = 0; i < threads; ++i )
+    {
+      GameInstance root = gameMap.game.fork();
+      if( null == root )
+        return null;
+      hideWhatWeCantSee(root, root.getActiveCOIndex(), gameMap);
+      int share = (iterations == Integer.MAX_VALUE) ? iterations : (iterations + threads - 1 - i) / threads;
+      searchers.add(new Searcher(root, root.getActiveCOIndex(), config, hints, share, stopNanos));
+    }
+    runAll(searchers);
+
+    // Sum up the root statistics, and go with the most-visited action.
+    Map<Move, Node> totals = new LinkedHashMap<>();
+    lastIterations = 0;
+    for( Searcher s : searchers )
+    {
+      lastIterations += s.iterationsDone;
+      for( Node child : s.tree.children )
+      {
+        Node total = totals.get(child.move);
+        if( null == total )
+        {
+          total = new Node(null, child.move, child.prior);
+          totals.put(child.move, total);
+        }
+        total.visits += child.visits;
+        total.valueSum += child.valueSum;
+      }
+    }
+    Node best = null;
+    for( Node option : totals.values() )
+    {
+      if( null == best || option.visits > best.visits || (option.visits == best.visits && option.prior > best.prior) )
+        best = option;
+    }
+    if( null == best )
+      return null;
+    log(String.format("  Searched %d iterations; chose %s (%d visits, %.3f)", lastIterations, best.move, best.visits,
+        best.visits > 0 ? best.valueSum / best.visits : 0));
+    if( best.move.isEndTurn() )
+      return null;
+
+    GameAction action = best.move.toAction(gameMap, myArmy);
+    if( null == action )
+      System.out.println("WARNING! MCTS couldn't rebuild its chosen move " + best.move);
+    return action;
+  }
+
+  /**
+   * Turns a fork of the real game into one guess at it, built only from what our army can see: others' units
+   * that our view doesn't show are taken off the map (with anything they carry), the ones it does show are put
+   * at the health their HP implies, and properties under fog go to whoever we last saw owning them.
+   * Without fog, only the health changes.
+   */
+  private static void hideWhatWeCantSee(GameInstance fork, int armyIndex, GameMap view)
+  {
+    MapMaster map = fork.gameMap;
+    for( int i = 0; i < fork.armies.length; ++i )
+    {
+      if( i == armyIndex )
+        continue;
+      for( Commander co : fork.armies[i].cos )
+        for( Unit unit : new ArrayList<>(co.units) )
+        {
+          if( !map.isLocationValid(unit.x, unit.y) )
+            continue; // Cargo goes with its transport.
+          if( null == view.getResident(unit.x, unit.y) )
+          {
+            map.removeUnit(unit);
+            removeWithCargo(unit);
+          }
+          else
+            unit.health = unit.getHealth();
+        }
+    }
+
+    for( int x = 0; x < map.mapWidth; ++x )
+      for( int y = 0; y < map.mapHeight; ++y )
+      {
+        if( !view.isLocationFogged(x, y) || !map.getEnvironment(x, y).terrainType.isCapturable() )
+          continue;
+        map.setOwner(findCounterpart(view.game, fork, view.getOwner(x, y)), x, y);
+      }
+  }
+
+  private static void removeWithCargo(Unit unit)
+  {
+    unit.CO.units.remove(unit);
+    for( Unit cargo : unit.heldUnits )
+      removeWithCargo(cargo);
+    unit.heldUnits.clear();
+  }
+
+  /** @return The fork's copy of the given Commander from the real game. */
+  private static Commander findCounterpart(GameInstance game, GameInstance fork, Commander real)
+  {
+    if( null == real )
+      return null;
+    for( int i = 0; i < game.armies.length; ++i )
+      for( int j = 0; j < game.armies[i].cos.length; ++j )
+        if( game.armies[i].cos[j] == real )
+          return fork.armies[i].cos[j];
+    return null;
+  }
+
+  private static void runAll(List<Searcher> searchers)
+  {
+    if( searchers.size() == 1 )
+    {
+      searchers.get(0).run();
+      return;
+    }
+
+    final boolean mute = HeadlessMode.isMuted();
+    ExecutorService pool = getSearchPool();
+    List<Future<?>> running = new ArrayList<>();
+    for( Searcher s : searchers )
+      running.add(pool.submit(() ->
+      {
+        HeadlessMode.setMuted(mute); // Keep rollout chatter as quiet as our caller is.
+        try
+        {
+          s.run();
+        }
+        finally
+        {
+          HeadlessMode.setMuted(false);
+        }
+      }));
+    for( Future<?> f : running )
+    {
+      try
+      {
+        f.get();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        for( Future<?> r : running )
+          r.cancel(true);
+        return;
+      }
+      catch (ExecutionException ex)
+      {
+        System.out.println("WARNING! MCTS search thread failed: " + ex.getCause());
+      }
+    }
+  }
+
+  private static synchronized ExecutorService getSearchPool()
+  {
+    if( null == searchPool )
+      searchPool = Executors.newCachedThreadPool(r ->
+      {
+        Thread t = new Thread(r, "MCTS search");
+        t.setDaemon(true);
+        return t;
+      });
+    return searchPool;
+  }
+
+  /**
+   * One candidate action, described by coordinates rather than object references,
+   * so it means the same thing in every fork of the game.
+   */
+  static class Move
+  {
+    final XYCoord actor; // Null for production and ending the turn.
+    final XYCoord dest;
+    final UnitActionFactory type;
+    final XYCoord target;
+    final UnitModel model; // Only for production.
+    final double prior;
+
+    private Move(XYCoord actor, XYCoord dest, UnitActionFactory type, XYCoord target, UnitModel model, double prior)
+    {
+      this.actor = actor;
+      this.dest = dest;
+      this.type = type;
+      this.target = target;
+      this.model = model;
+      this.prior = prior;
+    }
+
+    static Move of(Unit unit, GameAction action)
+    {
+      return of(unit, action, 0);
+    }
+    static Move of(Unit unit, GameAction action, double prior)
+    {
+      return new Move(new XYCoord(unit), action.getMoveLocation(), action.getType(), action.getTargetLocation(), null, prior);
+    }
+    static Move produce(XYCoord where, UnitModel what, double prior)
+    {
+      return new Move(null, where, null, where, what, prior);
+    }
+    static Move endTurn(double prior)
+    {
+      return new Move(null, null, null, null, null, prior);
+    }
+
+    Move withPrior(double newPrior)
+    {
+      return new Move(actor, dest, type, target, model, newPrior);
+    }
+
+    boolean isEndTurn()
+    {
+      return null == actor && null == model;
+    }
+
+    /** @return The matching action in this game, or null if it can't be done here. */
+    GameAction toAction(GameMap map, Army army)
+    {
+      if( isEndTurn() )
+        return null;
+      if( null != model )
+      {
+        Commander buyer = map.getLocation(dest).getOwner();
+        if( null == buyer || buyer.army != army )
+          return null;
+        return new UnitProductionAction(buyer, model, dest);
+      }
+
+      Unit unit = map.getResident(actor);
+      if( null == unit || unit.CO.army != army || unit.isTurnOver )
+        return null;
+      GamePath path = actor.equals(dest) ? GamePath.stayPut(actor) : new PathCalcParams(unit, map).findShortestPath(dest);
+      if( null == path )
+        return null;
+      for( GameActionSet set : unit.getPossibleActions(map, path) )
+        for( GameAction action : set.getGameActions() )
+          if( sameType(type, action.getType()) && Objects.equals(target, action.getTargetLocation())
+              && Objects.equals(dest, action.getMoveLocation()) )
+            return action;
+      return null;
+    }
+
+    // Factories aren't singletons once a game has been loaded, so compare by kind.
+    private static boolean sameType(UnitActionFactory a, UnitActionFactory b)
+    {
+      if( null == a || null == b )
+        return a == b;
+      return a.getClass() == b.getClass();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if( !(obj instanceof Move) )
+        return false;
+      Move other = (Move) obj;
+      return Objects.equals(actor, other.actor) && Objects.equals(dest, other.dest) && sameType(type, other.type)
+          && Objects.equals(target, other.target) && model == other.model;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(actor, dest, (null == type) ? null : type.getClass(), target, System.identityHashCode(model));
+    }
+
+    @Override
+    public String toString()
+    {
+      if( isEndTurn() )
+        return "[End turn]";
+      if( null != model )
+        return String.format("[Produce %s at %s]", model, dest);
+      return String.format("[%s from %s to %s, target %s]", (null == type) ? "?" : type.getClass().getSimpleName(), actor, dest, target);
+    }
+  }
+
+  static class Node
+  {
+    final Node parent;
+    final Move move;
+    final double prior;
+    ArrayList<Node> children = null; // Null until expanded.
+    int visits = 0;
+    double valueSum = 0;
+
+    Node(Node parent, Move move, double prior)
+    {
+      this.parent = parent;
+      this.move = move;
+      this.prior = prior;
+    }
+  }
+
+  /** Grows one search tree on one thread. */
+  private static class Searcher implements Runnable
+  {
+    final GameInstance root;
+    final int armyIndex;
+    final Config config;
+    final Map<Move, Double> hints;
+    final int maxIterations;
+    final long stopNanos;
+    final Node tree = new Node(null, null, 1);
+    int iterationsDone = 0;
+
+    Searcher(GameInstance root, int armyIndex, Config config, Map<Move, Double> hints, int maxIterations, long stopNanos)
+    {
+      this.root = root;
+      this.armyIndex = armyIndex;
+      this.config = config;
+      this.hints = hints;
+      this.maxIterations = maxIterations;
+      this.stopNanos = stopNanos;
+    }
+
+    @Override
+    public void run()
+    {
+      // Always expand the root, so there's something to choose from even if we're out of time already.
+      tree.children = expand(tree, findMoves(root.gameMap, root.armies[armyIndex], config.maxChildren, hints));
+      if( tree.children.size() < 2 )
+        return; // Nothing to decide.
+
+      while (iterationsDone < maxIterations && System.nanoTime() < stopNanos && !Thread.currentThread().isInterrupted())
+      {
+        iterate();
+        ++iterationsDone;
+      }
+    }
+
+    private void iterate()
+    {
+      GameInstance sim = root.fork();
+      if( null == sim )
+        return;
+      Army me = sim.armies[armyIndex];
+
+      // Walk down the tree, making each chosen move in the fork as we go.
+      Node node = tree;
+      boolean turnEnded = false;
+      while (true)
+      {
+        if( null == node.children )
+          node.children = expand(node, findMoves(sim.gameMap, me, config.maxChildren, null));
+        if( node.children.isEmpty() )
+          break;
+        Node child = select(node);
+        if( child.move.isEndTurn() )
+        {
+          node = child;
+          turnEnded = true;
+          break;
+        }
+        GameAction action = child.move.toAction(sim.gameMap, me);
+        if( null == action || !execute(sim, action) )
+        {
+          // The fork replays the same way every time, so this move will never work from here.
+          node.children.remove(child);
+          continue;
+        }
+        node = child;
+        if( node.visits == 0 || isGameOver(sim) )
+          break;
+      }
+
+      double value = rollout(sim, me, turnEnded);
+      for( Node n = node; null != n; n = n.parent )
+      {
+        n.visits++;
+        n.valueSum += value;
+      }
+    }
+
+    /** PUCT: prefer good results, but give high-prior and little-tried moves a look. */
+    private Node select(Node node)
+    {
+      double parentQ = (node.visits > 0) ? node.valueSum / node.visits : 0.5;
+      double explore = config.exploration * Math.sqrt(node.visits + 1);
+      Node best = null;
+      double bestScore = Double.NEGATIVE_INFINITY;
+      for( Node child : node.children )
+      {
+        double q = (child.visits > 0) ? child.valueSum / child.visits : parentQ;
+        double score = q + explore * child.prior / (1 + child.visits);
+        if( score > bestScore )
+        {
+          best = child;
+          bestScore = score;
+        }
+      }
+      return best;
+    }
+
+    /** Finishes our turn (unless we ended it), plays the other armies' replies, and scores the result for us. */
+    private double rollout(GameInstance sim, Army me, boolean turnEnded)
+    {
+      for( Army army : sim.armies )
+      {
+        AIController ai = config.rolloutPolicy.create(army);
+        ai.setLogging(false);
+        army.setAIController(ai);
+      }
+
+      if( !turnEnded && !isGameOver(sim) )
+      {
+        me.getAIController().initTurn(me.myView); // Our turn is already under way, so nobody else will.
+        playTurn(sim);
+      }
+      int armyTurns = config.rolloutRounds * sim.armies.length;
+      for( int i = 0; i < armyTurns && !isGameOver(sim); ++i )
+      {
+        endTurn(sim);
+        if( sim.activeArmy == me )
+          break; // Back to us; the others have had their say.
+        playTurn(sim);
+      }
+      return evaluate(sim, me);
+    }
+  }
+
+  private static ArrayList<Node> expand(Node parent, List<Move> moves)
+  {
+    ArrayList<Node> children = new ArrayList<>(moves.size());
+    for( Move m : moves )
+      children.add(new Node(parent, m, m.prior));
+    return children;
+  }
+
+  /**
+   * @param hints Extra prior weight for particular moves; these are added as candidates if we didn't already have them.
+   * @return The moves worth searching from this position, with priors normalized to sum to 1.
+   */
+  static List<Move> findMoves(GameMap map, Army me, int maxChildren, Map<Move, Double> hints)
+  {
+    ArrayList<Move> moves = new ArrayList<>();
+
+    // Where to go, for units with nothing better to do.
+    ArrayList<XYCoord> capTargets = AIUtils.findNonAlliedProperties(me, map);
+    ArrayList<XYCoord> fightTargets = AIUtils.findEnemyUnits(me, map);
+    for( Army army : map.game.armies )
+      if( me.isEnemy(army) && !army.isDefeated )
+        fightTargets.addAll(army.HQLocations);
+
+    for( Unit unit : me.getUnits() )
+    {
+      if( unit.isTurnOver || !map.isLocationValid(unit.x, unit.y) )
+        continue;
+      addUnitMoves(map, unit, capTargets, fightTargets, moves);
+    }
+    addProductionMoves(map, me, moves);
+
+    if( null != hints )
+      for( Map.Entry<Move, Double> hint : hints.entrySet() )
+      {
+        int index = moves.indexOf(hint.getKey());
+        if( index >= 0 )
+          moves.set(index, moves.get(index).withPrior(moves.get(index).prior + hint.getValue()));
+        else
+          moves.add(hint.getKey().withPrior(ADVANCE_PRIOR + hint.getValue()));
+      }
+
+    moves.sort((a, b) -> Double.compare(b.prior, a.prior));
+    Move endTurn = Move.endTurn(END_TURN_PRIOR);
+    if( moves.size() >= maxChildren )
+      moves.subList(Math.max(0, maxChildren - 1), moves.size()).clear();
+    moves.add(endTurn); // Always an option.
+
+    double total = 0;
+    for( Move m : moves )
+      total += m.prior;
+    for( int i = 0; i < moves.size(); ++i )
+      moves.set(i, moves.get(i).withPrior(moves.get(i).prior / total));
+    return moves;
+  }
+
+  private static void addUnitMoves(GameMap map, Unit unit, ArrayList<XYCoord> capTargets, ArrayList<XYCoord> fightTargets,
+                                   ArrayList<Move> moves)
+  {
+    PathCalcParams pcp = new PathCalcParams(unit, map);
+    pcp.includeOccupiedSpaces = false;
+    ArrayList<Utils.SearchNode> destinations = pcp.findAllPaths();
+    if( destinations.isEmpty() )
+      return;
+
+    ArrayList<Move> attacks = new ArrayList<>();
+    Move capture = null;
+    boolean canCapture = false;
+    for( Utils.SearchNode dest : destinations )
+    {
+      GamePath path = dest.getMyPath();
+      for( GameActionSet set : unit.getPossibleActions(map, path) )
+      {
+        UnitActionFactory type = set.getSelected().getType();
+        if( type instanceof BattleLifecycle.BattleFactory )
+        {
+          for( GameAction attack : set.getGameActions() )
+            attacks.add(Move.of(unit, attack, ATTACK_PRIOR + attackValue(map, unit, path, attack)));
+        }
+        else if( type instanceof CaptureLifecycle.CaptureFactory )
+        {
+          canCapture = true;
+          // Finishing a capture beats starting a new one.
+          double prior = CAPTURE_PRIOR + ((unit.getCaptureProgress() > 0 && dest.equals(unit.x, unit.y)) ? 1 : 0);
+          if( null == capture || prior > capture.prior )
+            capture = Move.of(unit, set.getSelected(), prior);
+        }
+      }
+    }
+    attacks.sort((a, b) -> Double.compare(b.prior, a.prior));
+    moves.addAll(attacks.subList(0, Math.min(ATTACKS_PER_UNIT, attacks.size())));
+    if( null != capture )
+      moves.add(capture);
+
+    // Head for the nearest thing worth going to; like SpenderAI, aim for the edge of our move range along the way.
+    ArrayList<XYCoord> targets = new ArrayList<>(canCapture || unit.model.weapons.isEmpty() ? capTargets : fightTargets);
+    if( targets.isEmpty() )
+      targets.addAll(capTargets);
+    if( targets.isEmpty() )
+      return;
+    Utils.sortLocationsByDistance(new XYCoord(unit), targets);
+    for( int i = 0; i < targets.size() && i < 3; ++i )
+    {
+      GamePath route = new PathCalcParams(unit, map).setTheoretical().findShortestPath(targets.get(i));
+      if( null == route || route.getPathLength() < 2 )
+        continue;
+      route.snip(unit.getMovePower(map) + 1);
+      Utils.sortLocationsByDistance(route.getEndCoord(), destinations);
+      GamePath movePath = destinations.get(0).getMyPath();
+      if( movePath.getPathLength() > 1 )
+        moves.add(Move.of(unit, new WaitLifecycle.WaitAction(unit, movePath), ADVANCE_PRIOR));
+      break;
+    }
+  }
+
+  /** @return Roughly how much the attack gains us, in thousands of funds' worth of units. */
+  private static double attackValue(GameMap map, Unit unit, GamePath path, GameAction attack)
+  {
+    Unit target = map.getResident(attack.getTargetLocation());
+    if( null == target )
+      return 0; // Terrain; worth a look, but no more.
+    BattleSummary results = CombatEngine.simulateBattleResults(unit, target, map, path, CalcType.PESSIMISTIC);
+    double dealt = results.defender.getPreciseHealthDamage() * target.model.costBase / (double) UnitModel.MAXIMUM_HEALTH;
+    double taken = results.attacker.getPreciseHealthDamage() * unit.model.costBase / (double) UnitModel.MAXIMUM_HEALTH;
+    return Math.max(-ATTACK_PRIOR / 2, (dealt - taken) / 1000);
+  }
+
+  /** At each free factory: the priciest combat unit we can afford, and the cheapest. */
+  private static void addProductionMoves(GameMap map, Army me, ArrayList<Move> moves)
+  {
+    if( !me.canBuildUnits() )
+      return;
+    for( XYCoord xyc : me.getOwnedProperties() )
+    {
+      MapLocation loc = map.getLocation(xyc);
+      Commander buyer = loc.getOwner();
+      if( null == buyer || null != loc.getResident() )
+        continue;
+      UnitModel cheapest = null, priciest = null;
+      for( UnitModel model : buyer.getShoppingList(loc) )
+      {
+        int cost = buyer.getBuyCost(model, xyc);
+        if( model.weapons.isEmpty() || cost > me.money )
+          continue;
+        if( null == cheapest || cost < buyer.getBuyCost(cheapest, xyc) )
+          cheapest = model;
+        if( null == priciest || cost > buyer.getBuyCost(priciest, xyc) )
+          priciest = model;
+      }
+      if( null != priciest )
+        moves.add(Move.produce(xyc, priciest, BUY_PRIOR));
+      if( null != cheapest && cheapest != priciest )
+        moves.add(Move.produce(xyc, cheapest, BUY_PRIOR * 0.75));
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////
+  // Driving a fork. There's no UI or journal here, so this is just the bare event loop.
+
+  private static boolean execute(GameInstance game, GameAction action)
+  {
+    GameEventQueue events = action.getEvents(game.gameMap);
+    if( events.isEmpty() )
+      return false;
+    runEvents(game, events);
+    return true;
+  }
+
+  private static void runEvents(GameInstance game, GameEventQueue events)
+  {
+    while (!events.isEmpty())
+    {
+      GameEvent event = events.poll();
+      game.gameMap.performEvent(event);
+      GameEventListener.publishEvent(event, game, events);
+    }
+  }
+
+  /** Lets the active army's AI act until it's done. */
+  private static void playTurn(GameInstance game)
+  {
+    Army army = game.activeArmy;
+    for( int i = 0; i < MAX_ROLLOUT_ACTIONS && !isGameOver(game); ++i )
+    {
+      GameAction action = army.getNextAIAction(game.gameMap);
+      if( null == action || !execute(game, action) )
+        break;
+    }
+  }
+
+  private static void endTurn(GameInstance game)
+  {
+    execute(game, new EndTurnAction(game.activeArmy, game.getCurrentTurn()));
+    GameEventQueue turnEvents = new GameEventQueue();
+    game.turn(turnEvents);
+    runEvents(game, turnEvents);
+  }
+
+  private static boolean isGameOver(GameInstance game)
+  {
+    int alive = 0;
+    for( Army army : game.armies )
+      if( !army.isDefeated )
+        ++alive;
+    return alive < 2;
+  }
+
+  /** @return Our share of the total worth (units, properties and funds) on the board, or 0/1 if someone's won. */
+  static double evaluate(GameInstance game, Army me)
+  {
+    if( me.isDefeated )
+      return 0;
+    double mine = armyValue(me);
+    double theirs = 0;
+    boolean anyEnemies = false;
+    for( Army army : game.armies )
+    {
+      if( army.isDefeated || !me.isEnemy(army) )
+        continue;
+      anyEnemies = true;
+      theirs += armyValue(army);
+    }
+    if( !anyEnemies )
+      return 1;
+    return mine / Math.max(1, mine + theirs);
+  }
+
+  private static double armyValue(Army army)
+  {
+    double value = army.getOwnedProperties().size() * PROPERTY_VALUE + army.money * MONEY_WEIGHT;
+    for( Unit unit : army.getUnits() )
+      value += unit.model.costBase * unit.health / (double) UnitModel.MAXIMUM_HEALTH;
+    return value;
+  }
+
+  /**
+   * Charts playing strength against search budget: plays MCTS at a few iteration counts against a baseline AI,
+   * swapping sides every game, and reports the win rate and think time at each.
+   * <p>
+   * Usage: MCTSAI [map name] [games per budget] [threads] [iterations ...]
+   */
+  public static void main(String[] args)
+  {
+    String mapName = (args.length > 0) ? args[0] : "AW2 Spann Island";
+    int games = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+    int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int[] budgets = { 8, 32, 128 };
+    if( args.length > 3 )
+    {
+      budgets = new int[args.length - 3];
+      for( int i = 3; i < args.length; ++i )
+        budgets[i - 3] = Integer.parseInt(args[i]);
+    }
+
+    HeadlessMode.enable();
+    PrintStream console = HeadlessMode.getConsole();
+    MapInfo map = MapLibrary.getByName(mapName);
+    if( null == map )
+    {
+      console.println("WARNING! No map named " + mapName);
+      return;
+    }
+
+    AIMaker baseline = SpenderAI.info;
+    console.println(String.format("MCTS vs %s on %s, %d games per budget, %d threads", baseline.getName(), mapName, games, threads));
+    console.println(String.format("%10s %6s %6s %6s %14s", "iterations", "wins", "losses", "draws", "think ms/turn"));
+    for( int budget : budgets )
+    {
+      AIMaker mcts = withBudget(budget, 0, threads);
+      GameSetParams params = new GameSetParams(map, games, Arrays.asList(NotACO.getInfo(), NotACO.getInfo()),
+          Arrays.asList(mcts, baseline));
+      params.verbose = false;
+      GameSet set = new GameSet(params);
+      List<ContestantInfo> contestants = Arrays.asList(new ContestantInfo(params.COs.get(0), params.AIs.get(0)),
+                                                       new ContestantInfo(params.COs.get(1), params.AIs.get(1)));
+      int wins = 0, losses = 0, draws = 0;
+      long thinkNanos = 0;
+      int turns = 0;
+      for( int g = 0; g < games; ++g )
+      {
+        HeadlessMode.setMuted(true);
+        FightClub.GameSet.GameResults results = set.playGame(contestants, g % 2, "mcts_curve", 1000 + g, console);
+        HeadlessMode.setMuted(false);
+        if( null == results )
+          return;
+        if( results.winners.size() != 1 )
+          ++draws;
+        else if( results.winners.get(0).team == 0 )
+          ++wins;
+        else
+          ++losses;
+        for( Army army : results.contestants )
+          if( army.team == 0 )
+          {
+            thinkNanos += results.stopwatches.get(army);
+            turns += results.turnThinkNanos.get(army).size();
+          }
+      }
+      console.println(String.format("%10d %6d %6d %6d %14.1f", budget, wins, losses, draws, thinkNanos / 1e6 / Math.max(1, turns)));
+    }
+  }
+}
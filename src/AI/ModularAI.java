@@ -35,6 +35,12 @@ public abstract class ModularAI implements AIController
   private boolean shouldLog = true;
   protected int turnNum = 0;
 
+  protected final AIProfiler profiler = new AIProfiler();
+  // Per-module stats, parallel to aiPhases; built on first use since subclasses fill in aiPhases after we're constructed.
+  private AIProfiler.PhaseStats[] initStats, actionStats;
+  // When the current getNextAction() call should be done; see AIController.
+  protected long deadlineNanos = Long.MAX_VALUE;
+
   public ModularAI(Army army)
   {
     myArmy = army;
@@ -49,9 +55,18 @@ public abstract class ModularAI implements AIController
     // Create a list of every property we don't own, but want to.
     futureCapTargets = AIUtils.findNonAlliedProperties(myArmy, gameMap);
 
-    for( AIModule phase : aiPhases )
+    buildPhaseStats();
+    for( int i = 0; i < aiPhases.size(); ++i )
     {
-      phase.initTurn(gameMap);
+      profiler.begin();
+      try
+      {
+        aiPhases.get(i).initTurn(gameMap);
+      }
+      finally
+      {
+        profiler.end(initStats[i], false);
+      }
     }
   }
 
@@ -91,12 +106,30 @@ public abstract class ModularAI implements AIController
 
     // Each module gets a shot at the whole unit queue, in order.
     // If no action's found, we're done
-    for( AIModule phase : aiPhases )
+    buildPhaseStats();
+    for( int i = 0; i < aiPhases.size(); ++i )
     {
+      // Under time pressure, drop optional modules we don't expect to finish in time.
+      AIModule phase = aiPhases.get(i);
+      if( phase.isOptional() && deadlineNanos != Long.MAX_VALUE
+          && deadlineNanos - System.nanoTime() < actionStats[i].meanNanos() )
+      {
+        actionStats[i].skips++;
+        continue;
+      }
+
       unitQueue.clear();
       unitQueue.addAll(eligibleUnits);
 
-      nextAction = phase.getNextAction(unitQueue, gameMap);
+      profiler.begin();
+      try
+      {
+        nextAction = phase.getNextAction(unitQueue, gameMap);
+      }
+      finally
+      {
+        profiler.end(actionStats[i], null != nextAction);
+      }
       if( null != nextAction )
         break;
     }
@@ -104,11 +137,54 @@ public abstract class ModularAI implements AIController
     return nextAction;
   }
 
+  @Override
+  public GameAction getNextAction(GameMap gameMap, long deadline)
+  {
+    deadlineNanos = deadline;
+    try
+    {
+      return getNextAction(gameMap);
+    }
+    finally
+    {
+      deadlineNanos = Long.MAX_VALUE;
+    }
+  }
+
+  /** @return True if our current deadline has passed; long-running modules should wrap up with what they have. */
+  public boolean pastDeadline()
+  {
+    return deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0;
+  }
+
+  @Override
+  public AIProfiler getProfiler()
+  {
+    return profiler;
+  }
+
+  private void buildPhaseStats()
+  {
+    if( null != actionStats && actionStats.length == aiPhases.size() )
+      return;
+    initStats = new AIProfiler.PhaseStats[aiPhases.size()];
+    actionStats = new AIProfiler.PhaseStats[aiPhases.size()];
+    for( int i = 0; i < aiPhases.size(); ++i )
+    {
+      // Some modules (e.g. PowerActivator) show up more than once, so tag each with its slot.
+      String name = aiPhases.get(i).getClass().getSimpleName() + "[" + i + "]";
+      initStats[i] = profiler.getStats(name + " init");
+      actionStats[i] = profiler.getStats(name);
+    }
+  }
+
   public static interface AIModule extends Serializable
   {
     public GameAction getNextAction(PriorityQueue<Unit> unitQueue, GameMap map);
     public default void initTurn(GameMap gameMap) {}
     public default void endTurn() {}
+    /** Optional modules may be skipped when the AI is short on time. */
+    public default boolean isOptional() { return false; }
   }
 
   public static class PowerActivator implements AIModule
@@ -0,0 +1,243 @@
+package AI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rates AIs against each other from game results, using both Elo and Glicko (version 1).
+ * <p>
+ * Elo is updated after every game. Glicko treats each run as one rating period: games within a run are
+ * collected, then applied all at once when the run changes. Between runs, each AI's rating deviation grows
+ * again, so AIs that haven't played lately (e.g. an old build) become less certain.
+ * <p>
+ * Players are AIs, keyed by name, regardless of which CO they played. The winner of a game is scored as
+ * beating every other contestant; in a draw, every pair draws. Games that crashed or timed out say nothing
+ * about the AIs' strength, and are ignored.
+ * <p>
+ * Run as a program to rate everything in one or more games.csv files: <code>Ratings results/games.csv ...</code>
+ */
+public class Ratings
+{
+  public static final double INITIAL_RATING = 1500;
+  public static final double INITIAL_RD = 350;
+  public static final double MIN_RD = 30;
+  /** How much uncertainty grows per rating period; with this, a settled RD of 50 is back to 350 after ~130 idle runs. */
+  public static final double RD_GROWTH = 30;
+  public static final double ELO_K = 32;
+
+  private static final double Q = Math.log(10) / 400;
+
+  public static void main(String[] args)
+  {
+    if( args.length == 0 )
+    {
+      System.out.println("Usage: Ratings <games.csv> [<games.csv> ...]");
+      return;
+    }
+    Ratings ratings = new Ratings();
+    for( String arg : args )
+    {
+      try
+      {
+        ratings.addAll(ResultsStore.readCsv(new File(arg)));
+      }
+      catch (IOException ex)
+      {
+        System.out.println("WARNING! Failed to read results from " + arg + ": " + ex.toString());
+      }
+    }
+    System.out.println(ratings.report());
+  }
+
+  public static class Player
+  {
+    public final String name;
+    public int games, wins, losses, draws;
+    public double elo = INITIAL_RATING;
+    public double glicko = INITIAL_RATING;
+    public double rd = INITIAL_RD;
+    // This period's games, as (opponent rating, opponent RD, score) triples.
+    private final List<double[]> pending = new ArrayList<>();
+
+    Player(String name)
+    {
+      this.name = name;
+    }
+  }
+
+  private final LinkedHashMap<String, Player> players = new LinkedHashMap<>();
+  private String currentPeriod = null;
+  public int gamesRated = 0;
+  public int gamesSkipped = 0;
+
+  public Player getPlayer(String name)
+  {
+    Player p = players.get(name);
+    if( null == p )
+    {
+      p = new Player(name);
+      players.put(name, p);
+    }
+    return p;
+  }
+
+  /** Adds rows as read by ResultsStore.readCsv(). */
+  public void addAll(List<Map<String, String>> rows)
+  {
+    for( Map<String, String> row : rows )
+    {
+      String error = row.get("error");
+      String ais = row.get("ais");
+      if( null == ais || (null != error && !error.isEmpty()) || "TIMEOUT".equals(row.get("end")) )
+      {
+        ++gamesSkipped;
+        continue;
+      }
+      int winner;
+      try
+      {
+        winner = Integer.parseInt(row.get("winner"));
+      }
+      catch (NumberFormatException ex)
+      {
+        ++gamesSkipped;
+        continue;
+      }
+      addGame(row.get("run"), Arrays.asList(ais.split(";")), winner);
+    }
+  }
+
+  /** Adds games from a run that's still in memory; see Tournament. */
+  public void addRecords(String period, List<Tournament.GameRecord> games)
+  {
+    for( Tournament.GameRecord game : games )
+    {
+      if( null != game.error || game.endReason == FightClub.GameSet.GameResults.EndCondition.TIMEOUT )
+      {
+        ++gamesSkipped;
+        continue;
+      }
+      List<String> names = new ArrayList<>();
+      for( FightClub.ContestantInfo ci : game.matchup.contestants )
+        names.add(ci.myAi.getName());
+      addGame(period, names, game.winner);
+    }
+  }
+
+  /**
+   * Rates one game.
+   * @param period Which rating period (run) the game belongs to. Games must be added grouped by period.
+   * @param names The AIs that played, in contestant order.
+   * @param winner Index into names, or negative for a draw.
+   */
+  public void addGame(String period, List<String> names, int winner)
+  {
+    if( null != currentPeriod && !currentPeriod.equals(period) )
+      endPeriod();
+    currentPeriod = period;
+
+    List<Player> contestants = new ArrayList<>();
+    for( String name : names )
+      contestants.add(getPlayer(name));
+
+    // Work out each pairing's score first, so every Elo update in this game uses the pre-game ratings.
+    double[] eloDelta = new double[contestants.size()];
+    for( int a = 0; a < contestants.size(); ++a )
+      for( int b = a + 1; b < contestants.size(); ++b )
+      {
+        double scoreA;
+        if( winner < 0 )
+          scoreA = 0.5;
+        else if( winner == a )
+          scoreA = 1;
+        else if( winner == b )
+          scoreA = 0;
+        else
+          continue; // Two losers; we don't know which did better.
+        Player pa = contestants.get(a);
+        Player pb = contestants.get(b);
+        double expectedA = 1 / (1 + Math.pow(10, (pb.elo - pa.elo) / 400));
+        eloDelta[a] += ELO_K * (scoreA - expectedA);
+        eloDelta[b] -= ELO_K * (scoreA - expectedA);
+        pa.pending.add(new double[] { pb.glicko, pb.rd, scoreA });
+        pb.pending.add(new double[] { pa.glicko, pa.rd, 1 - scoreA });
+      }
+
+    for( int i = 0; i < contestants.size(); ++i )
+    {
+      Player p = contestants.get(i);
+      p.elo += eloDelta[i];
+      ++p.games;
+      if( winner < 0 )
+        ++p.draws;
+      else if( winner == i )
+        ++p.wins;
+      else
+        ++p.losses;
+    }
+    ++gamesRated;
+  }
+
+  /** Applies the Glicko update for all games in the current period, and ages everyone's RD. */
+  public void endPeriod()
+  {
+    for( Player p : players.values() )
+    {
+      if( p.pending.isEmpty() )
+      {
+        p.rd = Math.min(INITIAL_RD, Math.sqrt(p.rd * p.rd + RD_GROWTH * RD_GROWTH));
+        continue;
+      }
+      double rd = Math.min(INITIAL_RD, Math.sqrt(p.rd * p.rd + RD_GROWTH * RD_GROWTH));
+      double dInv = 0; // 1/d^2
+      double change = 0;
+      for( double[] game : p.pending )
+      {
+        double g = g(game[1]);
+        double e = 1 / (1 + Math.pow(10, -g * (p.glicko - game[0]) / 400));
+        dInv += Q * Q * g * g * e * (1 - e);
+        change += g * (game[2] - e);
+      }
+      double denom = 1 / (rd * rd) + dInv;
+      p.glicko += Q / denom * change;
+      p.rd = Math.max(MIN_RD, Math.sqrt(1 / denom));
+      p.pending.clear();
+    }
+    currentPeriod = null;
+  }
+
+  private static double g(double rd)
+  {
+    return 1 / Math.sqrt(1 + 3 * Q * Q * rd * rd / (Math.PI * Math.PI));
+  }
+
+  /** @return All players, best Elo first. Closes out the current rating period. */
+  public List<Player> getStandings()
+  {
+    if( null != currentPeriod )
+      endPeriod();
+    List<Player> sorted = new ArrayList<>(players.values());
+    sorted.sort(Comparator.comparingDouble((Player p) -> p.elo).reversed());
+    return sorted;
+  }
+
+  public String report()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Ratings from ").append(gamesRated).append(" games");
+    if( gamesSkipped > 0 )
+      sb.append(" (").append(gamesSkipped).append(" errors/timeouts skipped)");
+    sb.append(":\n");
+    sb.append(String.format("  %-28s %6s %6s %6s %6s %8s %8s %6s\n", "AI", "games", "wins", "losses", "draws", "Elo", "Glicko", "RD"));
+    for( Player p : getStandings() )
+      sb.append(String.format("  %-28s %6d %6d %6d %6d %8.0f %8.0f %6.0f\n",
+          p.name, p.games, p.wins, p.losses, p.draws, p.elo, p.glicko, p.rd));
+    return sb.toString();
+  }
+}
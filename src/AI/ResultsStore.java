@@ -0,0 +1,267 @@
+package AI;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import AI.FightClub.ContestantInfo;
+import AI.Tournament.GameRecord;
+
+/**
+ * Appends one machine-readable record per finished game to a results directory, so results from
+ * many runs can be aggregated (see Ratings) or loaded into whatever analysis tool is handy.
+ * <p>
+ * Each game is written to both games.csv (one row per game, with the per-contestant columns joined by ';')
+ * and games.jsonl (one JSON object per line, which also holds each army's think time per turn).
+ * Both files are appended to, so a directory accumulates every run pointed at it.
+ * Every row carries the ID of the run that produced it.
+ */
+public class ResultsStore
+{
+  public static final String CSV_NAME = "games.csv";
+  public static final String JSON_NAME = "games.jsonl";
+  public static final String[] CSV_COLUMNS = { "run", "game", "map", "seed", "ais", "cos", "first_seat",
+      "winner", "winner_ai", "end", "turns", "game_ms", "think_ms", "event_digest", "error" };
+
+  public final String runID;
+  private final PrintWriter csv;
+  private final PrintWriter json;
+
+  /** Opens (or creates) the results files in the given directory, tagging everything written with a new run ID. */
+  public ResultsStore(File dir) throws IOException
+  {
+    this(dir, new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+  }
+  public ResultsStore(File dir, String runID) throws IOException
+  {
+    this.runID = runID;
+    if( !dir.isDirectory() && !dir.mkdirs() )
+      throw new IOException("Can't create results directory " + dir);
+    File csvFile = new File(dir, CSV_NAME);
+    boolean newCsv = !csvFile.exists() || csvFile.length() == 0;
+    csv = openAppend(csvFile);
+    json = openAppend(new File(dir, JSON_NAME));
+    if( newCsv )
+    {
+      csv.println(String.join(",", CSV_COLUMNS));
+      csv.flush();
+    }
+  }
+
+  private static PrintWriter openAppend(File file) throws IOException
+  {
+    return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+  }
+
+  /** Writes one game's record. Safe to call from several worker threads. */
+  public synchronized void record(GameRecord game)
+  {
+    List<ContestantInfo> contestants = game.matchup.contestants;
+    StringBuilder ais = new StringBuilder();
+    StringBuilder cos = new StringBuilder();
+    StringBuilder think = new StringBuilder();
+    for( int i = 0; i < contestants.size(); ++i )
+    {
+      if( i > 0 )
+      {
+        ais.append(';');
+        cos.append(';');
+        think.append(';');
+      }
+      ais.append(contestants.get(i).myAi.getName());
+      cos.append(contestants.get(i).myCo.name);
+      think.append(game.thinkNanos[i] / 1000000);
+    }
+    String winnerAI = (game.winner < 0) ? "" : contestants.get(game.winner).myAi.getName();
+    String error = (null == game.error) ? "" : game.error;
+
+    String[] row = { runID, game.gameName, game.matchup.map.mapName, Long.toString(game.seed), ais.toString(), cos.toString(),
+        Integer.toString(game.firstSeat), Integer.toString(game.winner), winnerAI, game.endReason.toString(),
+        Integer.toString(game.numTurns), Long.toString(game.runTimeNanos / 1000000), think.toString(),
+        Long.toHexString(game.eventDigest), error };
+    StringBuilder sb = new StringBuilder();
+    for( int i = 0; i < row.length; ++i )
+    {
+      if( i > 0 )
+        sb.append(',');
+      sb.append(csvQuote(row[i]));
+    }
+    csv.println(sb);
+    csv.flush();
+
+    sb.setLength(0);
+    sb.append('{');
+    sb.append("\"run\":").append(jsonQuote(runID));
+    sb.append(",\"game\":").append(jsonQuote(game.gameName));
+    sb.append(",\"map\":").append(jsonQuote(game.matchup.map.mapName));
+    sb.append(",\"seed\":").append(game.seed);
+    sb.append(",\"contestants\":[");
+    for( int i = 0; i < contestants.size(); ++i )
+    {
+      if( i > 0 )
+        sb.append(',');
+      sb.append("{\"ai\":").append(jsonQuote(contestants.get(i).myAi.getName()));
+      sb.append(",\"co\":").append(jsonQuote(contestants.get(i).myCo.name));
+      sb.append(",\"think_ms\":").append(game.thinkNanos[i] / 1000000);
+      sb.append(",\"turn_think_ms\":[");
+      long[] turns = game.turnThinkNanos[i];
+      for( int t = 0; t < turns.length; ++t )
+      {
+        if( t > 0 )
+          sb.append(',');
+        sb.append(String.format(Locale.ROOT, "%.1f", turns[t] / 1e6));
+      }
+      sb.append("]}");
+    }
+    sb.append(']');
+    sb.append(",\"first_seat\":").append(game.firstSeat);
+    sb.append(",\"winner\":").append(game.winner);
+    sb.append(",\"end\":").append(jsonQuote(game.endReason.toString()));
+    sb.append(",\"turns\":").append(game.numTurns);
+    sb.append(",\"game_ms\":").append(game.runTimeNanos / 1000000);
+    sb.append(",\"event_digest\":").append(jsonQuote(Long.toHexString(game.eventDigest)));
+    sb.append(",\"error\":").append((null == game.error) ? "null" : jsonQuote(game.error));
+    sb.append('}');
+    json.println(sb);
+    json.flush();
+  }
+
+  public synchronized void close()
+  {
+    csv.close();
+    json.close();
+  }
+
+  /** Quotes a CSV field if it needs it (RFC 4180 style). */
+  public static String csvQuote(String field)
+  {
+    if( field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0 )
+      return field;
+    return '"' + field.replace("\"", "\"\"") + '"';
+  }
+
+  public static String jsonQuote(String str)
+  {
+    StringBuilder sb = new StringBuilder(str.length() + 2);
+    sb.append('"');
+    for( int i = 0; i < str.length(); ++i )
+    {
+      char c = str.charAt(i);
+      switch (c)
+      {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if( c < 0x20 )
+            sb.append(String.format("\\u%04x", (int) c));
+          else
+            sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Reads back a games.csv written by this class.
+   * @return One map of column name to value per game, in file order.
+   */
+  public static List<Map<String, String>> readCsv(File file) throws IOException
+  {
+    List<Map<String, String>> rows = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+    {
+      List<String> header = null;
+      List<String> fields;
+      while (null != (fields = readCsvRecord(reader)))
+      {
+        if( null == header )
+        {
+          header = fields;
+          continue;
+        }
+        Map<String, String> row = new LinkedHashMap<>();
+        for( int i = 0; i < header.size() && i < fields.size(); ++i )
+          row.put(header.get(i), fields.get(i));
+        rows.add(row);
+      }
+    }
+    return rows;
+  }
+
+  /** @return The fields of the next CSV record (which may span lines inside quotes), or null at end of input. */
+  private static List<String> readCsvRecord(BufferedReader reader) throws IOException
+  {
+    String line = reader.readLine();
+    if( null == line )
+      return null;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    int i = 0;
+    while (true)
+    {
+      if( i == line.length() )
+      {
+        if( !quoted )
+          break;
+        // A quoted field with a line break in it.
+        line = reader.readLine();
+        if( null == line )
+          break;
+        field.append('\n');
+        i = 0;
+        continue;
+      }
+      char c = line.charAt(i++);
+      if( quoted )
+      {
+        if( c != '"' )
+          field.append(c);
+        else if( i < line.length() && line.charAt(i) == '"' )
+        {
+          field.append('"');
+          ++i;
+        }
+        else
+          quoted = false;
+      }
+      else if( c == '"' )
+        quoted = true;
+      else if( c == ',' )
+      {
+        fields.add(field.toString());
+        field.setLength(0);
+      }
+      else
+        field.append(c);
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
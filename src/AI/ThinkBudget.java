@@ -0,0 +1,84 @@
+package AI;
+
+import java.io.PrintStream;
+
+/**
+ * How long an AI may think, per action and per turn. Whoever drives the AI hands it a deadline from
+ * nextDeadline() with each request, reports back via checkAction() as soon as the AI answers, and ends
+ * the AI's turn once turnExpired() says so. A limit of zero means no limit.
+ * <p>
+ * Only the time between nextDeadline() and checkAction() counts against the turn, so time spent
+ * executing or animating the AI's actions doesn't eat into its thinking time.
+ * <p>
+ * We can't stop an AI mid-thought, so an AI that ignores its deadline will still overrun;
+ * we just log it, and stop asking it for more actions once the turn budget is spent.
+ */
+public class ThinkBudget
+{
+  public final long actionNanos;
+  public final long turnNanos;
+
+  private long turnSpentNanos = 0;
+  private long thinkStartNanos;
+  public int actionOverruns = 0;
+  public int turnOverruns = 0;
+  public long worstOverrunNanos = 0;
+
+  public ThinkBudget(long actionMillis, long turnMillis)
+  {
+    actionNanos = Math.max(0, actionMillis) * 1000000;
+    turnNanos = Math.max(0, turnMillis) * 1000000;
+  }
+
+  public boolean isLimited()
+  {
+    return actionNanos > 0 || turnNanos > 0;
+  }
+
+  public void startTurn()
+  {
+    turnSpentNanos = 0;
+  }
+
+  /**
+   * Call right before asking the AI for an action; starts the think clock.
+   * @return The System.nanoTime() by which the next action is due, or Long.MAX_VALUE if there's no rush.
+   */
+  public long nextDeadline()
+  {
+    thinkStartNanos = System.nanoTime();
+    long deadline = Long.MAX_VALUE;
+    if( actionNanos > 0 )
+      deadline = thinkStartNanos + actionNanos;
+    if( turnNanos > 0 )
+      deadline = Math.min(deadline, thinkStartNanos + Math.max(0, turnNanos - turnSpentNanos));
+    return deadline;
+  }
+
+  public boolean turnExpired()
+  {
+    return turnNanos > 0 && turnSpentNanos > turnNanos;
+  }
+
+  /** Call as soon as the AI answers; stops the think clock, and notes (and logs) if the AI took longer than it was given. */
+  public void checkAction(String who, long deadlineNanos, PrintStream log)
+  {
+    long now = System.nanoTime();
+    turnSpentNanos += now - thinkStartNanos;
+    if( deadlineNanos == Long.MAX_VALUE )
+      return;
+    long overrun = now - deadlineNanos;
+    if( overrun <= 0 )
+      return;
+    ++actionOverruns;
+    worstOverrunNanos = Math.max(worstOverrunNanos, overrun);
+    log.println(String.format("WARNING! %s overran its think budget by %.1f ms", who, overrun / 1e6));
+  }
+
+  /** Call when ending an AI's turn early because turnExpired(). */
+  public void noteTurnCut(String who, PrintStream log)
+  {
+    ++turnOverruns;
+    log.println(String.format("WARNING! %s used up its turn budget of %d ms; ending its turn.", who, turnNanos / 1000000));
+  }
+}
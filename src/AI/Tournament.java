@@ -0,0 +1,439 @@
+package AI;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import AI.FightClub.ContestantInfo;
+import AI.FightClub.GameSet;
+import AI.FightClub.GameSetParams;
+import AI.FightClub.GameSet.GameResults;
+import CommandingOfficers.CommanderInfo;
+import CommandingOfficers.CommanderLibrary.NotACO;
+import Engine.Army;
+import Engine.HeadlessMode;
+import Terrain.MapInfo;
+import Terrain.MapLibrary;
+
+/**
+ * Runs every combination of maps, CO pairs and AI pairs, spread across a pool of worker threads.
+ * Results are tallied as each game finishes, so a long run can be watched (or cut short) as it goes.
+ */
+public class Tournament
+{
+  public static void main(String[] args)
+  {
+    TournamentParams params = new TournamentParams();
+    params.maps = Arrays.asList(MapLibrary.getByName("AW3 Little Island"),
+                                MapLibrary.getByName("Shadows chase you endlessly"),
+                                MapLibrary.getByName("Blood on my Hands"),
+                                MapLibrary.getByName("Aria of War"));
+    params.coPairs.add(Arrays.asList(NotACO.getInfo(), NotACO.getInfo()));
+    params.aiPairs.add(Arrays.asList(JakeMan.oldSchoolCool, JakeMan.info));
+    params.gamesPerMatchup = 2;
+
+    for( int i = 0; i < args.length; ++i )
+    {
+      if( "-threads".equals(args[i]) && i + 1 < args.length )
+        params.numThreads = Integer.parseInt(args[++i]);
+      else if( "-timeout".equals(args[i]) && i + 1 < args.length )
+        params.gameTimeoutMillis = Long.parseLong(args[++i]) * 1000;
+      else if( "-actionBudget".equals(args[i]) && i + 1 < args.length )
+        params.actionBudgetMillis = Long.parseLong(args[++i]);
+      else if( "-turnBudget".equals(args[i]) && i + 1 < args.length )
+        params.turnBudgetMillis = Long.parseLong(args[++i]);
+      else if( "-games".equals(args[i]) && i + 1 < args.length )
+        params.gamesPerMatchup = Integer.parseInt(args[++i]);
+      else if( "-journals".equals(args[i]) && i + 1 < args.length )
+        params.journalDir = new File(args[++i]);
+      else if( "-seeds".equals(args[i]) && i + 1 < args.length )
+        for( String seed : args[++i].split(",") )
+          params.seeds.add(Long.parseLong(seed.trim()));
+      else if( "-verify".equals(args[i]) )
+        params.verifyReproducibility = true;
+      else if( "-results".equals(args[i]) && i + 1 < args.length )
+        params.resultsDir = new File(args[++i]);
+    }
+
+    TournamentResults results = new Tournament(params).run();
+    System.out.println(results);
+
+    // Rate everything in the results directory, so this run is ranked against previous ones too.
+    if( null != params.resultsDir )
+      Ratings.main(new String[] { new File(params.resultsDir, ResultsStore.CSV_NAME).getPath() });
+    else
+    {
+      Ratings ratings = new Ratings();
+      ratings.addRecords("this run", results.games);
+      System.out.println(ratings.report());
+    }
+  }
+
+  public static class TournamentParams
+  {
+    public List<MapInfo> maps = new ArrayList<>();
+    /** Each entry is one side-by-side CO matchup; COs are assigned to the AIs in the same order. */
+    public List<List<CommanderInfo>> coPairs = new ArrayList<>();
+    public List<List<AIMaker>> aiPairs = new ArrayList<>();
+    public int gamesPerMatchup = 1;
+    /**
+     * If any are given, each matchup is played once per seed (per side) instead of gamesPerMatchup times,
+     * so the same corpus of games can be replayed against a changed AI.
+     */
+    public List<Long> seeds = new ArrayList<>();
+    /** Play every game twice with the same seed, and report an error if the two don't match. */
+    public boolean verifyReproducibility = false;
+    /** Also play each game with the starting locations swapped. */
+    public boolean swapSides = true;
+    public int numThreads = Runtime.getRuntime().availableProcessors();
+    /** If positive, games running longer than this are called as draws. */
+    public long gameTimeoutMillis = 0;
+    /** If positive, how long each AI may think per action / per turn; see ThinkBudget. */
+    public long actionBudgetMillis = 0;
+    public long turnBudgetMillis = 0;
+
+    // Passed through to each game; see GameSetParams.
+    public boolean coalesceEvents = false;
+    public File journalDir = null;
+    public int maxTurns = 0;
+
+    /** If set, every game's record is appended to the results files here; see ResultsStore. */
+    public File resultsDir = null;
+  }
+
+  /** One entry in the tournament matrix: who plays whom, where. */
+  public static class Matchup
+  {
+    public final MapInfo map;
+    public final List<ContestantInfo> contestants;
+    public final String name;
+
+    public Matchup(MapInfo map, List<ContestantInfo> contestants)
+    {
+      this.map = map;
+      this.contestants = contestants;
+      StringBuilder sb = new StringBuilder();
+      for( ContestantInfo ci : contestants )
+      {
+        if( sb.length() > 0 )
+          sb.append(" vs ");
+        sb.append(ci.myAi.getName()).append(" (").append(ci.myCo.name).append(")");
+      }
+      name = sb.append(" on ").append(map.mapName).toString();
+    }
+  }
+
+  /** The outcome of a single game, as reported back from a worker. */
+  public static class GameRecord
+  {
+    public final Matchup matchup;
+    public final int firstSeat;
+    public final String gameName;
+    public final long seed;
+    public final long eventDigest;
+    /** Index into matchup.contestants, or -1 for a draw or a failed game. */
+    public final int winner;
+    public final GameResults.EndCondition endReason;
+    public final int numTurns;
+    public final long runTimeNanos;
+    /** Total think time per contestant, and per contestant per turn; indexed like matchup.contestants. */
+    public final long[] thinkNanos;
+    public final long[][] turnThinkNanos;
+    /** Non-null if the game crashed or couldn't be set up. */
+    public final String error;
+
+    GameRecord(Matchup matchup, int firstSeat, String gameName, long seed, GameResults results, String error)
+    {
+      this.matchup = matchup;
+      this.firstSeat = firstSeat;
+      this.gameName = gameName;
+      this.seed = seed;
+      this.error = error;
+      int numContestants = matchup.contestants.size();
+      thinkNanos = new long[numContestants];
+      turnThinkNanos = new long[numContestants][0];
+      if( null != results )
+      {
+        eventDigest = results.eventDigest;
+        winner = results.winningTeam;
+        endReason = results.endReason;
+        numTurns = results.numTurns;
+        runTimeNanos = results.totalGameTimeNanos;
+        for( Army army : results.contestants )
+        {
+          if( army.team < 0 || army.team >= numContestants )
+            continue;
+          thinkNanos[army.team] = results.stopwatches.get(army);
+          List<Long> turns = results.turnThinkNanos.get(army);
+          if( null == turns )
+            continue;
+          turnThinkNanos[army.team] = new long[turns.size()];
+          for( int i = 0; i < turns.size(); ++i )
+            turnThinkNanos[army.team][i] = turns.get(i);
+        }
+      }
+      else
+      {
+        eventDigest = 0;
+        winner = -1;
+        endReason = GameResults.EndCondition.UNKNOWN;
+        numTurns = 0;
+        runTimeNanos = 0;
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      if( null != error )
+        return String.format("%s (seed %d): ERROR %s", gameName, seed, error);
+      String outcome = (winner < 0) ? "draw" : matchup.contestants.get(winner).myAi.getName() + " wins";
+      return String.format("%s (seed %d): %s by %s after %d turns (%.1fs)", gameName, seed, outcome, endReason, numTurns, runTimeNanos / 1e9);
+    }
+  }
+
+  /** Running totals, updated as games finish. */
+  public static class TournamentResults
+  {
+    public static class MatchupTally
+    {
+      public final Matchup matchup;
+      public final int[] wins;
+      public int draws, timeouts, errors, games;
+      public long totalTurns, totalNanos;
+
+      MatchupTally(Matchup matchup)
+      {
+        this.matchup = matchup;
+        wins = new int[matchup.contestants.size()];
+      }
+    }
+
+    public final LinkedHashMap<Matchup, MatchupTally> tallies = new LinkedHashMap<>();
+    public final List<GameRecord> games = new ArrayList<>();
+    public int expectedGames;
+
+    public synchronized void record(GameRecord game)
+    {
+      games.add(game);
+      MatchupTally tally = tallies.get(game.matchup);
+      if( null == tally )
+      {
+        tally = new MatchupTally(game.matchup);
+        tallies.put(game.matchup, tally);
+      }
+      tally.games++;
+      if( null != game.error )
+        tally.errors++;
+      else
+      {
+        if( game.winner < 0 )
+          tally.draws++;
+        else
+          tally.wins[game.winner]++;
+        if( game.endReason == GameResults.EndCondition.TIMEOUT )
+          tally.timeouts++;
+        tally.totalTurns += game.numTurns;
+        tally.totalNanos += game.runTimeNanos;
+      }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+      StringBuffer sb = new StringBuffer();
+      DecimalFormat df = new DecimalFormat("#.##");
+      sb.append("Tournament results (").append(games.size()).append('/').append(expectedGames).append(" games):\n");
+      for( MatchupTally tally : tallies.values() )
+      {
+        sb.append("  ").append(tally.matchup.name).append('\n');
+        sb.append("    ").append(tally.wins[0]);
+        for( int i = 1; i < tally.wins.length; ++i )
+          sb.append(" to ").append(tally.wins[i]);
+        sb.append(", ").append(tally.draws).append(" draws (").append(tally.timeouts).append(" timeouts), ")
+          .append(tally.errors).append(" errors\n");
+        int played = tally.games - tally.errors;
+        if( played > 0 )
+          sb.append("    Average ").append(df.format((double) tally.totalTurns / played)).append(" turns, ")
+            .append(df.format(tally.totalNanos / 1e9 / played)).append(" seconds per game\n");
+      }
+      return sb.toString();
+    }
+  }
+
+  private final TournamentParams params;
+
+  public Tournament(TournamentParams params)
+  {
+    this.params = params;
+  }
+
+  /** Expands the maps x COs x AIs matrix into individual matchups. */
+  public List<Matchup> buildMatchups()
+  {
+    List<Matchup> matchups = new ArrayList<>();
+    for( MapInfo map : params.maps )
+      for( List<CommanderInfo> cos : params.coPairs )
+        for( List<AIMaker> ais : params.aiPairs )
+        {
+          if( cos.size() != ais.size() )
+          {
+            System.out.println("WARNING! Tournament CO and AI lists differ in size; skipping " + ais);
+            continue;
+          }
+          List<ContestantInfo> contestants = new ArrayList<>();
+          for( int i = 0; i < cos.size(); ++i )
+            contestants.add(new ContestantInfo(cos.get(i), ais.get(i)));
+          matchups.add(new Matchup(map, contestants));
+        }
+    return matchups;
+  }
+
+  /**
+   * Plays every game in the tournament and blocks until they're all done.
+   * Progress is reported to the console as each game finishes.
+   */
+  public TournamentResults run()
+  {
+    HeadlessMode.enable();
+    PrintStream console = HeadlessMode.getConsole();
+    TournamentResults results = new TournamentResults();
+    ResultsStore store = null;
+    if( null != params.resultsDir )
+    {
+      try
+      {
+        store = new ResultsStore(params.resultsDir);
+      }
+      catch (IOException ex)
+      {
+        console.println("WARNING! Can't write results to " + params.resultsDir + ": " + ex.toString());
+      }
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, params.numThreads));
+    CompletionService<GameRecord> done = new ExecutorCompletionService<>(pool);
+    int numGames = 0;
+    try
+    {
+      List<Matchup> matchups = buildMatchups();
+      for( int mm = 0; mm < matchups.size(); ++mm )
+      {
+        Matchup matchup = matchups.get(mm);
+        int numSeats = params.swapSides ? matchup.contestants.size() : 1;
+        int numRounds = params.seeds.isEmpty() ? params.gamesPerMatchup : params.seeds.size();
+        for( int gg = 0; gg < numRounds; ++gg )
+          for( int seat = 0; seat < numSeats; ++seat )
+          {
+            String gameName = String.format("m%d_g%d_s%d", mm, gg, seat);
+            final int firstSeat = seat;
+            final long seed = params.seeds.isEmpty() ? new SplittableRandom().nextLong() : params.seeds.get(gg);
+            done.submit(() -> playGame(matchup, firstSeat, gameName, seed));
+            ++numGames;
+          }
+      }
+      results.expectedGames = numGames;
+      console.println("Tournament: " + numGames + " games in " + matchups.size() + " matchups on "
+                        + params.numThreads + " threads");
+
+      for( int finished = 1; finished <= numGames; ++finished )
+      {
+        GameRecord game = done.take().get();
+        results.record(game);
+        if( null != store )
+          store.record(game);
+        console.println(String.format("  [%d/%d] %s: %s", finished, numGames, game.matchup.name, game));
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      console.println("WARNING! Tournament interrupted; stopping early.");
+      Thread.currentThread().interrupt();
+    }
+    catch (Exception ex)
+    {
+      console.println("WARNING! Tournament failed: " + ex.toString());
+    }
+    finally
+    {
+      // Running games notice the interrupt between actions and end as timeouts.
+      pool.shutdownNow();
+      if( null != store )
+        store.close();
+    }
+    return results;
+  }
+
+  /** Runs on a worker thread. Never throws; failures are reported in the record. */
+  private GameRecord playGame(Matchup matchup, int firstSeat, String gameName, long seed)
+  {
+    List<CommanderInfo> cos = new ArrayList<>();
+    List<AIMaker> ais = new ArrayList<>();
+    for( ContestantInfo ci : matchup.contestants )
+    {
+      cos.add(ci.myCo);
+      ais.add(ci.myAi);
+    }
+    GameSetParams gsp = new GameSetParams(matchup.map, 1, cos, ais);
+    gsp.coalesceEvents = params.coalesceEvents;
+    gsp.journalDir = params.journalDir;
+    gsp.maxTurns = params.maxTurns;
+    gsp.gameTimeoutMillis = params.gameTimeoutMillis;
+    gsp.actionBudgetMillis = params.actionBudgetMillis;
+    gsp.turnBudgetMillis = params.turnBudgetMillis;
+    gsp.verbose = false;
+
+    HeadlessMode.setMuted(true);
+    try
+    {
+      GameResults results = new GameSet(gsp).playGame(matchup.contestants, firstSeat, gameName, seed, HeadlessMode.getConsole());
+      if( null == results )
+        return new GameRecord(matchup, firstSeat, gameName, seed, null, "game setup failed");
+
+      String error = null;
+      if( params.verifyReproducibility )
+      {
+        GameResults again = new GameSet(gsp).playGame(matchup.contestants, firstSeat, gameName + "_verify", seed, HeadlessMode.getConsole());
+        error = checkReproducible(results, again);
+      }
+      return new GameRecord(matchup, firstSeat, gameName, seed, results, error);
+    }
+    catch (Exception ex)
+    {
+      return new GameRecord(matchup, firstSeat, gameName, seed, null, ex.toString());
+    }
+    finally
+    {
+      HeadlessMode.setMuted(false);
+    }
+  }
+
+  /**
+   * Compares two plays of the same seeded game.
+   * @return A description of the first mismatch, or null if they agree.
+   */
+  public static String checkReproducible(GameResults first, GameResults second)
+  {
+    if( null == second )
+      return "not reproducible: replay failed to start";
+    if( first.endReason == GameResults.EndCondition.TIMEOUT || second.endReason == GameResults.EndCondition.TIMEOUT )
+      return null; // Wall-clock endings can't be compared.
+    if( first.winningTeam != second.winningTeam )
+      return "not reproducible: winner " + first.winningTeam + " vs " + second.winningTeam;
+    if( first.numTurns != second.numTurns )
+      return "not reproducible: " + first.numTurns + " turns vs " + second.numTurns;
+    if( first.eventDigest != second.eventDigest )
+      return "not reproducible: event streams differ";
+    return null;
+  }
+}
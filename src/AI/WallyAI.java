@@ -181,7 +181,15 @@ public class WallyAI extends ModularAI
     if( null != unitEffectiveMove )
       return;
 
-    capPhase = new CapPhaseAnalyzer(map, myArmy);
+    profiler.begin();
+    try
+    {
+      capPhase = new CapPhaseAnalyzer(map, myArmy);
+    }
+    finally
+    {
+      profiler.end(profiler.getStats("CapPhaseAnalyzer init"), false);
+    }
     mapPlan = new UnitPrediction[map.mapWidth][map.mapHeight];
     predMap = new PredictionMap(myArmy, mapPlan);
     plansByUnit = new HashMap<>();
@@ -949,6 +957,10 @@ public class WallyAI extends ModularAI
       this.ai = ai;
     }
 
+    // This is our most expensive module by far, and everything it plans is a bonus.
+    @Override
+    public boolean isOptional() { return true; }
+
     @Override
     public GameAction getNextAction(PriorityQueue<Unit> unitQueue, GameMap map)
     {
@@ -963,6 +975,9 @@ public class WallyAI extends ModularAI
       {
         for( Unit unit : unitQueue )
         {
+          // Out of time; the plans we've made so far will have to do.
+          if( ai.pastDeadline() )
+            return null;
           planSeqDebuggably(map, unit);
         }
         lastClearAttacks = clearAttacks;
@@ -2446,6 +2461,20 @@ public class WallyAI extends ModularAI
       return returnLoc;
     }
     @Override
+    public Unit getResident(int x, int y)
+    {
+      if( !isLocationValid(x, y) )
+        return null;
+      return calcResident(x, y);
+    }
+    @Override
+    public Commander getOwner(int x, int y)
+    {
+      if( !isLocationValid(x, y) )
+        return null;
+      return master.getOwner(x, y);
+    }
+    @Override
     public boolean isLocationEmpty(Unit unit, int x, int y)
     {
       Unit resident = calcResident(x, y);
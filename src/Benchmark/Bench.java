@@ -0,0 +1,125 @@
+package Benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A small microbenchmark harness, following the same method as JMH: untimed warm-up iterations to let the JIT
+ * settle, then several timed iterations whose spread is reported alongside the mean, with every result fed to
+ * a sink so the JIT can't optimize the work away. Allocation is read from the JVM's per-thread counters.
+ * <p>
+ * Each operation is handed an increasing index, so it can cycle through its inputs (units, coordinates, etc.).
+ */
+public class Bench
+{
+  public interface Op
+  {
+    Object run(int index);
+  }
+
+  public static class Result
+  {
+    public final String name;
+    public final double nsPerOp;
+    /** Standard deviation of nsPerOp across the measured iterations. */
+    public final double nsError;
+    /** Bytes allocated per op, or negative if the JVM can't tell us. */
+    public final double bytesPerOp;
+    public final long ops;
+
+    Result(String name, double nsPerOp, double nsError, double bytesPerOp, long ops)
+    {
+      this.name = name;
+      this.nsPerOp = nsPerOp;
+      this.nsError = nsError;
+      this.bytesPerOp = bytesPerOp;
+      this.ops = ops;
+    }
+
+    public static String header()
+    {
+      return String.format("%-36s %14s %12s %14s %12s", "benchmark", "ns/op", "+/-", "bytes/op", "ops");
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%-36s %14.1f %12.1f %14s %12d", name, nsPerOp, nsError,
+          (bytesPerOp < 0) ? "n/a" : String.format("%.1f", bytesPerOp), ops);
+    }
+  }
+
+  public int warmupIterations = 3;
+  public int measureIterations = 5;
+  public long iterationMillis = 500;
+
+  // Results land here so the work that made them can't be skipped.
+  private static volatile Object sink;
+
+  public Result measure(String name, Op op)
+  {
+    int index = 0;
+    for( int i = 0; i < warmupIterations; ++i )
+      index = runFor(op, index, iterationMillis * 1000000, null);
+
+    double[] nsPerOp = new double[measureIterations];
+    long totalOps = 0;
+    long startBytes = allocatedBytes();
+    for( int i = 0; i < measureIterations; ++i )
+    {
+      long[] opsAndNanos = new long[2];
+      index = runFor(op, index, iterationMillis * 1000000, opsAndNanos);
+      nsPerOp[i] = (double) opsAndNanos[1] / opsAndNanos[0];
+      totalOps += opsAndNanos[0];
+    }
+    long endBytes = allocatedBytes();
+
+    double mean = 0;
+    for( double ns : nsPerOp )
+      mean += ns;
+    mean /= nsPerOp.length;
+    double variance = 0;
+    for( double ns : nsPerOp )
+      variance += (ns - mean) * (ns - mean);
+    double error = (nsPerOp.length > 1) ? Math.sqrt(variance / (nsPerOp.length - 1)) : 0;
+    double bytesPerOp = (startBytes < 0) ? -1 : (double) (endBytes - startBytes) / totalOps;
+    return new Result(name, mean, error, bytesPerOp, totalOps);
+  }
+
+  /** Runs op repeatedly for about the given time. @return The next index to use. */
+  private static int runFor(Op op, int index, long nanos, long[] opsAndNanos)
+  {
+    long ops = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do
+    {
+      // Check the clock in batches, so timing overhead doesn't swamp quick ops.
+      for( int i = 0; i < 16; ++i )
+      {
+        sink = op.run(index++);
+        ++ops;
+      }
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < nanos);
+    if( null != opsAndNanos )
+    {
+      opsAndNanos[0] = ops;
+      opsAndNanos[1] = elapsed;
+    }
+    return index;
+  }
+
+  /** @return How many bytes this thread has allocated so far, or -1 if the JVM doesn't track that. */
+  public static long allocatedBytes()
+  {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if( bean instanceof com.sun.management.ThreadMXBean )
+    {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if( sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled() )
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
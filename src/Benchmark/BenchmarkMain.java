@@ -0,0 +1,129 @@
+package Benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import AI.AILibrary;
+import AI.AIMaker;
+import AI.MCTSAI;
+import Engine.HeadlessMode;
+import Terrain.MapInfo;
+import Terrain.MapLibrary;
+
+/**
+ * Performance benchmarks for the headless engine; the counterpart to Test.TestMain, which only checks correctness.
+ * <p>
+ * Usage: BenchmarkMain [micro|saves|forks|games|all] [-map name]... [-ai name]... [-seeds n] [-days n] [-quick]
+ * <ul>
+ * <li>micro: engine hot spots (pathing, combat math, fog, event publishing, range finding) on a fixed mid-game position.
+ * <li>saves: saving and loading that position, in the old format and the compact one.
+ * <li>forks: copying games of a few lengths with GameInstance.fork(), against a save/load round trip, per unit on the map.
+ * <li>games: whole games for each AI on fixed maps and seeds, reporting games/hour, ns/action and allocation rate.
+ * </ul>
+ * By default every AI but the slow MCTS one is benchmarked; name it with -ai to include it.
+ * -quick shortens every measurement, for checking the harness itself rather than the engine.
+ */
+public class BenchmarkMain
+{
+  public static void main(String[] args)
+  {
+    String mode = "all";
+    List<String> mapNames = new ArrayList<>();
+    List<String> aiNames = new ArrayList<>();
+    int numSeeds = 3;
+    int days = 20;
+    boolean quick = false;
+    for( int i = 0; i < args.length; ++i )
+    {
+      String arg = args[i];
+      if( arg.equals("-map") )
+        mapNames.add(args[++i]);
+      else if( arg.equals("-ai") )
+        aiNames.add(args[++i]);
+      else if( arg.equals("-seeds") )
+        numSeeds = Integer.parseInt(args[++i]);
+      else if( arg.equals("-days") )
+        days = Integer.parseInt(args[++i]);
+      else if( arg.equals("-quick") )
+        quick = true;
+      else
+        mode = arg;
+    }
+
+    HeadlessMode.enable();
+    PrintStream out = HeadlessMode.getConsole();
+    if( mapNames.isEmpty() )
+      mapNames.add("AW2 Spann Island");
+    List<MapInfo> maps = new ArrayList<>();
+    for( String name : mapNames )
+    {
+      MapInfo map = MapLibrary.getByName(name);
+      if( null == map )
+      {
+        out.println("WARNING! No map named " + name);
+        return;
+      }
+      maps.add(map);
+    }
+
+    if( mode.equals("micro") || mode.equals("all") )
+    {
+      out.println("=== Engine microbenchmarks ===");
+      List<Bench.Result> results = EngineBenchmarks.run(makeBench(quick), maps.get(0), 8, out);
+      out.println(Bench.Result.header());
+      for( Bench.Result r : results )
+        out.println(r);
+    }
+
+    if( mode.equals("saves") || mode.equals("all") )
+    {
+      out.println("=== Save/load ===");
+      List<Bench.Result> results = SaveBenchmarks.run(makeBench(quick), maps.get(0), 8, out);
+      out.println(Bench.Result.header());
+      for( Bench.Result r : results )
+        out.println(r);
+    }
+
+    if( mode.equals("forks") || mode.equals("all") )
+    {
+      out.println("=== Forking ===");
+      List<ForkBenchmarks.Result> results = ForkBenchmarks.run(makeBench(quick), maps.get(0), out);
+      out.println(ForkBenchmarks.Result.header());
+      for( ForkBenchmarks.Result r : results )
+        out.println(r);
+      out.println(String.format("fork cost per extra unit: %.1f ns", ForkBenchmarks.slope(results)));
+    }
+
+    if( mode.equals("games") || mode.equals("all") )
+    {
+      List<AIMaker> ais = new ArrayList<>();
+      for( AIMaker ai : AILibrary.getAIList() )
+      {
+        if( ai instanceof AILibrary.NotAnAI )
+          continue;
+        if( aiNames.isEmpty() ? (ai != MCTSAI.info) : aiNames.contains(ai.getName()) )
+          ais.add(ai);
+      }
+      long[] seeds = new long[quick ? 1 : numSeeds];
+      for( int i = 0; i < seeds.length; ++i )
+        seeds[i] = EngineBenchmarks.SEED + i;
+
+      out.println("=== Full games ===");
+      out.println(GameBenchmarks.Result.header());
+      GameBenchmarks.run(ais, maps, seeds, quick ? 4 : days, out);
+    }
+  }
+
+  private static Bench makeBench(boolean quick)
+  {
+    Bench bench = new Bench();
+    if( quick )
+    {
+      bench.warmupIterations = 1;
+      bench.measureIterations = 2;
+      bench.iterationMillis = 50;
+    }
+    return bench;
+  }
+}
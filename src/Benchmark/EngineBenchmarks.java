@@ -0,0 +1,123 @@
+package Benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import AI.Muriel;
+import AI.SpenderAI;
+import AI.FightClub.ContestantInfo;
+import AI.FightClub.GameSet;
+import AI.FightClub.GameSetParams;
+import CommandingOfficers.CommanderLibrary.NotACO;
+import Engine.GameInstance;
+import Engine.GamePath;
+import Engine.HeadlessMode;
+import Engine.PathCalcParams;
+import Engine.Utils;
+import Engine.XYCoord;
+import Engine.Combat.CombatContext.CalcType;
+import Engine.Combat.CombatEngine;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.MoveEvent;
+import Terrain.MapInfo;
+import Units.Unit;
+import Units.UnitContext;
+
+/**
+ * Microbenchmarks for the engine calls the AIs lean on hardest.
+ * <p>
+ * Each runs against a real mid-game position: a seeded game between two AIs, played for a fixed number of days,
+ * so the numbers are comparable from run to run.
+ */
+public class EngineBenchmarks
+{
+  public static final long SEED = 42;
+
+  public static List<Bench.Result> run(Bench bench, MapInfo map, int days, PrintStream out)
+  {
+    GameInstance game = playPosition(map, days, out);
+    if( null == game )
+      return new ArrayList<>();
+
+    final ArrayList<Unit> units = new ArrayList<>();
+    final ArrayList<Object[]> fights = new ArrayList<>(); // attacker, defender, where the attacker strikes from
+    for( Unit unit : game.armies[0].getUnits() )
+      if( game.gameMap.isLocationValid(unit.x, unit.y) )
+        units.add(unit);
+    for( Unit unit : game.armies[1].getUnits() )
+      if( game.gameMap.isLocationValid(unit.x, unit.y) )
+      {
+        XYCoord adjacent = game.gameMap.isLocationValid(unit.x - 1, unit.y) ? new XYCoord(unit.x - 1, unit.y) : new XYCoord(unit.x + 1, unit.y);
+        for( Unit mine : units )
+        {
+          UnitContext uc = new UnitContext(game.gameMap, mine, null, null, adjacent);
+          uc.chooseWeapon(unit.model, 1);
+          if( null != uc.weapon )
+            fights.add(new Object[] { mine, unit, adjacent });
+        }
+        units.add(unit);
+      }
+    if( units.isEmpty() || fights.isEmpty() )
+    {
+      out.println("WARNING! Benchmark position has no units to work with; try more days.");
+      return new ArrayList<>();
+    }
+    out.println(String.format("Position: %s, day %d, %d units", map.mapName, game.getCurrentTurn(), units.size()));
+
+    final GameEventQueue scratchQueue = new GameEventQueue();
+    final Unit mover = units.get(0);
+    final MoveEvent moveEvent = new MoveEvent(mover, GamePath.stayPut(mover));
+
+    List<Bench.Result> results = new ArrayList<>();
+    results.add(bench.measure("PathCalcParams.findAllPaths", i ->
+        new PathCalcParams(units.get(i % units.size()), game.gameMap).findAllPaths()));
+    results.add(bench.measure("CombatEngine.simulateBattleResults", i ->
+    {
+      Object[] fight = fights.get(i % fights.size());
+      return CombatEngine.simulateBattleResults((Unit) fight[0], (Unit) fight[1], game.gameMap, (XYCoord) fight[2], CalcType.PESSIMISTIC);
+    }));
+    results.add(bench.measure("MapPerspective.resetFog", i ->
+    {
+      game.armies[i % game.armies.length].myView.resetFog();
+      return game.armies[i % game.armies.length].myView;
+    }));
+    results.add(bench.measure("GameEventListener.publishEvent", i ->
+    {
+      scratchQueue.clear();
+      GameEventListener.publishEvent(moveEvent, game, scratchQueue);
+      return scratchQueue;
+    }));
+    results.add(bench.measure("Utils.findLocationsInRange", i ->
+    {
+      Unit unit = units.get(i % units.size());
+      return Utils.findLocationsInRange(game.gameMap, new XYCoord(unit), 1, 1 + i % 5);
+    }));
+    return results;
+  }
+
+  /** @return A game between Muriel and SpenderAI, played to the given day. */
+  static GameInstance playPosition(MapInfo map, int days, PrintStream out)
+  {
+    GameSetParams params = new GameSetParams(map, 1, Arrays.asList(NotACO.getInfo(), NotACO.getInfo()),
+        Arrays.asList(Muriel.info, SpenderAI.info));
+    params.maxTurns = days;
+    params.verbose = false;
+    GameSet set = new GameSet(params);
+    List<ContestantInfo> contestants = Arrays.asList(new ContestantInfo(params.COs.get(0), params.AIs.get(0)),
+                                                     new ContestantInfo(params.COs.get(1), params.AIs.get(1)));
+    HeadlessMode.setMuted(true);
+    try
+    {
+      if( null == set.playGame(contestants, 0, "bench_position", SEED, out) )
+        return null;
+    }
+    finally
+    {
+      HeadlessMode.setMuted(false);
+    }
+    return set.lastGame;
+  }
+}
@@ -0,0 +1,105 @@
+package Benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import Engine.Army;
+import Engine.GameInstance;
+import Terrain.MapInfo;
+
+/**
+ * GameInstance.fork() against the save/load round trip it replaced, on games played out to a few different lengths,
+ * so there is more and more state to copy. Each position reports its cost per unit on the map, and slope() says how
+ * much each extra unit adds to a fork.
+ */
+public class ForkBenchmarks
+{
+  public static final int[] GAME_DAYS = { 2, 8, 16 };
+
+  public static class Result
+  {
+    public final int day;
+    public final int units;
+    public final Bench.Result fork, saveLoad;
+
+    Result(int day, int units, Bench.Result fork, Bench.Result saveLoad)
+    {
+      this.day = day;
+      this.units = units;
+      this.fork = fork;
+      this.saveLoad = saveLoad;
+    }
+
+    public double forkNanosPerUnit()
+    {
+      return fork.nsPerOp / Math.max(1, units);
+    }
+    public double saveLoadNanosPerUnit()
+    {
+      return saveLoad.nsPerOp / Math.max(1, units);
+    }
+
+    public static String header()
+    {
+      return String.format("%4s %6s %12s %10s %12s %14s %14s %14s", "day", "units", "fork ns", "+/-", "fork ns/unit",
+          "fork bytes", "save+load ns", "s+l ns/unit");
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%4d %6d %12.0f %10.0f %12.1f %14s %14.0f %14.1f", day, units, fork.nsPerOp, fork.nsError,
+          forkNanosPerUnit(), (fork.bytesPerOp < 0) ? "n/a" : String.format("%.0f", fork.bytesPerOp), saveLoad.nsPerOp,
+          saveLoadNanosPerUnit());
+    }
+  }
+
+  /** @return One result per position in GAME_DAYS that could be played out. */
+  public static List<Result> run(Bench bench, MapInfo map, PrintStream out)
+  {
+    List<Result> results = new ArrayList<>();
+    for( int days : GAME_DAYS )
+    {
+      GameInstance game = EngineBenchmarks.playPosition(map, days, out);
+      if( null == game )
+        continue;
+
+      int units = 0;
+      for( Army army : game.armies )
+        units += army.getUnits().size();
+      out.println(String.format("Position: %s, day %d, %d units", map.mapName, game.getCurrentTurn(), units));
+
+      Bench.Result fork = bench.measure("fork, day " + game.getCurrentTurn(), i -> game.fork());
+      Bench.Result saveLoad = bench.measure("save+load, day " + game.getCurrentTurn(),
+          i -> SaveBenchmarks.readLegacy(SaveBenchmarks.writeLegacy(game)));
+      results.add(new Result(game.getCurrentTurn(), units, fork, saveLoad));
+    }
+    return results;
+  }
+
+  /**
+   * The least-squares fit of fork time against unit count across the positions: what each extra unit costs, without
+   * the fixed cost of copying the map and armies that inflates ns/unit on small positions.
+   * @return ns per unit, or NaN with fewer than two distinct unit counts.
+   */
+  public static double slope(List<Result> results)
+  {
+    double meanUnits = 0, meanNanos = 0;
+    for( Result r : results )
+    {
+      meanUnits += r.units;
+      meanNanos += r.fork.nsPerOp;
+    }
+    meanUnits /= results.size();
+    meanNanos /= results.size();
+
+    double covariance = 0, variance = 0;
+    for( Result r : results )
+    {
+      covariance += (r.units - meanUnits) * (r.fork.nsPerOp - meanNanos);
+      variance += (r.units - meanUnits) * (r.units - meanUnits);
+    }
+    return (variance > 0) ? covariance / variance : Double.NaN;
+  }
+}
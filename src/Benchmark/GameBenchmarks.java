@@ -0,0 +1,110 @@
+package Benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import AI.AIMaker;
+import AI.FightClub.ContestantInfo;
+import AI.FightClub.GameSet;
+import AI.FightClub.GameSetParams;
+import AI.FightClub.GameSet.GameResults;
+import CommandingOfficers.CommanderLibrary.NotACO;
+import Engine.HeadlessMode;
+import Terrain.MapInfo;
+
+/**
+ * Macrobenchmarks: whole FightClub games, one AI playing itself, on fixed maps and seeds.
+ * <p>
+ * Games are capped at a fixed number of days so each AI does a comparable amount of work. Allocation is counted on
+ * the thread running the games, so helper threads an AI starts (e.g. MCTSAI's search threads) aren't included.
+ */
+public class GameBenchmarks
+{
+  public static class Result
+  {
+    public final String ai;
+    public final String map;
+    public int games, actions, turns;
+    public long nanos, bytes;
+
+    Result(String ai, String map)
+    {
+      this.ai = ai;
+      this.map = map;
+    }
+
+    public double gamesPerHour()
+    {
+      return games * 3600e9 / Math.max(1, nanos);
+    }
+    public double nanosPerAction()
+    {
+      return (double) nanos / Math.max(1, actions);
+    }
+    /** @return MB allocated per second of play, or negative if unknown. */
+    public double allocMBPerSecond()
+    {
+      return (bytes < 0) ? -1 : bytes / 1e6 / (nanos / 1e9);
+    }
+
+    public static String header()
+    {
+      return String.format("%-16s %-24s %6s %8s %12s %14s %12s", "AI", "map", "games", "actions", "games/hour", "ns/action", "alloc MB/s");
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%-16s %-24s %6d %8d %12.0f %14.0f %12s", ai, map, games, actions, gamesPerHour(), nanosPerAction(),
+          (bytes < 0) ? "n/a" : String.format("%.1f", allocMBPerSecond()));
+    }
+  }
+
+  /**
+   * Plays each AI against itself on each map, once per seed, after one untimed warm-up game.
+   * @return One result per AI and map; null entries if a game couldn't be set up.
+   */
+  public static List<Result> run(List<AIMaker> ais, List<MapInfo> maps, long[] seeds, int maxDays, PrintStream out)
+  {
+    List<Result> results = new ArrayList<>();
+    for( AIMaker ai : ais )
+      for( MapInfo map : maps )
+      {
+        GameSetParams params = new GameSetParams(map, 1, Arrays.asList(NotACO.getInfo(), NotACO.getInfo()), Arrays.asList(ai, ai));
+        params.maxTurns = maxDays;
+        params.verbose = false;
+        GameSet set = new GameSet(params);
+        List<ContestantInfo> contestants = Arrays.asList(new ContestantInfo(params.COs.get(0), params.AIs.get(0)),
+                                                         new ContestantInfo(params.COs.get(1), params.AIs.get(1)));
+        Result result = new Result(ai.getName(), map.mapName);
+        HeadlessMode.setMuted(true);
+        try
+        {
+          set.playGame(contestants, 0, "bench_warmup", seeds[0], out);
+
+          long startBytes = Bench.allocatedBytes();
+          for( int i = 0; i < seeds.length; ++i )
+          {
+            long start = System.nanoTime();
+            GameResults game = set.playGame(contestants, i % contestants.size(), "bench", seeds[i], out);
+            result.nanos += System.nanoTime() - start;
+            if( null == game )
+              break;
+            ++result.games;
+            result.actions += game.numActions;
+            result.turns += game.numTurns;
+          }
+          result.bytes = (startBytes < 0) ? -1 : Bench.allocatedBytes() - startBytes;
+        }
+        finally
+        {
+          HeadlessMode.setMuted(false);
+        }
+        out.println(result);
+        results.add(result);
+      }
+    return results;
+  }
+}
@@ -0,0 +1,100 @@
+package Benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import Engine.CompactSave;
+import Engine.GameInstance;
+import Terrain.MapInfo;
+
+/**
+ * Save and load times for the old save format (a bare Java object stream) against CompactSave, with and without
+ * compression, on the same mid-game position the engine microbenchmarks use. Everything stays in memory, so disk
+ * speed doesn't muddy the numbers; the sizes are printed alongside.
+ */
+public class SaveBenchmarks
+{
+  public static List<Bench.Result> run(Bench bench, MapInfo map, int days, PrintStream out)
+  {
+    List<Bench.Result> results = new ArrayList<>();
+    GameInstance game = EngineBenchmarks.playPosition(map, days, out);
+    if( null == game )
+      return results;
+
+    final byte[] legacy = writeLegacy(game);
+    final byte[] raw = writeCompact(game, false);
+    final byte[] deflated = writeCompact(game, true);
+    out.println(String.format("Position: %s, day %d. Save sizes: old %d bytes, compact %d, compact+deflate %d",
+        map.mapName, game.getCurrentTurn(), legacy.length, raw.length, deflated.length));
+
+    results.add(bench.measure("save old format", i -> writeLegacy(game)));
+    results.add(bench.measure("save compact", i -> writeCompact(game, false)));
+    results.add(bench.measure("save compact+deflate", i -> writeCompact(game, true)));
+    results.add(bench.measure("load old format", i -> readLegacy(legacy)));
+    results.add(bench.measure("load compact", i -> readCompact(raw)));
+    results.add(bench.measure("load compact+deflate", i -> readCompact(deflated)));
+    return results;
+  }
+
+  static byte[] writeLegacy(GameInstance game)
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+    {
+      game.writeSave(out, false);
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] writeCompact(GameInstance game, boolean compress)
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try
+    {
+      CompactSave.write(game, false, bytes, compress);
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  static GameInstance readLegacy(byte[] save)
+  {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(save)))
+    {
+      in.readObject(); // version info
+      return (GameInstance) in.readObject();
+    }
+    catch (IOException | ClassNotFoundException ex)
+    {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static GameInstance readCompact(byte[] save)
+  {
+    ByteArrayInputStream in = new ByteArrayInputStream(save);
+    try (ObjectInputStream body = CompactSave.openBody(in, CompactSave.readHeader(in)))
+    {
+      body.readObject(); // version info
+      return (GameInstance) body.readObject();
+    }
+    catch (IOException | ClassNotFoundException ex)
+    {
+      throw new RuntimeException(ex);
+    }
+  }
+}
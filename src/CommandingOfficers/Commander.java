@@ -45,6 +45,9 @@ public class Commander implements GameEventListener, Serializable, UnitModifierW
   public final UnitModelList unitModels;
   public Map<TerrainType, ArrayList<UnitModel>> unitProductionByTerrain = new HashMap<>();
   public int luck = 10; // The number we normally plug into the RNG for luck damage
+  private int unitsCreated = 0;
+  /** Primitive, so it is restored before any object field and already valid if a cycle hashes this CO mid-load. */
+  private final int stableHash;
   public Set<XYCoord> ownedProperties;
   public Color myColor;
   public Faction faction;
@@ -66,6 +69,7 @@ public class Commander implements GameEventListener, Serializable, UnitModifierW
   public Commander(CommanderInfo info, GameScenario.GameRules rules)
   {
     coInfo = info;
+    stableHash = info.name.hashCode();
     gameRules = rules;
 
     // Fetch our fieldable unit types from the rules
@@ -379,6 +383,19 @@ public class Commander implements GameEventListener, Serializable, UnitModifierW
     return coInfo.name;
   }
 
+  /** Numbers this CO's units in creation order; see Unit.hashCode(). */
+  public int nextUnitSerial()
+  {
+    return ++unitsCreated;
+  }
+
+  /** Still compared by identity, but hashed by name so that hash-ordered iteration is the same from run to run. */
+  @Override
+  public int hashCode()
+  {
+    return stableHash;
+  }
+
   private final ArrayList<UnitModifier> unitMods = new ArrayList<UnitModifier>();
   @Override
   public List<UnitModifier> getModifiers()
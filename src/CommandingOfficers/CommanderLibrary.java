@@ -22,7 +22,8 @@ public class CommanderLibrary
 {  
   private static ArrayList<CommanderInfo> commanderList = null;
 
-  public static ArrayList<CommanderInfo> getCommanderList()
+  // Synchronized so games starting on several threads at once don't see a half-built list.
+  public static synchronized ArrayList<CommanderInfo> getCommanderList()
   {
     if( null == commanderList )
     {
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import CommandingOfficers.CommanderInfo.InfoPage;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
 import Engine.UnitActionLifecycles.JoinLifecycle.JoinEvent;
 import Engine.Army;
@@ -243,6 +244,12 @@ public abstract class DeployableCommander extends Commander
       return listener.receiveDeployCOUEvent(unit, cost);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.DEPLOY_COU;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
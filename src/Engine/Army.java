@@ -380,6 +380,10 @@ public class Army implements GameEventListener, Serializable, UnitModList, UnitM
     return null;
   }
 
+  public AIController getAIController()
+  {
+    return aiController;
+  }
   public void setAIController(AIController ai)
   {
     aiController = ai;
@@ -398,10 +402,15 @@ public class Army implements GameEventListener, Serializable, UnitModList, UnitM
   }
 
   public GameAction getNextAIAction(GameMap gameMap)
+  {
+    return getNextAIAction(gameMap, Long.MAX_VALUE);
+  }
+  /** @param deadlineNanos When the AI should be done thinking; see AIController. */
+  public GameAction getNextAIAction(GameMap gameMap, long deadlineNanos)
   {
     if( aiController != null )
     {
-      return aiController.getNextAction(myView);
+      return aiController.getNextAction(myView, deadlineNanos);
     }
     return null;
   }
@@ -418,16 +427,18 @@ public class Army implements GameEventListener, Serializable, UnitModList, UnitM
 
     // save our index into the AILibrary
     // TODO: Consider serializing AI as well, so we don't need this method
-    if( null == aiController )
-      stream.writeInt(0); // Humans live at index 0 of the AI array. That sounds philosophical.
-    else
+    int aiIndex = 0; // Humans live at index 0 of the AI array. That sounds philosophical.
+    if( null != aiController )
     {
+      // AIs that aren't in the library (e.g. FightClub-only variants) get loaded as humans,
+      // but we must always write something or the rest of the stream can't be read.
       for( AIMaker AI : AILibrary.getAIList() )
       {
         if( AI.getName().equalsIgnoreCase(aiController.getAIInfo().getName()) )
-          stream.writeInt(AILibrary.getAIList().indexOf(AI));
+          aiIndex = AILibrary.getAIList().indexOf(AI);
       }
     }
+    stream.writeInt(aiIndex);
   }
 
   /**
@@ -452,6 +463,10 @@ public class Army implements GameEventListener, Serializable, UnitModList, UnitM
 
   /** Salt the provided string with the Commander's salt and return the result. */
   private UUID hashPass(String pass)
+  {
+    return hashPass(passSalt, pass);
+  }
+  static UUID hashPass(long passSalt, String pass)
   {
     int numBytes = Long.BYTES + (Character.BYTES*pass.length());
     ByteBuffer bb = ByteBuffer.allocate(numBytes);
@@ -460,6 +475,16 @@ public class Army implements GameEventListener, Serializable, UnitModList, UnitM
     return hashedPass;
   }
 
+  /** For SaveHeader, so a save's password can be checked without loading the whole game. */
+  long getPasswordSalt()
+  {
+    return passSalt;
+  }
+  UUID getPasswordHash()
+  {
+    return password;
+  }
+
   /** Assigns the given salt and password to this Commander, salting
    * and hashing the password before storing.
    * Throws an exception if a password has already been set. */
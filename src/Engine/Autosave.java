@@ -0,0 +1,246 @@
+package Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a crash-safe copy of a game in progress, without stopping the game to write a full save every turn.
+ * <p>
+ * Every so often the game is written in full as a checkpoint (a CompactSave). In between, after each CO-turn,
+ * only that turn is written: the actions taken and random numbers drawn, as recorded by the game's EventJournal.
+ * recover() loads the latest checkpoint and replays the turns after it with GameReplay.
+ * <p>
+ * The game thread only copies state into memory - the journal bytes for a turn, or the serialized game for a
+ * checkpoint - and the files are written by a background thread. Files are written under a temporary name and then
+ * renamed, so a crash mid-write leaves the previous files intact. Each checkpoint starts a new generation of files,
+ * and the old generation is only deleted once the new checkpoint is on disk.
+ * <p>
+ * Autosave takes over the game's journal, replacing it with a fresh in-memory one each turn.
+ */
+public class Autosave
+{
+  /** Whether MapController autosaves the games it runs. */
+  public static boolean enabled = true;
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 8; // CO-turns
+  /** Room for one CO-turn's records; if a turn overflows it, we just write a checkpoint instead. */
+  private static final int TURN_JOURNAL_BYTES = 256 * 1024;
+
+  private static final String CHECKPOINT_FORMAT = "checkpoint-%d.svp";
+  private static final String DELTA_FORMAT = "turn-%d-%d.dpj";
+  private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint-(\\d+)\\.svp");
+  private static final Pattern DELTA_NAME = Pattern.compile("turn-(\\d+)-(\\d+)\\.dpj");
+
+  // One writer for all autosaves, so writes land in the order they were made.
+  private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "Autosave");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final GameInstance game;
+  private final File folder;
+  private final int checkpointInterval;
+  private int generation = -1;
+  private int turnsSinceCheckpoint = 0;
+  private Future<?> lastWrite = null;
+
+  /** Starts autosaving the game, beginning with a checkpoint of where it is now. */
+  public Autosave(GameInstance game, File folder, int checkpointInterval)
+  {
+    this.game = game;
+    this.folder = folder;
+    this.checkpointInterval = Math.max(1, checkpointInterval);
+    folder.mkdirs();
+    generation = latestGeneration(folder);
+    checkpoint(game.requireInitOnLoad()); // Keep whether the game has its first turn ahead of it.
+  }
+
+  /** @return The folder to autosave the given game to, under the save folder. */
+  public static File folderFor(GameInstance game)
+  {
+    String name = game.saveFile.endsWith(".svp") ? game.saveFile.substring(0, game.saveFile.length() - 4) : game.saveFile;
+    return new File(Driver.JAR_DIR + "save/autosave/" + name);
+  }
+
+  /**
+   * Call once each CO-turn is over and all of its events have been executed, before the next turn starts.
+   * Writes that turn, or a new checkpoint if it's time for one.
+   */
+  public void endOfTurn()
+  {
+    EventJournal journal = game.getJournal();
+    ++turnsSinceCheckpoint;
+    if( turnsSinceCheckpoint >= checkpointInterval || null == journal || !journal.isComplete() )
+    {
+      checkpoint(true);
+      return;
+    }
+
+    final byte[] turn = journal.toByteArray();
+    final File target = new File(folder, String.format(DELTA_FORMAT, generation, turnsSinceCheckpoint));
+    game.setJournal(EventJournal.inMemory(TURN_JOURNAL_BYTES));
+    lastWrite = writer.submit(() -> writeFile(target, turn));
+  }
+
+  /** Waits for any pending writes to finish. */
+  public void flush()
+  {
+    if( null == lastWrite )
+      return;
+    try
+    {
+      lastWrite.get();
+    }
+    catch (Exception ex)
+    {
+      System.out.println("WARNING! Autosave write failed: " + ex.toString());
+    }
+  }
+
+  private void checkpoint(boolean endCurrentTurn)
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * 1024);
+    try
+    {
+      CompactSave.write(game, endCurrentTurn, bytes, SerializationUtils.compressSaves);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to checkpoint game for autosave: " + ex.toString());
+      return;
+    }
+    ++generation;
+    turnsSinceCheckpoint = 0;
+    game.setJournal(EventJournal.inMemory(TURN_JOURNAL_BYTES));
+
+    final byte[] save = bytes.toByteArray();
+    final int newGeneration = generation;
+    lastWrite = writer.submit(() -> {
+      if( writeFile(new File(folder, String.format(CHECKPOINT_FORMAT, newGeneration)), save) )
+        deleteOlderThan(folder, newGeneration);
+    });
+  }
+
+  private static boolean writeFile(File target, byte[] contents)
+  {
+    Path temp = new File(target.getPath() + ".tmp").toPath();
+    try
+    {
+      Files.write(temp, contents);
+      Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Autosave failed to write " + target.getName() + ": " + ex.toString());
+      return false;
+    }
+  }
+
+  private static void deleteOlderThan(File folder, int generation)
+  {
+    File[] files = folder.listFiles();
+    if( null == files )
+      return;
+    for( File f : files )
+    {
+      Matcher checkpoint = CHECKPOINT_NAME.matcher(f.getName());
+      Matcher delta = DELTA_NAME.matcher(f.getName());
+      if( (checkpoint.matches() && Integer.parseInt(checkpoint.group(1)) < generation)
+          || (delta.matches() && Integer.parseInt(delta.group(1)) < generation) )
+        f.delete();
+    }
+  }
+
+  /** @return The newest checkpoint generation in the folder, or -1 if there isn't one. */
+  private static int latestGeneration(File folder)
+  {
+    int latest = -1;
+    File[] files = folder.listFiles();
+    if( null != files )
+      for( File f : files )
+      {
+        Matcher m = CHECKPOINT_NAME.matcher(f.getName());
+        if( m.matches() )
+          latest = Math.max(latest, Integer.parseInt(m.group(1)));
+      }
+    return latest;
+  }
+
+  /** @return True if the folder holds an autosave that recover() could try. */
+  public static boolean hasAutosave(File folder)
+  {
+    return latestGeneration(folder) >= 0;
+  }
+
+  /**
+   * Rebuilds the game from the newest checkpoint and the turns written after it.
+   * Stops at the first turn that's missing or won't replay, and returns the game as of the turn before.
+   * @return The recovered game, or null if there's no usable checkpoint.
+   */
+  public static GameInstance recover(File folder)
+  {
+    int generation = latestGeneration(folder);
+    if( generation < 0 )
+      return null;
+
+    GameInstance game;
+    try
+    {
+      game = CompactSave.load(new File(folder, String.format(CHECKPOINT_FORMAT, generation)).toPath());
+    }
+    catch (IOException | ClassNotFoundException ex)
+    {
+      System.out.println("WARNING! Unable to load autosave checkpoint: " + ex.toString());
+      return null;
+    }
+
+    ArrayList<Integer> turns = new ArrayList<>();
+    File[] files = folder.listFiles();
+    for( File f : files )
+    {
+      Matcher m = DELTA_NAME.matcher(f.getName());
+      if( m.matches() && Integer.parseInt(m.group(1)) == generation )
+        turns.add(Integer.parseInt(m.group(2)));
+    }
+    Collections.sort(turns);
+
+    for( int i = 0; i < turns.size(); ++i )
+    {
+      if( turns.get(i) != i + 1 )
+        break; // A gap; anything after it can't be trusted.
+      File turnFile = new File(folder, String.format(DELTA_FORMAT, generation, turns.get(i)));
+      GameReplay replay;
+      try
+      {
+        replay = new GameReplay(game, new EventJournal.Reader(turnFile));
+      }
+      catch (IOException ex)
+      {
+        System.out.println("WARNING! Unable to read autosave turn " + turns.get(i) + ": " + ex.toString());
+        break;
+      }
+      boolean replayed = replay.runToEnd();
+      if( !replayed )
+      {
+        System.out.println("WARNING! Autosave turn " + turns.get(i) + " didn't replay: " + replay.getError());
+        replay.restart(); // Don't hand back a half-played turn.
+      }
+      game = replay.getGame();
+      if( !replayed )
+        break;
+    }
+    return game;
+  }
+}
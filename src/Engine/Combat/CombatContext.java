@@ -8,7 +8,6 @@ import Engine.GameInstance;
 import Engine.Combat.StrikeParams.BattleParams;
 import Engine.UnitMods.UnitModifier;
 import Terrain.GameMap;
-import Terrain.MapLocation;
 import Terrain.TerrainType;
 import Units.UnitContext;
 
@@ -150,13 +149,13 @@ public class CombatContext
     {
       for( int x = minX; x <= maxX; x++ )
       {
-        MapLocation loc = map.getLocation(x, y);
-        Commander owner = loc.getOwner();
+        Commander owner = map.getOwner(x, y);
         if( null == owner || uc.CO.army != owner.army )
           continue;
-        if( loc.getEnvironment().terrainType.equals(TerrainType.DOR_TOWER) )
+        TerrainType terrain = map.getEnvironment(x, y).terrainType;
+        if( terrain.equals(TerrainType.DOR_TOWER) )
           uc.towerCountDoR += 1;
-        if( loc.getEnvironment().terrainType.equals(TerrainType.DS_TOWER) )
+        if( terrain.equals(TerrainType.DS_TOWER) )
           uc.towerCountDS += 1;
       }
     }
@@ -2,7 +2,9 @@ package Engine.Combat;
 
 import java.util.HashMap;
 import java.util.Map;
+
 import Engine.GamePath;
+import Engine.WorkCounter;
 import Engine.XYCoord;
 import Engine.Combat.CombatContext.CalcType;
 import Engine.Combat.StrikeParams.BattleParams;
@@ -77,6 +79,7 @@ public class CombatEngine
    */
   public static BattleSummary calculateBattleResults(CombatContext inputContext, GameMap map)
   {
+    WorkCounter.countBattleCalc();
     UnitContext attacker = inputContext.attacker;
     UnitContext defender = inputContext.defender;
 
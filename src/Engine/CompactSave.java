@@ -0,0 +1,422 @@
+package Engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import CommandingOfficers.CommanderInfo;
+import CommandingOfficers.CommanderLibrary;
+import Terrain.Environment;
+import Terrain.Environment.Weathers;
+import Terrain.TerrainType;
+import Units.UnitModel;
+import Units.UnitModelScheme;
+
+/**
+ * The save file format: a small fixed header, then the game itself.
+ * <p>
+ * The header is plain binary - a magic number, the format version, flags, the GameVersion, and a SaveHeader summing
+ * up the game - so the save can be identified, checked for compatibility and listed without reading the rest.
+ * <p>
+ * The body is the game's object graph as Java serialization writes it, except that the parts every game rebuilds
+ * identically are written as references rather than in full: unit model schemes by class, UnitModels by scheme and
+ * name (skipping every weapon, move type table and modifier they hold), Environments by terrain and weather, and
+ * CommanderInfos by class. On load the references resolve to the shared instances, the same ones a new game would use.
+ * Each loaded game still gets a scheme of its own, holding any models its COs added, which are written in full.
+ * The body is deflated unless the caller asks otherwise.
+ * <p>
+ * Old saves (a bare Java object stream) are still read; see SerializationUtils.
+ */
+public class CompactSave
+{
+  public static final int MAGIC = 0x49505356; // "IPSV"
+  public static final short FORMAT_VERSION = 2; // 2 added the SaveHeader.
+  public static final byte FLAG_DEFLATE = 1;
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  public static class Header
+  {
+    public final short formatVersion;
+    public final byte flags;
+    public final GameVersion version;
+    /** Null for saves from before the format had one. */
+    public final SaveHeader summary;
+
+    Header(short formatVersion, byte flags, GameVersion version, SaveHeader summary)
+    {
+      this.formatVersion = formatVersion;
+      this.flags = flags;
+      this.version = version;
+      this.summary = summary;
+    }
+
+    public boolean isCompressed()
+    {
+      return 0 != (flags & FLAG_DEFLATE);
+    }
+  }
+
+  /** @return True if the stream starts with our magic number. Reads four bytes. */
+  public static boolean isCompactSave(InputStream in) throws IOException
+  {
+    DataInputStream data = new DataInputStream(in);
+    try
+    {
+      return MAGIC == data.readInt();
+    }
+    catch (IOException ex)
+    {
+      return false; // Too short to be anything.
+    }
+  }
+
+  public static void save(GameInstance game, boolean endCurrentTurn, Path file, boolean compress) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING))
+    {
+      write(game, endCurrentTurn, Channels.newOutputStream(channel), compress);
+    }
+  }
+
+  public static GameInstance load(Path file) throws IOException, ClassNotFoundException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      InputStream in = Channels.newInputStream(channel);
+      Header header = readHeader(in);
+      try (ObjectInputStream body = openBody(in, header))
+      {
+        body.readObject(); // The version again; we already have it from the header.
+        return (GameInstance) body.readObject();
+      }
+    }
+  }
+
+  /** Writes the whole save, flushing but not closing the stream. */
+  public static void write(GameInstance game, boolean endCurrentTurn, OutputStream out, boolean compress) throws IOException
+  {
+    BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_BYTES);
+    DataOutputStream header = new DataOutputStream(buffered);
+    GameVersion version = new GameVersion();
+    header.writeInt(MAGIC);
+    header.writeShort(FORMAT_VERSION);
+    header.writeByte(compress ? FLAG_DEFLATE : 0);
+    header.writeInt(version.majorRev);
+    header.writeInt(version.minorRev);
+    header.writeInt(version.hotfix);
+    new SaveHeader(game).write(header);
+    header.flush();
+
+    Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+    try
+    {
+      OutputStream bodyOut = buffered;
+      if( compress )
+        bodyOut = new DeflaterOutputStream(buffered, deflater, BUFFER_BYTES);
+      SaveOutputStream body = new SaveOutputStream(bodyOut, game);
+      game.writeSave(body, endCurrentTurn);
+      body.flush();
+      if( compress )
+        ((DeflaterOutputStream) bodyOut).finish();
+      buffered.flush();
+    }
+    finally
+    {
+      if( null != deflater )
+        deflater.end();
+    }
+  }
+
+  /** Reads the header, including the magic number. */
+  public static Header readHeader(InputStream in) throws IOException
+  {
+    DataInputStream data = new DataInputStream(in);
+    if( MAGIC != data.readInt() )
+      throw new IOException("Not a save file");
+    return readHeaderAfterMagic(data);
+  }
+
+  /** Reads the rest of the header, for callers who already checked the magic number with isCompactSave(). */
+  public static Header readHeaderAfterMagic(InputStream in) throws IOException
+  {
+    DataInputStream data = new DataInputStream(in);
+    short format = data.readShort();
+    if( format > FORMAT_VERSION )
+      throw new IOException("Save format " + format + " is newer than this build understands");
+    byte flags = data.readByte();
+    GameVersion version = new GameVersion();
+    version.majorRev = data.readInt();
+    version.minorRev = data.readInt();
+    version.hotfix = data.readInt();
+    SaveHeader summary = (format >= 2) ? SaveHeader.read(data) : null;
+    return new Header(format, flags, version, summary);
+  }
+
+  /**
+   * @return The header exactly as it appears at the front of the save, for SaveIndex to cache; null if the stream
+   * isn't a CompactSave. Reads no further than the header.
+   */
+  public static byte[] readHeaderBytes(InputStream in) throws IOException
+  {
+    DataInputStream data = new DataInputStream(in);
+    if( !isCompactSave(data) )
+      return null;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream copy = new DataOutputStream(bytes);
+    copy.writeInt(MAGIC);
+    short format = data.readShort();
+    copy.writeShort(format);
+    byte[] fixed = new byte[1 + 3 * Integer.BYTES]; // Flags and version.
+    data.readFully(fixed);
+    copy.write(fixed);
+    if( format >= 2 )
+    {
+      byte[] summary = new byte[data.readInt()];
+      data.readFully(summary);
+      copy.writeInt(summary.length);
+      copy.write(summary);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return A stream over the rest of the save: the GameVersion, then the GameInstance, as GameInstance.writeSave()
+   * wrote them, so it can go straight to GameInstance.getSaveWarnings().
+   */
+  public static ObjectInputStream openBody(InputStream in, Header header) throws IOException
+  {
+    InputStream bodyIn = new BufferedInputStream(in, BUFFER_BYTES);
+    if( header.isCompressed() )
+      bodyIn = new BufferedInputStream(new InflaterInputStream(bodyIn), BUFFER_BYTES);
+    return new SaveInputStream(bodyIn);
+  }
+
+  ///////////////////////////////////////////////////////////////////
+  // Writing shared objects by reference
+
+  private static class SaveOutputStream extends ObjectOutputStream
+  {
+    private final IdentityHashMap<Object, Object> refs = new IdentityHashMap<>();
+
+    SaveOutputStream(OutputStream out, GameInstance game) throws IOException
+    {
+      super(out);
+      enableReplaceObject(true);
+
+      // Only the models a new scheme of the same kind hands out can be rebuilt from a name. Anything else, such as
+      // a unit a CO added to this game's scheme, is written in full alongside the scheme so it can be put back.
+      ArrayList<UnitModelScheme> schemes = new ArrayList<>();
+      schemes.add(game.rules.unitModelScheme);
+      for( Army army : game.armies )
+        schemes.add(army.gameRules.unitModelScheme);
+      for( UnitModelScheme scheme : schemes )
+      {
+        if( refs.containsKey(scheme) )
+          continue;
+        String schemeName = scheme.getClass().getName();
+        Map<String, UnitModel> standard = getStandardModels(schemeName);
+        ArrayList<UnitModel> added = new ArrayList<>();
+        HashMap<String, UnitModel> byName = new HashMap<>();
+        for( UnitModel um : scheme.getGameReadyModels().unitModels )
+        {
+          if( null != standard && standard.containsKey(um.name) && null == byName.putIfAbsent(um.name, um) )
+            refs.put(um, new ModelRef(schemeName, um.name)); // A duplicate name couldn't be told apart on load.
+          else
+            added.add(um);
+        }
+        refs.put(scheme, new SchemeRef(schemeName, added));
+      }
+      for( CommanderInfo info : CommanderLibrary.getCommanderList() )
+        refs.put(info, new InfoRef(info.getClass().getName()));
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException
+    {
+      Object ref = refs.get(obj);
+      if( null != ref )
+        return ref;
+      if( obj instanceof Environment )
+      {
+        Environment env = (Environment) obj;
+        ref = new EnvironmentRef(env.terrainType, env.weatherType);
+        refs.put(obj, ref);
+        return ref;
+      }
+      return obj;
+    }
+  }
+
+  // One untouched scheme per class, to tell which models any new game would have and to supply them. Games never
+  // get these; each load builds a scheme of its own from one (see SaveInputStream), since COs add models to theirs.
+  private static final Map<String, UnitModelScheme> standardSchemes = new ConcurrentHashMap<>();
+  private static final Map<String, Map<String, UnitModel>> standardModels = new ConcurrentHashMap<>();
+
+  /** @return The standard scheme's models by name, or null if there's no such scheme. */
+  private static Map<String, UnitModel> getStandardModels(String className)
+  {
+    UnitModelScheme scheme = standardSchemes.computeIfAbsent(className, name -> {
+      try
+      {
+        return (UnitModelScheme) Class.forName(name).getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | ClassCastException ex)
+      {
+        System.out.println("WARNING! Unable to rebuild unit model scheme " + name + ": " + ex.toString());
+        return null;
+      }
+    });
+    if( null == scheme )
+      return null;
+    return standardModels.computeIfAbsent(className, name -> {
+      HashMap<String, UnitModel> models = new HashMap<>();
+      for( UnitModel um : scheme.getGameReadyModels().unitModels )
+        models.putIfAbsent(um.name, um);
+      return models;
+    });
+  }
+
+  /** Resolves scheme and model references to a scheme of this load's own, and the standard models it hands out. */
+  private static class SaveInputStream extends ObjectInputStream
+  {
+    private final Map<String, UnitModelScheme> schemes = new HashMap<>();
+
+    SaveInputStream(InputStream in) throws IOException
+    {
+      super(in);
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException
+    {
+      if( obj instanceof SchemeRef )
+      {
+        SchemeRef ref = (SchemeRef) obj;
+        UnitModelScheme scheme = getScheme(ref.className);
+        if( null != ref.addedModels )
+          for( UnitModel um : ref.addedModels )
+            if( !scheme.getGameReadyModels().unitModels.contains(um) )
+              scheme.getGameReadyModels().unitModels.add(um);
+        return scheme;
+      }
+      if( obj instanceof ModelRef )
+      {
+        ModelRef ref = (ModelRef) obj;
+        Map<String, UnitModel> standard = getStandardModels(ref.schemeName);
+        UnitModel um = (null == standard) ? null : standard.get(ref.modelName);
+        if( null == um )
+          throw new InvalidObjectException("No unit model " + ref.modelName + " in " + ref.schemeName);
+        return um;
+      }
+      return obj;
+    }
+
+    private UnitModelScheme getScheme(String className) throws IOException
+    {
+      UnitModelScheme scheme = schemes.get(className);
+      if( null != scheme )
+        return scheme;
+      if( null == getStandardModels(className) )
+        throw new InvalidObjectException("Unknown unit model scheme " + className);
+      try
+      {
+        scheme = standardSchemes.get(className).copyWithOwnModelLists();
+      }
+      catch (ReflectiveOperationException ex)
+      {
+        throw new InvalidObjectException("Unable to rebuild unit model scheme " + className + ": " + ex.toString());
+      }
+      schemes.put(className, scheme);
+      return scheme;
+    }
+  }
+
+  private static class SchemeRef implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+    final String className;
+    /** Models this game's scheme has beyond the standard ones; null in saves from before we kept them. */
+    final ArrayList<UnitModel> addedModels;
+
+    SchemeRef(String className, ArrayList<UnitModel> addedModels)
+    {
+      this.className = className;
+      this.addedModels = addedModels;
+    }
+  }
+
+  private static class ModelRef implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+    final String schemeName;
+    final String modelName;
+
+    ModelRef(String schemeName, String modelName)
+    {
+      this.schemeName = schemeName;
+      this.modelName = modelName;
+    }
+  }
+
+  private static class EnvironmentRef implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+    final TerrainType terrain;
+    final Weathers weather;
+
+    EnvironmentRef(TerrainType terrain, Weathers weather)
+    {
+      this.terrain = terrain;
+      this.weather = weather;
+    }
+
+    private Object readResolve()
+    {
+      return Environment.getTile(terrain, weather);
+    }
+  }
+
+  private static class InfoRef implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+    final String className;
+
+    InfoRef(String className)
+    {
+      this.className = className;
+    }
+
+    private Object readResolve() throws ObjectStreamException
+    {
+      for( CommanderInfo info : CommanderLibrary.getCommanderList() )
+        if( info.getClass().getName().equals(className) )
+          return info;
+      throw new InvalidObjectException("No commander info " + className);
+    }
+  }
+}
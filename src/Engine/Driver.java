@@ -124,6 +124,13 @@ public class Driver implements ActionListener, KeyListener
     }
 
     gameDriver = new Driver();
+
+    // Optionally jump straight into viewing a recorded game: --replay <journal> [CO-turn]
+    if( args.length > 1 && "--replay".equals(args[0]) )
+    {
+      int startTurn = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+      GameReplay.launchViewer(new File(args[1]), startTurn);
+    }
   }
 
   @Override // From KeyListener
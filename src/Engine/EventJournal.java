@@ -0,0 +1,737 @@
+package Engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import Units.Unit;
+
+/**
+ * An append-only, compact binary record of everything that happened in a game:
+ * each turn change, each GameAction executed, and every random number drawn while executing it.
+ * <p>Records are written to either a file or an in-memory ring buffer (which keeps only the most recent records).
+ * Every GameInstance gets a small ring journal by default; FightClub can also write full journals to disk.
+ * <p>Layout: a file header (MAGIC, FORMAT_VERSION), followed by records of the form [tag][length][payload].
+ * Length is a short for every record except snapshots, which use an int.
+ * Action classes and action types are written once as NAME records, and referred to by ID thereafter.
+ * <p>Writing a record does not allocate (except the first time a given action class/type is seen);
+ * everything is encoded into a reusable scratch buffer.
+ */
+public class EventJournal
+{
+  public static final int MAGIC = 0x44504A31; // "DPJ1"
+  public static final short FORMAT_VERSION = 1;
+
+  /** Written whenever a GameInstance starts journaling: seed, day, active army, RNs drawn so far. */
+  public static final byte TAG_START = 1;
+  /** A Java-serialized GameInstance (see GameInstance.writeSave()), so the journal can be replayed standalone. */
+  public static final byte TAG_SNAPSHOT = 2;
+  /** Dictionary entry: ID, kind, name. */
+  public static final byte TAG_NAME = 3;
+  public static final byte TAG_TURN = 4;
+  public static final byte TAG_ACTION = 5;
+  public static final byte TAG_RANDOM = 6;
+
+  public static final byte NAME_ACTION_CLASS = 0;
+  public static final byte NAME_ACTION_TYPE = 1;
+
+  public static final int DEFAULT_RING_BYTES = 64 * 1024;
+  private static final int MAX_RECORD_BYTES = Short.MAX_VALUE;
+  private static final int RECORD_HEADER_BYTES = 3;
+
+  private final Sink sink;
+  private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES + RECORD_HEADER_BYTES);
+  private final ActionRecord scratchAction = new ActionRecord();
+  private final IdentityHashMap<Object, Integer> nameIDs = new IdentityHashMap<>();
+  /** Encoded NAME records, kept so a ring dump can always be decoded. */
+  private final ArrayList<byte[]> nameRecords = new ArrayList<>();
+  private byte[] startRecord = null;
+  private boolean failed = false;
+  private long digest = FNV_OFFSET;
+
+  // 64-bit FNV-1a, for a cheap fingerprint of everything we've recorded.
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private EventJournal(Sink sink)
+  {
+    this.sink = sink;
+  }
+
+  /** Creates a journal that keeps only the most recent records, up to the given size. */
+  public static EventJournal inMemory(int capacityBytes)
+  {
+    return new EventJournal(new RingSink(capacityBytes));
+  }
+
+  /**
+   * Creates a journal that appends to the given file. The file starts with a snapshot of the game as it is
+   * now, so the game should not have started yet if the journal is to be replayed from turn 1.
+   */
+  public static EventJournal toFile(File file, GameInstance game) throws IOException
+  {
+    FileSink fs = new FileSink(file);
+    EventJournal journal = new EventJournal(fs);
+    fs.writeHeader();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes);)
+    {
+      game.writeSave(out, false);
+    }
+    ByteBuffer snapshot = ByteBuffer.allocate(1 + 4 + bytes.size());
+    snapshot.put(TAG_SNAPSHOT).putInt(bytes.size()).put(bytes.toByteArray());
+    snapshot.flip();
+    fs.write(snapshot);
+    return journal;
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // Write path
+  //////////////////////////////////////////////////////////////////
+
+  /** Notes that this GameInstance has started (or resumed) journaling. */
+  public void recordStart(long seed, int day, int activeArmy, long numbersGenerated)
+  {
+    beginRecord(TAG_START);
+    scratch.putLong(seed).putInt(day).put((byte) activeArmy).putLong(numbersGenerated);
+    endRecord();
+    startRecord = Arrays.copyOf(scratch.array(), scratch.limit());
+  }
+
+  public void recordTurn(int day, int activeArmy)
+  {
+    beginRecord(TAG_TURN);
+    scratch.putInt(day).put((byte) activeArmy);
+    endRecord();
+    flush(); // Turns are a good point to make sure we've hit the disk, in case the game goes down.
+  }
+
+  public void recordRandom(int upperBound, int value)
+  {
+    beginRecord(TAG_RANDOM);
+    scratch.putInt(upperBound).putInt(value);
+    endRecord();
+  }
+
+  public void recordAction(GameAction action, GameInstance game)
+  {
+    if( failed )
+      return;
+    ActionRecord rec = scratchAction;
+    rec.clear();
+    rec.army = game.getActiveCOIndex();
+    action.fillJournalRecord(rec);
+
+    // Make sure the dictionary entries are written before the action that uses them.
+    rec.actionClass = nameID(action.getClass(), NAME_ACTION_CLASS, action.getClass().getName());
+    if( null != rec.type )
+      rec.typeID = nameID(rec.type, NAME_ACTION_TYPE, typeName(rec.type, action.getActor()));
+
+    beginRecord(TAG_ACTION);
+    rec.write(scratch);
+    endRecord();
+  }
+
+  /**
+   * A hash of every record written to this journal, including any that a ring has since evicted.
+   * Two games that drew the same numbers and took the same actions in the same order have the same digest.
+   */
+  public long getDigest()
+  {
+    return digest;
+  }
+
+  public void flush()
+  {
+    if( failed )
+      return;
+    try
+    {
+      sink.flush();
+    }
+    catch (IOException ex)
+    {
+      fail(ex);
+    }
+  }
+
+  public void close()
+  {
+    if( failed )
+      return;
+    try
+    {
+      sink.close();
+    }
+    catch (IOException ex)
+    {
+      fail(ex);
+    }
+  }
+
+  /** @return False if any records have been lost, either evicted from a ring or not written after a failure. */
+  public boolean isComplete()
+  {
+    return !failed && !((sink instanceof RingSink) && ((RingSink) sink).evicted);
+  }
+
+  /**
+   * Returns a decodable copy of the journal. For ring journals, this is just the records still in the buffer
+   * (plus the dictionary and start record, so it can still be read).
+   */
+  public byte[] toByteArray()
+  {
+    ByteBuffer out = ByteBuffer.allocate(sink.size() + 6 + dictionarySize() + ((null == startRecord) ? 0 : startRecord.length));
+    out.putInt(MAGIC).putShort(FORMAT_VERSION);
+    if( sink instanceof RingSink )
+    {
+      for( byte[] name : nameRecords )
+        out.put(name);
+      if( null != startRecord )
+        out.put(startRecord);
+    }
+    sink.copyTo(out);
+    return out.array();
+  }
+
+  private int dictionarySize()
+  {
+    int size = 0;
+    for( byte[] name : nameRecords )
+      size += name.length;
+    return size;
+  }
+
+  private int nameID(Object key, byte kind, String name)
+  {
+    Integer id = nameIDs.get(key);
+    if( null == id )
+    {
+      id = nameIDs.size();
+      nameIDs.put(key, id);
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      beginRecord(TAG_NAME);
+      scratch.putInt(id).put(kind).putShort((short) nameBytes.length).put(nameBytes);
+      endRecord();
+      nameRecords.add(Arrays.copyOf(scratch.array(), scratch.limit()));
+    }
+    return id;
+  }
+
+  private void beginRecord(byte tag)
+  {
+    scratch.clear();
+    scratch.put(tag).putShort((short) 0);
+  }
+  private void endRecord()
+  {
+    scratch.putShort(1, (short) (scratch.position() - RECORD_HEADER_BYTES));
+    scratch.flip();
+    byte[] bytes = scratch.array();
+    for( int i = 0; i < scratch.limit(); ++i )
+      digest = (digest ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    if( failed )
+      return;
+    try
+    {
+      sink.write(scratch);
+    }
+    catch (IOException ex)
+    {
+      fail(ex);
+    }
+  }
+
+  private void fail(IOException ex)
+  {
+    System.out.println("WARNING! Event journal failed, and will stop recording: " + ex.toString());
+    failed = true;
+  }
+
+  /** The name under which an action type is stored in the journal's dictionary. */
+  public static String typeName(UnitActionFactory type, Unit actor)
+  {
+    return type.getClass().getName() + ':' + type.name(actor);
+  }
+
+  /** Helper for fillJournalRecord() implementations. */
+  public static int indexOf(Object[] array, Object item)
+  {
+    for( int i = 0; i < array.length; ++i )
+      if( array[i] == item )
+        return i;
+    return -1;
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // Action encoding
+  //////////////////////////////////////////////////////////////////
+
+  /**
+   * The journal's description of a single GameAction. GameActions fill this in via fillJournalRecord(),
+   * and Reader fills it back in when decoding. One instance is reused for every record, so don't hang on to it.
+   * <p>Coordinates that don't apply are -1.
+   */
+  public static class ActionRecord
+  {
+    /** ID of the action's class; see Reader.getName(). */
+    public int actionClass;
+    /** Index of the army that was active when the action was executed. */
+    public int army;
+    public int actorX, actorY;
+    /** The action's UnitActionFactory, if any. Only set while writing; Reader fills in typeID instead. */
+    public UnitActionFactory type;
+    public int typeID;
+    public int moveX, moveY, targetX, targetY;
+    /** Index of the relevant Commander within the acting army, if any. */
+    public int commander;
+    /** Which unit model, ability, etc. the action picked. Meaning depends on the action. */
+    public int option;
+    public int pathLength;
+    public int[] pathX = new int[16], pathY = new int[16];
+    /** Additional (index, x, y) triplets, e.g. the cargo and drop location for each unloaded unit. */
+    public int extraCount;
+    public int[] extraIndex = new int[4], extraX = new int[4], extraY = new int[4];
+
+    public void clear()
+    {
+      actionClass = -1;
+      army = -1;
+      actorX = actorY = -1;
+      type = null;
+      typeID = -1;
+      moveX = moveY = targetX = targetY = -1;
+      commander = -1;
+      option = -1;
+      pathLength = 0;
+      extraCount = 0;
+    }
+
+    public void setActor(Unit actor)
+    {
+      if( null == actor )
+        return;
+      actorX = actor.x;
+      actorY = actor.y;
+    }
+    public void setMove(XYCoord xyc)
+    {
+      if( null == xyc )
+        return;
+      moveX = xyc.x;
+      moveY = xyc.y;
+    }
+    public void setTarget(XYCoord xyc)
+    {
+      if( null == xyc )
+        return;
+      targetX = xyc.x;
+      targetY = xyc.y;
+    }
+    public void setPath(GamePath path)
+    {
+      pathLength = 0;
+      if( null == path )
+        return;
+      ArrayList<XYCoord> waypoints = path.getWaypoints();
+      for( int i = 0; i < waypoints.size(); ++i )
+      {
+        XYCoord xyc = waypoints.get(i);
+        addWaypoint(xyc.x, xyc.y);
+      }
+    }
+    private void addWaypoint(int x, int y)
+    {
+      if( pathLength == pathX.length )
+      {
+        pathX = Arrays.copyOf(pathX, pathLength * 2);
+        pathY = Arrays.copyOf(pathY, pathLength * 2);
+      }
+      pathX[pathLength] = x;
+      pathY[pathLength] = y;
+      ++pathLength;
+    }
+    public void addExtra(int index, int x, int y)
+    {
+      if( extraCount == extraIndex.length )
+      {
+        extraIndex = Arrays.copyOf(extraIndex, extraCount * 2);
+        extraX = Arrays.copyOf(extraX, extraCount * 2);
+        extraY = Arrays.copyOf(extraY, extraCount * 2);
+      }
+      extraIndex[extraCount] = index;
+      extraX[extraCount] = x;
+      extraY[extraCount] = y;
+      ++extraCount;
+    }
+
+    public void copyFrom(ActionRecord other)
+    {
+      clear();
+      actionClass = other.actionClass;
+      army = other.army;
+      actorX = other.actorX;
+      actorY = other.actorY;
+      type = other.type;
+      typeID = other.typeID;
+      moveX = other.moveX;
+      moveY = other.moveY;
+      targetX = other.targetX;
+      targetY = other.targetY;
+      commander = other.commander;
+      option = other.option;
+      for( int i = 0; i < other.pathLength; ++i )
+        addWaypoint(other.pathX[i], other.pathY[i]);
+      for( int i = 0; i < other.extraCount; ++i )
+        addExtra(other.extraIndex[i], other.extraX[i], other.extraY[i]);
+    }
+
+    /** @return true if both records describe the same choices (ignoring class, type, and army, which are looked up separately). */
+    public boolean matches(ActionRecord other)
+    {
+      if( actorX != other.actorX || actorY != other.actorY
+          || moveX != other.moveX || moveY != other.moveY
+          || targetX != other.targetX || targetY != other.targetY
+          || commander != other.commander || option != other.option
+          || pathLength != other.pathLength || extraCount != other.extraCount )
+        return false;
+      for( int i = 0; i < pathLength; ++i )
+        if( pathX[i] != other.pathX[i] || pathY[i] != other.pathY[i] )
+          return false;
+      for( int i = 0; i < extraCount; ++i )
+        if( extraIndex[i] != other.extraIndex[i] || extraX[i] != other.extraX[i] || extraY[i] != other.extraY[i] )
+          return false;
+      return true;
+    }
+
+    /** Builds a GamePath from the recorded waypoints. */
+    public GamePath buildPath()
+    {
+      GamePath path = new GamePath();
+      for( int i = 0; i < pathLength; ++i )
+        path.addWaypoint(pathX[i], pathY[i]);
+      return path;
+    }
+
+    private void write(ByteBuffer buf)
+    {
+      buf.putInt(actionClass).put((byte) army)
+         .putShort((short) actorX).putShort((short) actorY)
+         .putInt(typeID)
+         .putShort((short) moveX).putShort((short) moveY)
+         .putShort((short) targetX).putShort((short) targetY)
+         .put((byte) commander).putShort((short) option);
+      buf.putShort((short) pathLength);
+      for( int i = 0; i < pathLength; ++i )
+        buf.putShort((short) pathX[i]).putShort((short) pathY[i]);
+      buf.put((byte) extraCount);
+      for( int i = 0; i < extraCount; ++i )
+        buf.put((byte) extraIndex[i]).putShort((short) extraX[i]).putShort((short) extraY[i]);
+    }
+
+    private void read(ByteBuffer buf)
+    {
+      clear();
+      actionClass = buf.getInt();
+      army = buf.get();
+      actorX = buf.getShort();
+      actorY = buf.getShort();
+      typeID = buf.getInt();
+      moveX = buf.getShort();
+      moveY = buf.getShort();
+      targetX = buf.getShort();
+      targetY = buf.getShort();
+      commander = buf.get();
+      option = buf.getShort();
+      int len = buf.getShort();
+      for( int i = 0; i < len; ++i )
+        addWaypoint(buf.getShort(), buf.getShort());
+      int extras = buf.get();
+      for( int i = 0; i < extras; ++i )
+        addExtra(buf.get(), buf.getShort(), buf.getShort());
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // Read path
+  //////////////////////////////////////////////////////////////////
+
+  /**
+   * Walks through a journal one record at a time. After next() returns a tag, the fields relevant to that tag are valid.
+   * NAME records are collected automatically, but are still returned in case the caller cares.
+   */
+  public static class Reader
+  {
+    private final ByteBuffer data;
+    private final ArrayList<String> names = new ArrayList<>();
+
+    public long seed;
+    public int day;
+    public int army;
+    public long numbersGenerated;
+    public int randomBound, randomValue;
+    public byte[] snapshot;
+    public final ActionRecord action = new ActionRecord();
+
+    public Reader(byte[] journal) throws IOException
+    {
+      this(ByteBuffer.wrap(journal));
+    }
+    public Reader(File journalFile) throws IOException
+    {
+      this(readFile(journalFile));
+    }
+    private Reader(ByteBuffer journal) throws IOException
+    {
+      data = journal;
+      if( data.remaining() < 6 || data.getInt() != MAGIC )
+        throw new IOException("Not an event journal");
+      short version = data.getShort();
+      if( version != FORMAT_VERSION )
+        throw new IOException("Unsupported event journal version " + version);
+    }
+
+    private static ByteBuffer readFile(File journalFile) throws IOException
+    {
+      try (RandomAccessFile raf = new RandomAccessFile(journalFile, "r"); FileChannel channel = raf.getChannel();)
+      {
+        ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+        while( buf.hasRemaining() && channel.read(buf) >= 0 )
+          ;
+        buf.flip();
+        return buf;
+      }
+    }
+
+    /** @return The tag of the next record, or 0 at the end of the journal. */
+    public byte next() throws IOException
+    {
+      if( !data.hasRemaining() )
+        return 0;
+      try
+      {
+        byte tag = data.get();
+        int length = (TAG_SNAPSHOT == tag) ? data.getInt() : (data.getShort() & 0xFFFF);
+        int end = data.position() + length;
+        switch (tag)
+        {
+          case TAG_START:
+            seed = data.getLong();
+            day = data.getInt();
+            army = data.get();
+            numbersGenerated = data.getLong();
+            break;
+          case TAG_SNAPSHOT:
+            snapshot = new byte[length];
+            data.get(snapshot);
+            break;
+          case TAG_NAME:
+            int id = data.getInt();
+            data.get(); // kind
+            byte[] nameBytes = new byte[data.getShort()];
+            data.get(nameBytes);
+            while( names.size() <= id )
+              names.add(null);
+            names.set(id, new String(nameBytes, StandardCharsets.UTF_8));
+            break;
+          case TAG_TURN:
+            day = data.getInt();
+            army = data.get();
+            break;
+          case TAG_ACTION:
+            action.read(data);
+            break;
+          case TAG_RANDOM:
+            randomBound = data.getInt();
+            randomValue = data.getInt();
+            break;
+          default:
+            break; // Unknown record; skip it.
+        }
+        data.position(end);
+        return tag;
+      }
+      catch (BufferUnderflowException | IllegalArgumentException ex)
+      {
+        throw new IOException("Truncated event journal");
+      }
+    }
+
+    /** Looks up an action class or action type name by ID. Action types are stored as "class:name". */
+    public String getName(int id)
+    {
+      if( id < 0 || id >= names.size() )
+        return null;
+      return names.get(id);
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // Storage
+  //////////////////////////////////////////////////////////////////
+
+  private static interface Sink
+  {
+    void write(ByteBuffer record) throws IOException;
+    void flush() throws IOException;
+    void close() throws IOException;
+    int size();
+    void copyTo(ByteBuffer out);
+  }
+
+  /** Buffers records and appends them to a file. */
+  private static class FileSink implements Sink
+  {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+
+    FileSink(File path) throws IOException
+    {
+      File parent = path.getAbsoluteFile().getParentFile();
+      if( null != parent )
+        parent.mkdirs();
+      file = new RandomAccessFile(path, "rw");
+      file.setLength(0);
+      channel = file.getChannel();
+    }
+
+    void writeHeader() throws IOException
+    {
+      buffer.putInt(MAGIC).putShort(FORMAT_VERSION);
+    }
+
+    @Override
+    public void write(ByteBuffer record) throws IOException
+    {
+      if( record.remaining() > buffer.remaining() )
+        flush();
+      if( record.remaining() > buffer.capacity() )
+      {
+        // Too big to buffer (e.g. a snapshot); write it straight through.
+        while( record.hasRemaining() )
+          channel.write(record);
+        return;
+      }
+      buffer.put(record);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      buffer.flip();
+      while( buffer.hasRemaining() )
+        channel.write(buffer);
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      flush();
+      channel.close();
+      file.close();
+    }
+
+    @Override
+    public int size()
+    {
+      try
+      {
+        return (int) channel.size() + buffer.position();
+      }
+      catch (IOException ex)
+      {
+        return buffer.position();
+      }
+    }
+
+    @Override
+    public void copyTo(ByteBuffer out)
+    {
+      try
+      {
+        flush();
+        ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+        channel.read(contents, 0);
+        contents.flip();
+        contents.position(6); // Skip our header; the caller writes their own.
+        out.put(contents);
+      }
+      catch (IOException ex)
+      {
+        System.out.println("WARNING! Failed to read back event journal: " + ex.toString());
+      }
+    }
+  }
+
+  /** Keeps the most recent records in a fixed-size circular buffer, discarding whole records as needed. */
+  private static class RingSink implements Sink
+  {
+    private final byte[] ring;
+    private int head = 0; // Start of the oldest record
+    private int used = 0;
+    boolean evicted = false;
+
+    RingSink(int capacity)
+    {
+      ring = new byte[Math.max(capacity, MAX_RECORD_BYTES + RECORD_HEADER_BYTES)];
+    }
+
+    @Override
+    public void write(ByteBuffer record)
+    {
+      int length = record.remaining();
+      if( record.get(record.position()) == TAG_START )
+      {
+        record.position(record.limit()); // We keep our own copy of the start record.
+        return;
+      }
+      while( ring.length - used < length )
+      {
+        // Evict the oldest record.
+        int oldLength = RECORD_HEADER_BYTES + (((ring[(head + 1) % ring.length] & 0xFF) << 8) | (ring[(head + 2) % ring.length] & 0xFF));
+        head = (head + oldLength) % ring.length;
+        used -= oldLength;
+        evicted = true;
+      }
+      int tail = (head + used) % ring.length;
+      int firstChunk = Math.min(length, ring.length - tail);
+      record.get(ring, tail, firstChunk);
+      record.get(ring, 0, length - firstChunk);
+      used += length;
+    }
+
+    @Override
+    public void flush()
+    {}
+
+    @Override
+    public void close()
+    {}
+
+    @Override
+    public int size()
+    {
+      return used;
+    }
+
+    @Override
+    public void copyTo(ByteBuffer out)
+    {
+      int firstChunk = Math.min(used, ring.length - head);
+      out.put(ring, head, firstChunk);
+      out.put(ring, 0, used - firstChunk);
+    }
+  }
+}
@@ -47,6 +47,18 @@ public abstract class GameAction
     return new ArrayList<DamagePopup>();
   }
 
+  /**
+   * Describes this action for the EventJournal. Override this to add anything
+   * the default doesn't capture (paths, selected options, etc.).
+   */
+  public void fillJournalRecord(EventJournal.ActionRecord record)
+  {
+    record.setActor(getActor());
+    record.setMove(getMoveLocation());
+    record.setTarget(getTargetLocation());
+    record.type = getType();
+  }
+
   // ==========================================================
   //   Concrete Action type classes.
   // ==========================================================
@@ -114,6 +126,13 @@ public abstract class GameAction
       return buildEvents;
     }
 
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.option = EventJournal.indexOf(who.cos, swapTarget);
+    }
+
     @Override
     public String toString()
     {
@@ -192,6 +211,14 @@ public abstract class GameAction
     {
       return null;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.commander = EventJournal.indexOf(who.army.cos, who);
+      record.option = who.unitModels.indexOf(what);
+    }
   } // ~UnitProductionAction
 
   // ===========  UnitSpawnAction  ==============================
@@ -350,6 +377,14 @@ public abstract class GameAction
     {
       return myAbility.getDamagePopups(map);
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.commander = EventJournal.indexOf(myAbility.myCommander.army.cos, myAbility.myCommander);
+      record.option = myAbility.myCommander.myAbilities.indexOf(myAbility);
+    }
   } // ~AbilityAction
 
   // ===========  TeleportAction  =================================
@@ -2,6 +2,7 @@ package Engine.GameEvents;
 
 import CommandingOfficers.Commander;
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.Environment;
 import Terrain.MapLocation;
@@ -38,6 +39,33 @@ public class ArmyDefeatEvent implements GameEvent
     return listener.receiveCommanderDefeatEvent( this );
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.COMMANDER_DEFEAT;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveArmy(defeatedArmy);
+    if( null != beneficiaryCO )
+      log.saveCommander(beneficiaryCO);
+    for( Unit unit : defeatedArmy.getUnits() )
+      log.saveUnitAndLocation(gameMap, unit);
+    // Properties change hands, and any units capturing them may stop.
+    for( int y = 0; y < gameMap.mapHeight; ++y )
+      for( int x = 0; x < gameMap.mapWidth; ++x )
+      {
+        MapLocation loc = gameMap.getLocation(x, y);
+        if( null != loc.getOwner() && loc.getOwner().army == defeatedArmy )
+          log.saveUnitAndLocation(gameMap, loc.getResident());
+        if( (null != loc.getOwner() && loc.getOwner().army == defeatedArmy) || defeatedArmy.HQLocations.contains(loc.getCoordinates()) )
+          log.saveLocation(gameMap, loc.getCoordinates());
+      }
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
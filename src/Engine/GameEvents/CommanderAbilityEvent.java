@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import CommandingOfficers.CommanderAbility;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -29,6 +30,12 @@ public class CommanderAbilityEvent implements GameEvent
     return listener.receiveCommanderAbilityEvent(myAbility);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.COMMANDER_ABILITY;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
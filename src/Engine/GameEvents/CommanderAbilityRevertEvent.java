@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import CommandingOfficers.CommanderAbility;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -27,6 +28,12 @@ public class CommanderAbilityRevertEvent implements GameEvent
     return listener.receiveCommanderAbilityRevertEvent(myAbility);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.COMMANDER_ABILITY_REVERT;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import CommandingOfficers.Commander;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -31,6 +32,19 @@ public class CommanderEnergyChangeEvent implements GameEvent
     return listener.receiveModifyCommanderEnergyEvent(beneficiary, deltaActualFunds);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.MODIFY_COMMANDER_ENERGY;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveCommander(beneficiary);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import CommandingOfficers.Commander;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.Utils;
 import Engine.XYCoord;
 import Terrain.MapMaster;
@@ -65,6 +66,26 @@ public class CreateUnitEvent implements GameEvent
     return null;
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.CREATE_UNIT;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveCommander(myCommander);
+    log.saveUnit(myNewUnit);
+    // We may spawn anywhere within the fudge radius, possibly booting whoever is there.
+    for( XYCoord xyc : Utils.findLocationsInRange(gameMap, myBuildCoords, 0, myFudgeRadius) )
+    {
+      log.saveUnit(gameMap.getResident(xyc));
+      log.saveLocation(gameMap, xyc);
+    }
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
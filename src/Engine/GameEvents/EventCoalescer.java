@@ -0,0 +1,74 @@
+package Engine.GameEvents;
+
+import java.util.ArrayList;
+
+import Engine.Army;
+import Engine.GameInstance;
+import Engine.GameEvents.MapChangeEvent.EnvironmentAssignment;
+
+/**
+ * Fast path for headless event execution (FightClub, GameReplay): merges runs of redundant events
+ * so they're performed once, and drops events that nobody would notice.
+ * <p>Only events that are next to each other in the queue are merged. Listener responses are always appended
+ * to the end of the queue, so nothing can run between two adjacent events anyway. On top of that, events are only
+ * merged or dropped when no listener subscribes to their hook, so the only difference is how many times we do the work.
+ * <ul>
+ * <li>Back-to-back vision resets become one.
+ * <li>Back-to-back map changes (e.g. per-tile weather) become one bulk assignment.
+ * <li>Back-to-back fund changes for the same army become one.
+ * <li>Events that don't change anything (see GameEvent.changesGameState()) are skipped.
+ * </ul>
+ * Animations need no special handling here: headless runners never ask events for them.
+ */
+public class EventCoalescer
+{
+  /**
+   * Pulls any following events that can be merged into this one off the front of the queue.
+   * @return The event to perform in their place, or null if there's nothing worth performing.
+   */
+  public static GameEvent coalesce(GameEvent event, GameEventQueue queue, GameInstance game)
+  {
+    if( null == event || hasSubscribers(event, game) )
+      return event;
+
+    if( !event.changesGameState() )
+      return null;
+
+    if( event instanceof ResetVisionEvent )
+    {
+      // Nobody can see the state in between, so one reset is as good as several.
+      while (queue.peek() instanceof ResetVisionEvent)
+        queue.poll();
+      return event;
+    }
+
+    if( event instanceof MapChangeEvent && queue.peek() instanceof MapChangeEvent )
+    {
+      ArrayList<EnvironmentAssignment> changes = new ArrayList<>(((MapChangeEvent) event).getChanges());
+      while (queue.peek() instanceof MapChangeEvent)
+        changes.addAll(((MapChangeEvent) queue.poll()).getChanges()); // Order is kept, so later assignments still win.
+      return new MapChangeEvent(changes);
+    }
+
+    if( event instanceof ModifyFundsEvent )
+    {
+      ModifyFundsEvent funds = (ModifyFundsEvent) event;
+      Army beneficiary = funds.getBeneficiary();
+      int total = funds.getValue();
+      boolean merged = false;
+      while (queue.peek() instanceof ModifyFundsEvent && ((ModifyFundsEvent) queue.peek()).getBeneficiary() == beneficiary)
+      {
+        total += ((ModifyFundsEvent) queue.poll()).getValue();
+        merged = true;
+      }
+      return merged ? new ModifyFundsEvent(beneficiary, total) : event;
+    }
+
+    return event;
+  }
+
+  private static boolean hasSubscribers(GameEvent event, GameInstance game)
+  {
+    return game.eventListeners.getSubscribers(event.getListenerHook()).length > 0;
+  }
+}
@@ -1,5 +1,6 @@
 package Engine.GameEvents;
 
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -23,12 +24,31 @@ public interface GameEvent
    */
   public GameEventQueue sendToListener(GameEventListener listener);
 
+  /**
+   * Tells publishEvent which receive hook sendToListener() will call, so listeners that
+   * don't care about it can be skipped. Events that don't declare a hook go to every listener.
+   */
+  public default EventHook getListenerHook() { return EventHook.ALL; }
+
   /**
    * Hook for subclasses to implement the specific effects of each action type.
    * @param map
    */
   public void performEvent( MapMaster gameMap );
 
+  /**
+   * Called just before performEvent() while the map is keeping an UndoLog.
+   * Save everything performEvent() is about to change, using the log's helpers or a custom UndoLog.Undo.
+   * @return False if this event doesn't know how to undo itself; the log will then refuse to roll back past it.
+   */
+  public default boolean recordUndo( MapMaster gameMap, UndoLog log ) { return false; }
+
+  /**
+   * Whether performEvent() actually changes anything. Headless runners
+   * may skip events that don't, if nobody is listening for them.
+   */
+  public default boolean changesGameState() { return true; }
+
   /**
    * Returns where the action begins for this event. This is primarily used by
    * the animator to decide whether to animate this event when fog of war is enabled.
@@ -3,6 +3,7 @@ package Engine.GameEvents;
 import java.util.ArrayList;
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Set;
 import CommandingOfficers.Commander;
 import CommandingOfficers.CommanderAbility;
 import Engine.Army;
@@ -33,14 +34,23 @@ public interface GameEventListener extends Serializable
   public static GameEventQueue publishEvent(GameEvent event, GameInstance gi)
   {
     GameEventQueue events = new GameEventQueue();
-    for( GameEventListener gel : gi.eventListeners )
+    publishEvent(event, gi, events);
+    return events;
+  }
+
+  /**
+   * Pass event along to every listener subscribed to its hook, appending any resulting events to eventsOut.
+   * Lets the caller reuse one queue rather than allocating a new one per publish.
+   */
+  public static void publishEvent(GameEvent event, GameInstance gi, GameEventQueue eventsOut)
+  {
+    for( GameEventListener gel : gi.eventListeners.getSubscribers(event.getListenerHook()) )
     {
       // The event will call the appropriate receive method in the listener.
       GameEventQueue newEvents = event.sendToListener(gel);
       if( null != newEvents )
-        events.addAll(newEvents);
+        eventsOut.addAll(newEvents);
     }
-    return events;
   }
 
   /** Allows GameInstance to make informed decisions on whether to try saving this listener */
@@ -53,6 +63,16 @@ public interface GameEventListener extends Serializable
     listener.registerForEvents(gi);
   }
 
+  /**
+   * Declares which receive hooks this listener wants to be called for.
+   * By default, this is every hook that the listener's class overrides; override to declare them explicitly.
+   * This is checked once at registration time, so it should not change while registered.
+   */
+  default public Set<EventHook> getEventHooks()
+  {
+    return GameEventSubscriptions.findOverriddenHooks(getClass());
+  }
+
   default public void registerForEvents(GameInstance gi)
   {
     gi.eventListeners.add(this);
@@ -72,7 +92,7 @@ public interface GameEventListener extends Serializable
 
   // The functions below should be overridden by subclasses for event types they care about.
   // As a rule, we should avoid passing the actual event to the receive hooks when possible.
-  // If you update this list, update the one in the interface below as well.
+  // If you update this list, update the one in the interface below and the EventHook enum as well.
   default public GameEventQueue receiveBattleEvent(BattleSummary summary){ return null; };
   default public GameEventQueue receiveDemolitionEvent(Unit actor, XYCoord tile){ return null; };
   default public GameEventQueue receiveCreateUnitEvent(Unit unit){ return null; };
@@ -99,6 +119,47 @@ public interface GameEventListener extends Serializable
   default public GameEventQueue receiveModifyCommanderEnergyEvent(Commander beneficiary, int deltaActualFunds){ return null; };
   default public GameEventQueue receiveDeployCOUEvent(Unit COU, int cost){ return null; };
 
+  /**
+   * Names the receive function that a GameEvent will call, so publishEvent() only needs to visit listeners that override it.
+   * ALL is for events that don't declare their hook; NONE is for events that don't notify anyone.
+   */
+  public static enum EventHook
+  {
+    ALL(null), NONE(null),
+    BATTLE("receiveBattleEvent"),
+    DEMOLITION("receiveDemolitionEvent"),
+    CREATE_UNIT("receiveCreateUnitEvent"),
+    CAPTURE("receiveCaptureEvent"),
+    COMMANDER_DEFEAT("receiveCommanderDefeatEvent"),
+    LOAD("receiveLoadEvent"),
+    MOVE("receiveMoveEvent"),
+    TELEPORT("receiveTeleportEvent"),
+    TURN_INIT("receiveTurnInitEvent"),
+    TURN_END("receiveTurnEndEvent"),
+    UNIT_JOIN("receiveUnitJoinEvent"),
+    RESUPPLY("receiveResupplyEvent"),
+    UNIT_DIE("receiveUnitDieEvent"),
+    UNLOAD("receiveUnloadEvent"),
+    UNIT_TRANSFORM("receiveUnitTransformEvent"),
+    TERRAIN_CHANGE("receiveTerrainChangeEvent"),
+    WEATHER_CHANGE("receiveWeatherChangeEvent"),
+    MAP_CHANGE("receiveMapChangeEvent"),
+    MASS_DAMAGE("receiveMassDamageEvent"),
+    HEAL("receiveHealEvent"),
+    MODIFY_FUNDS("receiveModifyFundsEvent"),
+    COMMANDER_ABILITY("receiveCommanderAbilityEvent"),
+    COMMANDER_ABILITY_REVERT("receiveCommanderAbilityRevertEvent"),
+    MODIFY_COMMANDER_ENERGY("receiveModifyCommanderEnergyEvent"),
+    DEPLOY_COU("receiveDeployCOUEvent");
+
+    /** The name of the receive function in GameEventListener, or null for the catch-all hooks. */
+    public final String methodName;
+    EventHook(String methodName)
+    {
+      this.methodName = methodName;
+    }
+  }
+
   /**
    * Want to be lazy, but too lazy to implement laziness? This class is for you.
    */
@@ -0,0 +1,131 @@
+package Engine.GameEvents;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Engine.GameEvents.GameEventListener.EventHook;
+
+/**
+ * Holds a GameInstance's event listeners, along with a list of subscribers for each EventHook.
+ * <p>Listeners are kept in registration order. The per-hook lists are rebuilt whenever a listener
+ * registers or unregisters (which is rare), so that publishing an event is just a walk over an array.
+ * Those arrays are never modified in place, so listeners may (un)register while an event is being published.
+ */
+public class GameEventSubscriptions implements Iterable<GameEventListener>
+{
+  private static final GameEventListener[] NO_LISTENERS = new GameEventListener[0];
+  private static final Map<Class<?>, Set<EventHook>> overriddenHookCache = new ConcurrentHashMap<>();
+
+  private final LinkedHashSet<GameEventListener> listeners = new LinkedHashSet<>();
+  private GameEventListener[][] subscribers;
+
+  public GameEventSubscriptions()
+  {
+    rebuildSubscriberLists();
+  }
+
+  /** @return true if the listener was not already registered. */
+  public boolean add(GameEventListener listener)
+  {
+    boolean added = listeners.add(listener);
+    if( added )
+      rebuildSubscriberLists();
+    return added;
+  }
+
+  /** @return true if the listener was registered. */
+  public boolean remove(GameEventListener listener)
+  {
+    boolean removed = listeners.remove(listener);
+    if( removed )
+      rebuildSubscriberLists();
+    return removed;
+  }
+
+  public void addAll(Iterable<? extends GameEventListener> toAdd)
+  {
+    boolean changed = false;
+    for( GameEventListener gel : toAdd )
+      changed |= listeners.add(gel);
+    if( changed )
+      rebuildSubscriberLists();
+  }
+
+  public boolean contains(GameEventListener listener)
+  {
+    return listeners.contains(listener);
+  }
+
+  public int size()
+  {
+    return listeners.size();
+  }
+
+  /** Returns the listeners that want to hear about events using this hook. Do not modify the returned array. */
+  public GameEventListener[] getSubscribers(EventHook hook)
+  {
+    return subscribers[hook.ordinal()];
+  }
+
+  @Override
+  public Iterator<GameEventListener> iterator()
+  {
+    return Collections.unmodifiableSet(listeners).iterator();
+  }
+
+  private void rebuildSubscriberLists()
+  {
+    EventHook[] hooks = EventHook.values();
+    ArrayList<ArrayList<GameEventListener>> lists = new ArrayList<>(hooks.length);
+    for( int i = 0; i < hooks.length; ++i )
+      lists.add(new ArrayList<GameEventListener>());
+
+    for( GameEventListener gel : listeners )
+    {
+      lists.get(EventHook.ALL.ordinal()).add(gel);
+      for( EventHook hook : gel.getEventHooks() )
+        if( hook != EventHook.ALL && hook != EventHook.NONE )
+          lists.get(hook.ordinal()).add(gel);
+    }
+
+    GameEventListener[][] newSubscribers = new GameEventListener[hooks.length][];
+    for( int i = 0; i < hooks.length; ++i )
+    {
+      ArrayList<GameEventListener> list = lists.get(i);
+      newSubscribers[i] = list.isEmpty() ? NO_LISTENERS : list.toArray(NO_LISTENERS);
+    }
+    subscribers = newSubscribers;
+  }
+
+  /**
+   * Finds all receive hooks that the given listener type overrides (or inherits from something other than
+   * GameEventListener itself). The result is cached per class.
+   */
+  public static Set<EventHook> findOverriddenHooks(Class<? extends GameEventListener> listenerType)
+  {
+    Set<EventHook> hooks = overriddenHookCache.get(listenerType);
+    if( null == hooks )
+    {
+      EnumSet<EventHook> found = EnumSet.noneOf(EventHook.class);
+      // getMethods() may include the GameEventListener default alongside the override, so check every match.
+      for( Method method : listenerType.getMethods() )
+      {
+        if( method.getDeclaringClass() == GameEventListener.class )
+          continue;
+        for( EventHook hook : EventHook.values() )
+          if( method.getName().equals(hook.methodName) )
+            found.add(hook);
+      }
+      hooks = Collections.unmodifiableSet(found);
+      overriddenHookCache.put(listenerType, hooks);
+    }
+    return hooks;
+  }
+}
@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.Environment.Weathers;
 import Terrain.MapLocation;
@@ -42,6 +43,12 @@ public class GlobalWeatherEvent implements GameEvent
     return listener.receiveWeatherChangeEvent(weather, duration);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.WEATHER_CHANGE;
+  }
+
   @Override
   public void performEvent(MapMaster map)
   {
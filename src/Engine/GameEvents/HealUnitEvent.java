@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -39,6 +40,20 @@ public class HealUnitEvent implements GameEvent
     return listener.receiveHealEvent(payer, unit, repairPowerHealth, healAmount);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.HEAL;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnit(unit);
+    log.saveFunds(payer);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -2,6 +2,7 @@ package Engine.GameEvents;
 
 import java.util.ArrayList;
 
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.Environment;
 import Terrain.MapLocation;
@@ -31,6 +32,11 @@ public class MapChangeEvent implements GameEvent
     changes = envChanges;
   }
 
+  public ArrayList<EnvironmentAssignment> getChanges()
+  {
+    return changes;
+  }
+
   @Override
   public GameAnimation getEventAnimation(MapView mapView)
   {
@@ -43,6 +49,20 @@ public class MapChangeEvent implements GameEvent
     return listener.receiveTerrainChangeEvent(changes);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.TERRAIN_CHANGE;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    for( EnvironmentAssignment ea : changes )
+      log.saveLocation(gameMap, ea.where);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -52,7 +72,7 @@ public class MapChangeEvent implements GameEvent
       if( null != loc )
       {
         if( loc.getEnvironment().terrainType != ea.environment.terrainType )
-          loc.durability = 99;
+          loc.setDurability(99);
         loc.setEnvironment(ea.environment);
         if( ea.duration > 0 )
           loc.setForecast(ea.environment.weatherType, (gameMap.game.armies.length * ea.duration) - 1);
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import CommandingOfficers.Commander;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -57,6 +58,26 @@ public class MassDamageEvent implements GameEvent
     return listener.receiveMassDamageEvent(attacker, victims);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.MASS_DAMAGE;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    for( Unit victim : victims.keySet() )
+    {
+      log.saveUnit(victim);
+      // Damage charges the victims' COs' abilities (see Army).
+      log.saveCommander(victim.CO);
+    }
+    if( null != attacker )
+      log.saveCommander(attacker);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
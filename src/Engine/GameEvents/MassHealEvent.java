@@ -5,6 +5,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -55,6 +56,21 @@ public class MassHealEvent implements GameEvent
     return events;
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.HEAL;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    for( Unit patient : healResult.keySet() )
+      log.saveUnit(patient);
+    log.saveFunds(payer);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
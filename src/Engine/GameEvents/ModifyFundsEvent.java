@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -17,6 +18,16 @@ public class ModifyFundsEvent implements GameEvent
     this.value = value;
   }
 
+  public Army getBeneficiary()
+  {
+    return beneficiary;
+  }
+
+  public int getValue()
+  {
+    return value;
+  }
+
   @Override
   public GameAnimation getEventAnimation(MapView mapView)
   {
@@ -30,6 +41,19 @@ public class ModifyFundsEvent implements GameEvent
     return listener.receiveModifyFundsEvent(beneficiary, value);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.MODIFY_FUNDS;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveFunds(beneficiary);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
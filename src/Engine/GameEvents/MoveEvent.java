@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GamePath;
 import Engine.XYCoord;
 import Terrain.MapMaster;
@@ -37,6 +38,21 @@ public class MoveEvent implements GameEvent
     return listener.receiveMoveEvent(unit, unitPath);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.MOVE;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnitAndLocation(gameMap, unit);
+    if( unitPath.getPathLength() > 0 )
+      log.saveLocation(gameMap, unitPath.getEnd());
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -30,6 +31,18 @@ public class ResetVisionEvent implements GameEvent
     return null;
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.NONE;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster map, UndoLog log)
+  {
+    return true; // Rollback recomputes fog anyway.
+  }
+
   @Override
   public void performEvent(MapMaster map)
   {
@@ -1,5 +1,6 @@
 package Engine.GameEvents;
 
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -28,6 +29,19 @@ public class ResupplyEvent implements GameEvent
     return listener.receiveResupplyEvent( this );
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.RESUPPLY;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnit(target);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
@@ -2,6 +2,7 @@ package Engine.GameEvents;
 
 import CommandingOfficers.Commander;
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -81,6 +82,12 @@ public class SwapCOEvent extends TurnEndEvent
     return null;
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.NONE;
+  }
+
   @Override
   public boolean shouldEndTurn()
   {
@@ -1,5 +1,6 @@
 package Engine.GameEvents;
 
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.GameMap;
 import Terrain.MapMaster;
@@ -67,6 +68,22 @@ public class TeleportEvent implements GameEvent
     return listener.receiveTeleportEvent(unit, unitStart, unitDestination);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.TELEPORT;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnitAndLocation(gameMap, unit);
+    // The destination's resident, if any, gets evicted.
+    log.saveUnitAndLocation(gameMap, gameMap.getResident(unitDestination));
+    log.saveLocation(gameMap, unitDestination);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
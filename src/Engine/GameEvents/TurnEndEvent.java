@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -33,11 +34,29 @@ public class TurnEndEvent implements GameEvent
     return listener.receiveTurnEndEvent(army, turn);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.TURN_END;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster map, UndoLog log)
+  {
+    return true; // Nothing to undo.
+  }
+
   @Override
   public void performEvent(MapMaster map)
   {
   }
 
+  @Override
+  public boolean changesGameState()
+  {
+    return false; // Listeners handle all the end-of-turn business.
+  }
+
   @Override
   public XYCoord getStartPoint()
   {
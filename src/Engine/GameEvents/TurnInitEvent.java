@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -53,6 +54,20 @@ public class TurnInitEvent implements GameEvent
     return listener.receiveTurnInitEvent(map, army, turn);
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.TURN_INIT;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster map, UndoLog log)
+  {
+    for( Unit u : army.getUnits() )
+      log.saveUnit(u);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster map)
   {
@@ -0,0 +1,178 @@
+package Engine.GameEvents;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import CommandingOfficers.Commander;
+import CommandingOfficers.CommanderAbility;
+import Engine.Army;
+import Engine.XYCoord;
+import Terrain.Environment;
+import Terrain.Environment.Weathers;
+import Terrain.MapLocation;
+import Terrain.MapMaster;
+import Units.Unit;
+
+/**
+ * A stack of "how to put it back" records, so a search can apply an action's events to the real map
+ * and then roll them back, instead of copying the whole game first.
+ * <p>
+ * While a MapMaster has an UndoLog, MapMaster.performEvent() asks each event to save whatever it's
+ * about to change (see GameEvent.recordUndo()) before performing it. rollBack() then restores
+ * everything saved since a mark(), newest first.
+ * <p>
+ * Since saves happen before the event, they also cover anything listeners change in response to it,
+ * as long as the event saved that thing (e.g. battles save both armies' COs, to cover ability charge).
+ * Listener-internal state (e.g. StateTrackers' counters) isn't covered, nor is the turn bookkeeping in
+ * GameInstance.turn(), nor random numbers drawn while building events; searches should mark and roll back
+ * within a turn, and fork() the game if they need the RNG to line up.
+ * Fog is recomputed from scratch on rollback rather than restored.
+ * <p>
+ * Events that can't describe their own inverse (e.g. CO abilities, which can do nearly anything)
+ * are still performed, but poison the log: rolling back across one returns false.
+ */
+public class UndoLog
+{
+  /** Reverses one change. */
+  public interface Undo
+  {
+    void undo(MapMaster map);
+  }
+
+  private final ArrayList<Undo> entries = new ArrayList<>();
+  /** Index of the oldest entry made after an irreversible event, or -1 if there's been none. */
+  private int irreversibleSince = -1;
+
+  /** @return A position that rollBack() can return to. */
+  public int mark()
+  {
+    return entries.size();
+  }
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+  public void push(Undo undo)
+  {
+    entries.add(undo);
+  }
+
+  /** Notes that an event we can't undo was performed here. */
+  public void markIrreversible()
+  {
+    if( irreversibleSince < 0 )
+      irreversibleSince = entries.size();
+  }
+
+  /**
+   * Undoes everything since the mark, newest first, and refreshes every army's fog.
+   * @return False if an irreversible event happened since the mark, in which case the map may not be fully restored.
+   */
+  public boolean rollBack(MapMaster map, int mark)
+  {
+    for( int i = entries.size() - 1; i >= mark; --i )
+      entries.remove(i).undo(map);
+
+    boolean clean = irreversibleSince < 0 || irreversibleSince < mark;
+    if( irreversibleSince >= mark )
+      irreversibleSince = -1;
+
+    if( null != map.game )
+      for( Army army : map.game.armies )
+        army.myView.resetFog();
+    return clean;
+  }
+
+  /** Forgets everything, without undoing it. */
+  public void clear()
+  {
+    entries.clear();
+    irreversibleSince = -1;
+  }
+
+  ///////////////////////////////////////////////////////////////////
+  // Helpers for the common kinds of change.
+
+  public void saveUnit(Unit unit)
+  {
+    if( null == unit )
+      return;
+    final Unit.Snapshot snap = unit.snapshot();
+    push(map -> unit.restore(snap));
+  }
+
+  /** Saves the location's terrain, owner, resident, durability and forecast (but not the resident's own state). */
+  public void saveLocation(MapMaster map, XYCoord where)
+  {
+    final MapLocation loc = map.getLocation(where);
+    if( null == loc )
+      return;
+    final Environment environment = loc.getEnvironment();
+    final Commander owner = loc.getOwner();
+    final Unit resident = loc.getResident();
+    final int durability = loc.getDurability();
+    final ArrayDeque<Weathers> forecast = loc.copyForecast();
+    push(m ->
+    {
+      loc.setEnvironment(environment);
+      m.setOwner(owner, where); // Through the map, to keep COs' property lists in sync.
+      loc.setResident(resident);
+      loc.setDurability(durability);
+      loc.restoreForecast(forecast);
+    });
+  }
+
+  /** Saves both the unit and the tile it's on. */
+  public void saveUnitAndLocation(MapMaster map, Unit unit)
+  {
+    if( null == unit )
+      return;
+    saveUnit(unit);
+    if( map.isLocationValid(unit.x, unit.y) )
+      saveLocation(map, new XYCoord(unit.x, unit.y));
+  }
+
+  public void saveFunds(Army army)
+  {
+    if( null == army )
+      return;
+    final int money = army.money;
+    push(map -> army.money = money);
+  }
+
+  /** Saves the army's funds and defeat status, plus all of its COs. */
+  public void saveArmy(Army army)
+  {
+    if( null == army )
+      return;
+    final int money = army.money;
+    final boolean isDefeated = army.isDefeated;
+    push(map ->
+    {
+      army.money = money;
+      army.isDefeated = isDefeated;
+    });
+    for( Commander co : army.cos )
+      saveCommander(co);
+  }
+
+  /** Saves the CO's ability energy, active ability, and unit list. */
+  public void saveCommander(Commander co)
+  {
+    if( null == co )
+      return;
+    final int power = co.getAbilityPower();
+    final CommanderAbility active = co.myActiveAbility;
+    final Unit[] units = co.units.toArray(new Unit[0]);
+    push(map ->
+    {
+      co.modifyAbilityPower(power - co.getAbilityPower());
+      co.myActiveAbility = active;
+      co.units.clear();
+      for( Unit u : units )
+        co.units.add(u);
+    });
+  }
+}
@@ -1,6 +1,7 @@
 package Engine.GameEvents;
 
 import Engine.Army;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.XYCoord;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -36,6 +37,20 @@ public class UnitDieEvent implements GameEvent
     return listener.receiveUnitDieEvent( unit, where, healthBeforeDeath );
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.UNIT_DIE;
+  }
+
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnitAndLocation(gameMap, unit);
+    log.saveCommander(unit.CO);
+    return true;
+  }
+
   @Override
   public void performEvent(MapMaster gameMap)
   {
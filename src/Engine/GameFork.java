@@ -0,0 +1,431 @@
+package Engine;
+
+import java.awt.Color;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import CommandingOfficers.CommanderInfo;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventSubscriptions;
+import Terrain.Environment;
+import Terrain.MapInfo;
+import Terrain.TerrainType;
+import Units.UnitModel;
+import Units.UnitModelScheme;
+
+/**
+ * Makes independent copies of a GameInstance, for AIs that want to try things out before committing to them.
+ * <p>
+ * The copy walks the game's object graph directly, field by field, the way a save and load would see it but without
+ * writing anything out. The parts of the game that don't change during play are shared between the original and
+ * the fork rather than copied: UnitModels (and everything they hold, e.g. weapons and move types), Environment and
+ * TerrainType flyweights, unit model schemes, CommanderInfos, MapInfos, XYCoords, strings, boxed numbers and enums.
+ * Everything else - the map grid, armies, commanders and their state, units, state trackers, event listeners and
+ * RNG position - is copied, so nothing done to a fork affects the original.
+ * <p>
+ * As with a load, transient fields start out empty, and only listeners that would be saved are carried over.
+ * Forks don't get AI controllers or a journal; whoever made the fork is expected to drive it.
+ * <p>
+ * How to copy each class is worked out once, and reused by every fork on every thread.
+ */
+public class GameFork
+{
+  private static final Map<Class<?>, ClassPlan> plans = new ConcurrentHashMap<>();
+
+  /** @return A deep copy of the game, sharing only its immutable parts with the original; null if it can't be copied. */
+  public static GameInstance fork(GameInstance game)
+  {
+    try
+    {
+      Copier copier = new Copier();
+      GameInstance copy = (GameInstance) copier.copy(game);
+      ArrayList<GameEventListener> listeners = new ArrayList<>();
+      for( GameEventListener listener : game.eventListeners )
+        if( listener.shouldSerialize() )
+          listeners.add((GameEventListener) copier.copy(listener));
+      copier.finish();
+      copy.eventListeners = new GameEventSubscriptions();
+      copy.eventListeners.addAll(listeners);
+      return copy;
+    }
+    catch (ReflectiveOperationException | RuntimeException ex)
+    {
+      System.out.println("WARNING! Failed to fork game: " + ex.toString());
+      return null;
+    }
+  }
+
+  /** Copies one object graph, keeping track of what it's already copied so shared references stay shared. */
+  private static class Copier
+  {
+    final IdentityHashMap<Object, Object> copies = new IdentityHashMap<>();
+    // Hashed collections are filled once every object is complete, since their keys' hash codes may depend on fields
+    // that aren't copied yet while we're partway around a cycle.
+    final ArrayList<Runnable> fills = new ArrayList<>();
+
+    Object copy(Object original) throws ReflectiveOperationException
+    {
+      if( null == original )
+        return null;
+      Object copy = copies.get(original);
+      if( null != copy )
+        return copy;
+      ClassPlan plan = plans.get(original.getClass());
+      if( null == plan )
+      {
+        plan = ClassPlan.make(original.getClass());
+        plans.put(original.getClass(), plan);
+      }
+      return plan.copy(this, original);
+    }
+
+    void finish()
+    {
+      for( Runnable fill : fills )
+        fill.run();
+      fills.clear();
+    }
+  }
+
+  /** How to copy instances of one class. */
+  private static abstract class ClassPlan
+  {
+    abstract Object copy(Copier copier, Object original) throws ReflectiveOperationException;
+
+    static ClassPlan make(Class<?> type) throws ReflectiveOperationException
+    {
+      if( isShared(type) )
+        return SHARED;
+      if( type.isArray() )
+        return type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+      if( BitSet.class == type )
+        return BITSET;
+      if( EnumSet.class.isAssignableFrom(type) )
+        return ENUM_SET;
+      if( EnumMap.class == type )
+        return ENUM_MAP;
+      if( isSupportedJdkCollection(type, LIST_TYPES) )
+        return new ListPlan(type);
+      if( isSupportedJdkCollection(type, HASHED_TYPES) )
+        return new HashedPlan(type);
+      if( isJdkType(type) || type.isSynthetic() || type.getName().contains("$$Lambda") )
+        throw new UnsupportedOperationException("Don't know how to fork a " + type.getName());
+      Method readResolve = findReadResolve(type);
+      if( null != readResolve )
+        return new ResolvedPlan(readResolve);
+      return new ObjectPlan(type);
+    }
+  }
+
+  // Lists keep their order and don't hash their contents, so they can be filled right away.
+  private static final List<Class<?>> LIST_TYPES = Arrays.asList(ArrayList.class, LinkedList.class, ArrayDeque.class);
+  private static final List<Class<?>> HASHED_TYPES = Arrays.asList(HashMap.class, LinkedHashMap.class, TreeMap.class,
+      IdentityHashMap.class, HashSet.class, LinkedHashSet.class, TreeSet.class);
+
+  private static boolean isShared(Class<?> type)
+  {
+    return UnitModel.class.isAssignableFrom(type) || Environment.class == type || TerrainType.class == type
+        || UnitModelScheme.class.isAssignableFrom(type) || CommanderInfo.class.isAssignableFrom(type)
+        || MapInfo.class.isAssignableFrom(type) || XYCoord.class == type
+        || Enum.class.isAssignableFrom(type) || String.class == type || Boolean.class == type || Character.class == type
+        || Integer.class == type || Long.class == type || Short.class == type || Byte.class == type
+        || Double.class == type || Float.class == type || Class.class == type || Color.class == type
+        || Collections.emptyList().getClass() == type || Collections.emptySet().getClass() == type
+        || Collections.emptyMap().getClass() == type;
+  }
+
+  private static boolean isJdkType(Class<?> type)
+  {
+    String name = type.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+  }
+
+  /** @return True if the type is one of the given collections, or our own subclass of one. */
+  private static boolean isSupportedJdkCollection(Class<?> type, List<Class<?>> supported)
+  {
+    Class<?> jdkType = type;
+    while( !isJdkType(jdkType) )
+      jdkType = jdkType.getSuperclass();
+    return supported.contains(jdkType);
+  }
+
+  /** @return The readResolve() a load would call on this type, if it has one. */
+  private static Method findReadResolve(Class<?> type)
+  {
+    for( Class<?> c = type; null != c && !isJdkType(c); c = c.getSuperclass() )
+    {
+      try
+      {
+        Method m = c.getDeclaredMethod("readResolve");
+        if( c != type && Modifier.isPrivate(m.getModifiers()) )
+          continue; // Private ones only count for their own class.
+        m.setAccessible(true);
+        return m;
+      }
+      catch (NoSuchMethodException ex)
+      {
+        // Keep looking up the hierarchy.
+      }
+    }
+    return null;
+  }
+
+  private static final ClassPlan SHARED = new ClassPlan()
+  {
+    @Override
+    Object copy(Copier copier, Object original)
+    {
+      return original;
+    }
+  };
+
+  private static final ClassPlan PRIMITIVE_ARRAY = new ClassPlan()
+  {
+    @Override
+    Object copy(Copier copier, Object original)
+    {
+      int length = Array.getLength(original);
+      Object copy = Array.newInstance(original.getClass().getComponentType(), length);
+      System.arraycopy(original, 0, copy, 0, length);
+      copier.copies.put(original, copy);
+      return copy;
+    }
+  };
+
+  private static final ClassPlan OBJECT_ARRAY = new ClassPlan()
+  {
+    @Override
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      Object[] source = (Object[]) original;
+      Object[] copy = source.clone();
+      copier.copies.put(original, copy);
+      for( int i = 0; i < copy.length; ++i )
+        copy[i] = copier.copy(source[i]);
+      return copy;
+    }
+  };
+
+  private static final ClassPlan BITSET = new ClassPlan()
+  {
+    @Override
+    Object copy(Copier copier, Object original)
+    {
+      Object copy = ((BitSet) original).clone();
+      copier.copies.put(original, copy);
+      return copy;
+    }
+  };
+
+  private static final ClassPlan ENUM_SET = new ClassPlan()
+  {
+    @Override
+    Object copy(Copier copier, Object original)
+    {
+      @SuppressWarnings({ "rawtypes", "unchecked" })
+      Object copy = ((EnumSet) original).clone();
+      copier.copies.put(original, copy);
+      return copy;
+    }
+  };
+
+  private static final ClassPlan ENUM_MAP = new ClassPlan()
+  {
+    @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      EnumMap copy = ((EnumMap) original).clone();
+      copier.copies.put(original, copy);
+      for( Object entry : ((EnumMap) original).entrySet() )
+      {
+        Map.Entry e = (Map.Entry) entry;
+        copy.put((Enum) e.getKey(), copier.copy(e.getValue()));
+      }
+      return copy;
+    }
+  };
+
+  /** Copies the fields declared by our own classes, between the object's class and the JDK one it builds on. */
+  private static class ObjectPlan extends ClassPlan
+  {
+    // Instantiates without running any constructor, as a load does.
+    private static final Object reflectionFactory;
+    private static final Method newConstructorForSerialization;
+    static
+    {
+      try
+      {
+        Class<?> factoryType = Class.forName("sun.reflect.ReflectionFactory");
+        reflectionFactory = factoryType.getMethod("getReflectionFactory").invoke(null);
+        newConstructorForSerialization = factoryType.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+      }
+      catch (ReflectiveOperationException ex)
+      {
+        throw new ExceptionInInitializerError(ex);
+      }
+    }
+
+    private final Constructor<?> constructor;
+    private final Field[] primitives;
+    private final Field[] references;
+
+    ObjectPlan(Class<?> type) throws ReflectiveOperationException
+    {
+      this(type, (Constructor<?>) newConstructorForSerialization.invoke(reflectionFactory, type, Object.class.getDeclaredConstructor()));
+    }
+
+    ObjectPlan(Class<?> type, Constructor<?> constructor)
+    {
+      this.constructor = constructor;
+      constructor.setAccessible(true);
+      ArrayList<Field> prims = new ArrayList<>();
+      ArrayList<Field> refs = new ArrayList<>();
+      for( Class<?> c = type; null != c && !isJdkType(c); c = c.getSuperclass() )
+        for( Field f : c.getDeclaredFields() )
+        {
+          int mods = f.getModifiers();
+          if( Modifier.isStatic(mods) || Modifier.isTransient(mods) )
+            continue; // Transient fields start out empty, as they would after a load.
+          f.setAccessible(true);
+          (f.getType().isPrimitive() ? prims : refs).add(f);
+        }
+      primitives = prims.toArray(new Field[0]);
+      references = refs.toArray(new Field[0]);
+    }
+
+    @Override
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      Object copy = constructor.newInstance();
+      copier.copies.put(original, copy);
+      copyFields(copier, original, copy);
+      return copy;
+    }
+
+    void copyFields(Copier copier, Object original, Object copy) throws ReflectiveOperationException
+    {
+      for( Field f : primitives )
+      {
+        Class<?> t = f.getType();
+        if( int.class == t )
+          f.setInt(copy, f.getInt(original));
+        else if( boolean.class == t )
+          f.setBoolean(copy, f.getBoolean(original));
+        else if( long.class == t )
+          f.setLong(copy, f.getLong(original));
+        else if( double.class == t )
+          f.setDouble(copy, f.getDouble(original));
+        else
+          f.set(copy, f.get(original)); // Rare enough that boxing doesn't matter.
+      }
+      for( Field f : references )
+        f.set(copy, copier.copy(f.get(original)));
+    }
+  }
+
+  /** A JDK list or deque, or our own subclass of one. */
+  private static class ListPlan extends ObjectPlan
+  {
+    ListPlan(Class<?> type) throws ReflectiveOperationException
+    {
+      super(type, type.getDeclaredConstructor());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      Collection<Object> copy = (Collection<Object>) super.copy(copier, original);
+      for( Object item : (Collection<?>) original )
+        copy.add(copier.copy(item));
+      return copy;
+    }
+  }
+
+  /** A JDK hashed or sorted set or map, or our own subclass of one. */
+  private static class HashedPlan extends ObjectPlan
+  {
+    private final boolean sorted;
+
+    HashedPlan(Class<?> type) throws ReflectiveOperationException
+    {
+      super(type, type.getDeclaredConstructor());
+      sorted = TreeMap.class.isAssignableFrom(type) || TreeSet.class.isAssignableFrom(type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      if( sorted && null != (original instanceof TreeMap ? ((TreeMap<?, ?>) original).comparator() : ((TreeSet<?>) original).comparator()) )
+        throw new UnsupportedOperationException("Don't know how to fork a sorted collection with its own ordering");
+      Object copy = super.copy(copier, original);
+      if( original instanceof Map )
+      {
+        Map<?, ?> source = (Map<?, ?>) original;
+        ArrayList<Object> entries = new ArrayList<>(source.size() * 2);
+        for( Map.Entry<?, ?> e : source.entrySet() )
+        {
+          entries.add(copier.copy(e.getKey()));
+          entries.add(copier.copy(e.getValue()));
+        }
+        Map<Object, Object> target = (Map<Object, Object>) copy;
+        copier.fills.add(() -> {
+          for( int i = 0; i < entries.size(); i += 2 )
+            target.put(entries.get(i), entries.get(i + 1));
+        });
+      }
+      else
+      {
+        ArrayList<Object> items = new ArrayList<>(((Collection<?>) original).size());
+        for( Object item : (Collection<?>) original )
+          items.add(copier.copy(item));
+        Collection<Object> target = (Collection<Object>) copy;
+        copier.fills.add(() -> target.addAll(items));
+      }
+      return copy;
+    }
+  }
+
+  /** A type that swaps itself for a canonical instance on load; the fork gets that same instance. */
+  private static class ResolvedPlan extends ClassPlan
+  {
+    private final Method readResolve;
+
+    ResolvedPlan(Method readResolve)
+    {
+      this.readResolve = readResolve;
+    }
+
+    @Override
+    Object copy(Copier copier, Object original) throws ReflectiveOperationException
+    {
+      Object copy = readResolve.invoke(original);
+      copier.copies.put(original, copy);
+      return copy;
+    }
+  }
+}
@@ -14,12 +14,12 @@ import java.util.SplittableRandom;
 import CommandingOfficers.Commander;
 import Engine.GameEvents.GameEventListener;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.GameEventSubscriptions;
 import Engine.GameEvents.MapChangeEvent;
 import Engine.GameEvents.ModifyFundsEvent;
 import Engine.GameEvents.ResetVisionEvent;
 import Engine.GameEvents.TurnInitEvent;
 import Engine.StateTrackers.StateTracker;
-import Terrain.Environment;
 import Terrain.Environment.Weathers;
 import Units.Unit;
 import Terrain.MapLocation;
@@ -46,10 +46,13 @@ public class GameInstance implements Serializable
   public final GameScenario.GameRules rules;
   boolean isSecurityEnabled;
 
-  private transient SplittableRandom rng;
+  private GameRandom rng; // Saved whole, so loading doesn't have to replay every number drawn; see GameRandom.
   public final long rngSeed;
   private long rngNumbersGenerated = 0; // This isn't big enough to hold the period of our RNG, but one can hope games won't have enough combat to overflow this
 
+  /** Records the actions taken and numbers drawn in this game. Defaults to a small in-memory ring. */
+  private transient EventJournal journal;
+
   /** Measured in CO-turns, not days. */
   private int fogOnUntil;
   private int currentDay;
@@ -60,6 +63,11 @@ public class GameInstance implements Serializable
     this(new GameScenario(), armies, map, Weathers.CLEAR, false);
   }
   public GameInstance(GameScenario scenario, Army[] armies, MapMaster map, Weathers weather, boolean useSecurity)
+  {
+    this(scenario, armies, map, weather, useSecurity, new SplittableRandom().nextLong());
+  }
+  /** @param seed Seeds the game's RNG; two games with the same setup, seed and actions play out identically. */
+  public GameInstance(GameScenario scenario, Army[] armies, MapMaster map, Weathers weather, boolean useSecurity, long seed)
   {
     if( armies.length < 2 )
     {
@@ -69,8 +77,8 @@ public class GameInstance implements Serializable
     rules = scenario.rules;
     isSecurityEnabled = useSecurity;
 
-    rngSeed = new SplittableRandom().nextLong();
-    rng = new SplittableRandom(rngSeed);
+    rngSeed = seed;
+    rng = new GameRandom(rngSeed);
 
     fogOnUntil = 0;
     currentDay = 1;
@@ -113,6 +121,7 @@ public class GameInstance implements Serializable
     setCursorLocation(playerCursors.get(0).x, playerCursors.get(0).y);
     
     saveFile = getSaveName();
+    setJournal(EventJournal.inMemory(EventJournal.DEFAULT_RING_BYTES));
   }
 
   public int calcCurrentCOTurn()
@@ -131,11 +140,31 @@ public class GameInstance implements Serializable
   }
 
   // WeakHashMap isn't serializable, so we can't use Collections.newSetFromMap(new WeakHashMap<GameEventListener, Boolean>());
-  public transient Set<GameEventListener> eventListeners = new HashSet<GameEventListener>();
+  public transient GameEventSubscriptions eventListeners = new GameEventSubscriptions();
 
   public Map<Class<? extends StateTracker>, StateTracker> stateTrackers =
       new HashMap<Class<? extends StateTracker>, StateTracker>();
 
+  public EventJournal getJournal()
+  {
+    return journal;
+  }
+  /** Replaces this game's journal (closing the old one), and records our current state in the new one. Null disables journaling. */
+  public void setJournal(EventJournal newJournal)
+  {
+    if( null != journal )
+      journal.close();
+    journal = newJournal;
+    if( null != journal )
+      journal.recordStart(rngSeed, currentDay, activeCoNum, rngNumbersGenerated);
+  }
+  /** Call this just before executing an action, so it's recorded ahead of any numbers it draws. */
+  public void recordAction(GameAction action)
+  {
+    if( null != journal && null != action )
+      journal.recordAction(action, this);
+  }
+
   public int getActiveCOIndex()
   {
     return getCOIndex(activeArmy);
@@ -237,6 +266,8 @@ public class GameInstance implements Serializable
       }
       activeArmy = armies[activeCoNum];
     } while (activeArmy.isDefeated);
+    if( null != journal )
+      journal.recordTurn(currentDay, activeCoNum);
 
     // If security is enabled, verify this player is cleared to play.
     boolean passCheckOK = !isSecurityEnforced() || PasswordManager.validateAccess(activeArmy);
@@ -249,31 +280,7 @@ public class GameInstance implements Serializable
     }
 
     // Set weather conditions based on forecast
-    ArrayList<MapChangeEvent.EnvironmentAssignment> weatherChanges = new ArrayList<MapChangeEvent.EnvironmentAssignment>();
-    for( int i = 0; i < gameMap.mapWidth; i++ )
-    {
-      for( int j = 0; j < gameMap.mapHeight; j++ )
-      {
-        MapLocation loc = gameMap.getLocation(i, j);
-        if( loc.forecast.isEmpty() )
-        {
-          if( loc.getEnvironment().weatherType != defaultWeather )
-          {
-            weatherChanges.add(new MapChangeEvent.EnvironmentAssignment(loc.getCoordinates(), Environment.getTile(loc.getEnvironment().terrainType, defaultWeather)));
-          }
-        }
-        else
-        {
-          Weathers weather = loc.getEnvironment().weatherType;
-          for( int turns = 0; turns < coTurns; turns++ )
-          {
-            weather = loc.forecast.poll();
-          }
-          if( null == weather ) weather = defaultWeather;
-          weatherChanges.add(new MapChangeEvent.EnvironmentAssignment(loc.getCoordinates(), Environment.getTile(loc.getEnvironment().terrainType, weather)));
-        }
-      }
-    }
+    ArrayList<MapChangeEvent.EnvironmentAssignment> weatherChanges = gameMap.advanceWeather(coTurns, defaultWeather);
 
     // Income first, since it should have no dependencies (and stuff depends on it)
     events.add(new ModifyFundsEvent(activeArmy, activeArmy.getIncomePerTurn()));
@@ -321,7 +328,16 @@ public class GameInstance implements Serializable
   {
     upperBound = Math.abs(upperBound);
     ++rngNumbersGenerated;
-    return rng.nextInt(upperBound);
+    int value = rng.nextInt(upperBound);
+    if( null != journal )
+      journal.recordRandom(upperBound, value);
+    return value;
+  }
+
+  /** How many random numbers this game has drawn so far. */
+  public long getNumbersGenerated()
+  {
+    return rngNumbersGenerated;
   }
 
   /**
@@ -370,6 +386,15 @@ public class GameInstance implements Serializable
     return prepends.toString();
   }
 
+  /**
+   * @return An independent copy of this game (minus AI controllers and journal), for trying out moves
+   * without touching the real thing. See GameFork.
+   */
+  public GameInstance fork()
+  {
+    return GameFork.fork(this);
+  }
+
   public void writeSave(ObjectOutputStream out, boolean endCurrentTurn) throws IOException
   {
     boolean temp = currentTurnEnded;
@@ -407,14 +432,16 @@ public class GameInstance implements Serializable
   {
     stream.defaultReadObject();
 
-    rng = new SplittableRandom(rngSeed);
-    for( int i = 0; i < rngNumbersGenerated; ++i )
-    {
-      rng.nextInt();
-    }
+    // Saves from before the RNG state was saved hold only the seed and draw count.
+    // Jump to where the old loader would have ended up after re-drawing them all.
+    if( null == rng )
+      rng = GameRandom.skipAhead(rngSeed, rngNumbersGenerated);
 
     // restore any serializable listeners
-    eventListeners = (Set<GameEventListener>) stream.readObject();
+    eventListeners = new GameEventSubscriptions();
+    eventListeners.addAll((Set<GameEventListener>) stream.readObject());
+
+    setJournal(EventJournal.inMemory(EventJournal.DEFAULT_RING_BYTES));
   }
 
   public boolean isSecurityEnforced()
@@ -0,0 +1,63 @@
+package Engine;
+
+import java.io.Serializable;
+
+/**
+ * The game's random number generator: the same algorithm as java.util.SplittableRandom (SplitMix64),
+ * so it produces exactly the same numbers for the same seed, but with state we can save and restore.
+ * <p>
+ * SplittableRandom hides its state, so GameInstance used to restore one on load by re-drawing every number
+ * the game had ever generated. Here the state is a single counter that advances by a fixed step per draw,
+ * so it's saved as-is, and can also be jumped straight to any point in the sequence (see skipAhead()).
+ */
+public class GameRandom implements Serializable
+{
+  private static final long serialVersionUID = 1L;
+
+  /** SplittableRandom's default increment; every seed it's built from directly uses this. */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private long state;
+
+  /** Produces the same sequence as new SplittableRandom(seed). */
+  public GameRandom(long seed)
+  {
+    state = seed;
+  }
+
+  /**
+   * @return A generator in the state new SplittableRandom(seed) would be in after nextInt() was called steps times.
+   * Takes constant time, however large steps is.
+   */
+  public static GameRandom skipAhead(long seed, long steps)
+  {
+    return new GameRandom(seed + steps * GOLDEN_GAMMA); // Wraps around exactly as repeated adding would.
+  }
+
+  public int nextInt()
+  {
+    state += GOLDEN_GAMMA;
+    return mix32(state);
+  }
+
+  /** @return A value between 0 (inclusive) and bound (exclusive), picked exactly as SplittableRandom.nextInt(bound) would. */
+  public int nextInt(int bound)
+  {
+    if( bound <= 0 )
+      throw new IllegalArgumentException("bound must be positive");
+    int r = nextInt();
+    int m = bound - 1;
+    if( (bound & m) == 0 ) // Power of two; just mask.
+      return r & m;
+    // Reject values from the uneven tail of the range, so every result is equally likely.
+    for( int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1 )
+      ;
+    return r;
+  }
+
+  private static int mix32(long z)
+  {
+    z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+    return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+  }
+}
@@ -0,0 +1,572 @@
+package Engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import CommandingOfficers.Commander;
+import Engine.GameAction.AbilityAction;
+import Engine.GameAction.EndTurnAction;
+import Engine.GameAction.SwapCOAction;
+import Engine.GameAction.UnitProductionAction;
+import Engine.GameEvents.EventCoalescer;
+import Engine.GameEvents.GameEvent;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventQueue;
+import Terrain.MapLocation;
+import UI.MapView;
+import Units.Unit;
+
+/**
+ * Re-executes a game recorded in an EventJournal file, as fast as the engine allows and with no animation.
+ * <p>Starting from the journal's snapshot, each recorded turn change and action is re-applied in order.
+ * Actions are rebuilt from their records by matching them against the options the engine offers, and
+ * the number of random numbers drawn is checked after every step, so a replay that drifts from the
+ * recording stops with an error (see getError()) instead of quietly playing out a different game.
+ * <p>A full snapshot is kept every snapshotInterval CO-turns, so seeking only replays from the nearest one.
+ */
+public class GameReplay
+{
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 10;
+
+  private static class Step
+  {
+    final boolean isTurn;
+    final int day, army;
+    final EventJournal.ActionRecord record;
+    final String className, typeName;
+    long numbersGeneratedAfter;
+
+    Step(int day, int army, long numbersGenerated)
+    {
+      isTurn = true;
+      this.day = day;
+      this.army = army;
+      record = null;
+      className = null;
+      typeName = null;
+      numbersGeneratedAfter = numbersGenerated;
+    }
+    Step(EventJournal.ActionRecord rec, String className, String typeName, long numbersGenerated)
+    {
+      isTurn = false;
+      day = -1;
+      army = rec.army;
+      record = new EventJournal.ActionRecord();
+      record.copyFrom(rec);
+      this.className = className;
+      this.typeName = typeName;
+      numbersGeneratedAfter = numbersGenerated;
+    }
+  }
+
+  private final ArrayList<Step> steps = new ArrayList<>();
+  /** The index in steps of each TURN step; CO-turn N starts at turnSteps.get(N-1). */
+  private final ArrayList<Integer> turnSteps = new ArrayList<>();
+  /** Serialized games, keyed by the number of CO-turns replayed when they were taken. */
+  private final TreeMap<Integer, byte[]> snapshots = new TreeMap<>();
+  private final int snapshotInterval;
+  private final EventJournal.ActionRecord scratch = new EventJournal.ActionRecord();
+
+  private GameInstance game;
+  private int nextStep;
+  private int coTurn;
+  private int actionsReplayed = 0;
+  private String error = null;
+  private boolean coalesceEvents = false;
+
+  public GameReplay(File journalFile) throws IOException
+  {
+    this(new EventJournal.Reader(journalFile), DEFAULT_SNAPSHOT_INTERVAL);
+  }
+  public GameReplay(EventJournal.Reader journal, int snapshotInterval) throws IOException
+  {
+    this.snapshotInterval = Math.max(1, snapshotInterval);
+    readSteps(journal);
+    if( !snapshots.containsKey(0) )
+      throw new IOException("Journal has no starting snapshot; only journals written to file can be replayed");
+
+    restore(0);
+  }
+  /**
+   * Replays a journal onto a game that's already where the journal starts, e.g. an Autosave checkpoint;
+   * the journal doesn't need a snapshot of its own.
+   */
+  public GameReplay(GameInstance start, EventJournal.Reader journal) throws IOException
+  {
+    this.snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+    long startNumbers = readSteps(journal);
+    game = start;
+    takeSnapshot(); // So we can still seek back to the beginning.
+    if( start.getNumbersGenerated() != startNumbers )
+      fail(String.format("Journal starts after %d random numbers, but the game has drawn %d", startNumbers, start.getNumbersGenerated()));
+  }
+
+  /** @return How many random numbers had been drawn when the journal started. */
+  private long readSteps(EventJournal.Reader journal) throws IOException
+  {
+    long startNumbers = -1;
+    long numbersGenerated = 0;
+    for( byte tag = journal.next(); tag != 0; tag = journal.next() )
+    {
+      switch (tag)
+      {
+        case EventJournal.TAG_SNAPSHOT:
+          if( !snapshots.containsKey(0) )
+            snapshots.put(0, journal.snapshot);
+          break;
+        case EventJournal.TAG_START:
+          numbersGenerated = journal.numbersGenerated;
+          if( startNumbers < 0 )
+            startNumbers = numbersGenerated;
+          break;
+        case EventJournal.TAG_TURN:
+          turnSteps.add(steps.size());
+          steps.add(new Step(journal.day, journal.army, numbersGenerated));
+          break;
+        case EventJournal.TAG_ACTION:
+          EventJournal.ActionRecord rec = journal.action;
+          steps.add(new Step(rec, journal.getName(rec.actionClass), journal.getName(rec.typeID), numbersGenerated));
+          break;
+        case EventJournal.TAG_RANDOM:
+          ++numbersGenerated;
+          if( !steps.isEmpty() )
+            steps.get(steps.size() - 1).numbersGeneratedAfter = numbersGenerated;
+          break;
+        default:
+          break;
+      }
+    }
+    return startNumbers;
+  }
+
+  /** The game as of the current replay position. Seeking backward may replace this with a new GameInstance. */
+  public GameInstance getGame()
+  {
+    return game;
+  }
+
+  /** How many CO-turns have been replayed so far. */
+  public int getCOTurn()
+  {
+    return coTurn;
+  }
+
+  public int getNumCOTurns()
+  {
+    return turnSteps.size();
+  }
+
+  public int getActionsReplayed()
+  {
+    return actionsReplayed;
+  }
+
+  /** Turns on the headless event fast path; see EventCoalescer. */
+  public void setCoalesceEvents(boolean coalesce)
+  {
+    coalesceEvents = coalesce;
+  }
+
+  public boolean isFinished()
+  {
+    return null != error || nextStep >= steps.size();
+  }
+
+  /** @return A description of why the replay diverged from the journal, or null if it hasn't. */
+  public String getError()
+  {
+    return error;
+  }
+
+  /**
+   * Moves the replay to just after the given CO-turn starts (0 is the beginning of the journal),
+   * restoring the nearest earlier snapshot if that is closer than the current position.
+   * @return false if the replay failed before reaching that point.
+   */
+  public boolean seek(int targetCOTurn)
+  {
+    targetCOTurn = Math.max(0, Math.min(targetCOTurn, turnSteps.size()));
+    int nearestSnapshot = snapshots.floorKey(targetCOTurn);
+    if( targetCOTurn < coTurn || nearestSnapshot > coTurn )
+    {
+      if( !restore(nearestSnapshot) )
+        return false;
+    }
+    while (coTurn < targetCOTurn && step())
+      ;
+    return coTurn == targetCOTurn && null == error;
+  }
+
+  /** Goes back to the start of the journal, with a fresh copy of the game. */
+  public boolean restart()
+  {
+    return restore(0);
+  }
+
+  /** Replays everything left in the journal. */
+  public boolean runToEnd()
+  {
+    while (step())
+      ;
+    return null == error;
+  }
+
+  /**
+   * Executes the next turn change or action, along with all resulting events.
+   * @return false if there was nothing left to do, or if the replay diverged.
+   */
+  public boolean step()
+  {
+    if( isFinished() )
+      return false;
+
+    Step next = steps.get(nextStep);
+    GameEventQueue events = new GameEventQueue();
+    if( next.isTurn )
+    {
+      game.turn(events);
+      runEvents(events);
+      if( !checkTurn(next) )
+        return false;
+      ++coTurn;
+    }
+    else
+    {
+      GameAction action = decodeAction(next);
+      if( null == action )
+        return false;
+      game.recordAction(action);
+      events = action.getEvents(game.gameMap);
+      if( events.isEmpty() )
+        return fail("Action " + action + " produced no events");
+      runEvents(events);
+      ++actionsReplayed;
+    }
+
+    ++nextStep;
+    if( !checkNumbersGenerated() )
+      return false;
+    if( next.isTurn && coTurn % snapshotInterval == 0 && !snapshots.containsKey(coTurn) )
+      takeSnapshot();
+    return true;
+  }
+
+  /**
+   * For callers that execute events themselves (e.g. MapController, so it can animate them).
+   * Skips past any turn changes the caller should already have made, and then returns the next recorded action.
+   * @return The next action, or null at the end of the journal or if the replay diverged.
+   */
+  public GameAction nextAction()
+  {
+    while (!isFinished())
+    {
+      if( !checkNumbersGenerated() )
+        return null;
+
+      Step next = steps.get(nextStep);
+      if( next.isTurn )
+      {
+        if( !checkTurn(next) )
+          return null;
+        ++coTurn;
+        ++nextStep;
+        continue;
+      }
+
+      GameAction action = decodeAction(next);
+      if( null == action )
+        return null;
+      ++nextStep;
+      ++actionsReplayed;
+      return action;
+    }
+    return null;
+  }
+
+  private void runEvents(GameEventQueue events)
+  {
+    while (!events.isEmpty())
+    {
+      GameEvent event = events.poll();
+      if( coalesceEvents )
+        event = EventCoalescer.coalesce(event, events, game);
+      if( null == event )
+        continue;
+      game.gameMap.performEvent(event);
+      GameEventListener.publishEvent(event, game, events);
+    }
+  }
+
+  private boolean checkTurn(Step turn)
+  {
+    if( game.getCurrentTurn() != turn.day || game.getActiveCOIndex() != turn.army )
+      return fail(String.format("Expected day %d army %d, but it is day %d army %d",
+          turn.day, turn.army, game.getCurrentTurn(), game.getActiveCOIndex()));
+    return true;
+  }
+
+  /** Makes sure the last step drew exactly as many random numbers as it did when recorded. */
+  private boolean checkNumbersGenerated()
+  {
+    if( nextStep == 0 )
+      return true;
+    long expected = steps.get(nextStep - 1).numbersGeneratedAfter;
+    if( game.getNumbersGenerated() != expected )
+      return fail(String.format("Expected %d random numbers drawn, but there were %d", expected, game.getNumbersGenerated()));
+    return true;
+  }
+
+  /** Rebuilds a recorded action against the current game state. */
+  private GameAction decodeAction(Step step)
+  {
+    EventJournal.ActionRecord rec = step.record;
+    Army army = game.activeArmy;
+    try
+    {
+      if( EndTurnAction.class.getName().equals(step.className) )
+        return new EndTurnAction(army, game.getCurrentTurn());
+      if( SwapCOAction.class.getName().equals(step.className) )
+        return new SwapCOAction(army, game.getCurrentTurn(), army.cos[rec.option]);
+      if( UnitProductionAction.class.getName().equals(step.className) )
+      {
+        Commander co = army.cos[rec.commander];
+        return new UnitProductionAction(co, co.unitModels.get(rec.option), new XYCoord(rec.targetX, rec.targetY));
+      }
+      if( AbilityAction.class.getName().equals(step.className) )
+        return new AbilityAction(army.cos[rec.commander].myAbilities.get(rec.option));
+    }
+    catch (IndexOutOfBoundsException | NullPointerException ex)
+    {
+      fail("Recorded " + step.className + " doesn't fit the game state");
+      return null;
+    }
+
+    // Anything else should be a unit action; find the matching one among the actor's options.
+    Unit actor = game.gameMap.isLocationValid(rec.actorX, rec.actorY) ? game.gameMap.getResident(rec.actorX, rec.actorY) : null;
+    if( null == actor )
+    {
+      fail(String.format("No unit at (%d, %d) to perform %s", rec.actorX, rec.actorY, step.className));
+      return null;
+    }
+    GamePath path = rec.buildPath();
+    if( path.getPathLength() == 0 )
+      path.addWaypoint(rec.actorX, rec.actorY);
+    ArrayList<GamePath> paths = new ArrayList<>();
+    paths.add(path);
+    // Launches record their cargo's path, but are among the launcher's options for staying put.
+    if( !path.getEndCoord().equals(rec.actorX, rec.actorY) )
+      paths.add(GamePath.stayPut(new XYCoord(rec.actorX, rec.actorY)));
+
+    for( GamePath actorPath : paths )
+      for( boolean ignoreResident : new boolean[] { false, true } )
+        for( GameActionSet set : actor.getPossibleActions(game.gameMap, actorPath, ignoreResident) )
+          for( GameAction candidate : set.getGameActions() )
+          {
+            if( !candidate.getClass().getName().equals(step.className) )
+              continue;
+            scratch.clear();
+            candidate.fillJournalRecord(scratch);
+            String candidateType = (null == scratch.type) ? null : EventJournal.typeName(scratch.type, candidate.getActor());
+            if( scratch.matches(rec) && (null == candidateType ? null == step.typeName : candidateType.equals(step.typeName)) )
+              return candidate;
+          }
+
+    fail(String.format("Couldn't rebuild %s (%s) for %s", step.className, step.typeName, actor.toStringWithLocation()));
+    return null;
+  }
+
+  private boolean fail(String reason)
+  {
+    if( null == error )
+      error = String.format("CO-turn %d, step %d: %s", coTurn, nextStep, reason);
+    return false;
+  }
+
+  private void takeSnapshot()
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes);)
+    {
+      game.writeSave(out, false);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Failed to snapshot replay: " + ex.toString());
+      return;
+    }
+    snapshots.put(coTurn, bytes.toByteArray());
+  }
+
+  private boolean restore(int snapshotCOTurn)
+  {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(snapshots.get(snapshotCOTurn)));)
+    {
+      in.readObject(); // Pull out and discard our version info
+      GameInstance restored = (GameInstance) in.readObject();
+      if( null != game )
+        game.endGame();
+      game = restored;
+    }
+    catch (IOException | ClassNotFoundException ex)
+    {
+      return fail("Failed to restore snapshot: " + ex.toString());
+    }
+    coTurn = snapshotCOTurn;
+    nextStep = (0 == snapshotCOTurn) ? 0 : turnSteps.get(snapshotCOTurn - 1) + 1;
+    // Steps before nextStep were executed to produce the snapshot, so error state from later steps no longer applies.
+    error = null;
+    return true;
+  }
+
+  /**
+   * Summarizes the parts of a game's state that matter when comparing two runs: funds, terrain, units, and RNs drawn.
+   * Games that played out identically will have the same hash.
+   */
+  public static long stateHash(GameInstance game)
+  {
+    long hash = game.getNumbersGenerated();
+    hash = hash * 31 + game.getCurrentTurn();
+    hash = hash * 31 + game.getActiveCOIndex();
+    for( Army army : game.armies )
+    {
+      hash = hash * 31 + army.money;
+      hash = hash * 31 + (army.isDefeated ? 1 : 0);
+    }
+    for( int y = 0; y < game.gameMap.mapHeight; ++y )
+      for( int x = 0; x < game.gameMap.mapWidth; ++x )
+      {
+        MapLocation loc = game.gameMap.getLocation(x, y);
+        hash = hash * 31 + loc.getEnvironment().terrainType.toString().hashCode();
+        hash = hash * 31 + loc.getEnvironment().weatherType.ordinal();
+        hash = hash * 31 + ((null == loc.getOwner()) ? -1 : game.getCOIndex(loc.getOwner().army));
+        hash = hash * 31 + loc.getDurability();
+        Unit resident = loc.getResident();
+        if( null != resident )
+          hash = hash * 31 + unitHash(game, resident);
+      }
+    return hash;
+  }
+  private static long unitHash(GameInstance game, Unit unit)
+  {
+    long hash = unit.model.name.hashCode();
+    hash = hash * 31 + game.getCOIndex(unit.CO.army);
+    hash = hash * 31 + unit.getHealth();
+    hash = hash * 31 + unit.ammo;
+    hash = hash * 31 + unit.fuel;
+    hash = hash * 31 + (unit.isTurnOver ? 1 : 0);
+    for( Unit cargo : unit.heldUnits )
+      hash = hash * 31 + unitHash(game, cargo);
+    return hash;
+  }
+
+  /** Opens the replay in the game window, starting from the given CO-turn. */
+  public static void launchViewer(File journalFile, int startCOTurn)
+  {
+    GameReplay replay;
+    try
+    {
+      replay = new GameReplay(journalFile);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Failed to open replay " + journalFile + ": " + ex.toString());
+      return;
+    }
+    // Someone has to have started a turn before the map can be shown.
+    if( !replay.seek(Math.max(1, startCOTurn)) )
+    {
+      System.out.println("WARNING! Failed to seek replay: " + replay.getError());
+      return;
+    }
+
+    MapView mv = Driver.getInstance().gameGraphics.createMapView(replay.getGame());
+    MapController mapController = new MapController(replay, mv);
+    Driver.getInstance().changeGameState(mapController, mv);
+  }
+
+  /**
+   * Headless batch verification: replays each journal given on the command line and reports whether it matched.
+   * <p>Usage: GameReplay [-interval N] [-seek T] [-coalesce] journal...
+   * <p>With -seek, each journal is also re-seeked to CO-turn T after the full replay, to exercise the snapshots.
+   * <p>With -coalesce, each journal is also replayed using the headless event fast path, which must end in the same state.
+   */
+  public static void main(String[] args)
+  {
+    int interval = DEFAULT_SNAPSHOT_INTERVAL;
+    int seekTarget = -1;
+    boolean checkCoalescing = false;
+    ArrayList<File> journals = new ArrayList<>();
+    for( int i = 0; i < args.length; ++i )
+    {
+      if( "-interval".equals(args[i]) && i + 1 < args.length )
+        interval = Integer.parseInt(args[++i]);
+      else if( "-seek".equals(args[i]) && i + 1 < args.length )
+        seekTarget = Integer.parseInt(args[++i]);
+      else if( "-coalesce".equals(args[i]) )
+        checkCoalescing = true;
+      else
+        journals.add(new File(args[i]));
+    }
+    if( journals.isEmpty() )
+    {
+      System.out.println("Usage: GameReplay [-interval N] [-seek T] [-coalesce] journal...");
+      return;
+    }
+
+    int failures = 0;
+    for( File journal : journals )
+    {
+      String result;
+      try
+      {
+        long startNanos = System.nanoTime();
+        GameReplay replay = new GameReplay(new EventJournal.Reader(journal), interval);
+        boolean ok = replay.runToEnd();
+        long replayMillis = (System.nanoTime() - startNanos) / 1000000;
+        result = String.format("%s %d CO-turns, %d actions in %dms", ok ? "OK" : "FAILED", replay.getCOTurn(), replay.getActionsReplayed(), replayMillis);
+        if( ok && checkCoalescing )
+        {
+          startNanos = System.nanoTime();
+          GameReplay coalesced = new GameReplay(new EventJournal.Reader(journal), interval);
+          coalesced.setCoalesceEvents(true);
+          boolean coalescedOK = coalesced.runToEnd();
+          long coalescedMillis = (System.nanoTime() - startNanos) / 1000000;
+          boolean same = coalescedOK && stateHash(coalesced.getGame()) == stateHash(replay.getGame());
+          result += String.format("; coalesced %s in %dms", same ? "matches" : "DIFFERS", coalescedMillis);
+          if( !same )
+          {
+            ++failures;
+            result += "\n    " + (coalescedOK ? "Final states differ" : coalesced.getError());
+          }
+        }
+        if( ok && seekTarget >= 0 )
+        {
+          startNanos = System.nanoTime();
+          ok = replay.seek(seekTarget);
+          long seekMillis = (System.nanoTime() - startNanos) / 1000000;
+          result += String.format("; seek to %d %s in %dms", seekTarget, ok ? "OK" : "FAILED", seekMillis);
+        }
+        if( !ok )
+        {
+          ++failures;
+          result += "\n    " + replay.getError();
+        }
+      }
+      catch (IOException ex)
+      {
+        ++failures;
+        result = "FAILED to read: " + ex.toString();
+      }
+      System.out.println(journal + ": " + result);
+    }
+    System.out.println(String.format("%d of %d journals replayed cleanly.", journals.size() - failures, journals.size()));
+    if( failures > 0 )
+      System.exit(1);
+  }
+}
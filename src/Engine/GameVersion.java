@@ -13,7 +13,7 @@ public class GameVersion implements Serializable
   public GameVersion()
   {
     majorRev = 7; // For substantial, save-breaking changes to the game logic.
-    minorRev = 0; // For added content or UI updates
+    minorRev = 3; // For added content or UI updates
     hotfix   = 0; // For bugfixes (hopefully to never see increment)
   }
   
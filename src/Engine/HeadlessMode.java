@@ -0,0 +1,77 @@
+package Engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import AI.AILibrary;
+import CommandingOfficers.CommanderLibrary;
+import Terrain.MapLibrary;
+import UI.UIUtils;
+
+/**
+ * Support for running several games at once with no UI, e.g. from FightClub worker threads.
+ * <p>
+ * The engine prints a lot of diagnostic chatter to System.out. Swapping System.out out from under
+ * other threads isn't safe, so instead we install a single routing stream once, and each thread
+ * decides for itself whether its own output gets through.
+ */
+public class HeadlessMode
+{
+  private static PrintStream console = null;
+  private static final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> false);
+
+  /**
+   * Installs the routing System.out and warms up the shared libraries so that
+   * concurrent games don't race to lazily build them. Safe to call more than once.
+   */
+  public static synchronized void enable()
+  {
+    if( null != console )
+      return;
+
+    console = System.out;
+    System.setOut(new PrintStream(new OutputStream(){
+      @Override
+      public void write(int b) throws IOException
+      {
+        if( !muted.get() )
+          console.write(b);
+      }
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+        if( !muted.get() )
+          console.write(b, off, len);
+      }
+      @Override
+      public void flush() throws IOException
+      {
+        console.flush();
+      }
+    }, true));
+
+    MapLibrary.getMapList();
+    AILibrary.getAIList();
+    CommanderLibrary.getCommanderList();
+    UIUtils.getCOColors();
+  }
+
+  /** @return The real console stream; unaffected by muting. */
+  public static synchronized PrintStream getConsole()
+  {
+    return (null == console) ? System.out : console;
+  }
+
+  /** Silence (or restore) System.out for the calling thread only. */
+  public static void setMuted(boolean mute)
+  {
+    muted.set(mute);
+  }
+
+  /** @return Whether System.out is silenced for the calling thread; e.g. so helper threads can follow suit. */
+  public static boolean isMuted()
+  {
+    return muted.get();
+  }
+}
@@ -3,6 +3,7 @@ package Engine;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import AI.ThinkBudget;
 import CommandingOfficers.Commander;
 import Engine.GameAction.EndTurnAction;
 import Engine.Combat.DamagePopup;
@@ -51,8 +52,28 @@ public class MapController implements IController, GameInputHandler.StateChanged
   private boolean isTurnEnding;
   private boolean isGameOver;
 
+  /** If set, we are just showing a recorded game, and every action comes from here instead of from the players. */
+  private GameReplay replay = null;
+  // Limits on AI think time, from the AI Think Time option; see newAIBudget().
+  private ThinkBudget aiBudget = newAIBudget();
+  /** Writes each turn to disk as it ends, for crash recovery. Not used for replays. */
+  private Autosave autosave = null;
+
   public MapController(GameInstance game, MapView view)
   {
+    this(game, view, null);
+  }
+  /**
+   * Plays back a recorded game from its current position, animating each action as it happens.
+   * The replay should already be positioned at the start of a turn (see GameReplay.seek()).
+   */
+  public MapController(GameReplay replay, MapView view)
+  {
+    this(replay.getGame(), view, replay);
+  }
+  private MapController(GameInstance game, MapView view, GameReplay replay)
+  {
+    this.replay = replay;
     myGame = game;
     myView = view;
     myView.setController(this);
@@ -63,12 +84,23 @@ public class MapController implements IController, GameInputHandler.StateChanged
     isGameOver = false;
     nextSeekIndex = 0;
 
+    if( null == replay && Autosave.enabled )
+      autosave = new Autosave(myGame, Autosave.folderFor(myGame), Autosave.DEFAULT_CHECKPOINT_INTERVAL);
+
     // Start the first turn (or the next one if loading a protected save).
-    if( myGame.requireInitOnLoad() )
+    // Replays are already mid-turn, and have their turn changes recorded.
+    if( null == replay && myGame.requireInitOnLoad() )
       startNextTurn();
 
     // Initialize our game input handler.
     myGameInputHandler = new GameInputHandler(myGame.activeArmy.myView, myGame.activeArmy, this);
+
+    // Replays never wait for input; kick off the first action.
+    if( null != replay )
+    {
+      changeInputMode(InputMode.ANIMATION);
+      animationEnded();
+    }
   }
 
   /**
@@ -105,6 +137,8 @@ public class MapController implements IController, GameInputHandler.StateChanged
 
     if( exitMap )
     {
+      if( null != autosave )
+        autosave.flush();
       myGame.endGame();
     }
 
@@ -233,7 +267,7 @@ public class MapController implements IController, GameInputHandler.StateChanged
               threats.remove(resident);
             else
               threats.add(resident);
-            OverlayCache.instance(myGame).InvalidateCache();
+            OverlayCache.instance(myGame).invalidateMode(OverlayMode.THREATS_MANUAL);
           }
         }
         myGameInputHandler.back();
@@ -492,6 +526,7 @@ public class MapController implements IController, GameInputHandler.StateChanged
     if( null != action )
     {
       // Compile the GameAction to its component events.
+      myGame.recordAction(action);
       activeEventQueue = action.getEvents(myGame.gameMap);
 
       if( activeEventQueue.size() > 0 )
@@ -531,13 +566,11 @@ public class MapController implements IController, GameInputHandler.StateChanged
 
       skipFirstAnimation = false;
       activeEventQueue.poll(); // We'll deal with this event immediately
-      event.performEvent(myGame.gameMap);
+      myGame.gameMap.performEvent(event);
       isTurnEnding = event.shouldEndTurn();
 
       // Now that the event has been completed, let the world know.
-      GameEventQueue listenerEvents = GameEventListener.publishEvent(event, myGame);
-
-      activeEventQueue.addAll(listenerEvents);
+      GameEventListener.publishEvent(event, myGame, activeEventQueue);
       event = null;
     }
 
@@ -589,11 +622,24 @@ public class MapController implements IController, GameInputHandler.StateChanged
       }
       else
       {
-        // The animation for the last action just completed. If an AI is in control,
+        // The animation for the last action just completed. If this is a replay or an AI is in control,
         // fetch the next action. Otherwise, return control to the player.
-        if( myGame.activeArmy.isAI() )
+        if( null != replay )
+        {
+          GameAction replayAction = replay.nextAction();
+          if( null == replayAction || !executeGameAction(replayAction) )
+          {
+            // End of the recording (or it's gone off the rails); wait for a keypress to leave.
+            if( null != replay.getError() )
+              System.out.println("WARNING! Replay diverged from its journal: " + replay.getError());
+            changeInputMode(InputMode.EXITGAME);
+          }
+        }
+        else if( myGame.activeArmy.isAI() )
         {
-          GameAction aiAction = myGame.activeArmy.getNextAIAction(myGame.gameMap);
+          long aiDeadline = aiBudget.nextDeadline();
+          GameAction aiAction = myGame.activeArmy.getNextAIAction(myGame.gameMap, aiDeadline);
+          aiBudget.checkAction(myGame.activeArmy.getControllerName(), aiDeadline, System.out);
           boolean endAITurn = false;
           if( aiAction != null )
           {
@@ -609,6 +655,11 @@ public class MapController implements IController, GameInputHandler.StateChanged
           {
             endAITurn = true;
           } // The AI can return a null action to signal the end of its turn.
+          if( !endAITurn && aiBudget.turnExpired() )
+          {
+            aiBudget.noteTurnCut(myGame.activeArmy.getControllerName(), System.out);
+            endAITurn = true;
+          }
           if( endAITurn )
             executeGameAction(new EndTurnAction(myGame.activeArmy, myGame.getCurrentTurn()));
         }
@@ -622,8 +673,17 @@ public class MapController implements IController, GameInputHandler.StateChanged
     }
   }
 
+  /** @return A ThinkBudget for the AI Think Time option, which is read fresh each turn so changes apply mid-game. */
+  private static ThinkBudget newAIBudget()
+  {
+    return new ThinkBudget(0, InputOptionsController.aiThinkTimeOption.getSelectedObject().turnSeconds * 1000L);
+  }
+
   public void handleEndTurn()
   {
+    if( null != autosave )
+      autosave.endOfTurn();
+
     // If security is enabled, save and quit at the end of each turn after the first.
     if( myGame.isSecurityEnforced() )
     {
@@ -656,6 +716,7 @@ public class MapController implements IController, GameInputHandler.StateChanged
     nextSeekIndex = 0;
 
     // Tell the game a turn has changed. This will update the active CO.
+    aiBudget = newAIBudget();
     boolean turnOK = myGame.turn(activeEventQueue);
 
     // Reinitialize the InputStateHandler for the new turn.
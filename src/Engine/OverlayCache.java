@@ -4,30 +4,62 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 
 import AI.AICombatUtils;
+import CommandingOfficers.Commander;
+import CommandingOfficers.CommanderAbility;
 import Engine.MapController.OverlayMode;
-import Engine.GameEvents.GameEventListener.CacheInvalidationListener;
+import Engine.Combat.BattleSummary;
+import Engine.GameEvents.ArmyDefeatEvent;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.MapChangeEvent.EnvironmentAssignment;
+import Engine.GameEvents.ResupplyEvent;
+import Engine.UnitActionLifecycles.JoinLifecycle;
+import Engine.UnitActionLifecycles.LoadLifecycle;
+import Engine.UnitActionLifecycles.UnloadLifecycle;
+import Terrain.Environment.Weathers;
+import Terrain.MapLocation;
+import Terrain.MapMaster;
 import Terrain.MapPerspective;
 import UI.GameOverlay;
 import Units.Unit;
+import Units.UnitModel;
 
-public class OverlayCache implements CacheInvalidationListener
+/**
+ * Caches the overlays drawn for each OverlayMode.
+ * <p>Rather than throwing everything away on every event, this tracks what each event can actually affect:
+ * <ul>
+ * <li>Each unit's threat/vision overlay is cached separately, and is only recomputed if that unit changes, or
+ *     if something changes on or next to a tile that its threat overlay covers (which could block or open a path).
+ * <li>Army overlays (e.g. CO zones) are rebuilt when units or CO energy change.
+ * <li>The per-mode lists are just reassembled from the above, which is cheap.
+ * <li>Events that change things globally (turn changes, powers, weather) still clear everything.
+ * <li>Fog can show or hide a unit without an event we'd hear about on its tile, so before each draw we compare what the
+ *     viewer can see with what it saw last time, and treat each tile that differs as changed.
+ * </ul>
+ * Events we don't override (e.g. funds changes) don't reach us at all.
+ */
+public class OverlayCache implements GameEventListener
 {
   private static final long serialVersionUID = 1L;
-  private static OverlayCache staticCache;
+  // One cache per thread (in practice, just the UI thread), so headless games on other threads never share one.
+  private static final ThreadLocal<OverlayCache> staticCache = new ThreadLocal<>();
 
   public static OverlayCache instance(GameInstance game)
   {
-    if( staticCache == null || game != staticCache.game )
+    OverlayCache cache = staticCache.get();
+    if( cache == null || game != cache.game )
     {
-      if( staticCache != null )
-        staticCache.unregister(staticCache.game);
+      if( cache != null )
+        cache.unregister(cache.game);
 
-      staticCache = new OverlayCache(game);
+      cache = new OverlayCache(game);
+      staticCache.set(cache);
     }
 
-    return staticCache;
+    return cache;
   }
 
   private OverlayCache(GameInstance game)
@@ -43,29 +75,128 @@ public class OverlayCache implements CacheInvalidationListener
   }
 
   private HashMap<OverlayMode, ArrayList<GameOverlay>> cache = new HashMap<>();
+  private ArrayList<GameOverlay> armyOverlays = null;
+  /** Per-unit overlays; each one's origin is where the unit was when it was calculated. */
+  private HashMap<Unit, GameOverlay> threatOverlays = new HashMap<>();
+  private HashMap<Unit, GameOverlay> visionOverlays = new HashMap<>();
+  private MapPerspective lastDrawnMap = null;
+  /** The unit lastDrawnMap showed on each tile when we last drew; null if we haven't drawn since everything was cleared. */
+  private Unit[][] residentsSeen = null;
   private GameInstance game;
 
-  @Override
+  /** Throws away everything; the next draw will recompute all overlays. */
   public void InvalidateCache()
   {
     cache.clear();
+    armyOverlays = null;
+    threatOverlays.clear();
+    visionOverlays.clear();
+    residentsSeen = null;
+  }
+
+  /** Forces the list for just this mode to be reassembled, e.g. when the manual threat list changes. */
+  public void invalidateMode(OverlayMode mode)
+  {
+    cache.remove(mode);
+  }
+
+  /** Something about this unit changed; recalculate its overlays next time they're needed. */
+  private void dirtyUnit(Unit unit)
+  {
+    if( null == unit )
+      return;
+    threatOverlays.remove(unit);
+    visionOverlays.remove(unit);
+    dirtyTile(unit.x, unit.y);
+  }
+
+  /** The contents of this tile changed; recalculate any threats that could path into or through it. */
+  private void dirtyTile(XYCoord xyc)
+  {
+    if( null != xyc )
+      dirtyTile(xyc.x, xyc.y);
+  }
+  private void dirtyTile(int x, int y)
+  {
+    cache.clear();
+    armyOverlays = null;
+    if( !game.gameMap.isLocationValid(x, y) )
+      return;
+
+    for( Iterator<GameOverlay> it = threatOverlays.values().iterator(); it.hasNext(); )
+    {
+      GameOverlay threat = it.next();
+      if( threat.origin.equals(x, y) || touchesArea(threat, x, y) )
+        it.remove();
+    }
+    for( Iterator<GameOverlay> it = visionOverlays.values().iterator(); it.hasNext(); )
+    {
+      if( it.next().origin.equals(x, y) )
+        it.remove();
+    }
+  }
+  private static boolean touchesArea(GameOverlay overlay, int x, int y)
+  {
+    return overlay.area.contains(new XYCoord(x, y))
+        || overlay.area.contains(new XYCoord(x + 1, y))
+        || overlay.area.contains(new XYCoord(x - 1, y))
+        || overlay.area.contains(new XYCoord(x, y + 1))
+        || overlay.area.contains(new XYCoord(x, y - 1));
+  }
+
+  /**
+   * A unit coming out of the fog can block paths in a threat range, and one going back into it can open them up,
+   * whether it was a scout's vision, a flare or a power that did it. Dirty each tile whose visible resident changed.
+   */
+  private void recheckFog(MapPerspective drawableMap)
+  {
+    if( null == residentsSeen )
+    {
+      residentsSeen = new Unit[drawableMap.mapWidth][drawableMap.mapHeight];
+      for( int x = 0; x < drawableMap.mapWidth; ++x )
+        for( int y = 0; y < drawableMap.mapHeight; ++y )
+          residentsSeen[x][y] = drawableMap.getResident(x, y);
+      return;
+    }
+    for( int x = 0; x < drawableMap.mapWidth; ++x )
+      for( int y = 0; y < drawableMap.mapHeight; ++y )
+      {
+        Unit resident = drawableMap.getResident(x, y);
+        if( resident != residentsSeen[x][y] )
+        {
+          residentsSeen[x][y] = resident;
+          dirtyTile(x, y);
+        }
+      }
   }
 
   public ArrayList<GameOverlay> getNormalOverlays(final OverlayMode mode, final MapPerspective drawableMap)
   {
+    // Our per-unit overlays are only valid for the perspective they were calculated in.
+    if( drawableMap != lastDrawnMap )
+    {
+      InvalidateCache();
+      lastDrawnMap = drawableMap;
+    }
+    recheckFog(drawableMap);
+
     if( !cache.containsKey(mode) )
     {
-      ArrayList<GameOverlay> cacheLine = new ArrayList<>();
       ArrayList<Unit> threats = new ArrayList<>();
 
       final Army viewer = drawableMap.viewer;
       if( null == viewer )
         return new ArrayList<>();
 
-      for( Army army : game.armies )
+      if( null == armyOverlays )
       {
-        cacheLine.addAll(army.getMyOverlays(drawableMap, army == viewer));
+        armyOverlays = new ArrayList<>();
+        for( Army army : game.armies )
+        {
+          armyOverlays.addAll(army.getMyOverlays(drawableMap, army == viewer));
+        }
       }
+      ArrayList<GameOverlay> cacheLine = new ArrayList<>(armyOverlays);
 
       switch (mode)
       {
@@ -90,32 +221,16 @@ public class OverlayCache implements CacheInvalidationListener
         case NONE:
           break;
       }
+      final HashMap<Unit, GameOverlay> unitOverlays = (mode == OverlayMode.VISION) ? visionOverlays : threatOverlays;
       for( Unit u : threats )
       {
-        XYCoord uCoord = new XYCoord(u);
-
-        final Collection<XYCoord> overlayCoords;
-        final Color edgeColor;
-        final Color fillColor;
-        if( mode == OverlayMode.VISION )
-        {
-          final Color basis = Color.YELLOW;
-          int r = basis.getRed(), g = basis.getGreen(), b = basis.getBlue();
-          edgeColor = new Color(r, g, b, 200);
-          fillColor = new Color(r, g, b, 100);
-          overlayCoords = Utils.findLocationsInRange(drawableMap, uCoord, u.model.visionRange);
-        }
-        else
+        GameOverlay overlay = unitOverlays.get(u);
+        if( null == overlay || !overlay.origin.equals(u.x, u.y) )
         {
-          final Color basis = u.CO.myColor;
-          int r = basis.getRed(), g = basis.getGreen(), b = basis.getBlue();
-          edgeColor = new Color(r, g, b, 200);
-          fillColor = new Color(r, g, b, 100);
-          overlayCoords = AICombatUtils.findThreatPower(drawableMap, u, null).keySet();
+          overlay = buildUnitOverlay(mode, drawableMap, u);
+          unitOverlays.put(u, overlay);
         }
-
-        cacheLine.add(new GameOverlay(uCoord, overlayCoords,
-                                      fillColor, edgeColor));
+        cacheLine.add(overlay);
       }
 
       cache.put(mode, cacheLine);
@@ -124,4 +239,154 @@ public class OverlayCache implements CacheInvalidationListener
     return new ArrayList<>(cache.get(mode));
   }
 
+  private static GameOverlay buildUnitOverlay(final OverlayMode mode, final MapPerspective drawableMap, Unit u)
+  {
+    XYCoord uCoord = new XYCoord(u);
+
+    final Collection<XYCoord> overlayCoords;
+    final Color edgeColor;
+    final Color fillColor;
+    if( mode == OverlayMode.VISION )
+    {
+      final Color basis = Color.YELLOW;
+      int r = basis.getRed(), g = basis.getGreen(), b = basis.getBlue();
+      edgeColor = new Color(r, g, b, 200);
+      fillColor = new Color(r, g, b, 100);
+      overlayCoords = Utils.findLocationsInRange(drawableMap, uCoord, u.model.visionRange);
+    }
+    else
+    {
+      final Color basis = u.CO.myColor;
+      int r = basis.getRed(), g = basis.getGreen(), b = basis.getBlue();
+      edgeColor = new Color(r, g, b, 200);
+      fillColor = new Color(r, g, b, 100);
+      overlayCoords = AICombatUtils.findThreatPower(drawableMap, u, null).keySet();
+    }
+
+    return new GameOverlay(uCoord, overlayCoords, fillColor, edgeColor);
+  }
+
+  // Events that only touch a few units/tiles.
+  @Override
+  public GameEventQueue receiveBattleEvent(BattleSummary summary)
+  {
+    dirtyUnit(summary.attacker.unit);
+    dirtyUnit(summary.defender.unit);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveDemolitionEvent(Unit actor, XYCoord tile)
+  {
+    dirtyUnit(actor);
+    dirtyTile(tile);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveCreateUnitEvent(Unit unit)
+  {
+    dirtyUnit(unit);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveCaptureEvent(Unit unit, Commander prevOwner, MapLocation location)
+  {
+    // Property ownership can change vision, so the set of visible threats must be reassembled.
+    dirtyTile(location.getCoordinates());
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveLoadEvent(LoadLifecycle.LoadEvent event)
+  {
+    dirtyTile(event.getStartPoint());
+    dirtyTile(event.getEndPoint());
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveMoveEvent(Unit unit, GamePath unitPath)
+  {
+    if( unitPath.getPathLength() > 0 )
+      dirtyTile(unitPath.getWaypoint(0));
+    dirtyUnit(unit);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveTeleportEvent(Unit teleporter, XYCoord from, XYCoord to)
+  {
+    dirtyTile(from);
+    dirtyTile(to);
+    dirtyUnit(teleporter);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveUnitJoinEvent(JoinLifecycle.JoinEvent event)
+  {
+    dirtyUnit(event.unitDonor);
+    dirtyUnit(event.unitRecipient);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveResupplyEvent(ResupplyEvent event)
+  {
+    // Fuel limits movement, so the resupplied unit's threat may grow.
+    dirtyTile(event.getStartPoint());
+    dirtyTile(event.getEndPoint());
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveUnitDieEvent(Unit victim, XYCoord grave, Integer healthBeforeDeath)
+  {
+    threatOverlays.remove(victim);
+    visionOverlays.remove(victim);
+    dirtyTile(grave);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveUnloadEvent(UnloadLifecycle.UnloadEvent event)
+  {
+    dirtyTile(event.getStartPoint());
+    dirtyTile(event.getEndPoint());
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveUnitTransformEvent(Unit unit, UnitModel oldType)
+  {
+    dirtyUnit(unit);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveTerrainChangeEvent(ArrayList<EnvironmentAssignment> terrainChanges)
+  {
+    for( EnvironmentAssignment ea : terrainChanges )
+      dirtyTile(ea.where);
+    return null;
+  }
+  @Override
+  public GameEventQueue receiveDeployCOUEvent(Unit COU, int cost)
+  {
+    dirtyUnit(COU);
+    return null;
+  }
+
+  // CO energy can resize CO zones, but can't change any unit's reach.
+  @Override
+  public GameEventQueue receiveModifyCommanderEnergyEvent(Commander beneficiary, int deltaActualFunds)
+  {
+    cache.clear();
+    armyOverlays = null;
+    return null;
+  }
+
+  // Events that can change movement or vision everywhere at once.
+  @Override
+  public GameEventQueue receiveCommanderDefeatEvent(ArmyDefeatEvent event){ InvalidateCache(); return null; }
+  @Override
+  public GameEventQueue receiveTurnInitEvent(MapMaster map, Army co, int turn){ InvalidateCache(); return null; }
+  @Override
+  public GameEventQueue receiveTurnEndEvent(Army co, int turn){ InvalidateCache(); return null; }
+  @Override
+  public GameEventQueue receiveWeatherChangeEvent(Weathers weather, int duration){ InvalidateCache(); return null; }
+  @Override
+  public GameEventQueue receiveCommanderAbilityEvent(CommanderAbility ability){ InvalidateCache(); return null; }
+  @Override
+  public GameEventQueue receiveCommanderAbilityRevertEvent(CommanderAbility ability){ InvalidateCache(); return null; }
 }
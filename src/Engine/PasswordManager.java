@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.InputMismatchException;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.UUID;
 
 public class PasswordManager
 {
@@ -43,6 +44,14 @@ public class PasswordManager
     return matches;
   }
 
+  /** As validateAccess(Army), for an army we only have the password salt and hash of; see SaveHeader. */
+  public static boolean validateAccess(long salt, UUID passwordHash)
+  {
+    if( null == passwordHash ) return true;
+
+    return passwordHash.equals(Army.hashPass(salt, readPassfile()));
+  }
+
   private static void writePassfile(String pass)
   {
     try
@@ -52,6 +52,7 @@ public class PathCalcParams
 
   public ArrayList<SearchNode> findAllPaths()
   {
+    WorkCounter.countPathSearch();
     ArrayList<SearchNode> reachableTiles = new ArrayList<>();
 
     if( null == mt || null == start || start.x < 0 || start.y < 0 )
@@ -108,6 +109,7 @@ public class PathCalcParams
    */
   public GamePath findShortestPath(int x, int y)
   {
+    WorkCounter.countPathSearch();
     if( null == start || null == mt || null == gameMap || !gameMap.isLocationValid(start.x, start.y) )
     {
       return null;
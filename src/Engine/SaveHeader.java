@@ -0,0 +1,193 @@
+package Engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import CommandingOfficers.Commander;
+import Terrain.MapLocation;
+import Terrain.MapMaster;
+
+/**
+ * A summary of a saved game, written at the front of each CompactSave so the load menu can list saves, and tell
+ * whose turn each one is, without deserializing the game.
+ * <p>
+ * Holds enough of each army to repeat the check GameInstance.getSaveWarnings() makes by calling turn() on the
+ * loaded game: who plays next, whether that army is an AI, and its password, if any.
+ */
+public class SaveHeader
+{
+  private static final byte DEFEATED = 1, AI = 2, PASSWORD = 4;
+
+  public final String mapName;
+  public final int day;
+  /** Index of the army whose turn it was when the game was saved; -1 if the game hadn't started. */
+  public final int activeArmy;
+  /** Each army's commanders, as "Name" or "Name / Name" for tag teams. */
+  public final String[] armyCOs;
+  /** Changes whenever the map's terrain or property ownership does, so a cached minimap can be reused until then. */
+  public final long thumbnailHash;
+
+  private final boolean securityEnabled;
+  private final byte[] armyFlags;
+  private final long[] passSalts;
+  private final UUID[] passHashes;
+
+  SaveHeader(GameInstance game)
+  {
+    MapMaster map = game.gameMap;
+    mapName = (null == map.getMapName()) ? "" : map.getMapName();
+    day = game.getCurrentTurn();
+    activeArmy = game.getActiveCOIndex();
+    securityEnabled = game.isSecurityEnabled;
+
+    int numArmies = game.armies.length;
+    armyCOs = new String[numArmies];
+    armyFlags = new byte[numArmies];
+    passSalts = new long[numArmies];
+    passHashes = new UUID[numArmies];
+    for( int i = 0; i < numArmies; ++i )
+    {
+      Army army = game.armies[i];
+      StringBuilder names = new StringBuilder();
+      for( Commander co : army.cos )
+      {
+        if( names.length() > 0 )
+          names.append(" / ");
+        names.append(co.coInfo.name);
+      }
+      armyCOs[i] = names.toString();
+      armyFlags[i] = (byte) ((army.isDefeated ? DEFEATED : 0) | (army.isAI() ? AI : 0) | (army.hasPassword() ? PASSWORD : 0));
+      passSalts[i] = army.getPasswordSalt();
+      passHashes[i] = army.getPasswordHash();
+    }
+    thumbnailHash = hashMap(game);
+  }
+
+  private SaveHeader(String mapName, int day, int activeArmy, boolean securityEnabled, long thumbnailHash, String[] armyCOs,
+      byte[] armyFlags, long[] passSalts, UUID[] passHashes)
+  {
+    this.mapName = mapName;
+    this.day = day;
+    this.activeArmy = activeArmy;
+    this.securityEnabled = securityEnabled;
+    this.thumbnailHash = thumbnailHash;
+    this.armyCOs = armyCOs;
+    this.armyFlags = armyFlags;
+    this.passSalts = passSalts;
+    this.passHashes = passHashes;
+  }
+
+  /**
+   * FNV-1a over each tile's terrain and owner. Terrain goes in by name, as MapInfo.hashContents() does, since the
+   * hash is kept alongside cached minimaps and has to come out the same in the next run.
+   */
+  private static long hashMap(GameInstance game)
+  {
+    long hash = 0xcbf29ce484222325L;
+    for( int y = 0; y < game.gameMap.mapHeight; ++y )
+      for( int x = 0; x < game.gameMap.mapWidth; ++x )
+      {
+        MapLocation loc = game.gameMap.getLocation(x, y);
+        int owner = (null == loc.getOwner()) ? -1 : game.getCOIndex(loc.getOwner().army);
+        hash = (hash ^ loc.getEnvironment().terrainType.toString().hashCode()) * 0x100000001b3L;
+        hash = (hash ^ owner) * 0x100000001b3L;
+      }
+    return hash;
+  }
+
+  /**
+   * Same as GameInstance.getSaveWarnings(), without loading the game.
+   * @return "!" if the save is from an incompatible version, "~" if it's someone else's turn, or "" if it's good to go.
+   */
+  public String getWarnings(GameVersion saveVersion)
+  {
+    if( !new GameVersion().isEqual(saveVersion) )
+    {
+      System.out.println(String.format("Save is incompatible version: %s", saveVersion));
+      return "!";
+    }
+
+    // Find who plays next, as turn() would.
+    int next = activeArmy;
+    int nextDay = day;
+    for( int i = 0; i < armyFlags.length; ++i )
+    {
+      next++;
+      if( next > armyFlags.length - 1 )
+      {
+        nextDay++;
+        next = 0;
+      }
+      if( 0 == (armyFlags[next] & DEFEATED) )
+        break;
+    }
+    boolean enforced = nextDay > 1 && securityEnabled && 0 == (armyFlags[next] & AI);
+    if( enforced && !PasswordManager.validateAccess(passSalts[next], passHashes[next]) )
+    {
+      System.out.println(String.format("Save is for another player's turn (%s).", next));
+      return "~";
+    }
+    return "";
+  }
+
+  /** Writes the header with a length prefix, so older readers can skip fields added later. */
+  void write(DataOutputStream out) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream data = new DataOutputStream(bytes);
+    data.writeUTF(mapName);
+    data.writeInt(day);
+    data.writeInt(activeArmy);
+    data.writeBoolean(securityEnabled);
+    data.writeLong(thumbnailHash);
+    data.writeShort(armyCOs.length);
+    for( int i = 0; i < armyCOs.length; ++i )
+    {
+      data.writeUTF(armyCOs[i]);
+      data.writeByte(armyFlags[i]);
+      if( 0 != (armyFlags[i] & PASSWORD) )
+      {
+        data.writeLong(passSalts[i]);
+        data.writeLong(passHashes[i].getMostSignificantBits());
+        data.writeLong(passHashes[i].getLeastSignificantBits());
+      }
+    }
+    data.flush();
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  static SaveHeader read(DataInputStream in) throws IOException
+  {
+    int length = in.readInt();
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+
+    String mapName = data.readUTF();
+    int day = data.readInt();
+    int activeArmy = data.readInt();
+    boolean securityEnabled = data.readBoolean();
+    long thumbnailHash = data.readLong();
+    int numArmies = data.readShort();
+    String[] armyCOs = new String[numArmies];
+    byte[] armyFlags = new byte[numArmies];
+    long[] passSalts = new long[numArmies];
+    UUID[] passHashes = new UUID[numArmies];
+    for( int i = 0; i < numArmies; ++i )
+    {
+      armyCOs[i] = data.readUTF();
+      armyFlags[i] = data.readByte();
+      if( 0 != (armyFlags[i] & PASSWORD) )
+      {
+        passSalts[i] = data.readLong();
+        passHashes[i] = new UUID(data.readLong(), data.readLong());
+      }
+    }
+    return new SaveHeader(mapName, day, activeArmy, securityEnabled, thumbnailHash, armyCOs, armyFlags, passSalts, passHashes);
+  }
+}
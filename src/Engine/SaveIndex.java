@@ -0,0 +1,179 @@
+package Engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the saves in a folder along with their headers, caching the headers in an index file in that folder
+ * so listing a few hundred saves doesn't mean opening a few hundred files.
+ * <p>
+ * An index entry is trusted while its save keeps the same size and modification time; anything else is read fresh
+ * and the index rewritten. The index is only a cache: deleting it, or failing to write it, just makes listing slower.
+ */
+public class SaveIndex
+{
+  public static final String INDEX_FILE = "saves.idx";
+  private static final int MAGIC = 0x49505349; // "IPSI"
+  private static final short VERSION = 1;
+
+  public static class Entry
+  {
+    public final File file;
+    /** Null for saves in the old format, which have no header to read. */
+    public final CompactSave.Header header;
+
+    Entry(File file, CompactSave.Header header)
+    {
+      this.file = file;
+      this.header = header;
+    }
+
+    /** @return The same warning symbols as SerializationUtils.getSaveWarnings(), from the header if there is one. */
+    public String getWarnings()
+    {
+      if( null != header && null != header.summary )
+        return header.summary.getWarnings(header.version);
+      return SerializationUtils.getSaveWarnings(file.getAbsolutePath());
+    }
+  }
+
+  private static class Cached
+  {
+    final long size, modified;
+    final byte[] header; // Empty for old-format saves.
+
+    Cached(long size, long modified, byte[] header)
+    {
+      this.size = size;
+      this.modified = modified;
+      this.header = header;
+    }
+  }
+
+  /** @return Every .svp file in the folder, by name, with its header. */
+  public static List<Entry> list(File folder)
+  {
+    List<Entry> entries = new ArrayList<>();
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(".svp"));
+    if( null == files )
+      return entries;
+    Arrays.sort(files);
+
+    File indexFile = new File(folder, INDEX_FILE);
+    Map<String, Cached> index = readIndex(indexFile);
+    Map<String, Cached> updated = new HashMap<>();
+    boolean changed = false;
+    for( File file : files )
+    {
+      if( file.isDirectory() )
+        continue;
+      Cached cached = index.get(file.getName());
+      if( null == cached || cached.size != file.length() || cached.modified != file.lastModified() )
+      {
+        cached = readSave(file);
+        if( null == cached )
+        {
+          entries.add(new Entry(file, null)); // Let getWarnings() flag it.
+          continue;
+        }
+        changed = true;
+      }
+      updated.put(file.getName(), cached);
+
+      CompactSave.Header header = null;
+      if( cached.header.length > 0 )
+      {
+        try
+        {
+          header = CompactSave.readHeader(new ByteArrayInputStream(cached.header));
+        }
+        catch (IOException ex)
+        {
+          System.out.println("WARNING! Bad save header in " + file.getName() + ": " + ex.toString());
+        }
+      }
+      entries.add(new Entry(file, header));
+    }
+
+    if( changed || updated.size() != index.size() )
+      writeIndex(indexFile, updated);
+    return entries;
+  }
+
+  private static Cached readSave(File file)
+  {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1024))
+    {
+      byte[] header = CompactSave.readHeaderBytes(in);
+      return new Cached(file.length(), file.lastModified(), (null == header) ? new byte[0] : header);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to read save " + file.getName() + ": " + ex.toString());
+      return null;
+    }
+  }
+
+  private static Map<String, Cached> readIndex(File indexFile)
+  {
+    Map<String, Cached> index = new HashMap<>();
+    if( !indexFile.canRead() )
+      return index;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+    {
+      if( MAGIC != in.readInt() || VERSION != in.readShort() )
+        return index; // Some other version's index; we'll just replace it.
+      int count = in.readInt();
+      for( int i = 0; i < count; ++i )
+      {
+        String name = in.readUTF();
+        long size = in.readLong();
+        long modified = in.readLong();
+        byte[] header = new byte[in.readInt()];
+        in.readFully(header);
+        index.put(name, new Cached(size, modified, header));
+      }
+    }
+    catch (IOException ex)
+    {
+      index.clear(); // Half an index isn't worth trusting.
+    }
+    return index;
+  }
+
+  private static void writeIndex(File indexFile, Map<String, Cached> index)
+  {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile))))
+    {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeInt(index.size());
+      for( Map.Entry<String, Cached> entry : index.entrySet() )
+      {
+        Cached cached = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(cached.size);
+        out.writeLong(cached.modified);
+        out.writeInt(cached.header.length);
+        out.write(cached.header);
+      }
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to write save index: " + ex.toString());
+    }
+  }
+}
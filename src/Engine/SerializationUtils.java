@@ -1,19 +1,38 @@
 package Engine;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 
 public class SerializationUtils
 {
+  /** Whether new saves get their body deflated; see CompactSave. */
+  public static boolean compressSaves = true;
+
   public static String getSaveWarnings(String filename)
   {
     System.out.println(String.format("Checking compatibility of save %s", filename));
 
-    try (FileInputStream file = new FileInputStream(filename); ObjectInputStream in = new ObjectInputStream(file);)
+    // If the save has a summary up front, that's all we need.
+    try (InputStream file = new BufferedInputStream(new FileInputStream(filename)))
+    {
+      if( CompactSave.isCompactSave(file) )
+      {
+        CompactSave.Header header = CompactSave.readHeaderAfterMagic(file);
+        if( null != header.summary )
+          return header.summary.getWarnings(header.version);
+      }
+    }
+    catch (Exception ex)
+    {
+      return "!?";
+    }
+
+    try (ObjectInputStream in = openSave(filename))
     {
       return GameInstance.getSaveWarnings(in);
     }
@@ -30,7 +49,7 @@ public class SerializationUtils
     System.out.println(String.format("Deserializing game data from %s", filename));
 
     GameInstance load = null;
-    try (FileInputStream file = new FileInputStream(filename); ObjectInputStream in = new ObjectInputStream(file);)
+    try (ObjectInputStream in = openSave(filename))
     {
       in.readObject(); // Pull out and discard our version info
 
@@ -44,15 +63,37 @@ public class SerializationUtils
     return load;
   }
 
+  /**
+   * Opens either save format: a CompactSave, or an old save that's just a Java object stream.
+   * @return A stream positioned at the GameVersion, followed by the GameInstance.
+   */
+  public static ObjectInputStream openSave(String filename) throws IOException
+  {
+    InputStream file = new BufferedInputStream(new FileInputStream(filename));
+    try
+    {
+      file.mark(4);
+      if( CompactSave.isCompactSave(file) )
+        return CompactSave.openBody(file, CompactSave.readHeaderAfterMagic(file));
+      file.reset();
+      return new ObjectInputStream(file);
+    }
+    catch (IOException ex)
+    {
+      file.close();
+      throw ex;
+    }
+  }
+
   public static String writeSave(GameInstance game, boolean endCurrentTurn)
   {
     String filename = Engine.Driver.JAR_DIR + "save/" + game.saveFile;
     new File(Engine.Driver.JAR_DIR + "save/").mkdirs(); // make sure we don't freak out if the directory's not there
 
     System.out.println(String.format("Now saving to %s", filename));
-    try (FileOutputStream file = new FileOutputStream(filename); ObjectOutputStream out = new ObjectOutputStream(file);)
+    try
     {
-      game.writeSave(out, endCurrentTurn);
+      CompactSave.save(game, endCurrentTurn, Paths.get(filename), compressSaves);
     }
     catch (IOException ex)
     {
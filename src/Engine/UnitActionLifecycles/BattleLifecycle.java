@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -18,8 +19,10 @@ import Engine.Combat.StrikeParams;
 import Engine.GameEvents.ArmyDefeatEvent;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
 import Engine.GameEvents.MapChangeEvent;
+import Engine.GameEvents.UndoLog;
 import Terrain.Environment;
 import Terrain.GameMap;
 import Terrain.MapLocation;
@@ -248,6 +251,13 @@ public abstract class BattleLifecycle
     {
       return UnitActionFactory.ATTACK;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~BattleAction
 
   public static class DemolitionAction extends GameAction
@@ -367,6 +377,13 @@ public abstract class BattleLifecycle
     {
       return UnitActionFactory.ATTACK;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~DemolitionAction
 
   /**
@@ -419,6 +436,23 @@ public abstract class BattleLifecycle
       return listener.receiveBattleEvent(battleInfo);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.BATTLE;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(battleInfo.attacker.unit);
+      log.saveUnit(battleInfo.defender.unit);
+      // Both sides' COs get charged for the damage (see Army).
+      log.saveArmy(battleInfo.attacker.unit.CO.army);
+      log.saveArmy(battleInfo.defender.unit.CO.army);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -465,7 +499,7 @@ public abstract class BattleLifecycle
     }
     public boolean demolitionFinishes()
     {
-      return target.durability - percentDamage <= 0;
+      return target.getDurability() - percentDamage <= 0;
     }
 
     @Override
@@ -480,13 +514,27 @@ public abstract class BattleLifecycle
       return listener.receiveDemolitionEvent(result.attacker.unit, target.getCoordinates());
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.DEMOLITION;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(result.attacker.unit);
+      log.saveLocation(gameMap, target.getCoordinates());
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
       // Apply the battle results that we calculated previously.
       Unit attacker = result.attacker.unit;
       attacker.fire(result.attacker.weapon); // expend ammo
-      target.durability -= percentDamage;
+      target.setDurability(target.getDurability() - percentDamage);
     }
 
     @Override
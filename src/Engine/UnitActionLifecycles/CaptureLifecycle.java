@@ -1,6 +1,7 @@
 package Engine.UnitActionLifecycles;
 
 import CommandingOfficers.Commander;
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -10,7 +11,9 @@ import Engine.XYCoord;
 import Engine.GameEvents.ArmyDefeatEvent;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapLocation;
 import Terrain.MapMaster;
@@ -160,6 +163,13 @@ public abstract class CaptureLifecycle
     {
       return UnitActionFactory.CAPTURE;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~CaptureAction
   
   public static class CaptureEvent implements GameEvent
@@ -202,12 +212,26 @@ public abstract class CaptureLifecycle
     return listener.receiveCaptureEvent( unit, prevOwner, location );
   }
 
+  @Override
+  public EventHook getListenerHook()
+  {
+    return EventHook.CAPTURE;
+  }
+
   public boolean willCapture()
   {
     int finalCapAmt = priorCaptureAmount + captureAmount;
     return finalCapAmt >= location.getEnvironment().terrainType.getCaptureThreshold();
   }
 
+  @Override
+  public boolean recordUndo(MapMaster gameMap, UndoLog log)
+  {
+    log.saveUnit(unit);
+    log.saveLocation(gameMap, location.getCoordinates());
+    return true;
+  }
+
   /**
    * NOTE: CaptureEvent expects the unit to already be on the location
    * it is attempting to capture. This should always be true (at least
@@ -2,6 +2,7 @@ package Engine.UnitActionLifecycles;
 
 import java.util.ArrayList;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -10,7 +11,9 @@ import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -147,6 +150,13 @@ public abstract class FlareLifecycle
     {
       return launchLocation;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   }
 
   public static class FlareEvent implements GameEvent
@@ -175,6 +185,19 @@ public abstract class FlareLifecycle
       return null;
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.NONE;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(launcher);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -1,5 +1,6 @@
 package Engine.UnitActionLifecycles;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -8,7 +9,9 @@ import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -151,6 +154,13 @@ public abstract class JoinLifecycle
     {
       return UnitActionFactory.JOIN;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~UnitJoinAction
 
   public static class JoinEvent implements GameEvent
@@ -176,6 +186,22 @@ public abstract class JoinLifecycle
       return listener.receiveUnitJoinEvent(this);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.UNIT_JOIN;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(unitRecipient);
+      log.saveUnitAndLocation(gameMap, unitDonor);
+      log.saveFunds(unitDonor.CO.army);
+      log.saveCommander(unitDonor.CO);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -1,6 +1,8 @@
 package Engine.UnitActionLifecycles;
 
 import java.util.ArrayList;
+
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -10,7 +12,9 @@ import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -165,6 +169,18 @@ public abstract class LaunchLifecycle
     {
       return UnitActionFactory.LAUNCH;
     }
+
+    /**
+     * The launch itself is always in place, so record what the cargo does instead: its action's type, path,
+     * target and extras, with the launcher as the actor and the cargo's place in its hold as the option.
+     */
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      cargoAction.fillJournalRecord(record);
+      record.setActor(launcher);
+      record.option = launcher.heldUnits.indexOf(launchee);
+    }
   } // ~Action
 
   public static class LaunchEvent implements GameEvent
@@ -190,6 +206,20 @@ public abstract class LaunchLifecycle
       return null;
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.NONE;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(transport);
+      log.saveUnit(cargo);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -1,5 +1,6 @@
 package Engine.UnitActionLifecycles;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -8,7 +9,9 @@ import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -142,6 +145,13 @@ public abstract class LoadLifecycle
     {
       return UnitActionFactory.LOAD;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~LoadAction
 
   public static class LoadEvent implements GameEvent
@@ -167,6 +177,20 @@ public abstract class LoadLifecycle
       return listener.receiveLoadEvent(this);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.LOAD;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnitAndLocation(gameMap, unitCargo);
+      log.saveUnit(unitTransport);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -2,6 +2,7 @@ package Engine.UnitActionLifecycles;
 
 import java.util.ArrayList;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -156,6 +157,13 @@ public abstract class RepairLifecycle
     {
       return UnitActionFactory.REPAIR_UNIT;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~RepairUnitAction
 
   // No event, as HealUnitEvent and ResupplyEvents are held in common with non-unit activities
@@ -2,6 +2,7 @@ package Engine.UnitActionLifecycles;
 
 import java.util.ArrayList;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -168,6 +169,13 @@ public abstract class ResupplyLifecycle
     {
       return UnitActionFactory.RESUPPLY;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~ResupplyAction
 
   // No event, as ResupplyEvents are held in common with non-unit activities
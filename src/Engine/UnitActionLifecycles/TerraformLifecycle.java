@@ -7,6 +7,7 @@ import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventQueue;
 import Engine.GameEvents.MapChangeEvent;
+import Engine.GameEvents.UndoLog;
 import Terrain.Environment;
 import Terrain.GameMap;
 import Terrain.MapMaster;
@@ -116,6 +117,13 @@ public abstract class TerraformLifecycle
       terraformProgress = uc.calculateCapturePower();
     }
 
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(unit);
+      return super.recordUndo(gameMap, log);
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
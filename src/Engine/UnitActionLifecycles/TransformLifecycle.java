@@ -6,7 +6,9 @@ import Engine.UnitActionFactory;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -119,6 +121,19 @@ public abstract class TransformLifecycle
       return listener.receiveUnitTransformEvent(unit, oldType);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.UNIT_TRANSFORM;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(unit);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
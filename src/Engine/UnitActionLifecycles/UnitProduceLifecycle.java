@@ -8,7 +8,9 @@ import Engine.UnitActionFactory;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -164,6 +166,21 @@ public abstract class UnitProduceLifecycle
       return null;
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.CREATE_UNIT;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveFunds(myCommander.army);
+      log.saveCommander(myCommander);
+      log.saveUnit(builder);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
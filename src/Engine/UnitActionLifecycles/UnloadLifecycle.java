@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -13,7 +14,9 @@ import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.GameEvent;
 import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.UndoLog;
 import Terrain.GameMap;
 import Terrain.MapMaster;
 import UI.MapView;
@@ -200,6 +203,16 @@ public abstract class UnloadLifecycle
     {
       return UnitActionFactory.UNLOAD;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+      if( null != myDropoffs )
+        for( Entry<Unit, XYCoord> drop : myDropoffs.entrySet() )
+          record.addExtra(actor.heldUnits.indexOf(drop.getKey()), drop.getValue().x, drop.getValue().y);
+    }
   } // ~UnloadAction
 
   public static class UnloadEvent implements GameEvent
@@ -232,6 +245,21 @@ public abstract class UnloadLifecycle
       return listener.receiveUnloadEvent(this);
     }
 
+    @Override
+    public EventHook getListenerHook()
+    {
+      return EventHook.UNLOAD;
+    }
+
+    @Override
+    public boolean recordUndo(MapMaster gameMap, UndoLog log)
+    {
+      log.saveUnit(transport);
+      log.saveUnit(cargo);
+      log.saveLocation(gameMap, dropLoc);
+      return true;
+    }
+
     @Override
     public void performEvent(MapMaster gameMap)
     {
@@ -1,5 +1,6 @@
 package Engine.UnitActionLifecycles;
 
+import Engine.EventJournal;
 import Engine.GameAction;
 import Engine.GameActionSet;
 import Engine.GamePath;
@@ -113,6 +114,13 @@ public abstract class WaitLifecycle
     {
       return UnitActionFactory.WAIT;
     }
+
+    @Override
+    public void fillJournalRecord(EventJournal.ActionRecord record)
+    {
+      super.fillJournalRecord(record);
+      record.setPath(movePath);
+    }
   } // ~WaitAction
 
   // No event, as MoveEvent is common to many unit action lifecycles
@@ -72,7 +72,7 @@ public class Utils
     ArrayList<XYCoord> targets = new ArrayList<XYCoord>();
     for( XYCoord loc : locations )
     {
-      Unit resident = map.getLocation(loc).getResident();
+      Unit resident = map.getResident(loc);
       if( resident != null && // Peeps are there.
           resident.CO.isEnemy(attacker.CO) && // They are not friendly.
           attacker.weapon.getDamage(resident.model) > 0 ) // We can shoot them.
@@ -97,7 +97,7 @@ public class Utils
       for( XYCoord loc : locations )
       {
         // Add any location that is empty and supports movement of the cargo unit.
-        if( (map.isLocationEmpty(loc) || map.getLocation(loc).getResident() == transport)
+        if( (map.isLocationEmpty(loc) || map.getResident(loc) == transport)
             && cargoMoveType.canStandOn(map.getEnvironment(loc.x, loc.y)) )
         {
           dropoffLocations.add(loc);
@@ -504,7 +504,7 @@ public class Utils
       for( int y = 0; y < gameMap.mapHeight; ++y )
       {
         XYCoord xyc = new XYCoord(x, y);
-        if( gameMap.getLocation(xyc).getOwner() == cmdr )
+        if( gameMap.getOwner(xyc) == cmdr )
         {
           propTiles.add(xyc);
         }
@@ -527,7 +527,7 @@ public class Utils
       for( int y = 0; y < gameMap.mapHeight; ++y )
       {
         XYCoord xyc = new XYCoord(x, y);
-        Unit unit = gameMap.getLocation(xyc).getResident();
+        Unit unit = gameMap.getResident(xyc);
         if( unit != null && cmdr == unit.CO )
         {
           unitTiles.add(xyc);
@@ -0,0 +1,35 @@
+package Engine;
+
+/**
+ * Counts the expensive calculations the engine runs on each thread - path searches and battle calculations - so
+ * code above the engine (e.g. AIProfiler) can tell how much of that work a piece of it caused.
+ * Counts are per thread, so concurrent games don't pollute each other's numbers.
+ */
+public class WorkCounter
+{
+  private static final int PATH_SEARCHES = 0;
+  private static final int BATTLE_CALCS = 1;
+  private static final ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[2]);
+
+  /** Called by PathCalcParams for each path search. */
+  public static void countPathSearch()
+  {
+    counts.get()[PATH_SEARCHES]++;
+  }
+  /** Called by CombatEngine for each battle calculation, real or simulated. */
+  public static void countBattleCalc()
+  {
+    counts.get()[BATTLE_CALCS]++;
+  }
+
+  /** @return How many path searches this thread has run. */
+  public static long getPathSearches()
+  {
+    return counts.get()[PATH_SEARCHES];
+  }
+  /** @return How many battle calculations this thread has run. */
+  public static long getBattleCalcs()
+  {
+    return counts.get()[BATTLE_CALCS];
+  }
+}
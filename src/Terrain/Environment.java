@@ -1,8 +1,7 @@
 package Terrain;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Environment is a flyweight class - each Terrain/Weather combination is instantiated only once.
@@ -35,8 +34,9 @@ public class Environment implements Serializable
   public final TerrainType terrainType;
   public final Weathers weatherType;
 
-  // Maintain a list of all tile types. Each type will be added the first time it is used.
-  private static Map<TerrainType, Environment[]> tileInstances = new HashMap<TerrainType, Environment[]>();
+  // Every tile, by TerrainType index and weather ordinal, built once when the class loads. The table is never written
+  // after that, so games on any number of threads can read it without locking.
+  private static final Environment[][] tileInstances = buildTiles();
 
   /**
    * Private constructor so that Tile can manage all of its flyweights.
@@ -47,25 +47,34 @@ public class Environment implements Serializable
     weatherType = weather;
   }
 
+  private static Environment[][] buildTiles()
+  {
+    Weathers[] weathers = Weathers.values();
+    Environment[][] tiles = new Environment[TerrainType.TerrainTypeList.size()][weathers.length];
+    for( int t = 0; t < tiles.length; ++t )
+      for( Weathers w : weathers )
+        tiles[t][w.ordinal()] = new Environment(TerrainType.TerrainTypeList.get(t), w);
+    return tiles;
+  }
+
   /**
-   * Returns the Tile flyweight matching the input parameters, creating it first if needed.
-   * @return
+   * Returns the Tile flyweight matching the input parameters.
+   * Every TerrainType must be in TerrainType.TerrainTypeList to have tiles.
    */
   public static Environment getTile(TerrainType terrain, Weathers weather)
   {
-    // Add a new Environment array for this terrain type if it's missing.
-    if( !tileInstances.containsKey(terrain) )
-    {
-      tileInstances.put(terrain, new Environment[Weathers.values().length]);
-    }
+    return tileInstances[terrain.getIndex()][weather.ordinal()];
+  }
 
-    // If we don't have the desired Tile built already, create it.
-    if( tileInstances.get(terrain)[weather.ordinal()] == null )
-    {
-      System.out.println("Creating new Tile " + weather + ", " + terrain);
-      tileInstances.get(terrain)[weather.ordinal()] = new Environment(terrain, weather);
-    }
+  /** Returns the Tile flyweight for the given index into TerrainType.TerrainTypeList and Weathers ordinal. */
+  public static Environment getTile(int terrainIndex, int weatherOrdinal)
+  {
+    return tileInstances[terrainIndex][weatherOrdinal];
+  }
 
-    return tileInstances.get(terrain)[weather.ordinal()];
+  /** Swap a deserialized copy for the flyweight, so identity comparisons keep working after a load. */
+  private Object readResolve() throws ObjectStreamException
+  {
+    return getTile(terrainType, weatherType);
   }
 }
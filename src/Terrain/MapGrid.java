@@ -0,0 +1,372 @@
+package Terrain;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import CommandingOfficers.Commander;
+import Terrain.Environment.Weathers;
+import Units.Unit;
+
+/**
+ * The state of every tile on a map, kept in flat arrays instead of an object per tile.
+ * <p>
+ * Terrain and weather are indices into TerrainType.TerrainTypeList and Weathers, and owners and residents are
+ * indices into small tables of the Commanders and Units currently on the map, so a tile costs about eight bytes.
+ * <p>
+ * Forecasts are kept only for the tiles that have weather coming, as runs of the same weather ending on a given
+ * CO-turn. Tiles are also filed by the next turn their weather could change on - when a run ends, or the turn after
+ * something else changed it - so the turn change only has to look at those.
+ * <p>
+ * MapLocations are views onto a tile of a MapGrid; MapMaster hands them out and reads the arrays directly itself.
+ * Tiles are numbered column by column: index = x * height + y.
+ */
+class MapGrid implements Serializable
+{
+  private static final long serialVersionUID = 1L;
+  private static final byte NO_TERRAIN = -1;
+  private static final byte FULL_DURABILITY = 99;
+  private static final Weathers[] WEATHERS = Weathers.values();
+
+  // Not final, so readObject() can fill them in from older saves.
+  private int width, height;
+  private byte[] terrain;
+  private byte[] weather;
+  private byte[] owner;      // 0 for none, else 1 + index into owners.
+  private byte[] durability;
+  private int[] resident;    // 0 for none, else 1 + index into units.
+
+  // The tables below are left null until a tile needs them, since a lone MapLocation gets a 1x1 grid of its own.
+  private ArrayList<Commander> owners;
+  private ArrayList<Unit> units;   // Unused slots are null.
+  private int[] unitRefs;          // How many tiles name each slot in units; a slot is freed when this hits zero.
+  // Each tile's forecast as runs of weather, soonest first, with each run packed as (last CO-turn << 8 | weather).
+  private long[][] weatherRuns;
+  private int clock = 0; // CO-turns played, as counted by advanceClock().
+  // The tiles whose weather may change, by the CO-turn it may happen on; see settleWeather().
+  private TreeMap<Integer, BitSet> revisits;
+
+  // Rebuilt from units on first use after loading.
+  private transient IdentityHashMap<Unit, Integer> unitSlots;
+  private transient ArrayDeque<Integer> freeSlots;
+
+  MapGrid(int width, int height)
+  {
+    this.width = width;
+    this.height = height;
+    int size = width * height;
+    terrain = new byte[size];
+    weather = new byte[size];
+    owner = new byte[size];
+    durability = new byte[size];
+    resident = new int[size];
+    Arrays.fill(terrain, NO_TERRAIN);
+    Arrays.fill(durability, FULL_DURABILITY);
+  }
+
+  int indexOf(int x, int y)
+  {
+    return x * height + y;
+  }
+
+  Environment getEnvironment(int i)
+  {
+    if( NO_TERRAIN == terrain[i] )
+      return null;
+    return Environment.getTile(terrain[i], weather[i]);
+  }
+  TerrainType getTerrainType(int i)
+  {
+    if( NO_TERRAIN == terrain[i] )
+      return null;
+    return TerrainType.TerrainTypeList.get(terrain[i]);
+  }
+  void setEnvironment(int i, Environment environment)
+  {
+    if( null == environment )
+    {
+      terrain[i] = NO_TERRAIN;
+      return;
+    }
+    terrain[i] = (byte) environment.terrainType.getIndex();
+    byte newWeather = (byte) environment.weatherType.ordinal();
+    if( weather[i] != newWeather )
+      revisit(i, clock + 1); // So the turn change can put it back, if the forecast doesn't agree.
+    weather[i] = newWeather;
+  }
+
+  Commander getOwner(int i)
+  {
+    int slot = owner[i] & 0xFF;
+    return (0 == slot) ? null : owners.get(slot - 1);
+  }
+  void setOwner(int i, Commander co)
+  {
+    if( null == co )
+    {
+      owner[i] = 0;
+      return;
+    }
+    if( null == owners )
+      owners = new ArrayList<>(4);
+    int slot = 0;
+    while( slot < owners.size() && owners.get(slot) != co )
+      ++slot;
+    if( slot == owners.size() )
+    {
+      if( slot >= 0xFF )
+        throw new IllegalStateException("Too many property owners on one map");
+      owners.add(co);
+    }
+    owner[i] = (byte) (slot + 1);
+  }
+
+  Unit getResident(int i)
+  {
+    int slot = resident[i];
+    return (0 == slot) ? null : units.get(slot - 1);
+  }
+  void setResident(int i, Unit unit)
+  {
+    int prev = resident[i];
+    resident[i] = (null == unit) ? 0 : claimSlot(unit) + 1;
+    if( 0 != prev )
+      releaseSlot(prev - 1);
+  }
+
+  int getDurability(int i)
+  {
+    return durability[i];
+  }
+  void setDurability(int i, int value)
+  {
+    // Only the sign and whether it's below full matter, so clamping a heavily-overkilled tile changes nothing.
+    durability[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+  }
+
+  /**
+   * Moves the weather clock on by the given number of CO-turns.
+   * @return The tiles whose weather may change now, in index order. Each should be passed to settleWeather().
+   */
+  BitSet advanceClock(int coTurns)
+  {
+    clock += coTurns;
+    BitSet due = new BitSet();
+    if( null == revisits )
+      return due;
+    NavigableMap<Integer, BitSet> ready = revisits.headMap(clock, true);
+    for( BitSet tiles : ready.values() )
+      due.or(tiles);
+    ready.clear();
+    return due;
+  }
+
+  /**
+   * Drops the parts of the tile's forecast that are over, and plans the next look at it.
+   * @return The weather the tile should have this turn.
+   */
+  Weathers settleWeather(int i, Weathers defaultWeather)
+  {
+    long[] runs = pruneForecast(i, clock);
+    if( null == runs )
+      return defaultWeather;
+    revisit(i, runEnd(runs[0]) + 1);
+    return runWeather(runs[0]);
+  }
+
+  boolean hasForecast(int i)
+  {
+    return null != pruneForecast(i, clock + 1);
+  }
+  /** Replaces the next {@code duration} turns of the tile's forecast with the given weather. */
+  void setForecast(int i, Weathers w, int duration)
+  {
+    if( duration <= 0 )
+      return;
+    int last = clock + duration;
+    long[] runs = pruneForecast(i, clock + 1);
+    int keep = 0; // The first run that goes on past ours.
+    while( null != runs && keep < runs.length && runEnd(runs[keep]) <= last )
+      ++keep;
+    int tail = (null == runs) ? 0 : runs.length - keep;
+    long[] updated = new long[1 + tail];
+    updated[0] = packRun(w, last);
+    if( tail > 0 )
+      System.arraycopy(runs, keep, updated, 1, tail);
+    if( null == weatherRuns )
+      weatherRuns = new long[terrain.length][];
+    weatherRuns[i] = updated;
+    revisit(i, last + 1);
+  }
+  /** @return The tile's weather for each coming CO-turn, or null if it has no forecast. */
+  ArrayDeque<Weathers> copyForecast(int i)
+  {
+    long[] runs = pruneForecast(i, clock + 1);
+    if( null == runs )
+      return null;
+    ArrayDeque<Weathers> forecast = new ArrayDeque<>();
+    int turn = clock;
+    for( long run : runs )
+      for( ; turn < runEnd(run); ++turn )
+        forecast.add(runWeather(run));
+    return forecast;
+  }
+  /** Replaces the tile's forecast with one from copyForecast(); null or empty clears it. */
+  void restoreForecast(int i, ArrayDeque<Weathers> forecast)
+  {
+    revisit(i, clock + 1);
+    if( null == forecast || forecast.isEmpty() )
+    {
+      if( null != weatherRuns )
+        weatherRuns[i] = null;
+      return;
+    }
+    long[] runs = new long[forecast.size()];
+    int count = 0, turn = clock;
+    for( Weathers w : forecast )
+    {
+      ++turn;
+      if( count > 0 && runWeather(runs[count - 1]) == w )
+        runs[count - 1] = packRun(w, turn); // Same weather as the turn before; just make that run longer.
+      else
+        runs[count++] = packRun(w, turn);
+    }
+    if( null == weatherRuns )
+      weatherRuns = new long[terrain.length][];
+    weatherRuns[i] = Arrays.copyOf(runs, count);
+  }
+
+  /** Flags every tile to have its weather settled next turn, for grids that don't know which ones need it. */
+  void revisitAll()
+  {
+    BitSet all = new BitSet(terrain.length);
+    all.set(0, terrain.length);
+    revisits = new TreeMap<>();
+    revisits.put(clock + 1, all);
+  }
+  private void revisit(int i, int turn)
+  {
+    if( null == revisits )
+      revisits = new TreeMap<>();
+    revisits.computeIfAbsent(turn, t -> new BitSet()).set(i);
+  }
+  /** @return The tile's forecast from the given CO-turn on, dropping any runs over by then; null if nothing is left. */
+  private long[] pruneForecast(int i, int fromTurn)
+  {
+    long[] runs = (null == weatherRuns) ? null : weatherRuns[i];
+    if( null == runs )
+      return null;
+    int first = 0;
+    while( first < runs.length && runEnd(runs[first]) < fromTurn )
+      ++first;
+    if( first > 0 )
+    {
+      runs = (first == runs.length) ? null : Arrays.copyOfRange(runs, first, runs.length);
+      weatherRuns[i] = runs;
+    }
+    return runs;
+  }
+
+  // A run is some weather lasting through a given CO-turn, packed into a long.
+  private static long packRun(Weathers w, int lastTurn)
+  {
+    return ((long) lastTurn << 8) | w.ordinal();
+  }
+  private static int runEnd(long run)
+  {
+    return (int) (run >> 8);
+  }
+  private static Weathers runWeather(long run)
+  {
+    return WEATHERS[(int) (run & 0xFF)];
+  }
+
+  private int claimSlot(Unit unit)
+  {
+    if( null == units )
+    {
+      units = new ArrayList<>();
+      unitRefs = new int[8];
+    }
+    if( null == unitSlots )
+      indexUnits();
+    Integer slot = unitSlots.get(unit);
+    if( null == slot )
+    {
+      slot = freeSlots.poll();
+      if( null == slot )
+      {
+        slot = units.size();
+        units.add(unit);
+        if( slot >= unitRefs.length )
+          unitRefs = Arrays.copyOf(unitRefs, unitRefs.length * 2);
+      }
+      else
+        units.set(slot, unit);
+      unitSlots.put(unit, slot);
+    }
+    ++unitRefs[slot];
+    return slot;
+  }
+  private void releaseSlot(int slot)
+  {
+    if( --unitRefs[slot] > 0 )
+      return;
+    if( null == unitSlots )
+      indexUnits();
+    unitSlots.remove(units.get(slot));
+    units.set(slot, null);
+    freeSlots.push(slot);
+  }
+  private void indexUnits()
+  {
+    unitSlots = new IdentityHashMap<>();
+    freeSlots = new ArrayDeque<>();
+    for( int slot = 0; slot < units.size(); ++slot )
+    {
+      if( null == units.get(slot) )
+        freeSlots.push(slot);
+      else
+        unitSlots.put(units.get(slot), slot);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream.GetField fields = stream.readFields();
+    width = fields.get("width", 0);
+    height = fields.get("height", 0);
+    terrain = (byte[]) fields.get("terrain", null);
+    weather = (byte[]) fields.get("weather", null);
+    owner = (byte[]) fields.get("owner", null);
+    durability = (byte[]) fields.get("durability", null);
+    resident = (int[]) fields.get("resident", null);
+    owners = (ArrayList<Commander>) fields.get("owners", null);
+    units = (ArrayList<Unit>) fields.get("units", null);
+    unitRefs = (int[]) fields.get("unitRefs", null);
+    clock = fields.get("clock", 0);
+    revisits = (TreeMap<Integer, BitSet>) fields.get("revisits", null);
+
+    if( fields.defaulted("clock") )
+    {
+      // Saved before forecasts were kept as runs: each tile had a queue of the weather for each coming CO-turn.
+      HashMap<Integer, ArrayDeque<Weathers>> queues = (HashMap<Integer, ArrayDeque<Weathers>>) fields.get("forecasts", null);
+      if( null != queues )
+        for( Map.Entry<Integer, ArrayDeque<Weathers>> queue : queues.entrySet() )
+          restoreForecast(queue.getKey(), queue.getValue());
+      revisitAll();
+    }
+    else
+      weatherRuns = (long[][]) fields.get("weatherRuns", null);
+  }
+}
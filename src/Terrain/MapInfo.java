@@ -32,10 +32,25 @@ public class MapInfo implements IEnvironsProvider
   }
   public final String dirPath;
   public final String mapName;
-  public final TerrainType[][] terrain;
+  // Filled in on first use for maps from the MapIndex; see Loader.
+  private TerrainType[][] terrain;
   // Array of coordinates for properties owned by each player; the first index is the CO, the second is an arbitrary ordering
-  public final XYCoord[][] playerProps;
-  public final ArrayList<Map<XYCoord,String>> mapUnits;
+  private XYCoord[][] playerProps;
+  private ArrayList<Map<XYCoord,String>> mapUnits;
+
+  // Taken from the index until the map's loaded, then from the file itself, in case it's changed since.
+  private int width, height, numPlayers;
+  private long contentHash;
+  /** Which of getValidUnitModelSchemes()' schemes can field this map's units, as bits in that order; -1 if not worked out yet. */
+  private int schemeMask = -1;
+  private Loader loader;
+  private volatile boolean loaded;
+
+  /** Reads a map's full contents, for maps whose metadata came from an index. */
+  public interface Loader
+  {
+    MapInfo load();
+  }
 
   public MapInfo(String name, TerrainType[][] tiles, XYCoord[][] props)
   {
@@ -49,21 +64,140 @@ public class MapInfo implements IEnvironsProvider
     terrain = tiles;
     playerProps = props;
     mapUnits = units;
+    width = tiles.length;
+    height = tiles[0].length;
+    numPlayers = props.length;
+    contentHash = hashContents(tiles, props, units);
+    loaded = true;
+  }
+
+  /** A map known only by its metadata until something asks for its contents. */
+  public MapInfo(String dir, String name, int width, int height, int numPlayers, long contentHash, int schemeMask, Loader loader)
+  {
+    dirPath = dir;
+    mapName = name;
+    this.width = width;
+    this.height = height;
+    this.numPlayers = numPlayers;
+    this.contentHash = contentHash;
+    this.schemeMask = schemeMask;
+    this.loader = loader;
+    loaded = false;
+  }
+
+  /**
+   * Reads the map's contents, if they aren't in memory yet. If the file has changed since it was indexed, what's in it
+   * now replaces everything the index said, size and content hash included.
+   * @return False if the file can no longer be read, in which case the map should be dropped from the map list.
+   */
+  public boolean load()
+  {
+    if( loaded )
+      return true;
+    synchronized (this)
+    {
+      if( loaded )
+        return true;
+      MapInfo full = loader.load();
+      if( null == full )
+      {
+        System.out.println("WARNING! Map " + mapName + " can no longer be read.");
+        return false;
+      }
+      if( full.contentHash != contentHash )
+      {
+        System.out.println("WARNING! Map " + mapName + " has changed since it was indexed; using its new contents.");
+        width = full.width;
+        height = full.height;
+        numPlayers = full.numPlayers;
+        contentHash = full.contentHash;
+        schemeMask = -1;
+      }
+      terrain = full.terrain;
+      playerProps = full.playerProps;
+      mapUnits = full.mapUnits;
+      loader = null;
+      loaded = true;
+      return true;
+    }
+  }
+
+  private void ensureLoaded()
+  {
+    if( !load() )
+      throw new IllegalStateException("Map " + mapName + " can no longer be read");
+  }
+
+  public TerrainType[][] getTerrain()
+  {
+    ensureLoaded();
+    return terrain;
+  }
+  public XYCoord[][] getPlayerProps()
+  {
+    ensureLoaded();
+    return playerProps;
+  }
+  public ArrayList<Map<XYCoord,String>> getMapUnits()
+  {
+    ensureLoaded();
+    return mapUnits;
+  }
+
+  /** @return True if this map's contents are in memory. */
+  public boolean isLoaded()
+  {
+    return loaded;
+  }
+
+  /**
+   * A fingerprint of the map's starting terrain, properties and units, the same however the map was loaded. For an
+   * indexed map whose file has since changed, this is the old fingerprint until load() reads the new one.
+   */
+  public long getContentHash()
+  {
+    return contentHash;
+  }
+
+  /** FNV-1a over the map's dimensions, terrain names column by column, and each player's properties and units. */
+  public static long hashContents(TerrainType[][] tiles, XYCoord[][] props, ArrayList<Map<XYCoord,String>> units)
+  {
+    long hash = 0xcbf29ce484222325L;
+    hash = (hash ^ tiles.length) * 0x100000001b3L;
+    hash = (hash ^ tiles[0].length) * 0x100000001b3L;
+    for( TerrainType[] column : tiles )
+      for( TerrainType tt : column )
+        hash = (hash ^ tt.toString().hashCode()) * 0x100000001b3L;
+    for( XYCoord[] owned : props )
+    {
+      hash = (hash ^ owned.length) * 0x100000001b3L;
+      for( XYCoord xyc : owned )
+        hash = (hash ^ xyc.hashCode()) * 0x100000001b3L;
+    }
+    for( Map<XYCoord,String> army : units )
+    {
+      // Sum the entries so the map's iteration order doesn't matter.
+      long armyHash = 0;
+      for( Entry<XYCoord,String> unit : army.entrySet() )
+        armyHash += unit.getKey().hashCode() * 31L + unit.getValue().hashCode();
+      hash = (hash ^ armyHash) * 0x100000001b3L;
+    }
+    return hash;
   }
 
   public int getWidth()
   {
-    return terrain.length;
+    return width;
   }
 
   public int getHeight()
   {
-    return terrain[0].length;
+    return height;
   }
 
   public int getNumPlayers()
   {
-    return playerProps.length;
+    return numPlayers;
   }
 
   /**
@@ -97,7 +231,13 @@ public class MapInfo implements IEnvironsProvider
     {
       return null;
     }
-    return Environment.getTile(terrain[x][y], Weathers.CLEAR);
+    return Environment.getTile(getTerrain()[x][y], Weathers.CLEAR);
+  }
+
+  /** @return Every unit model scheme, in the order the bits of getSchemeMask() refer to. */
+  public static UnitModelScheme[] getAllUnitModelSchemes()
+  {
+    return new UnitModelScheme[] { new AWBWUnits(), new DoRUnits(), new KaijuWarsUnits() };
   }
 
   /**
@@ -105,18 +245,30 @@ public class MapInfo implements IEnvironsProvider
    */
   public UnitModelScheme[] getValidUnitModelSchemes()
   {
-    ArrayList<UnitModelScheme> umsList = new ArrayList<UnitModelScheme>();
-    umsList.add(new AWBWUnits());
-    umsList.add(new DoRUnits());
-    umsList.add(new KaijuWarsUnits());
+    UnitModelScheme[] schemes = getAllUnitModelSchemes();
+    int mask = getSchemeMask(schemes);
+    for( int i = 0; i < schemes.length; ++i )
+      schemes[i].schemeValid = 0 != (mask & (1 << i));
+    return schemes;
+  }
+
+  /**
+   * @param schemes From getAllUnitModelSchemes(); only consulted if we don't already know the answer.
+   * @return A bit for each scheme that has every unit this map starts with.
+   */
+  public int getSchemeMask(UnitModelScheme[] schemes)
+  {
+    if( schemeMask >= 0 )
+      return schemeMask; // Known already, maybe from the index; no need to load the map to find out.
 
     // Filter based on the existence of non-core units in the map
-    for( UnitModelScheme scheme : umsList )
+    int mask = 0;
+    for( int i = 0; i < schemes.length; ++i )
     {
-      GameReadyModels models = scheme.getGameReadyModels();
+      GameReadyModels models = schemes[i].getGameReadyModels();
       boolean schemeInvalid = false;
-      
-      for( Map<XYCoord, String> unitSet : mapUnits )
+
+      for( Map<XYCoord, String> unitSet : getMapUnits() )
       {
         for( Entry<XYCoord, String> unitEntry : unitSet.entrySet() )
         {
@@ -131,9 +283,10 @@ public class MapInfo implements IEnvironsProvider
           break;
       }
 
-      scheme.schemeValid = !schemeInvalid;
+      if( !schemeInvalid )
+        mask |= 1 << i;
     }
-
-    return umsList.toArray(new UnitModelScheme[0]);
+    schemeMask = mask;
+    return mask;
   }
 }
@@ -13,7 +13,8 @@ public class MapLibrary
   private static ArrayList<MapInfo> availableMaps;
   private static MapNode rootMap;
   
-  public static ArrayList<MapInfo> getMapList()
+  // These are synchronized so games starting on several threads at once don't see a half-loaded library.
+  public static synchronized ArrayList<MapInfo> getMapList()
   {
     if( null == availableMaps )
     {
@@ -21,7 +22,7 @@ public class MapLibrary
     }
     return availableMaps;
   }
-  public static MapNode getMapGraph()
+  public static synchronized MapNode getMapGraph()
   {
     if( null == rootMap )
     {
@@ -32,25 +33,36 @@ public class MapLibrary
   
   private static void loadMapInfos()
   {
-    availableMaps = new ArrayList<MapInfo>();
-    availableMaps.add(TestRange.getMapInfo());
+    ArrayList<MapInfo> maps = new ArrayList<MapInfo>();
+    maps.add(TestRange.getMapInfo());
 
-    rootMap = MapReader.readMapData();
+    MapNode root = MapReader.readMapData();
 
-    for( var map : availableMaps )
-      rootMap.children.add(0, new MapNode(rootMap, map.mapName, map));
+    for( var map : maps )
+      root.children.add(0, new MapNode(root, map.mapName, map));
 
     // Iterate over the nodes to get a master list of maps, as well.
     var nodes = new ArrayDeque<MapNode>();
-    nodes.add(rootMap);
+    nodes.add(root);
     while (!nodes.isEmpty())
     {
       MapNode n = nodes.poll();
       if( null == n.result )
         nodes.addAll(n.children);
       else
-        availableMaps.add(n.result);
+        maps.add(n.result);
     }
+    availableMaps = maps;
+    rootMap = root;
+  }
+
+  /** Takes a map whose file can no longer be read out of the map list and its folder. */
+  public static synchronized void dropMap(MapNode node)
+  {
+    if( null != availableMaps )
+      availableMaps.remove(node.result);
+    if( null != node.parent )
+      node.parent.children.remove(node);
   }
 
   public static MapInfo getByName(String mapName)
@@ -1,7 +1,9 @@
 package Terrain;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 
 import CommandingOfficers.Commander;
 import Engine.XYCoord;
@@ -10,26 +12,41 @@ import Units.ITargetable;
 import Units.Unit;
 import Units.WeaponModel;
 
+/**
+ * A view onto one tile of a map. The tile's state lives in its MapGrid, so two MapLocations for the same tile see
+ * (and make) the same changes.
+ */
 public class MapLocation implements Serializable, ITargetable
 {
   private static final long serialVersionUID = 1L;
-  private Environment environs = null;
-  private Commander owner = null;
-  private Unit resident = null;
-  private final XYCoord coords;
-  public int durability = 99;
-  public ArrayDeque<Weathers> forecast = new ArrayDeque<>();
+  private MapGrid grid;
+  private int index;
+  private XYCoord coords;
+
+  /** Creates a location of its own, not part of any map. */
+  public MapLocation(Environment environment, XYCoord coordinates)
+  {
+    this(new MapGrid(1, 1), 0, coordinates);
+    setEnvironment(environment);
+  }
+
+  MapLocation(MapGrid grid, int index, XYCoord coordinates)
+  {
+    this.grid = grid;
+    this.index = index;
+    coords = coordinates;
+  }
 
   public Environment getEnvironment()
   {
-    return environs;
+    return grid.getEnvironment(index);
   }
 
   public void setEnvironment(Environment environment)
   {
-    this.environs = environment;
+    grid.setEnvironment(index, environment);
   }
-  
+
   public XYCoord getCoordinates()
   {
     return coords;
@@ -37,7 +54,7 @@ public class MapLocation implements Serializable, ITargetable
 
   public Commander getOwner()
   {
-    return owner;
+    return grid.getOwner(index);
   }
 
   /**
@@ -46,17 +63,28 @@ public class MapLocation implements Serializable, ITargetable
    */
   public void setOwner(Commander owner)
   {
-    this.owner = owner;
+    grid.setOwner(index, owner);
   }
 
   public Unit getResident()
   {
-    return resident;
+    return grid.getResident(index);
   }
 
   public void setResident(Unit resident)
   {
-    this.resident = resident;
+    grid.setResident(index, resident);
+  }
+
+  /** How much damage the terrain here can take before it's destroyed; 99 is undamaged. */
+  public int getDurability()
+  {
+    return grid.getDurability(index);
+  }
+
+  public void setDurability(int durability)
+  {
+    grid.setDurability(index, durability);
   }
 
   /**
@@ -64,50 +92,91 @@ public class MapLocation implements Serializable, ITargetable
    */
   public boolean isCaptureable()
   {
-    return environs.terrainType.isCapturable();
+    return grid.getTerrainType(index).isCapturable();
   }
 
   /** Return whether the terrain type in this location can generate income. */
   public boolean isProfitable()
   {
-    return environs.terrainType.isProfitable();
+    return grid.getTerrainType(index).isProfitable();
   }
 
-  public MapLocation(Environment environment, XYCoord coordinates)
-  {
-    environs = environment;
-    owner = null;
-    resident = null;
-    coords = coordinates;
-  }
-  
   public void setForecast(Weathers w, int duration)
   {
+    grid.setForecast(index, w, duration);
     setEnvironment(Environment.getTile(getEnvironment().terrainType, w));
-    for( int turns = 0; turns < duration; turns++ )
-    {
-      forecast.pollFirst();
-    }
-    for( int turns = 0; turns < duration; turns++ )
-    {
-      forecast.addFirst(w);
-    }
+  }
+
+  /** @return true if weather other than the default is forecast here. */
+  public boolean hasForecast()
+  {
+    return grid.hasForecast(index);
+  }
+
+  /** @return The weather forecast for each coming CO-turn, or null if there is none. */
+  public ArrayDeque<Weathers> copyForecast()
+  {
+    return grid.copyForecast(index);
+  }
+
+  /** Replaces the forecast with one from copyForecast(). */
+  public void restoreForecast(ArrayDeque<Weathers> forecast)
+  {
+    grid.restoreForecast(index, forecast);
   }
 
   @Override
   public int getDamageRedirect(WeaponModel wm)
   {
-    return wm.getDamage(environs.terrainType);
+    return wm.getDamage(grid.getTerrainType(index));
   }
 
   @Override
   public String toString()
   {
-    return environs.terrainType.toString();
+    return getEnvironment().terrainType.toString();
+  }
+
+  /** Equal to any other view of the same tile, and hashed by position so that hash-ordered iteration is the same from run to run. */
+  @Override
+  public boolean equals(Object obj)
+  {
+    if( !(obj instanceof MapLocation) )
+      return false;
+    MapLocation other = (MapLocation) obj;
+    return grid == other.grid && index == other.index;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return coords.hashCode();
   }
 
   public String toStringWithLocation()
   {
     return String.format("%s at %s", toString(), coords);
   }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream.GetField fields = stream.readFields();
+    coords = (XYCoord) fields.get("coords", null);
+    grid = (MapGrid) fields.get("grid", null);
+    index = fields.get("index", 0);
+
+    // Saves from before MapGrid held the tile's state in the location itself; give it a grid of its own.
+    if( null == grid )
+    {
+      grid = new MapGrid(1, 1);
+      index = 0;
+      setEnvironment((Environment) fields.get("environs", null));
+      setOwner((Commander) fields.get("owner", null));
+      setResident((Unit) fields.get("resident", null));
+      setDurability(fields.get("durability", 99));
+      @SuppressWarnings("unchecked")
+      ArrayDeque<Weathers> forecast = (ArrayDeque<Weathers>) fields.get("forecast", null);
+      restoreForecast(forecast);
+    }
+  }
 }
@@ -1,11 +1,19 @@
 package Terrain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import CommandingOfficers.Commander;
 import Engine.Army;
 import Engine.XYCoord;
+import Engine.GameEvents.GameEvent;
+import Engine.GameEvents.MapChangeEvent.EnvironmentAssignment;
+import Engine.GameEvents.UndoLog;
+import Terrain.Environment.Weathers;
 import Units.Unit;
 import Units.UnitModel;
 import Units.UnitModelScheme;
@@ -13,56 +21,59 @@ import Units.UnitModelScheme;
 public class MapMaster extends GameMap
 {
   private static final long serialVersionUID = 1L;
-  private MapLocation[][] map;
+  private MapGrid grid;
 
   private boolean initOK = false;
+  /** The name of the MapInfo this was built from. Null for games saved before this was kept. */
+  private String mapName;
+  /** While set, performEvent() records how to undo each event here. Not saved with the game. */
+  private transient UndoLog undoLog = null;
 
   public MapMaster(Army[] propertyOwners, MapInfo mapInfo)
   {
     super(mapInfo.getWidth(), mapInfo.getHeight());
     initOK = true;
-    map = new MapLocation[mapWidth][mapHeight];
+    mapName = mapInfo.mapName;
+    grid = new MapGrid(mapWidth, mapHeight);
 
-    // Build the map locations based on the MapInfo data.
+    // Lay out the terrain based on the MapInfo data.
     for( int y = 0; y < mapHeight; ++y )
     {
       for( int x = 0; x < mapWidth; ++x )
       {
-        TerrainType terrain = mapInfo.terrain[x][y];
-        // Create this MapLocation using the MapInfo terrain.
-        map[x][y] = new MapLocation(Environment.getTile(terrain, Environment.Weathers.CLEAR), new XYCoord(x, y));
+        TerrainType terrain = mapInfo.getTerrain()[x][y];
+        grid.setEnvironment(grid.indexOf(x, y), Environment.getTile(terrain, Environment.Weathers.CLEAR));
       }
     }
 
     // Print a warning if the number of Commanders we have does not match the number the map expects.
-    if( propertyOwners.length != mapInfo.playerProps.length )
+    if( propertyOwners.length != mapInfo.getPlayerProps().length )
     {
       System.out.println("Warning! Wrong number of COs specified for map " + mapInfo.mapName);
       initOK = false;
     }
-    if( (mapInfo.mapUnits.size() > 0) && (mapInfo.mapUnits.size() != propertyOwners.length ) )
+    if( (mapInfo.getMapUnits().size() > 0) && (mapInfo.getMapUnits().size() != propertyOwners.length ) )
     {
       System.out.println("Warning! Wrong number of unit arrays specified for map " + mapInfo.mapName);
-      System.out.println(String.format("         Expected zero or %s; received %s", propertyOwners.length, mapInfo.mapUnits.size()));
+      System.out.println(String.format("         Expected zero or %s; received %s", propertyOwners.length, mapInfo.getMapUnits().size()));
       initOK = false;
     }
 
     // Assign properties according to MapInfo's direction.
-    for( int co = 0; co < mapInfo.playerProps.length && co < propertyOwners.length; ++co )
+    for( int co = 0; co < mapInfo.getPlayerProps().length && co < propertyOwners.length; ++co )
     {
       boolean hasHQ = false, hasLab = false, hasProperty = false;
       // Loop through all locations assigned to this CO by mapInfo.
-      for( int i = 0; i < mapInfo.playerProps[co].length; ++i )
+      for( int i = 0; i < mapInfo.getPlayerProps()[co].length; ++i )
       {
         // If the location can be owned, make the assignment.
-        XYCoord coord = mapInfo.playerProps[co][i];
+        XYCoord coord = mapInfo.getPlayerProps()[co][i];
         int x = coord.x;
         int y = coord.y;
-        MapLocation location = map[x][y];
-        if( location.isCaptureable() )
+        final TerrainType terrainType = grid.getTerrainType(grid.indexOf(x, y));
+        if( terrainType.isCapturable() )
         {
           hasProperty = true;
-          final TerrainType terrainType = map[x][y].getEnvironment().terrainType;
           if( terrainType == TerrainType.HEADQUARTERS )
           {
             propertyOwners[co].HQLocations.add(new XYCoord(x, y));
@@ -80,9 +91,9 @@ public class MapMaster extends GameMap
         }
       }
 
-      if( !mapInfo.mapUnits.isEmpty() )
+      if( !mapInfo.getMapUnits().isEmpty() )
       {
-        Map<XYCoord, String> unitSet = mapInfo.mapUnits.get(co);
+        Map<XYCoord, String> unitSet = mapInfo.getMapUnits().get(co);
         for( Entry<XYCoord, String> unitEntry : unitSet.entrySet() )
         {
           UnitModel model = UnitModelScheme.getModelFromString(unitEntry.getValue(), propertyOwners[co].cos[0].unitModels);
@@ -124,9 +135,56 @@ public class MapMaster extends GameMap
     } // ~property assignment loop
   } // ~constructor
 
+  public String getMapName()
+  {
+    return mapName;
+  }
+
   /**
    * Used to check if the GameMap is ready to be played after constructing.
    */
+  public UndoLog getUndoLog()
+  {
+    return undoLog;
+  }
+  /** Starts (or, with null, stops) recording undo information for every event performed through performEvent(). */
+  public void setUndoLog(UndoLog log)
+  {
+    undoLog = log;
+  }
+
+  /**
+   * Performs the event on this map, first letting it save how to undo itself if we're keeping an UndoLog.
+   * Event-processing loops should come through here rather than calling event.performEvent() directly.
+   */
+  public void performEvent(GameEvent event)
+  {
+    if( null != undoLog && !event.recordUndo(this, undoLog) )
+      undoLog.markIrreversible();
+    event.performEvent(this);
+  }
+
+  /**
+   * Moves the weather forecast on by the given number of CO-turns.
+   * Only looks at the tiles whose weather could change: those whose forecast ran out, or that changed some other way.
+   * @return The tiles whose weather is different now, with their new environments.
+   */
+  public ArrayList<EnvironmentAssignment> advanceWeather(int coTurns, Weathers defaultWeather)
+  {
+    ArrayList<EnvironmentAssignment> changes = new ArrayList<EnvironmentAssignment>();
+    BitSet due = grid.advanceClock(coTurns);
+    for( int i = due.nextSetBit(0); i >= 0; i = due.nextSetBit(i + 1) )
+    {
+      Environment environment = grid.getEnvironment(i);
+      if( null == environment )
+        continue;
+      Weathers weather = grid.settleWeather(i, defaultWeather);
+      if( weather != environment.weatherType )
+        changes.add(new EnvironmentAssignment(new XYCoord(i / mapHeight, i % mapHeight), Environment.getTile(environment.terrainType, weather)));
+    }
+    return changes;
+  }
+
   public boolean initOK()
   {
     return initOK;
@@ -164,7 +222,7 @@ public class MapMaster extends GameMap
     {
       return null;
     }
-    return map[w][h].getEnvironment();
+    return grid.getEnvironment(grid.indexOf(w, h));
   }
 
   @Override
@@ -179,7 +237,7 @@ public class MapMaster extends GameMap
     {
       return null;
     }
-    return map[w][h].getResident();
+    return grid.getResident(grid.indexOf(w, h));
   }
 
   /** Returns the MapLocation at the specified location, or null if that MapLocation does not exist. */
@@ -199,7 +257,7 @@ public class MapMaster extends GameMap
     {
       return null;
     }
-    return map[w][h];
+    return new MapLocation(grid, grid.indexOf(w, h), new XYCoord(w, h));
   }
 
   /** Returns true if no unit is at the specified x and y coordinate, false else */
@@ -230,7 +288,8 @@ public class MapMaster extends GameMap
     boolean empty = true;
     if( isLocationValid(x, y) )
     {
-      if( getLocation(x, y).getResident() != null && getLocation(x, y).getResident() != unit )
+      Unit resident = grid.getResident(grid.indexOf(x, y));
+      if( resident != null && resident != unit )
       {
         empty = false;
       }
@@ -244,17 +303,17 @@ public class MapMaster extends GameMap
   }
   public void setOwner(Commander owner, int x, int y)
   {
-    MapLocation loc = getLocation(x, y);
-    Commander prevOwner = loc.getOwner();
+    int index = grid.indexOf(x, y);
+    Commander prevOwner = grid.getOwner(index);
     if( prevOwner == owner )
       return;
 
-    XYCoord xyc = loc.getCoordinates();
+    XYCoord xyc = new XYCoord(x, y);
     if( null != prevOwner )
     {
       prevOwner.ownedProperties.remove(xyc);
     }
-    loc.setOwner(owner);
+    grid.setOwner(index, owner);
     if( null != owner )
     {
       owner.ownedProperties.add(xyc);
@@ -273,7 +332,7 @@ public class MapMaster extends GameMap
     {
       return null;
     }
-    return map[w][h].getOwner();
+    return grid.getOwner(grid.indexOf(w, h));
   }
 
   public void addNewUnit(Unit unit, int x, int y)
@@ -282,7 +341,7 @@ public class MapMaster extends GameMap
   }
   public void addNewUnit(Unit unit, int x, int y, boolean force)
   {
-    Unit resident = getLocation(x, y).getResident();
+    Unit resident = getResident(x, y);
     if( resident != null && !force )
     {
       System.out.println("Error! Attempting to add a unit to an occupied MapLocation!");
@@ -291,7 +350,7 @@ public class MapMaster extends GameMap
 
     if( resident != null ) removeUnit(resident);
 
-    getLocation(x, y).setResident(unit);
+    grid.setResident(grid.indexOf(x, y), unit);
     unit.x = x;
     unit.y = y;
   }
@@ -314,7 +373,7 @@ public class MapMaster extends GameMap
     {
       if( force ) // Force is set; the user *must* know what he's doing.
       {
-        removeUnit(getLocation(x, y).getResident());
+        removeUnit(getResident(x, y));
       }
       else
       {
@@ -324,12 +383,11 @@ public class MapMaster extends GameMap
     }
 
     // Update the map
-    MapLocation priorLoc = getLocation(unit.x, unit.y);
-    if( null != priorLoc && priorLoc.getResident() == unit )
+    if( isLocationValid(unit.x, unit.y) && getResident(unit.x, unit.y) == unit )
     {
-      priorLoc.setResident(null);
+      grid.setResident(grid.indexOf(unit.x, unit.y), null);
     }
-    getLocation(x, y).setResident(unit);
+    grid.setResident(grid.indexOf(x, y), unit);
 
     // Reset capture progress, since we moved.
     if( unit.getCaptureProgress() > 0 )
@@ -347,14 +405,14 @@ public class MapMaster extends GameMap
   {
     if( isLocationValid(u.x, u.y) )
     {
-      if( getLocation(u.x, u.y).getResident() != u )
+      if( getResident(u.x, u.y) != u )
       {
         System.out.println("WARNING! Trying to remove a Unit that isn't where he claims to be.");
       }
       else
       {
         // Get the unit off the map.
-        getLocation(u.x, u.y).setResident(null);
+        grid.setResident(grid.indexOf(u.x, u.y), null);
 
         // Tell the unit he's off the map.
         u.x = -1;
@@ -383,4 +441,31 @@ public class MapMaster extends GameMap
   {
     return (x < 0 || x >= mapWidth || y < 0 || y >= mapHeight) ? true : false;
   }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream.GetField fields = stream.readFields();
+    initOK = fields.get("initOK", false);
+    mapName = (String) fields.get("mapName", null);
+    grid = (MapGrid) fields.get("grid", null);
+
+    // Saves from before MapGrid hold a MapLocation per tile instead.
+    if( null == grid )
+    {
+      MapLocation[][] locations = (MapLocation[][]) fields.get("map", null);
+      grid = new MapGrid(mapWidth, mapHeight);
+      for( int x = 0; x < mapWidth; ++x )
+        for( int y = 0; y < mapHeight; ++y )
+        {
+          MapLocation old = locations[x][y];
+          int index = grid.indexOf(x, y);
+          grid.setEnvironment(index, old.getEnvironment());
+          grid.setOwner(index, old.getOwner());
+          grid.setResident(index, old.getResident());
+          grid.setDurability(index, old.getDurability());
+          grid.restoreForecast(index, old.copyForecast());
+        }
+      grid.revisitAll(); // We don't know the default weather here, so let the next turn check every tile.
+    }
+  }
 }
@@ -37,7 +37,7 @@ public class MapPerspective extends GameMap
     {
       for( int h = 0; h < pMaster.mapHeight; ++h )
       {
-        lastOwnerSeen[w][h] = pMaster.getLocation(w, h).getOwner();
+        lastOwnerSeen[w][h] = pMaster.getOwner(w, h);
       }
     }
   }
@@ -81,11 +81,11 @@ public class MapPerspective extends GameMap
   @Override
   public Unit getResident(int w, int h)
   {
-    if( !isLocationValid(w, h) )
+    if( isLocationEmpty(w, h) ) // Covers invalid, fogged and hidden.
     {
       return null;
     }
-    return getLocation(w, h).getResident();
+    return master.getResident(w, h);
   }
 
   @Override
@@ -100,7 +100,9 @@ public class MapPerspective extends GameMap
     {
       return null;
     }
-    return getLocation(w, h).getOwner();
+    if( isMasked(w, h) )
+      return lastOwnerSeen[w][h];
+    return master.getOwner(w, h);
   }
 
   /** Returns the MapLocation at the specified location, or null if that MapLocation does not exist. */
@@ -119,8 +121,7 @@ public class MapPerspective extends GameMap
     XYCoord coord = new XYCoord(x, y);
     MapLocation masterLoc = master.getLocation(coord);
     MapLocation returnLoc = masterLoc;
-    if( isLocationFogged(coord) || // If we can't see anything...
-        (isLocationEmpty(coord) && !master.isLocationEmpty(coord)) ) // ...or what's there is hidden
+    if( isMasked(x, y) )
     {
       returnLoc = new MapLocation(returnLoc.getEnvironment(), coord);
       returnLoc.setOwner( lastOwnerSeen[x][y] );
@@ -128,6 +129,13 @@ public class MapPerspective extends GameMap
     return returnLoc;
   }
 
+  /** @return Whether we show the location as last seen rather than as it is. */
+  private boolean isMasked(int x, int y)
+  {
+    return isLocationFogged(x, y) || // If we can't see anything...
+        (isLocationEmpty(x, y) && !master.isLocationEmpty(x, y)); // ...or what's there is hidden
+  }
+
   /** Returns true if no unit is at the specified x and y coordinate, false else */
   @Override
   public boolean isLocationEmpty(XYCoord coords)
@@ -153,7 +161,7 @@ public class MapPerspective extends GameMap
   @Override
   public boolean isLocationEmpty(Unit unit, int x, int y)
   {
-    Unit resident = master.getLocation(x, y).getResident();
+    Unit resident = master.getResident(x, y);
     // if there's nothing there, yeah...
     if (resident == null)
       return true;
@@ -324,11 +332,10 @@ public class MapPerspective extends GameMap
 
   protected void revealFog(XYCoord coord, boolean piercing)
   {
-    MapLocation loc = master.getLocation(coord);
-    lastOwnerSeen[coord.x][coord.y] = loc.getOwner();
-    Unit resident = loc.getResident();
+    lastOwnerSeen[coord.x][coord.y] = master.getOwner(coord);
+    Unit resident = master.getResident(coord);
 
-    TerrainType tt = loc.getEnvironment().terrainType;
+    TerrainType tt = master.getEnvironment(coord).terrainType;
     boolean shouldSee = piercing || !tt.isCover(master.game.rules.fogMode);
     if( null != resident )
     {
@@ -0,0 +1,415 @@
+package Terrain.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import Engine.XYCoord;
+import Terrain.MapInfo;
+import Terrain.TerrainType;
+import Terrain.Environment.Weathers;
+import Units.UnitModel;
+import Units.UnitModelScheme;
+import Units.MoveTypes.MoveType;
+
+/**
+ * Brings maps into res/map in bulk, e.g. a batch converted from AWBW with AWBWMapConverter.py.
+ * <p>
+ * Files are parsed and validated on a thread pool, with only a few more in flight than there are threads, so a
+ * batch of any size streams through in constant memory. Each result is reported as soon as it's in, in the order
+ * the files finish. Maps that pass are copied into the destination folder and added to the map index, so the game
+ * won't need to parse them again at startup; maps with errors are left out. Warnings are reported, but don't stop
+ * a map from being imported.
+ * <p>
+ * Usage: MapImporter [-into folder] [-threads n] [-check] file-or-folder...
+ * <ul>
+ * <li>-into: where to put the maps, relative to res/map. Defaults to "Imported".
+ * <li>-check: validate and report only; nothing is copied or indexed.
+ * </ul>
+ * The report goes to the console and to import_report.txt in the destination folder (or, with -check, the
+ * working folder).
+ */
+public class MapImporter
+{
+  public static final String REPORT_FILE = "import_report.txt";
+
+  /** The outcome for one file. */
+  public static class Result
+  {
+    public final File source;
+    /** Null if the file couldn't be read at all. */
+    public final MapInfo map;
+    public final List<String> errors = new ArrayList<>();
+    public final List<String> warnings = new ArrayList<>();
+    /** Where the map went, if it was imported. */
+    public File imported = null;
+
+    Result(File source, MapInfo map)
+    {
+      this.source = source;
+      this.map = map;
+    }
+
+    public boolean isValid()
+    {
+      return errors.isEmpty();
+    }
+  }
+
+  private final File mapRoot;
+  private final String destPath;
+  private final int numThreads;
+  private final UnitModelScheme[] schemes;
+
+  /**
+   * @param mapRoot The res/map folder.
+   * @param destPath Where to put imported maps, relative to mapRoot.
+   */
+  public MapImporter(File mapRoot, String destPath, int numThreads)
+  {
+    this.mapRoot = mapRoot;
+    this.destPath = destPath.replaceAll("^/+|/+$", "");
+    this.numThreads = Math.max(1, numThreads);
+
+    // Build the unit models up front; the workers only read them.
+    schemes = MapInfo.getAllUnitModelSchemes();
+    for( UnitModelScheme scheme : schemes )
+      scheme.getGameReadyModels();
+  }
+
+  /**
+   * Parses and validates every .map file given, including those in any folders given.
+   * @param copy Whether to copy valid maps into the destination folder and index them, or just check them.
+   * @param report Gets a line or so per map as results come in, and a summary at the end.
+   * @return The result for every file, in the order they finished.
+   */
+  public List<Result> importMaps(List<File> sources, boolean copy, PrintStream report)
+  {
+    ArrayDeque<File> files = new ArrayDeque<>();
+    for( File source : sources )
+      collectMapFiles(source, files);
+
+    File destFolder = new File(mapRoot, destPath);
+    MapIndex index = null;
+    if( copy )
+    {
+      destFolder.mkdirs();
+      index = new MapIndex(new File(mapRoot, MapIndex.INDEX_FILE));
+    }
+
+    List<Result> results = new ArrayList<>();
+    HashSet<String> namesTaken = new HashSet<>();
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads, r -> {
+      Thread t = new Thread(r, "MapImporter");
+      t.setDaemon(true);
+      return t;
+    });
+    CompletionService<Result> done = new ExecutorCompletionService<>(pool);
+    final int maxInFlight = numThreads * 2;
+    int inFlight = 0;
+    try
+    {
+      while (!files.isEmpty() || inFlight > 0)
+      {
+        // Keep the workers fed, but don't read ahead of them.
+        while (!files.isEmpty() && inFlight < maxInFlight)
+        {
+          final File file = files.poll();
+          done.submit(() -> parseAndValidate(file));
+          ++inFlight;
+        }
+        Result result = done.take().get();
+        --inFlight;
+
+        // Everything below touches shared state, so it stays on this thread.
+        if( !namesTaken.add(result.source.getName()) )
+          result.errors.add("Another map in this batch has the same file name");
+        if( result.isValid() && copy )
+        {
+          File target = new File(destFolder, result.source.getName());
+          if( target.exists() )
+            result.warnings.add("Replaced the existing " + destPath + "/" + target.getName());
+          try
+          {
+            Files.copy(result.source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.COPY_ATTRIBUTES);
+            index.put(destPath, target, result.map);
+            result.imported = target;
+          }
+          catch (IOException ex)
+          {
+            result.errors.add("Couldn't copy into " + destFolder + ": " + ex.toString());
+          }
+        }
+        results.add(result);
+        writeResult(report, result);
+      }
+    }
+    catch (InterruptedException | ExecutionException ex)
+    {
+      System.out.println("WARNING! Map import stopped early: " + ex.toString());
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+    if( copy )
+      index.save();
+    writeSummary(report, results);
+    return results;
+  }
+
+  private static void collectMapFiles(File source, ArrayDeque<File> files)
+  {
+    if( source.isDirectory() )
+    {
+      File[] children = source.listFiles();
+      if( null != children )
+        for( File child : children )
+          collectMapFiles(child, files);
+    }
+    else if( source.getName().endsWith(".map") )
+      files.add(source);
+  }
+
+  /** Runs on the pool; touches nothing but the file and its own MapInfo. */
+  private Result parseAndValidate(File file)
+  {
+    MapInfo map = null;
+    try
+    {
+      map = MapReader.readSingleMap(destPath, file.getPath());
+    }
+    catch (RuntimeException ex) // Malformed lines can trip up the parser in all sorts of ways.
+    {
+      Result result = new Result(file, null);
+      result.errors.add("Couldn't parse the map: " + ex.toString());
+      return result;
+    }
+    Result result = new Result(file, map);
+    if( null == map )
+      result.errors.add("Couldn't read the map");
+    else
+    {
+      try
+      {
+        validate(map, result.errors, result.warnings);
+      }
+      catch (RuntimeException ex)
+      {
+        result.errors.add("Couldn't check the map: " + ex.toString());
+      }
+    }
+    return result;
+  }
+
+  /** Checks the map is playable, adding anything wrong to errors, and anything odd to warnings. */
+  public void validate(MapInfo map, List<String> errors, List<String> warnings)
+  {
+    TerrainType[][] terrain = map.getTerrain();
+    XYCoord[][] props = map.getPlayerProps();
+
+    // Players
+    if( map.getNumPlayers() < 2 )
+      errors.add("Only " + map.getNumPlayers() + " player(s) own properties; a map needs at least 2");
+    for( int player = 0; player < props.length; ++player )
+    {
+      boolean hasHQ = false;
+      for( XYCoord xyc : props[player] )
+      {
+        TerrainType tt = terrain[xyc.x][xyc.y];
+        if( TerrainType.HEADQUARTERS == tt || TerrainType.LAB == tt )
+          hasHQ = true;
+        if( !tt.isCapturable() )
+          warnings.add("Player " + player + " owns " + tt + " at " + xyc + ", which can't be owned");
+      }
+      if( !hasHQ )
+        warnings.add("Player " + player + " has no HQ or lab");
+    }
+
+    // Units
+    ArrayList<Map<XYCoord, String>> units = map.getMapUnits();
+    HashSet<XYCoord> occupied = new HashSet<>();
+    for( int player = 0; player < units.size(); ++player )
+      for( Entry<XYCoord, String> unit : units.get(player).entrySet() )
+      {
+        XYCoord xyc = unit.getKey();
+        String where = unit.getValue() + " at " + xyc;
+        if( !map.isLocationValid(xyc) )
+        {
+          errors.add("Player " + player + "'s " + where + " is off the map");
+          continue;
+        }
+        if( !occupied.add(xyc) )
+          errors.add("Player " + player + "'s " + where + " is on top of another unit");
+        if( !isKnownUnit(unit.getValue()) )
+          errors.add("Player " + player + "'s " + where + " isn't in any unit set");
+        else if( !canStandOn(unit.getValue(), terrain[xyc.x][xyc.y], map.getSchemeMask(schemes)) )
+          // Some maps do this on purpose, e.g. to start a boat in a port-less HQ, so it's allowed.
+          warnings.add("Player " + player + "'s " + where + " couldn't move onto " + terrain[xyc.x][xyc.y]);
+      }
+    if( occupied.size() > 0 && 0 == map.getSchemeMask(schemes) )
+      errors.add("No one unit set has every unit the map starts with");
+
+    // Properties no one can get to
+    boolean[][] reachable = findReachable(terrain, props, units);
+    ArrayList<XYCoord> stranded = new ArrayList<>();
+    for( int x = 0; x < map.getWidth(); ++x )
+      for( int y = 0; y < map.getHeight(); ++y )
+        if( terrain[x][y].isCapturable() && !reachable[x][y] )
+          stranded.add(new XYCoord(x, y));
+    if( !stranded.isEmpty() )
+      warnings.add(stranded.size() + " properties can't be reached by land or sea from any player's start: " + stranded);
+  }
+
+  private boolean isKnownUnit(String name)
+  {
+    for( UnitModelScheme scheme : schemes )
+      if( null != UnitModelScheme.getModelFromString(name, scheme.getGameReadyModels().unitModels) )
+        return true;
+    return false;
+  }
+
+  /** @return True if the unit can move onto that terrain in any of the map's valid unit sets. */
+  private boolean canStandOn(String name, TerrainType terrain, int schemeMask)
+  {
+    for( int i = 0; i < schemes.length; ++i )
+    {
+      if( 0 == (schemeMask & (1 << i)) )
+        continue;
+      UnitModel model = UnitModelScheme.getModelFromString(name, schemes[i].getGameReadyModels().unitModels);
+      if( null != model && model.baseMoveType.getMoveCost(Weathers.CLEAR, terrain) < MoveType.IMPASSABLE )
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Flood-fills out from every player's properties and units, across anything a ground or naval unit could cross.
+   * Pillars and meteors are the only walls; teleporters count as open, since they lead somewhere.
+   */
+  private static boolean[][] findReachable(TerrainType[][] terrain, XYCoord[][] props, ArrayList<Map<XYCoord, String>> units)
+  {
+    int width = terrain.length, height = terrain[0].length;
+    boolean[][] reached = new boolean[width][height];
+    ArrayDeque<XYCoord> frontier = new ArrayDeque<>();
+    for( XYCoord[] owned : props )
+      for( XYCoord xyc : owned )
+        frontier.add(xyc);
+    for( Map<XYCoord, String> army : units )
+      frontier.addAll(army.keySet());
+
+    while (!frontier.isEmpty())
+    {
+      XYCoord xyc = frontier.poll();
+      if( xyc.x < 0 || xyc.x >= width || xyc.y < 0 || xyc.y >= height || reached[xyc.x][xyc.y] )
+        continue;
+      TerrainType tt = terrain[xyc.x][xyc.y];
+      if( !tt.isLand() && !tt.isWater() && TerrainType.TELETILE != tt )
+        continue;
+      reached[xyc.x][xyc.y] = true;
+      frontier.add(new XYCoord(xyc.x + 1, xyc.y));
+      frontier.add(new XYCoord(xyc.x - 1, xyc.y));
+      frontier.add(new XYCoord(xyc.x, xyc.y + 1));
+      frontier.add(new XYCoord(xyc.x, xyc.y - 1));
+    }
+    return reached;
+  }
+
+  private void writeResult(PrintStream report, Result result)
+  {
+    String status = !result.isValid() ? "REJECTED" : (null != result.imported) ? "IMPORTED" : "OK";
+    String summary = (null == result.map) ? "" :
+      String.format(" (%s, %dx%d, %d players)", result.map.mapName, result.map.getWidth(), result.map.getHeight(), result.map.getNumPlayers());
+    report.println(String.format("%-8s %s%s", status, result.source.getPath(), summary));
+    for( String error : result.errors )
+      report.println("    error: " + error);
+    for( String warning : result.warnings )
+      report.println("    warning: " + warning);
+  }
+
+  private static void writeSummary(PrintStream report, List<Result> results)
+  {
+    int valid = 0, imported = 0, warned = 0;
+    for( Result result : results )
+    {
+      if( result.isValid() )
+        ++valid;
+      if( null != result.imported )
+        ++imported;
+      if( !result.warnings.isEmpty() )
+        ++warned;
+    }
+    report.println(String.format("%d maps checked: %d valid (%d imported), %d rejected, %d with warnings.",
+        results.size(), valid, imported, results.size() - valid, warned));
+  }
+
+  public static void main(String[] args)
+  {
+    String destPath = "Imported";
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    boolean copy = true;
+    List<File> sources = new ArrayList<>();
+    for( int i = 0; i < args.length; ++i )
+    {
+      String arg = args[i];
+      if( arg.equals("-into") )
+        destPath = args[++i];
+      else if( arg.equals("-threads") )
+        numThreads = Integer.parseInt(args[++i]);
+      else if( arg.equals("-check") )
+        copy = false;
+      else
+        sources.add(new File(arg));
+    }
+    if( sources.isEmpty() )
+    {
+      System.out.println("Usage: MapImporter [-into folder] [-threads n] [-check] file-or-folder...");
+      return;
+    }
+
+    File mapRoot = new File(Engine.Driver.JAR_DIR + "res/map");
+    MapImporter importer = new MapImporter(mapRoot, destPath, numThreads);
+    File reportFile = copy ? new File(new File(mapRoot, importer.destPath), REPORT_FILE) : new File(REPORT_FILE);
+    reportFile.getAbsoluteFile().getParentFile().mkdirs();
+    try (final PrintStream reportOut = new PrintStream(reportFile))
+    {
+      // Report to the console as well as the file, as it happens.
+      PrintStream both = new PrintStream(new OutputStream()
+      {
+        @Override
+        public void write(int b)
+        {
+          System.out.write(b);
+          reportOut.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+          System.out.write(b, off, len);
+          reportOut.write(b, off, len);
+        }
+      }, true);
+      importer.importMaps(sources, copy, both);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to write " + reportFile + ": " + ex.toString());
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package Terrain.Maps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import Terrain.MapInfo;
+import Units.UnitModelScheme;
+
+/**
+ * A cache of what the map list needs to know about each map file - name, size, players, valid unit schemes and
+ * a hash of its contents - so startup doesn't have to parse every map.
+ * <p>
+ * Maps found in the index come back as MapInfos that read their file the first time their contents are needed.
+ * An entry is trusted while its file keeps the same size and modification time; new or changed files are parsed
+ * and indexed. The index is only a cache: if it's missing or can't be written, maps are just parsed up front again.
+ */
+public class MapIndex
+{
+  public static final String INDEX_FILE = "maps.idx";
+  private static final int MAGIC = 0x49504D49; // "IPMI"
+  private static final short VERSION = 2; // 2 hashes properties and units as well as terrain.
+
+  private static class Entry
+  {
+    long size, modified;
+    String mapName;
+    int width, height, numPlayers, schemeMask;
+    long contentHash;
+  }
+
+  private final File indexFile;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final HashSet<String> seen = new HashSet<>();
+  private boolean changed = false;
+  private UnitModelScheme[] schemes = null; // Built only if we have a map to check against them.
+
+  public MapIndex(File indexFile)
+  {
+    this.indexFile = indexFile;
+    read();
+  }
+
+  /**
+   * @param dirPath The map's folder, relative to res/map.
+   * @return The map, from the index if the file hasn't changed, or freshly parsed if it has; null if it can't be read.
+   */
+  public MapInfo getMap(final String dirPath, final File mapFile)
+  {
+    String key = dirPath + "/" + mapFile.getName();
+    seen.add(key);
+    Entry entry = entries.get(key);
+    final String filePath = mapFile.getAbsolutePath();
+    if( null != entry && entry.size == mapFile.length() && entry.modified == mapFile.lastModified() )
+      return new MapInfo(dirPath, entry.mapName, entry.width, entry.height, entry.numPlayers, entry.contentHash, entry.schemeMask,
+          () -> MapReader.readSingleMap(dirPath, filePath));
+
+    MapInfo map = MapReader.readSingleMap(dirPath, filePath);
+    if( null == map )
+      return null;
+    put(dirPath, mapFile, map);
+    return map;
+  }
+
+  /** Records a map that's already been parsed, as getMap() would have. */
+  public void put(String dirPath, File mapFile, MapInfo map)
+  {
+    String key = dirPath + "/" + mapFile.getName();
+    seen.add(key);
+    if( null == schemes )
+      schemes = MapInfo.getAllUnitModelSchemes();
+    Entry entry = new Entry();
+    entry.size = mapFile.length();
+    entry.modified = mapFile.lastModified();
+    entry.mapName = map.mapName;
+    entry.width = map.getWidth();
+    entry.height = map.getHeight();
+    entry.numPlayers = map.getNumPlayers();
+    entry.contentHash = map.getContentHash();
+    entry.schemeMask = map.getSchemeMask(schemes);
+    entries.put(key, entry);
+    changed = true;
+  }
+
+  /** Drops the entries for any files getMap() and put() weren't asked about since the index was read. */
+  public void pruneUnseen()
+  {
+    if( entries.keySet().retainAll(seen) )
+      changed = true;
+  }
+
+  /** Writes the index back out if anything was added, changed or removed since it was read. */
+  public void save()
+  {
+    if( !changed )
+      return;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile))))
+    {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeInt(entries.size());
+      for( Map.Entry<String, Entry> e : entries.entrySet() )
+      {
+        Entry entry = e.getValue();
+        out.writeUTF(e.getKey());
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        out.writeUTF(entry.mapName);
+        out.writeInt(entry.width);
+        out.writeInt(entry.height);
+        out.writeInt(entry.numPlayers);
+        out.writeLong(entry.contentHash);
+        out.writeInt(entry.schemeMask);
+      }
+      changed = false;
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to write map index: " + ex.toString());
+    }
+  }
+
+  private void read()
+  {
+    if( !indexFile.canRead() )
+      return;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+    {
+      if( MAGIC != in.readInt() || VERSION != in.readShort() )
+        return; // Some other version's index; we'll just replace it.
+      int count = in.readInt();
+      for( int i = 0; i < count; ++i )
+      {
+        String key = in.readUTF();
+        Entry entry = new Entry();
+        entry.size = in.readLong();
+        entry.modified = in.readLong();
+        entry.mapName = in.readUTF();
+        entry.width = in.readInt();
+        entry.height = in.readInt();
+        entry.numPlayers = in.readInt();
+        entry.contentHash = in.readLong();
+        entry.schemeMask = in.readInt();
+        entries.put(key, entry);
+      }
+    }
+    catch (IOException ex)
+    {
+      entries.clear(); // Half an index isn't worth trusting.
+    }
+  }
+}
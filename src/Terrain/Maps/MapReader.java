@@ -1,13 +1,16 @@
 package Terrain.Maps;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Scanner;
 import java.util.TreeMap;
 
 import Engine.XYCoord;
@@ -20,10 +23,12 @@ public class MapReader extends IMapBuilder
 {
   /**
    * Tells the MapReader to read in the maps.
+   * Only maps that are new or changed since the last run are actually parsed; see MapIndex.
    */
   public static MapNode readMapData()
   {
     MapNode root = new MapNode(null, "", null);
+    MapIndex mapIndex = new MapIndex(new File(Engine.Driver.JAR_DIR + "res/map/" + MapIndex.INDEX_FILE));
 
     // This try{} is to safeguard us from exceptions if the res/map folder doesn't exist.
     // If it fails, we don't need to do anything in the catch{} since we just won't have anything in our list.
@@ -49,7 +54,7 @@ public class MapReader extends IMapBuilder
           // We just don't want to try to interpret the python script as a map. That'd be weird.
           if( !name.endsWith(".map") )
             continue;
-          MapInfo readMap = readSingleMap(parent.uri(), fileEntry.getAbsolutePath());
+          MapInfo readMap = mapIndex.getMap(parent.uri(), fileEntry);
           if( null != readMap )
             parent.children.add(new MapNode(parent, readMap.mapName, readMap));
         }
@@ -99,6 +104,8 @@ public class MapReader extends IMapBuilder
       System.out.println("WARNING: res/map directory does not exist.");
       e.printStackTrace(System.out);
     }
+    mapIndex.pruneUnseen();
+    mapIndex.save();
     return root;
   }
 
@@ -112,9 +119,9 @@ public class MapReader extends IMapBuilder
   }
   public static MapInfo readSingleMap(final String dirPath, final String filePath)
   {
-    try
+    File fileEntry = new File(filePath);
+    try (BufferedReader reader = new BufferedReader(new FileReader(fileEntry)))
     {
-      File fileEntry = new File(filePath);
       // We get the filename, and make it look nice for our map list.
       String mapName = fileEntry.getName();
       // underscores->spaces makes it pretty
@@ -125,9 +132,10 @@ public class MapReader extends IMapBuilder
       // Each arraylist contains coordinates, and which list it is denotes who owns that property.
       Map<Integer, ArrayList<XYCoord>> landOwnershipMap = new TreeMap<Integer, ArrayList<XYCoord>>();
 
-      Scanner scanner = new Scanner(fileEntry);
       // We need the first line so we can pre-fill our terrain data array with the proper number of sub-arrays.
-      String line = scanner.nextLine();
+      String line = reader.readLine();
+      if( null == line )
+        throw new EOFException("Map file is empty");
 
       // Map tiles are accessed via mapArray[x][y]
       // Thus, each subarray contains a column.
@@ -174,13 +182,8 @@ public class MapReader extends IMapBuilder
           terrainData.get(xCoord).add(stringToCode(terrainCode));
         }
         // We need to know if there's more lines before we ask for another line, or there's gonna be a problem.
-        moreLines = scanner.hasNextLine();
-        if( moreLines )
-        {
-          line = scanner.nextLine();
-          if( terrainData.size() * 4 != line.length() )
-            moreLines = false;
-        }
+        line = reader.readLine();
+        moreLines = null != line && terrainData.size() * 4 == line.length();
       }
 
       // intermediate array to hold the flat arrays harvested from each column
@@ -206,9 +209,8 @@ public class MapReader extends IMapBuilder
         units.add(new HashMap<XYCoord, String>());
       }
       // we'll assume there's a useless line between the map and any units because I'm ~lazy~
-      while (scanner.hasNextLine())
+      while (null != (line = reader.readLine()))
       {
-        line = scanner.nextLine();
         String[] unitTokens = line.split(",");
         // team, unit type, x, y
         if( unitTokens.length == 4 )
@@ -234,7 +236,6 @@ public class MapReader extends IMapBuilder
       MapInfo info = new MapInfo(dirPath, mapName, terrainArrayArray.toArray(new TerrainType[0][0]),
           propertyArrayArray.toArray(new XYCoord[0][0]), units);
 
-      scanner.close();
       return info;
     }
     // skip the file if you can't find it
@@ -243,6 +244,11 @@ public class MapReader extends IMapBuilder
       System.out.println("WARNING: Could not find map file " + filePath);
       e.printStackTrace(System.out);
     }
+    catch (IOException e)
+    {
+      System.out.println("WARNING: Could not read map file " + filePath);
+      e.printStackTrace(System.out);
+    }
     return null;
   }
 
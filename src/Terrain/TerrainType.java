@@ -16,6 +16,7 @@ public class TerrainType implements Serializable
   private int mVisionBoost = 0;     // How much this terrain enhances the vision of surface units on it.
   private TerrainType mBase;        // What this terrain turns into if it's destroyed
   private int mCapThreshold = 20;   // How much capturing is needed to take ownership.
+  private transient int mIndex = -1; // Position in TerrainTypeList, looked up on first use.
 
   // Generic constructor.
   private TerrainType(int attributeFlags, int defense, String name, TerrainType base)
@@ -203,6 +204,14 @@ public class TerrainType implements Serializable
           AIRPORT, TEMP_AIRPORT, BRIDGE, CITY, DS_TOWER, DOR_TOWER, BUNKER, PILLAR, METEOR, DUNES, FACTORY, FOREST, GRASS, HEADQUARTERS, LAB, MOUNTAIN, REEF, RIVER, ROAD, SEA, SEAPORT, TEMP_SEAPORT, SHOAL, TELETILE
           ));
 
+  /** @return This type's position in TerrainTypeList, which is how maps and saves refer to it. */
+  public int getIndex()
+  {
+    if( mIndex < 0 )
+      mIndex = TerrainTypeList.indexOf(this); // Racing threads would all find the same answer.
+    return mIndex;
+  }
+
   @Override
   public String toString()
   {
@@ -217,7 +226,7 @@ public class TerrainType implements Serializable
    */
   private Object writeReplace() throws ObjectStreamException
   {
-    return new SerialTerrain(TerrainTypeList.indexOf(this));
+    return new SerialTerrain(getIndex());
   }
 
   private static class SerialTerrain implements Serializable
@@ -3,6 +3,7 @@ package Test;
 import AI.AICombatUtils;
 import AI.AIController;
 import AI.AIMaker;
+import AI.MCTSAI;
 import AI.Muriel;
 import AI.WallyAI;
 import CommandingOfficers.Commander;
@@ -81,6 +82,7 @@ public class TestAIBehavior extends TestCase
     testPassed &= validate(testUnCapture(WallyAI.info), "  Inf distraction test failed.");
     testPassed &= validate(testInfOptimization(WallyAI.info), "  Inf optimization test failed.");
     testPassed &= validate(testWalling(WallyAI.info), "  Walling test failed.");
+    testPassed &= validate(testTakeTheKill(MCTSAI.withBudget(24, 0, 2)), "  MCTS kill test failed.");
 
     return testPassed;
   }
@@ -236,6 +238,34 @@ public class TestAIBehavior extends TestCase
     return testPassed;
   }
 
+  /** A searching AI should finish off a nearly-dead unit in reach, rather than just walk past it. */
+  private boolean testTakeTheKill(AIMaker ai)
+  {
+    setupTest(ai);
+
+    Unit myTank = addUnit(testMap, testCo1, "Md Tank", 2, 1);
+    Unit victim = addUnit(testMap, testCo2, "Recon", 4, 2);
+    victim.health = 20;
+    addUnit(testMap, testCo2, "Recon", 10, 8); // Out of reach, so the game isn't over once the first one dies.
+
+    turn(testGame);
+    GameAction act = null;
+    boolean testPassed = true;
+    do
+    {
+      act = testCo1.army.getNextAIAction(testMap);
+      if( null != act )
+        testPassed &= validate(performGameAction(act, testGame), "    "+ai.getName()+" generated a bad action!");
+    } while( null != act && testPassed );
+
+    testPassed &= validate(myTank.isTurnOver, "    "+ai.getName()+" didn't use its Md Tank!");
+    testPassed &= validate(!testCo2.units.contains(victim), "    "+ai.getName()+" didn't take the kill!");
+
+    // Clean up
+    cleanupTest();
+    return testPassed;
+  }
+
   /** An inf needs to wade through a bunch of Md Tanks to cap the HQ. */
   /** START: [ ] [ ] Inf MdT MdT MdT MdT MdT MdT MdT/HQ  */
   /** GOAL : [ ] [ ] [ ] [ ] [ ] [ ] [ ] [ ] [ ] Inf/HQ */
@@ -52,10 +52,39 @@ public class TestAIConstraints extends TestCase
       testPassed &= validate(testUnmovedFriend(ai), "  "+ai.getName()+" moves units it doesn't own.");
       testPassed &= validate(testBuildTooManyMans(ai), "  "+ai.getName()+" tries to build units while at the cap.");
     }
+    testPassed &= validate(testThinkBudget(), "  ThinkBudget charges AIs for time they didn't spend thinking.");
 
     return testPassed;
   }
 
+  /** Only time spent waiting on the AI should count against its turn; time spent animating its actions shouldn't. */
+  private boolean testThinkBudget()
+  {
+    boolean testPassed = true;
+    ThinkBudget budget = new ThinkBudget(0, 200);
+    budget.startTurn();
+    try
+    {
+      long deadline = budget.nextDeadline();
+      Thread.sleep(20); // Thinking.
+      budget.checkAction("test", deadline, System.out);
+      Thread.sleep(300); // Animating the action.
+      testPassed &= validate(!budget.turnExpired(), "    Time spent animating counted against the turn.");
+
+      long start = System.nanoTime();
+      deadline = budget.nextDeadline();
+      testPassed &= validate(deadline <= start + 185 * 1000000L && deadline > start, "    Deadline doesn't reflect time already spent thinking.");
+      Thread.sleep(250);
+      budget.checkAction("test", deadline, System.out);
+      testPassed &= validate(budget.turnExpired(), "    Turn budget didn't run out.");
+    }
+    catch (InterruptedException ex)
+    {
+      return false;
+    }
+    return testPassed;
+  }
+
   /** Confirm AIs don't move their friends' units. */
   private boolean testUnmovedFriend(AIMaker ai)
   {
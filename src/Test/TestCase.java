@@ -91,6 +91,7 @@ public abstract class TestCase
   protected static boolean performGameAction( GameAction action, GameInstance game )
   {
     if( null == action ) return false;
+    game.recordAction(action);
     GameEventQueue sequence = action.getEvents(game.gameMap);
     if( sequence.size() == 0 ) return false;
     performEvents(game, sequence);
@@ -101,7 +102,7 @@ public abstract class TestCase
   {
     for( GameEvent event : sequence )
     {
-      event.performEvent( game.gameMap );
+      game.gameMap.performEvent(event);
       GameEventQueue rippleSequence = GameEventListener.publishEvent(event, game);
       performEvents(game, rippleSequence);
     }
@@ -259,19 +259,19 @@ public class TestCombat extends TestCase
     Unit tank = addUnit(testMap, testCo1, UnitModel.ASSAULT,               3, 3);
     var target = new XYCoord(4, 3);
     MapLocation meteor = testMap.getLocation(target);
-    int lastHP = meteor.durability;
+    int lastHP = meteor.getDurability();
 
     turn(testGame);
     boolean testPassed = true;
 
     performGameAction(new BattleLifecycle.DemolitionAction(testMap, ship, GamePath.stayPut(ship), target),
         testGame);
-    testPassed &= validate(meteor.durability < lastHP, "    BShip dealt no damage.");
-    lastHP = meteor.durability;
+    testPassed &= validate(meteor.getDurability() < lastHP, "    BShip dealt no damage.");
+    lastHP = meteor.getDurability();
     performGameAction(new BattleLifecycle.DemolitionAction(testMap, tank, GamePath.stayPut(tank), target),
         testGame);
-    testPassed &= validate(meteor.durability < lastHP, "    Tank dealt no damage.");
-    lastHP = meteor.durability;
+    testPassed &= validate(meteor.getDurability() < lastHP, "    Tank dealt no damage.");
+    lastHP = meteor.getDurability();
     performGameAction(new BattleLifecycle.DemolitionAction(testMap, arty, GamePath.stayPut(arty), target),
         testGame);
     testPassed &= validate(meteor.getEnvironment().terrainType == TerrainType.GRASS, "    Artillery didn't finish it off.");
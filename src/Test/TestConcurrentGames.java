@@ -0,0 +1,292 @@
+package Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import AI.AIMaker;
+import AI.FightClub.GameSet;
+import AI.FightClub.GameSet.GameResults;
+import AI.FightClub.GameSetParams;
+import AI.InfantrySpamAI;
+import AI.Muriel;
+import AI.Ratings;
+import AI.ResultsStore;
+import AI.SpenderAI;
+import AI.Tournament;
+import AI.Tournament.TournamentParams;
+import AI.Tournament.TournamentResults;
+import CommandingOfficers.CommanderInfo;
+import CommandingOfficers.CommanderLibrary.NotACO;
+import Engine.GameReplay;
+import Engine.HeadlessMode;
+import Terrain.MapInfo;
+import Terrain.MapLibrary;
+
+/**
+ * Runs many headless games at once and makes sure none of them stepped on another's toes,
+ * by checking that each one ends up where the same seeded game does when played alone.
+ */
+public class TestConcurrentGames extends TestCase
+{
+  // More games than threads, and more threads than cores, so games get swapped in and out mid-turn.
+  private static final int NUM_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+  private static final int NUM_GAMES = 2 * NUM_THREADS;
+  private static final int MAX_TURNS = 6;
+  private static final long FIRST_SEED = 31;
+
+  @Override
+  public boolean runTest()
+  {
+    boolean testPassed = true;
+    testPassed &= validate(testConcurrentSets(), "  Concurrent game test failed!");
+    testPassed &= validate(testTournament(), "  Tournament test failed!");
+    testPassed &= validate(testSeededGames(), "  Seeded game test failed!");
+    testPassed &= validate(testResultsAndRatings(), "  Results store/ratings test failed!");
+    return testPassed;
+  }
+
+  /**
+   * Plays each seeded game on its own, then all of them at once on an oversubscribed pool, and makes sure each
+   * concurrent game ends exactly where its lone run did. The concurrent games' journals are replayed at once, too.
+   * Shared state that leaks between games would throw the concurrent results off from the lone ones, even if
+   * a game's own journal replays faithfully.
+   */
+  private boolean testConcurrentSets()
+  {
+    boolean testPassed = true;
+    HeadlessMode.enable();
+
+    MapInfo map = MapLibrary.getByName("AW2 Spann Island");
+    List<CommanderInfo> cos = Arrays.asList(NotACO.getInfo(), NotACO.getInfo());
+    List<AIMaker> ais = Arrays.asList(Muriel.info, SpenderAI.info);
+
+    ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+    List<File> journalDirs = new ArrayList<>();
+    try
+    {
+      // Play each game by itself first, for a result nothing else could have touched.
+      long[] loneHashes = new long[NUM_GAMES];
+      HeadlessMode.setMuted(true);
+      for( int i = 0; i < NUM_GAMES; ++i )
+        loneHashes[i] = playGame(map, cos, ais, FIRST_SEED + i, null);
+      HeadlessMode.setMuted(false);
+
+      // Now play them all at once, each writing its own journal.
+      List<Future<Long>> played = new ArrayList<>();
+      for( int i = 0; i < NUM_GAMES; ++i )
+      {
+        File dir = Files.createTempDirectory("dpjournal").toFile();
+        journalDirs.add(dir);
+        final long seed = FIRST_SEED + i;
+        played.add(pool.submit(() ->
+        {
+          HeadlessMode.setMuted(true);
+          return playGame(map, cos, ais, seed, dir);
+        }));
+      }
+      for( int i = 0; i < NUM_GAMES; ++i )
+        testPassed &= validate(played.get(i).get() == loneHashes[i],
+            "    Concurrent game " + i + " doesn't match the same game played alone.");
+
+      // Replay all the journals at once, too.
+      List<Future<Long>> replayed = new ArrayList<>();
+      for( File dir : journalDirs )
+        replayed.add(pool.submit(() ->
+        {
+          HeadlessMode.setMuted(true);
+          GameReplay replay = new GameReplay(journalFile(dir));
+          return replay.runToEnd() ? GameReplay.stateHash(replay.getGame()) : 0;
+        }));
+      for( int i = 0; i < NUM_GAMES; ++i )
+        testPassed &= validate(replayed.get(i).get() == loneHashes[i],
+            "    Concurrent replay " + i + " doesn't match the same game played alone.");
+    }
+    catch (Exception ex)
+    {
+      ex.printStackTrace();
+      testPassed = false;
+    }
+    finally
+    {
+      HeadlessMode.setMuted(false);
+      pool.shutdownNow();
+      for( File dir : journalDirs )
+      {
+        File[] files = dir.listFiles();
+        if( null != files )
+          for( File f : files )
+            f.delete();
+        dir.delete();
+      }
+    }
+
+    return testPassed;
+  }
+
+  /** Plays one seeded game, journaling it to the given directory if there is one, and returns its final state hash. */
+  private static long playGame(MapInfo map, List<CommanderInfo> cos, List<AIMaker> ais, long seed, File journalDir)
+  {
+    GameSetParams params = new GameSetParams(map, 1, cos, ais);
+    params.journalDir = journalDir;
+    params.maxTurns = MAX_TURNS;
+    params.seed = seed;
+    params.verbose = false;
+    GameSet set = new GameSet(params);
+    set.run();
+    return GameReplay.stateHash(set.lastGame);
+  }
+
+  /** Runs a tiny tournament, with swapped sides, and makes sure every game gets counted. */
+  private boolean testTournament()
+  {
+    boolean testPassed = true;
+
+    TournamentParams params = new TournamentParams();
+    params.maps = Arrays.asList(MapLibrary.getByName("AW2 Spann Island"));
+    params.coPairs.add(Arrays.asList(NotACO.getInfo(), NotACO.getInfo()));
+    params.aiPairs.add(Arrays.asList(InfantrySpamAI.info, InfantrySpamAI.info));
+    params.numThreads = 2;
+    params.maxTurns = 4;
+
+    HeadlessMode.setMuted(true);
+    TournamentResults results = new Tournament(params).run();
+    HeadlessMode.setMuted(false);
+
+    testPassed &= validate(results.expectedGames == 2, "    Expected two games (one per side), got " + results.expectedGames);
+    testPassed &= validate(results.games.size() == results.expectedGames, "    Not all tournament games finished.");
+    testPassed &= validate(results.tallies.size() == 1, "    Expected exactly one matchup.");
+    for( TournamentResults.MatchupTally tally : results.tallies.values() )
+    {
+      testPassed &= validate(tally.errors == 0, "    Tournament games had errors.");
+      testPassed &= validate(tally.wins[0] + tally.wins[1] + tally.draws == tally.games, "    Tournament tally doesn't add up.");
+    }
+    boolean[] seatsPlayed = new boolean[2];
+    for( Tournament.GameRecord game : results.games )
+    {
+      seatsPlayed[game.firstSeat] = true;
+      if( game.winner < 0 && GameResults.EndCondition.TURN_LIMIT == game.endReason )
+        testPassed &= validate(game.turnThinkNanos[0].length == game.turnThinkNanos[1].length,
+            "    Turn limit ended the day early: " + game.turnThinkNanos[0].length + " turns vs " + game.turnThinkNanos[1].length);
+    }
+    testPassed &= validate(seatsPlayed[0] && seatsPlayed[1], "    Tournament didn't swap sides.");
+
+    return testPassed;
+  }
+
+  /** Plays seeded games twice each, concurrently, and makes sure every pair matches. */
+  private boolean testSeededGames()
+  {
+    boolean testPassed = true;
+
+    TournamentParams params = new TournamentParams();
+    params.maps = Arrays.asList(MapLibrary.getByName("AW2 Spann Island"));
+    params.coPairs.add(Arrays.asList(NotACO.getInfo(), NotACO.getInfo()));
+    params.aiPairs.add(Arrays.asList(Muriel.info, SpenderAI.info));
+    params.seeds = Arrays.asList(1L, 2L);
+    params.verifyReproducibility = true;
+    params.numThreads = 2;
+    params.maxTurns = 8;
+
+    HeadlessMode.setMuted(true);
+    TournamentResults results = new Tournament(params).run();
+    HeadlessMode.setMuted(false);
+
+    testPassed &= validate(results.games.size() == 4, "    Expected four seeded games, got " + results.games.size());
+    for( Tournament.GameRecord game : results.games )
+    {
+      testPassed &= validate(null == game.error, "    " + game);
+      testPassed &= validate(game.seed == 1L || game.seed == 2L, "    Game was played with the wrong seed: " + game.seed);
+    }
+
+    return testPassed;
+  }
+
+  /** Writes a tiny tournament's results to disk, reads them back, and rates them. */
+  private boolean testResultsAndRatings()
+  {
+    boolean testPassed = true;
+
+    File dir = null;
+    try
+    {
+      dir = Files.createTempDirectory("dpresults").toFile();
+      TournamentParams params = new TournamentParams();
+      params.maps = Arrays.asList(MapLibrary.getByName("AW2 Spann Island"));
+      params.coPairs.add(Arrays.asList(NotACO.getInfo(), NotACO.getInfo()));
+      params.aiPairs.add(Arrays.asList(Muriel.info, SpenderAI.info));
+      params.numThreads = 2;
+      params.maxTurns = 4;
+      params.resultsDir = dir;
+
+      HeadlessMode.setMuted(true);
+      TournamentResults results = new Tournament(params).run();
+      HeadlessMode.setMuted(false);
+
+      List<Map<String, String>> rows = ResultsStore.readCsv(new File(dir, ResultsStore.CSV_NAME));
+      testPassed &= validate(rows.size() == results.games.size(), "    Expected " + results.games.size() + " result rows, got " + rows.size());
+      for( Map<String, String> row : rows )
+      {
+        testPassed &= validate((Muriel.info.getName() + ";" + SpenderAI.info.getName()).equals(row.get("ais")), "    Wrong contestants: " + row.get("ais"));
+        testPassed &= validate("4".equals(row.get("turns")), "    Wrong turn count: " + row.get("turns"));
+      }
+      List<String> jsonLines = Files.readAllLines(new File(dir, ResultsStore.JSON_NAME).toPath());
+      testPassed &= validate(jsonLines.size() == results.games.size(), "    Expected one JSON record per game.");
+      for( String line : jsonLines )
+        testPassed &= validate(line.startsWith("{") && line.endsWith("}") && line.contains("\"turn_think_ms\":["),
+            "    Malformed JSON record: " + line);
+
+      Ratings ratings = new Ratings();
+      ratings.addAll(rows);
+      testPassed &= validate(ratings.gamesRated == rows.size(), "    Not every game was rated.");
+    }
+    catch (IOException ex)
+    {
+      ex.printStackTrace();
+      testPassed = false;
+    }
+    finally
+    {
+      HeadlessMode.setMuted(false);
+      if( null != dir )
+      {
+        File[] files = dir.listFiles();
+        if( null != files )
+          for( File f : files )
+            f.delete();
+        dir.delete();
+      }
+    }
+
+    // A consistent winner should climb above a consistent loser, under both systems.
+    Ratings ratings = new Ratings();
+    for( int run = 0; run < 3; ++run )
+      for( int game = 0; game < 5; ++game )
+        ratings.addGame("run" + run, Arrays.asList("strong", "weak"), 0);
+    ratings.addGame("run3", Arrays.asList("strong", "weak"), -1);
+    Ratings.Player strong = ratings.getPlayer("strong");
+    Ratings.Player weak = ratings.getPlayer("weak");
+    ratings.getStandings();
+    testPassed &= validate(strong.elo > weak.elo, "    Elo didn't favor the winner.");
+    testPassed &= validate(strong.glicko > weak.glicko, "    Glicko didn't favor the winner.");
+    testPassed &= validate(strong.rd < Ratings.INITIAL_RD, "    Glicko didn't gain confidence from playing.");
+    testPassed &= validate(strong.wins == 15 && weak.losses == 15 && strong.draws == 1, "    Win/loss/draw counts are off.");
+
+    return testPassed;
+  }
+
+  private static File journalFile(File dir) throws IOException
+  {
+    File[] files = dir.listFiles();
+    if( null == files || files.length != 1 )
+      throw new IOException("Expected exactly one journal in " + dir);
+    return files[0];
+  }
+}
@@ -0,0 +1,413 @@
+package Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import CommandingOfficers.Commander;
+import CommandingOfficers.DefendPeace.CyanOcean.Patch;
+import CommandingOfficers.DefendPeace.RoseThorn.Strong;
+import Engine.Army;
+import Engine.Autosave;
+import Engine.EventJournal;
+import Engine.GameAction;
+import Engine.GameAction.EndTurnAction;
+import Engine.GameActionSet;
+import Engine.GameInstance;
+import Engine.GamePath;
+import Engine.GameReplay;
+import Engine.GameScenario;
+import Engine.GameScenario.FogMode;
+import Engine.GameScenario.TagMode;
+import Engine.UnitActionFactory;
+import Engine.Utils;
+import Engine.UnitActionLifecycles.BattleLifecycle;
+import Engine.UnitActionLifecycles.LaunchLifecycle;
+import Engine.UnitActionLifecycles.WaitLifecycle;
+import Terrain.Environment.Weathers;
+import Terrain.MapMaster;
+import Units.KaijuActions;
+import Units.KaijuWarsUnits;
+import Units.Unit;
+import Units.UnitModel;
+import Units.UnitModelScheme;
+
+public class TestEventJournal extends TestCase
+{
+  private static Commander strong = null;
+  private static Commander patch = null;
+  private static MapMaster testMap = null;
+  private static GameInstance game = null;
+
+  /** Make two COs and a MapMaster to use with this test case. */
+  private void setupTest()
+  {
+    GameScenario scn = new GameScenario();
+    strong = new Strong(scn.rules);
+    patch = new Patch(scn.rules);
+    Army[] cos = { new Army(scn, strong), new Army(scn, patch) };
+
+    testMap = new MapMaster(cos, Terrain.Maps.FiringRange.getMapInfo());
+
+    game = new GameInstance(cos, testMap);
+  }
+
+  @Override
+  public boolean runTest()
+  {
+    setupTest();
+
+    boolean testPassed = true;
+    testPassed &= validate(testRecordAndRead(), "  Journal record/read test failed!");
+    testPassed &= validate(testRingEviction(), "  Journal ring eviction test failed!");
+    testPassed &= validate(testFileJournal(), "  Journal file test failed!");
+    testPassed &= validate(testReplay(), "  Replay test failed!");
+    testPassed &= validate(testReplayLaunchAndCrush(), "  Launch/crush replay test failed!");
+    testPassed &= validate(testAutosave(), "  Autosave test failed!");
+
+    return testPassed;
+  }
+
+  /** Records a turn, a move, and some RNs in the default in-memory journal, and makes sure we can read them back. */
+  private boolean testRecordAndRead()
+  {
+    boolean testPassed = true;
+    turn(game);
+
+    Unit mover = addUnit(testMap, strong, UnitModel.TROOP, 2, 2);
+    mover.initTurn(testMap);
+    GamePath path = Utils.findShortestPath(mover, 4, 2, testMap);
+    testPassed &= validate(performGameAction(new WaitLifecycle.WaitAction(mover, path), game), "    Failed to move our unit.");
+    int rn = game.getRN(17);
+
+    try
+    {
+      EventJournal.Reader reader = new EventJournal.Reader(game.getJournal().toByteArray());
+      boolean sawStart = false, sawTurn = false, sawAction = false, sawRandom = false;
+      for( byte tag = reader.next(); tag != 0; tag = reader.next() )
+      {
+        switch (tag)
+        {
+          case EventJournal.TAG_START:
+            sawStart = true;
+            testPassed &= validate(reader.seed == game.rngSeed, "    Journal has the wrong seed.");
+            break;
+          case EventJournal.TAG_TURN:
+            sawTurn = true;
+            testPassed &= validate(reader.army == 0 && reader.day == 1, "    Journal has the wrong turn.");
+            break;
+          case EventJournal.TAG_ACTION:
+            sawAction = true;
+            EventJournal.ActionRecord rec = reader.action;
+            testPassed &= validate(WaitLifecycle.WaitAction.class.getName().equals(reader.getName(rec.actionClass)),
+                "    Journal has the wrong action class: " + reader.getName(rec.actionClass));
+            testPassed &= validate(rec.pathLength == path.getPathLength(), "    Journal path length is wrong.");
+            testPassed &= validate(rec.pathX[rec.pathLength - 1] == 4 && rec.pathY[rec.pathLength - 1] == 2,
+                "    Journal path ends in the wrong place.");
+            testPassed &= validate(rec.actorX == 2 && rec.actorY == 2, "    Journal has the wrong actor location.");
+            break;
+          case EventJournal.TAG_RANDOM:
+            sawRandom = true;
+            testPassed &= validate(reader.randomBound == 17 && reader.randomValue == rn, "    Journal has the wrong RN.");
+            break;
+        }
+      }
+      testPassed &= validate(sawStart && sawTurn && sawAction && sawRandom, "    Journal is missing records.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+
+    testMap.removeUnit(mover);
+    return testPassed;
+  }
+
+  /** Overfill a ring journal, and make sure it keeps the newest records and remains readable. */
+  private boolean testRingEviction()
+  {
+    boolean testPassed = true;
+    EventJournal ring = EventJournal.inMemory(EventJournal.DEFAULT_RING_BYTES);
+    game.setJournal(ring);
+
+    int lastRN = -1;
+    for( int i = 0; i < 20000; ++i )
+      lastRN = game.getRN(1000);
+    testPassed &= validate(ring.toByteArray().length <= EventJournal.DEFAULT_RING_BYTES + 1024, "    Ring journal grew past its size.");
+
+    try
+    {
+      EventJournal.Reader reader = new EventJournal.Reader(ring.toByteArray());
+      byte firstTag = reader.next();
+      testPassed &= validate(firstTag == EventJournal.TAG_START, "    Ring journal lost its start record.");
+      int count = 0;
+      for( byte tag = reader.next(); tag != 0; tag = reader.next() )
+      {
+        testPassed &= validate(tag == EventJournal.TAG_RANDOM, "    Ring journal contains a mangled record.");
+        ++count;
+      }
+      testPassed &= validate(count > 0 && count < 20000, "    Ring journal kept the wrong number of records: " + count);
+      testPassed &= validate(reader.randomValue == lastRN, "    Ring journal lost the newest record.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    return testPassed;
+  }
+
+  /** Write a journal to disk, and make sure it starts with a usable snapshot. */
+  private boolean testFileJournal()
+  {
+    boolean testPassed = true;
+    File journalFile = null;
+    try
+    {
+      journalFile = File.createTempFile("journalTest", ".dpj");
+      game.setJournal(EventJournal.toFile(journalFile, game));
+      int rn = game.getRN(5);
+      game.setJournal(null);
+
+      EventJournal.Reader reader = new EventJournal.Reader(journalFile);
+      testPassed &= validate(reader.next() == EventJournal.TAG_SNAPSHOT && reader.snapshot.length > 0, "    File journal has no snapshot.");
+      testPassed &= validate(reader.next() == EventJournal.TAG_START, "    File journal has no start record.");
+      testPassed &= validate(reader.next() == EventJournal.TAG_RANDOM && reader.randomValue == rn, "    File journal lost our RN.");
+      testPassed &= validate(reader.next() == 0, "    File journal has extra records.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != journalFile )
+        journalFile.delete();
+    }
+    return testPassed;
+  }
+
+  /** Record a short game with some combat, and make sure replaying (and seeking within) it reproduces the same state. */
+  private boolean testReplay()
+  {
+    boolean testPassed = true;
+    GameScenario scn = new GameScenario();
+    Commander red = new Strong(scn.rules);
+    Commander blue = new Patch(scn.rules);
+    Army[] armies = { new Army(scn, red), new Army(scn, blue) };
+    MapMaster map = new MapMaster(armies, Terrain.Maps.FiringRange.getMapInfo());
+    GameInstance recorded = new GameInstance(armies, map);
+
+    Unit attacker = addUnit(map, red, UnitModel.TROOP, 2, 2);
+    Unit defender = addUnit(map, blue, UnitModel.TROOP, 4, 2);
+
+    File journalFile = null;
+    try
+    {
+      journalFile = File.createTempFile("replayTest", ".dpj");
+      recorded.setJournal(EventJournal.toFile(journalFile, recorded));
+
+      turn(recorded);
+      testPassed &= validate(performGameAction(new BattleLifecycle.BattleAction(map, attacker, Utils.findShortestPath(attacker, 3, 2, map), 4, 2), recorded),
+          "    Failed to attack.");
+      testPassed &= validate(defender.getHealth() < UnitModel.MAXIMUM_HEALTH, "    Attack didn't do any damage.");
+      performGameAction(new EndTurnAction(recorded.activeArmy, recorded.getCurrentTurn()), recorded);
+      turn(recorded);
+      testPassed &= validate(performGameAction(new WaitLifecycle.WaitAction(defender, Utils.findShortestPath(defender, 4, 3, map)), recorded),
+          "    Failed to retreat.");
+      performGameAction(new EndTurnAction(recorded.activeArmy, recorded.getCurrentTurn()), recorded);
+      turn(recorded);
+      recorded.setJournal(null);
+
+      GameReplay replay = new GameReplay(new EventJournal.Reader(journalFile), 1);
+      testPassed &= validate(replay.runToEnd(), "    Replay diverged: " + replay.getError());
+      testPassed &= validate(replay.getCOTurn() == 3 && replay.getActionsReplayed() == 4, "    Replay didn't cover the whole game.");
+      testPassed &= validate(matches(replay.getGame(), attacker) && matches(replay.getGame(), defender), "    Replay ended in a different state.");
+
+      // The headless fast path must end up in exactly the same place.
+      GameReplay coalesced = new GameReplay(new EventJournal.Reader(journalFile), 1);
+      coalesced.setCoalesceEvents(true);
+      testPassed &= validate(coalesced.runToEnd(), "    Coalesced replay diverged: " + coalesced.getError());
+      testPassed &= validate(GameReplay.stateHash(coalesced.getGame()) == GameReplay.stateHash(replay.getGame()),
+          "    Coalesced replay ended in a different state.");
+
+      testPassed &= validate(replay.seek(1), "    Failed to seek backward: " + replay.getError());
+      Unit replayAttacker = replay.getGame().gameMap.getResident(2, 2);
+      testPassed &= validate(null != replayAttacker && replayAttacker.getHealth() == UnitModel.MAXIMUM_HEALTH,
+          "    Seeking backward didn't restore the start of the game.");
+      testPassed &= validate(replay.seek(3) && matches(replay.getGame(), defender), "    Seeking forward again went wrong.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != journalFile )
+        journalFile.delete();
+    }
+    return testPassed;
+  }
+
+  /**
+   * Launches and Kaiju moves record more than where their actor stands: which cargo went where and did what, and the
+   * path the Kaiju crushed along. Replay them, with a launch that isn't the first one on offer.
+   */
+  private boolean testReplayLaunchAndCrush()
+  {
+    boolean testPassed = true;
+    GameScenario scn = new GameScenario(new KaijuWarsUnits(), GameScenario.DEFAULT_INCOME, GameScenario.DEFAULT_STARTING_FUNDS,
+        GameScenario.DEFAULT_UNIT_CAP, FogMode.OFF_DOR, TagMode.OFF);
+    Commander red = new Strong(scn.rules);
+    Commander blue = new Patch(scn.rules);
+    Army[] armies = { new Army(scn, red), new Army(scn, blue) };
+    MapMaster map = new MapMaster(armies, Terrain.Maps.FiringRange.getMapInfo());
+    GameInstance recorded = new GameInstance(scn, armies, map, Weathers.CLEAR, false);
+    scn.rules.unitModelScheme.registerStateTrackers(recorded);
+
+    Unit carrier = addUnit(map, red, "Sky Carrier", 3, 3);
+    for( int i = 0; i < 2; ++i )
+    {
+      Unit fighter = new Unit(red, UnitModelScheme.getModelFromString("Fighter", red.unitModels));
+      fighter.damageHealth(30 * i); // So we can tell which one launched.
+      red.units.add(fighter);
+      carrier.heldUnits.add(fighter);
+    }
+    Unit kaiju = addUnit(map, blue, "Alphazaurus", 11, 2);
+
+    File journalFile = null;
+    try
+    {
+      journalFile = File.createTempFile("replayTest", ".dpj");
+      recorded.setJournal(EventJournal.toFile(journalFile, recorded));
+
+      turn(recorded);
+      LaunchLifecycle.LaunchAction launch = null;
+      EventJournal.ActionRecord rec = new EventJournal.ActionRecord();
+      for( GameActionSet set : carrier.getPossibleActions(map, GamePath.stayPut(carrier)) )
+        for( GameAction action : set.getGameActions() )
+        {
+          if( !(action instanceof LaunchLifecycle.LaunchAction) )
+            continue;
+          rec.clear();
+          action.fillJournalRecord(rec);
+          if( 1 == rec.option && rec.moveX == 5 && rec.moveY == 5 && rec.type == UnitActionFactory.WAIT )
+            launch = (LaunchLifecycle.LaunchAction) action;
+        }
+      testPassed &= validate(performGameAction(launch, recorded), "    Failed to launch.");
+      testPassed &= validate(null != map.getResident(5, 5) && 1 == carrier.heldUnits.size(), "    Launch didn't land the fighter.");
+      performGameAction(new EndTurnAction(recorded.activeArmy, recorded.getCurrentTurn()), recorded);
+      turn(recorded);
+
+      GameAction crush = null;
+      for( GameActionSet set : kaiju.getPossibleActions(map, Utils.findShortestPath(kaiju, 10, 1, map)) )
+        for( GameAction action : set.getGameActions() )
+          if( action instanceof KaijuActions.KaijuCrushAction )
+            crush = action;
+      testPassed &= validate(performGameAction(crush, recorded), "    Failed to move the Kaiju.");
+      testPassed &= validate(10 == kaiju.x && 1 == kaiju.y, "    Kaiju didn't get where it was going.");
+      performGameAction(new EndTurnAction(recorded.activeArmy, recorded.getCurrentTurn()), recorded);
+      turn(recorded);
+      recorded.setJournal(null);
+
+      GameReplay replay = new GameReplay(new EventJournal.Reader(journalFile), 1);
+      testPassed &= validate(replay.runToEnd(), "    Replay diverged: " + replay.getError());
+      testPassed &= validate(replay.getActionsReplayed() == 4, "    Replay didn't cover the whole game.");
+      testPassed &= validate(GameReplay.stateHash(replay.getGame()) == GameReplay.stateHash(recorded),
+          "    Replay ended in a different state.");
+      Unit fighter = map.getResident(5, 5);
+      testPassed &= validate(null != fighter && matches(replay.getGame(), fighter) && matches(replay.getGame(), kaiju),
+          "    Replay moved the wrong units.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != journalFile )
+        journalFile.delete();
+    }
+    return testPassed;
+  }
+
+  /** Autosave a few turns across a checkpoint, and make sure recovery lands where the game did. */
+  private boolean testAutosave()
+  {
+    boolean testPassed = true;
+    GameScenario scn = new GameScenario();
+    Commander red = new Strong(scn.rules);
+    Commander blue = new Patch(scn.rules);
+    Army[] armies = { new Army(scn, red), new Army(scn, blue) };
+    MapMaster map = new MapMaster(armies, Terrain.Maps.FiringRange.getMapInfo());
+    GameInstance played = new GameInstance(armies, map);
+
+    Unit attacker = addUnit(map, red, UnitModel.TROOP, 2, 2);
+    Unit defender = addUnit(map, blue, UnitModel.TROOP, 4, 2);
+
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("autosaveTest").toFile();
+      Autosave autosave = new Autosave(played, folder, 2);
+
+      turn(played);
+      performGameAction(new BattleLifecycle.BattleAction(map, attacker, Utils.findShortestPath(attacker, 3, 2, map), 4, 2), played);
+      performGameAction(new EndTurnAction(played.activeArmy, played.getCurrentTurn()), played);
+      autosave.endOfTurn(); // Written as a turn.
+      turn(played);
+      performGameAction(new WaitLifecycle.WaitAction(defender, Utils.findShortestPath(defender, 4, 3, map)), played);
+      performGameAction(new EndTurnAction(played.activeArmy, played.getCurrentTurn()), played);
+      autosave.endOfTurn(); // Time for a checkpoint.
+      long checkpointHash = GameReplay.stateHash(played);
+      turn(played);
+      performGameAction(new BattleLifecycle.BattleAction(map, attacker, Utils.findShortestPath(attacker, 3, 3, map), 4, 3), played);
+      performGameAction(new EndTurnAction(played.activeArmy, played.getCurrentTurn()), played);
+      autosave.endOfTurn(); // A turn again.
+      autosave.flush();
+
+      GameInstance recovered = Autosave.recover(folder);
+      testPassed &= validate(null != recovered, "    Failed to recover the game.");
+      if( null == recovered )
+        return false;
+      testPassed &= validate(GameReplay.stateHash(recovered) == GameReplay.stateHash(played), "    Recovered game doesn't match.");
+      testPassed &= validate(matches(recovered, attacker), "    Recovered units don't match.");
+      testPassed &= validate(recovered.requireInitOnLoad(), "    Recovered game doesn't start the next turn.");
+      testPassed &= validate(folder.list().length == 2, "    Old autosave files weren't cleaned up.");
+
+      // A mangled turn should leave us at the checkpoint before it, not halfway through.
+      for( File f : folder.listFiles() )
+        if( f.getName().endsWith(".dpj") )
+          Files.write(f.toPath(), new byte[] { 1, 2, 3 });
+      recovered = Autosave.recover(folder);
+      testPassed &= validate(null != recovered && GameReplay.stateHash(recovered) == checkpointHash,
+          "    Recovery with a bad turn didn't fall back to the checkpoint.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != folder )
+      {
+        for( File f : folder.listFiles() )
+          f.delete();
+        folder.delete();
+      }
+    }
+    return testPassed;
+  }
+
+  /** @return true if the replayed game has a unit matching this one, in the same place. */
+  private static boolean matches(GameInstance replayed, Unit original)
+  {
+    Unit copy = replayed.gameMap.getResident(original.x, original.y);
+    return null != copy && copy.model.name.equals(original.model.name) && copy.getHealth() == original.getHealth();
+  }
+}
@@ -1,18 +1,34 @@
 package Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
+
 import CommandingOfficers.Commander;
 import CommandingOfficers.DefendPeace.CyanOcean.Patch;
 import Engine.Army;
 import Engine.GameAction;
 import Engine.GameInstance;
+import Engine.GameReplay;
 import Engine.GameScenario;
 import Engine.GamePath;
 import Engine.Utils;
 import Engine.XYCoord;
 import Engine.GameEvents.ArmyDefeatEvent;
 import Engine.GameEvents.CreateUnitEvent;
+import Engine.GameEvents.EventCoalescer;
+import Engine.GameEvents.GameEvent;
+import Engine.GameEvents.GameEventListener;
+import Engine.GameEvents.GameEventListener.EventHook;
 import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.GlobalWeatherEvent;
+import Engine.GameEvents.MapChangeEvent;
+import Engine.GameEvents.MapChangeEvent.EnvironmentAssignment;
+import Engine.GameEvents.ModifyFundsEvent;
 import Engine.GameEvents.MoveEvent;
+import Engine.GameEvents.ResetVisionEvent;
+import Engine.GameEvents.TurnEndEvent;
+import Engine.GameEvents.UndoLog;
 import Engine.GameEvents.UnitDieEvent;
 import Engine.UnitActionLifecycles.BattleLifecycle;
 import Engine.UnitActionLifecycles.CaptureLifecycle;
@@ -21,6 +37,8 @@ import Engine.UnitActionLifecycles.LoadLifecycle;
 import Engine.UnitActionLifecycles.ResupplyLifecycle;
 import Engine.UnitActionLifecycles.UnloadLifecycle;
 import Engine.UnitActionLifecycles.WaitLifecycle;
+import Terrain.Environment;
+import Terrain.Environment.Weathers;
 import Terrain.MapMaster;
 import Terrain.TerrainType;
 import Units.Unit;
@@ -58,6 +76,10 @@ public class TestGameEvent extends TestCase
     testPassed &= validate(testUnitDieEvent(), "  UnitDieEvent test failed.");
     testPassed &= validate(testResupplyEvent(), "  Resupply test failed.");
     testPassed &= validate(testUnitJoinEvent(), "  Join test failed.");
+    testPassed &= validate(testEventSubscriptions(), "  Event subscription test failed.");
+    testPassed &= validate(testEventCoalescing(), "  Event coalescing test failed.");
+    testPassed &= validate(testUndoLog(), "  Undo log test failed.");
+    testPassed &= validate(testWeatherForecast(), "  Weather forecast test failed.");
     testPassed &= validate(testCommanderDefeatEvent(), "  ArmyDefeatEvent test failed."); // Put this one last because it alters the map.
 
     return testPassed;
@@ -419,6 +441,246 @@ public class TestGameEvent extends TestCase
     return testPassed;
   }
 
+  private boolean testEventSubscriptions()
+  {
+    boolean testPassed = true;
+
+    DeathListener deathListener = new DeathListener();
+    FundsOnlyListener fundsListener = new FundsOnlyListener();
+    deathListener.registerForEvents(testGame);
+    fundsListener.registerForEvents(testGame);
+
+    // Overridden hooks should be found automatically, and nothing else.
+    testPassed &= validate(deathListener.getEventHooks().contains(EventHook.UNIT_DIE), "    Overridden hook was not detected!");
+    testPassed &= validate(!deathListener.getEventHooks().contains(EventHook.MODIFY_FUNDS), "    Non-overridden hook was detected!");
+    testPassed &= validate(contains(testGame.eventListeners.getSubscribers(EventHook.UNIT_DIE), deathListener), "    Listener is not subscribed to its hook!");
+    testPassed &= validate(!contains(testGame.eventListeners.getSubscribers(EventHook.MODIFY_FUNDS), deathListener), "    Listener is subscribed to a hook it doesn't override!");
+    testPassed &= validate(contains(testGame.eventListeners.getSubscribers(EventHook.ALL), deathListener), "    Listener is missing from the catch-all list!");
+    testPassed &= validate(0 == testGame.eventListeners.getSubscribers(EventHook.NONE).length, "    Someone is subscribed to NONE!");
+
+    // Explicitly-declared hooks should win over the derived ones.
+    testPassed &= validate(contains(testGame.eventListeners.getSubscribers(EventHook.MODIFY_FUNDS), fundsListener), "    Declared hook was not subscribed!");
+    testPassed &= validate(!contains(testGame.eventListeners.getSubscribers(EventHook.UNIT_DIE), fundsListener), "    Undeclared hook was subscribed!");
+
+    // Publishing should only reach the subscribed listener, and append to the provided queue.
+    Unit victim = addUnit(testMap, testCo1, UnitModel.TROOP, 1, 1);
+    UnitDieEvent event = new UnitDieEvent(victim);
+    event.performEvent(testMap);
+    GameEventQueue output = new GameEventQueue();
+    GameEventListener.publishEvent(event, testGame, output);
+    testPassed &= validate(deathListener.deaths == 1, "    Subscribed listener did not hear about the death!");
+    testPassed &= validate(fundsListener.deaths == 0, "    Unsubscribed listener heard about the death!");
+    testPassed &= validate(output.size() == 1, "    Listener's response was not appended to the output queue!");
+
+    // Unregistering should remove the listener from every list.
+    deathListener.unregister(testGame);
+    fundsListener.unregister(testGame);
+    testPassed &= validate(!contains(testGame.eventListeners.getSubscribers(EventHook.UNIT_DIE), deathListener), "    Unregistered listener is still subscribed!");
+    testPassed &= validate(!contains(testGame.eventListeners.getSubscribers(EventHook.ALL), fundsListener), "    Unregistered listener is still in the catch-all list!");
+
+    // Clean up.
+    testCo1.units.remove(victim);
+
+    return testPassed;
+  }
+
+  private boolean testEventCoalescing()
+  {
+    boolean testPassed = true;
+    Army army1 = testCo1.army;
+    Army army2 = testCo2.army;
+    XYCoord tileA = new XYCoord(1, 1);
+    XYCoord tileB = new XYCoord(2, 1);
+    Environment oldA = testMap.getEnvironment(tileA.x, tileA.y);
+    Environment oldB = testMap.getEnvironment(tileB.x, tileB.y);
+
+    GameEventQueue events = new GameEventQueue();
+    events.add(new ResetVisionEvent(testMap));
+    events.add(new ResetVisionEvent(testMap));
+    events.add(new MapChangeEvent(tileA, Environment.getTile(oldA.terrainType, Weathers.RAIN)));
+    events.add(new MapChangeEvent(tileB, Environment.getTile(oldB.terrainType, Weathers.RAIN)));
+    events.add(new ModifyFundsEvent(army1, 100));
+    events.add(new ModifyFundsEvent(army1, 250));
+    events.add(new ModifyFundsEvent(army2, 7));
+    events.add(new TurnEndEvent(testMap, army1, 1));
+
+    int performed = 0;
+    int fundsBefore1 = army1.money;
+    int fundsBefore2 = army2.money;
+    while (!events.isEmpty())
+    {
+      GameEvent event = EventCoalescer.coalesce(events.poll(), events, testGame);
+      if( null == event )
+        continue;
+      ++performed;
+      event.performEvent(testMap);
+      GameEventListener.publishEvent(event, testGame, events);
+    }
+    // One reset, one map change, and one funds change per army.
+    // The turn end doesn't do anything itself, so it only needs to run if someone's listening for it.
+    int expected = 4 + ((testGame.eventListeners.getSubscribers(EventHook.TURN_END).length > 0) ? 1 : 0);
+    testPassed &= validate(performed == expected, "    Expected " + expected + " events after coalescing, but performed " + performed);
+    testPassed &= validate(army1.money == fundsBefore1 + 350, "    Merged funds change gave the wrong amount.");
+    testPassed &= validate(army2.money == fundsBefore2 + 7, "    Funds for separate armies were merged.");
+    testPassed &= validate(testMap.getEnvironment(tileA.x, tileA.y).weatherType == Weathers.RAIN
+                        && testMap.getEnvironment(tileB.x, tileB.y).weatherType == Weathers.RAIN, "    Merged map change lost a tile.");
+
+    // If someone's listening, they must still hear about every change.
+    FundsOnlyListener fundsListener = new FundsOnlyListener();
+    fundsListener.registerForEvents(testGame);
+    events.add(new ModifyFundsEvent(army1, -100));
+    events.add(new ModifyFundsEvent(army1, -250));
+    GameEvent first = EventCoalescer.coalesce(events.poll(), events, testGame);
+    testPassed &= validate(first instanceof ModifyFundsEvent && ((ModifyFundsEvent) first).getValue() == -100 && events.size() == 1,
+        "    Coalesced events that have a listener.");
+    fundsListener.unregister(testGame);
+
+    // Clean up.
+    events.clear();
+    army1.money = fundsBefore1;
+    army2.money = fundsBefore2;
+    testMap.getLocation(tileA).setEnvironment(oldA);
+    testMap.getLocation(tileB).setEnvironment(oldB);
+
+    return testPassed;
+  }
+
+  private static boolean contains(GameEventListener[] listeners, GameEventListener target)
+  {
+    for( GameEventListener gel : listeners )
+      if( gel == target )
+        return true;
+    return false;
+  }
+
+  private static class DeathListener implements GameEventListener
+  {
+    private static final long serialVersionUID = 1L;
+    int deaths = 0;
+
+    @Override
+    public GameEventQueue receiveUnitDieEvent(Unit victim, XYCoord grave, Integer healthBeforeDeath)
+    {
+      ++deaths;
+      GameEventQueue response = new GameEventQueue();
+      response.add(new ModifyFundsEvent(victim.CO.army, 0));
+      return response;
+    }
+  }
+
+  /** Overrides receiveUnitDieEvent, but only declares interest in funds. */
+  private static class FundsOnlyListener extends DeathListener
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Set<EventHook> getEventHooks()
+    {
+      return EnumSet.of(EventHook.MODIFY_FUNDS);
+    }
+  }
+
+  /** Performs a handful of events with an UndoLog attached, and makes sure rolling back restores everything. */
+  private boolean testUndoLog()
+  {
+    boolean testPassed = true;
+
+    Unit infA = addUnit(testMap, testCo1, UnitModel.TROOP, 1, 1);
+    Unit infB = addUnit(testMap, testCo2, UnitModel.TROOP, 1, 2);
+    Unit capper = addUnit(testMap, testCo2, UnitModel.TROOP, 2, 2);
+    capper.initTurn(testMap);
+
+    GameEventQueue events = new GameEventQueue();
+    events.add(new ModifyFundsEvent(testCo1.army, 1000));
+    GamePath path = new GamePath();
+    path.addWaypoint(1, 1);
+    events.add(new BattleLifecycle.BattleEvent(infA, infB, path, testMap));
+    path = new GamePath();
+    path.addWaypoint(1, 1);
+    path.addWaypoint(2, 1);
+    events.add(new MoveEvent(infA, path));
+    events.add(new UnitDieEvent(infB));
+    events.add(new CaptureLifecycle.CaptureEvent(capper, testMap.getLocation(2, 2)));
+    events.add(new CaptureLifecycle.CaptureEvent(capper, testMap.getLocation(2, 2)));
+
+    // Building the battle drew random numbers, which the log doesn't cover; take our "before" picture after that.
+    UndoLog log = new UndoLog();
+    testMap.setUndoLog(log);
+    long hashBefore = GameReplay.stateHash(testGame);
+    int powerBefore = testCo1.getAbilityPower();
+    int unitsBefore = testCo2.units.size();
+    Commander cityOwner = testMap.getLocation(2, 2).getOwner();
+    int mark = log.mark();
+    performEvents(testGame, events);
+
+    testPassed &= validate(GameReplay.stateHash(testGame) != hashBefore, "    The events didn't change anything.");
+    testPassed &= validate(log.size() > mark, "    Nothing was logged.");
+    testPassed &= validate(log.rollBack(testMap, mark), "    Rollback reported irreversible events.");
+    testPassed &= validate(GameReplay.stateHash(testGame) == hashBefore, "    Rollback didn't restore the game.");
+    testPassed &= validate(infA.x == 1 && infA.y == 1 && testMap.getResident(1, 1) == infA, "    Mover wasn't put back.");
+    testPassed &= validate(testMap.getResident(1, 2) == infB && infB.getHealth() == UnitModel.MAXIMUM_HEALTH, "    Dead unit wasn't revived.");
+    testPassed &= validate(testCo2.units.size() == unitsBefore, "    CO unit list wasn't restored.");
+    testPassed &= validate(testCo1.getAbilityPower() == powerBefore, "    Ability charge wasn't restored.");
+    testPassed &= validate(testMap.getLocation(2, 2).getOwner() == cityOwner && capper.getCaptureProgress() == 0,
+        "    Capture wasn't undone.");
+
+    // Something we can't undo should make the rollback say so, but only once.
+    mark = log.mark();
+    testMap.performEvent(new ModifyFundsEvent(testCo1.army, 500));
+    log.markIrreversible();
+    testPassed &= validate(!log.rollBack(testMap, mark), "    Rollback didn't report an irreversible event.");
+    testPassed &= validate(log.rollBack(testMap, log.mark()), "    Irreversibility outlived its rollback.");
+
+    testMap.setUndoLog(null);
+    testMap.removeUnit(infA);
+    testMap.removeUnit(infB);
+    testMap.removeUnit(capper);
+    testCo1.units.remove(infA);
+    testCo2.units.remove(infB);
+    testCo2.units.remove(capper);
+
+    return testPassed;
+  }
+
+  /** The turn change should only reassign weather where it changes, and put it back when the forecast runs out. */
+  private boolean testWeatherForecast()
+  {
+    boolean testPassed = true;
+    testMap.performEvent(new MapChangeEvent(testMap.advanceWeather(1, Weathers.CLEAR))); // Settle what earlier tests left.
+
+    testMap.performEvent(new GlobalWeatherEvent(Weathers.RAIN, 1)); // The rest of this turn and the next CO's.
+    XYCoord snowy = new XYCoord(3, 3);
+    ArrayList<EnvironmentAssignment> snow = new ArrayList<EnvironmentAssignment>();
+    snow.add(new EnvironmentAssignment(snowy, Environment.getTile(testMap.getEnvironment(snowy).terrainType, Weathers.SNOW), 2));
+    testMap.performEvent(new MapChangeEvent(snow));
+
+    ArrayList<EnvironmentAssignment> changes = testMap.advanceWeather(1, Weathers.CLEAR);
+    testPassed &= validate(changes.isEmpty(), "    Weather was reassigned while its forecast was still running.");
+
+    changes = testMap.advanceWeather(1, Weathers.CLEAR);
+    boolean allClear = true, snowStays = true;
+    for( EnvironmentAssignment ea : changes )
+    {
+      allClear &= ea.environment.weatherType == Weathers.CLEAR;
+      snowStays &= !ea.where.equals(snowy);
+    }
+    testPassed &= validate(changes.size() == testMap.mapWidth * testMap.mapHeight - 1 && allClear,
+        "    Rain didn't end everywhere at once.");
+    testPassed &= validate(snowStays, "    Snow ended before its forecast did.");
+    testPassed &= validate(!changes.isEmpty() && changes.get(0).where.equals(0, 0) && changes.get(1).where.equals(0, 1),
+        "    Weather changes aren't in map order.");
+    testMap.performEvent(new MapChangeEvent(changes));
+
+    changes = testMap.advanceWeather(1, Weathers.CLEAR);
+    testPassed &= validate(changes.isEmpty(), "    Weather was reassigned with nothing to change.");
+    changes = testMap.advanceWeather(1, Weathers.CLEAR);
+    testPassed &= validate(changes.size() == 1 && changes.get(0).where.equals(snowy), "    Snow didn't end on schedule.");
+    testMap.performEvent(new MapChangeEvent(changes));
+    testPassed &= validate(!testMap.getLocation(snowy).hasForecast(), "    Snow is still forecast.");
+
+    return testPassed;
+  }
+
   private boolean testCommanderDefeatEvent()
   {
     boolean testPassed = true;
@@ -152,7 +152,7 @@ public class TestJavier extends TestCase
   {
     // Generate a non-cached version of the map info so we can mess with it
     MapInfo mapInfo = MapLibrary.getByName("Deep Forest");
-    mapInfo.terrain[3][4] = TerrainType.DS_TOWER;
+    mapInfo.getTerrain()[3][4] = TerrainType.DS_TOWER;
     setupTest(mapInfo);
     boolean testPassed = true;
 
@@ -26,6 +26,8 @@ public class TestMain extends TestCase
     if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestVisionMechanics().runTest(), "Vision mechanics test failed!");
     if( !testsPassed ) return testsPassed;
+    testsPassed &= validate(new TestOverlayCache().runTest(), "Overlay cache test failed!");
+    if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestTransport().runTest(), "Transport test failed!");
     if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestCombat().runTest(), "Combat test failed!");
@@ -36,8 +38,14 @@ public class TestMain extends TestCase
     if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestSaveLoad().runTest(), "Save/load test failed!");
     if( !testsPassed ) return testsPassed;
+    testsPassed &= validate(new TestEventJournal().runTest(), "Event journal test failed!");
+    if( !testsPassed ) return testsPassed;
+    testsPassed &= validate(new TestConcurrentGames().runTest(), "Concurrent games test failed!");
+    if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestSprite().runTest(), "Sprite test failed!");
     if( !testsPassed ) return testsPassed;
+    testsPassed &= validate(new TestMiniMapCache().runTest(), "Minimap cache test failed!");
+    if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestStateTracker().runTest(), "StateTracker test failed!");
     if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestCountTracker().runTest(), "CountManager test failed!");
@@ -67,6 +75,8 @@ public class TestMain extends TestCase
     testsPassed &= validate(new TestAIConstraints().runTest(), "AI constraint test failed!");
     if( !testsPassed ) return testsPassed;
     testsPassed &= validate(new TestColinMath().runTest(), "Dumb math test failed!");
+    if( !testsPassed ) return testsPassed;
+    testsPassed &= validate(new TestMapIndex().runTest(), "Map index test failed!");
     System.out.println("All tests completed.");
     return testsPassed;
   }
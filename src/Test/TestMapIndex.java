@@ -0,0 +1,251 @@
+package Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import Engine.XYCoord;
+import Terrain.MapInfo;
+import Terrain.Maps.MapImporter;
+import Terrain.Maps.MapIndex;
+import Terrain.Maps.MapReader;
+import Terrain.TerrainType;
+
+public class TestMapIndex extends TestCase
+{
+  @Override
+  public boolean runTest()
+  {
+    boolean testPassed = true;
+    testPassed &= validate(testLazyLoad(), "  Map index lazy load test failed!");
+    testPassed &= validate(testContentHash(), "  Map content hash test failed!");
+    testPassed &= validate(testImport(), "  Map import test failed!");
+    testPassed &= validate(testStaleEntry(), "  Map index stale entry test failed!");
+    return testPassed;
+  }
+
+  /** Index a map, then make sure the indexed copy matches the real thing, and is only read when needed. */
+  private boolean testLazyLoad()
+  {
+    boolean testPassed = true;
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("mapindex").toFile();
+      File mapFile = new File(folder, "Spann_Island.map");
+      Files.copy(new File(Engine.Driver.JAR_DIR + "res/map/Cartridge/AW2_Spann_Island.map").toPath(), mapFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      File indexFile = new File(folder, MapIndex.INDEX_FILE);
+      MapInfo parsed = MapReader.readSingleMap("test", mapFile.getAbsolutePath());
+
+      MapIndex index = new MapIndex(indexFile);
+      MapInfo first = index.getMap("test", mapFile);
+      index.save();
+      testPassed &= validate(null != first && first.isLoaded(), "    A new map should be parsed right away.");
+      testPassed &= validate(indexFile.exists(), "    Didn't write the index.");
+
+      MapInfo indexed = new MapIndex(indexFile).getMap("test", mapFile);
+      testPassed &= validate(null != indexed && !indexed.isLoaded(), "    An indexed map shouldn't be parsed until it's used.");
+      testPassed &= validate(indexed.mapName.equals(parsed.mapName) && indexed.getWidth() == parsed.getWidth()
+          && indexed.getHeight() == parsed.getHeight() && indexed.getNumPlayers() == parsed.getNumPlayers()
+          && indexed.getContentHash() == parsed.getContentHash(), "    Indexed metadata doesn't match the map.");
+      testPassed &= validate(!indexed.isLoaded(), "    Reading metadata loaded the map.");
+      testPassed &= validate(Arrays.deepEquals(indexed.getTerrain(), parsed.getTerrain())
+          && Arrays.deepEquals(indexed.getPlayerProps(), parsed.getPlayerProps()), "    Indexed map loaded the wrong contents.");
+
+      // A changed file gets parsed again.
+      mapFile.setLastModified(mapFile.lastModified() + 1000);
+      MapInfo changed = new MapIndex(indexFile).getMap("test", mapFile);
+      testPassed &= validate(null != changed && changed.isLoaded(), "    Trusted the index for a changed map.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != folder )
+      {
+        for( File f : folder.listFiles() )
+          f.delete();
+        folder.delete();
+      }
+    }
+    return testPassed;
+  }
+
+  /** Cached minimaps are keyed on the content hash, so anything that shows up on a minimap has to change it. */
+  private boolean testContentHash()
+  {
+    boolean testPassed = true;
+    TerrainType[][] tiles = new TerrainType[4][3];
+    for( TerrainType[] column : tiles )
+      Arrays.fill(column, TerrainType.GRASS);
+    XYCoord[][] props = { { new XYCoord(0, 0) }, { new XYCoord(3, 2) } };
+    long baseline = hashMap(tiles, props, "Infantry");
+
+    testPassed &= validate(baseline == hashMap(tiles, props, "Infantry"), "    Hash isn't stable.");
+    tiles[1][1] = TerrainType.FOREST;
+    long forested = hashMap(tiles, props, "Infantry");
+    testPassed &= validate(baseline != forested, "    Terrain didn't change the hash.");
+    XYCoord[][] swapped = { { new XYCoord(3, 2) }, { new XYCoord(0, 0) } };
+    testPassed &= validate(forested != hashMap(tiles, swapped, "Infantry"), "    Property owners didn't change the hash.");
+    testPassed &= validate(forested != hashMap(tiles, props, "Mech"), "    Units didn't change the hash.");
+    return testPassed;
+  }
+
+  private static long hashMap(TerrainType[][] tiles, XYCoord[][] props, String unit)
+  {
+    ArrayList<Map<XYCoord, String>> units = new ArrayList<>();
+    units.add(new HashMap<>());
+    units.add(new HashMap<>());
+    units.get(0).put(new XYCoord(1, 0), unit);
+    return new MapInfo("test", "test", tiles, props, units).getContentHash();
+  }
+
+  /** Import a small batch, and make sure only the good maps get in, with the problems reported. */
+  private boolean testImport()
+  {
+    boolean testPassed = true;
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("mapimport").toFile();
+      File batch = new File(folder, "batch");
+      File mapRoot = new File(folder, "map");
+      batch.mkdirs();
+      mapRoot.mkdirs();
+      String units = "team, unit type, x, y\n";
+      writeMap(batch, "Good.map", " 0HQ  GR 1HQ\n  GR  SE  GR\n" + units + "0, Infantry, 1, 0\n");
+      writeMap(batch, "Lonely.map", " 0HQ  GR  GR\n  GR  GR  GR\n" + units);
+      writeMap(batch, "Swimmer.map", " 0HQ  GR 1HQ\n  GR  SE  GR\n" + units + "0, Infantry, 1, 1\n");
+      writeMap(batch, "Stray.map", " 0HQ  GR 1HQ\n  GR  SE  GR\n" + units + "0, Infantry, 5, 5\n");
+      writeMap(batch, "Walled.map", " 0HQ  GR 1HQ  PI  CT\n  GR  GR  GR  GR  PI\n" + units);
+
+      MapImporter importer = new MapImporter(mapRoot, "Imported", 2);
+      PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+      List<MapImporter.Result> results = importer.importMaps(Arrays.asList(batch), true, quiet);
+      testPassed &= validate(results.size() == 5, "    Didn't check every map.");
+      for( MapImporter.Result result : results )
+      {
+        String name = result.source.getName();
+        boolean shouldPass = name.equals("Good.map") || name.equals("Swimmer.map") || name.equals("Walled.map");
+        testPassed &= validate(shouldPass == result.isValid(), "    Wrong verdict for " + name + ": " + result.errors);
+        testPassed &= validate(shouldPass == new File(mapRoot, "Imported/" + name).exists(), "    Wrong files imported for " + name);
+        if( name.equals("Swimmer.map") )
+          testPassed &= validate(1 == result.warnings.size(), "    Didn't warn about the unit at sea: " + result.warnings);
+        if( name.equals("Walled.map") )
+          testPassed &= validate(1 == result.warnings.size() && result.warnings.get(0).contains("(4, 0)"),
+              "    Didn't warn about the walled-off city: " + result.warnings);
+      }
+
+      // The index should already know the imported maps, without parsing them again.
+      MapInfo indexed = new MapIndex(new File(mapRoot, MapIndex.INDEX_FILE)).getMap("Imported", new File(mapRoot, "Imported/Good.map"));
+      testPassed &= validate(null != indexed && !indexed.isLoaded() && 2 == indexed.getNumPlayers(), "    Imported map wasn't indexed.");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      deleteAll(folder);
+    }
+    return testPassed;
+  }
+
+  /**
+   * Maps handed out from the index read their file later, by which time it may have changed or gone. A changed map
+   * should come back as it is now, hash and all, and a missing one should say so rather than make something up.
+   */
+  private boolean testStaleEntry()
+  {
+    boolean testPassed = true;
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("mapstale").toFile();
+      File indexFile = new File(folder, MapIndex.INDEX_FILE);
+      String units = "team, unit type, x, y\n0, Infantry, 1, 0\n";
+      String[] originals = { " 0HQ  GR 1HQ\n  GR  SE  GR\n", " 0HQ  GR 1HQ\n  GR  SE  GR\n", " 0HQ  GR 1HQ\n  GR  SE  GR\n" };
+      String[] edits = { " 0HQ  GR 1HQ\n  GR  FO  GR\n", " 0HQ  GR  GR 1HQ\n  GR  SE  SE  GR\n", null };
+      for( int i = 0; i < edits.length; ++i )
+      {
+        String name = "Stale" + i + ".map";
+        File mapFile = new File(folder, name);
+        writeMap(folder, name, originals[i] + units);
+        MapIndex index = new MapIndex(indexFile);
+        MapInfo original = index.getMap("test", mapFile);
+        index.save();
+        MapInfo indexed = new MapIndex(indexFile).getMap("test", mapFile);
+        testPassed &= validate(null != original && null != indexed && !indexed.isLoaded(), "    Map " + i + " wasn't indexed.");
+        if( null == original || null == indexed )
+          continue;
+
+        if( null == edits[i] )
+        {
+          mapFile.delete();
+          testPassed &= validate(!indexed.load(), "    Loaded a map whose file is gone.");
+          boolean threw = false;
+          try
+          {
+            indexed.getTerrain();
+          }
+          catch (IllegalStateException ex)
+          {
+            threw = true;
+          }
+          testPassed &= validate(threw, "    Made up terrain for a map whose file is gone.");
+          continue;
+        }
+
+        writeMap(folder, name, edits[i] + units);
+        MapInfo edited = MapReader.readSingleMap("test", mapFile.getAbsolutePath());
+        testPassed &= validate(indexed.load() && indexed.isLoaded(), "    Couldn't load changed map " + i + ".");
+        testPassed &= validate(Arrays.deepEquals(indexed.getTerrain(), edited.getTerrain())
+            && Arrays.deepEquals(indexed.getPlayerProps(), edited.getPlayerProps()), "    Changed map " + i + " has the wrong contents.");
+        testPassed &= validate(indexed.getWidth() == edited.getWidth() && indexed.getHeight() == edited.getHeight(),
+            "    Changed map " + i + " kept its old size.");
+        testPassed &= validate(indexed.getContentHash() == edited.getContentHash() && indexed.getContentHash() != original.getContentHash(),
+            "    Changed map " + i + " kept its old content hash.");
+      }
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      deleteAll(folder);
+    }
+    return testPassed;
+  }
+
+  private static void writeMap(File folder, String name, String contents) throws IOException
+  {
+    Files.write(new File(folder, name).toPath(), contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void deleteAll(File file)
+  {
+    if( null == file )
+      return;
+    File[] children = file.listFiles();
+    if( null != children )
+      for( File child : children )
+        deleteAll(child);
+    file.delete();
+  }
+}
@@ -0,0 +1,111 @@
+package Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import UI.Art.SpriteArtist.MiniMapCache;
+
+public class TestMiniMapCache extends TestCase
+{
+  @Override
+  public boolean runTest()
+  {
+    boolean testPassed = true;
+    testPassed &= validate(testRequestOrder(), "  Minimap request order test failed!");
+    return testPassed;
+  }
+
+  /**
+   * Queue a folder's worth of thumbnails behind one that's busy drawing, then ask for one of them again, as the map
+   * menu does when the player highlights it. That one should be drawn next, and only once.
+   */
+  private boolean testRequestOrder()
+  {
+    boolean testPassed = true;
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("minimaps").toFile();
+      MiniMapCache cache = new MiniMapCache(folder, 8, 1);
+      List<String> drawn = new ArrayList<String>();
+      CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+
+      MiniMapCache.Key busy = new MiniMapCache.Key(0, 0, 4, 4);
+      cache.request(busy, () -> {
+        started.countDown();
+        try
+        {
+          release.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+        return draw(drawn, "busy").get();
+      });
+      testPassed &= validate(started.await(5, TimeUnit.SECONDS), "    The first thumbnail never started drawing.");
+
+      // Prefetch back to front, as MiniMapArtist does, so "a" is next up.
+      String[] names = { "a", "b", "c" };
+      MiniMapCache.Key[] keys = new MiniMapCache.Key[names.length];
+      for( int i = names.length - 1; i >= 0; --i )
+      {
+        keys[i] = new MiniMapCache.Key(i + 1, 0, 4, 4);
+        cache.request(keys[i], draw(drawn, names[i]));
+      }
+      cache.request(keys[2], draw(drawn, "c"));
+      cache.request(keys[2], draw(drawn, "c"));
+      release.countDown();
+
+      long deadline = System.currentTimeMillis() + 5000;
+      for( MiniMapCache.Key key : keys )
+        while( null == cache.getIfReady(key) && System.currentTimeMillis() < deadline )
+          Thread.sleep(5);
+      synchronized (drawn)
+      {
+        testPassed &= validate(drawn.toString().equals("[busy, c, a, b]"),
+            "    Drew thumbnails in the order " + drawn + " instead of [busy, c, a, b].");
+      }
+
+      cache.request(keys[1], draw(drawn, "b"));
+      Thread.sleep(50);
+      synchronized (drawn)
+      {
+        testPassed &= validate(drawn.size() == 4, "    Drew a thumbnail that was already in hand.");
+      }
+    }
+    catch (IOException | InterruptedException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != folder )
+      {
+        for( File f : folder.listFiles() )
+          f.delete();
+        folder.delete();
+      }
+    }
+    return testPassed;
+  }
+
+  private static Supplier<BufferedImage> draw(List<String> drawn, String name)
+  {
+    return () -> {
+      synchronized (drawn)
+      {
+        drawn.add(name);
+      }
+      return new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+    };
+  }
+}
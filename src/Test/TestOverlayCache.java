@@ -0,0 +1,181 @@
+package Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import CommandingOfficers.Commander;
+import CommandingOfficers.DefendPeace.CyanOcean.Patch;
+import CommandingOfficers.DefendPeace.RoseThorn.Strong;
+import Engine.Army;
+import Engine.GameInstance;
+import Engine.GamePath;
+import Engine.GameScenario;
+import Engine.GameScenario.FogMode;
+import Engine.MapController.OverlayMode;
+import Engine.OverlayCache;
+import Engine.Utils;
+import Engine.XYCoord;
+import Engine.GameEvents.GameEventQueue;
+import Engine.GameEvents.MapChangeEvent;
+import Engine.GameEvents.UnitDieEvent;
+import Engine.UnitActionLifecycles.BattleLifecycle;
+import Engine.UnitActionLifecycles.LoadLifecycle;
+import Engine.UnitActionLifecycles.UnloadLifecycle;
+import Engine.UnitActionLifecycles.WaitLifecycle;
+import Terrain.Environment;
+import Terrain.Environment.Weathers;
+import Terrain.MapInfo;
+import Terrain.MapMaster;
+import Terrain.TerrainType;
+import UI.GameOverlay;
+import Units.Unit;
+import Units.UnitModel;
+
+public class TestOverlayCache extends TestCase
+{
+  private static Commander strong = null;
+  private static Commander patch = null;
+  private static MapMaster testMap = null;
+  private static GameInstance game = null;
+
+  /** Make two COs and a MapMaster to use with this test case. */
+  private void setupTest()
+  {
+    GameScenario scn = new GameScenario();
+    strong = new Strong(scn.rules);
+    patch = new Patch(scn.rules);
+    Army[] cos = { new Army(scn, strong), new Army(scn, patch) };
+    strong.myColor = Color.RED;
+    patch.myColor = Color.CYAN; // Threat overlays are drawn in their unit's colors.
+
+    testMap = new MapMaster(cos, Terrain.Maps.FiringRange.getMapInfo());
+    game = new GameInstance(cos, testMap);
+  }
+
+  @Override
+  public boolean runTest()
+  {
+    boolean testPassed = true;
+    setupTest();
+    testPassed &= validate(testLocalEvents(), "  Overlay cache local event test failed!");
+    testPassed &= validate(testFogReveal(), "  Overlay cache fog reveal test failed!");
+    return testPassed;
+  }
+
+  /**
+   * A cached threat overlay has to go when something changes on a tile it covers, and should stay through anything
+   * that happens well clear of it.
+   */
+  private boolean testLocalEvents()
+  {
+    boolean testPassed = true;
+    Unit threat = addUnit(testMap, patch, UnitModel.TROOP, 3, 3);
+    Unit target = addUnit(testMap, patch, UnitModel.TROOP, 5, 4);
+    Unit walker = addUnit(testMap, strong, UnitModel.TROOP, 4, 2); walker.initTurn(testMap);
+    Unit bystander = addUnit(testMap, strong, UnitModel.TROOP, 12, 8); bystander.initTurn(testMap);
+    Unit gunner = addUnit(testMap, strong, UnitModel.SIEGE, 8, 4); gunner.initTurn(testMap);
+    Unit apc = addUnit(testMap, strong, UnitModel.TRANSPORT, 5, 1); apc.initTurn(testMap);
+    Unit cargo = addUnit(testMap, strong, UnitModel.TROOP, 6, 1); cargo.initTurn(testMap);
+    performGameAction(new LoadLifecycle.LoadAction(testMap, cargo, Utils.findShortestPath(cargo, 5, 1, testMap)), game);
+    testPassed &= validate(apc.heldUnits.contains(cargo), "    Couldn't load the APC.");
+
+    GameOverlay overlay = threatOverlay(threat);
+    testPassed &= validate(null != overlay && overlay.area.contains(new XYCoord(5, 4)), "    The threat overlay doesn't cover its neighbor.");
+    testPassed &= validate(overlay == threatOverlay(threat), "    The threat overlay wasn't cached.");
+
+    // Nothing near the threat.
+    performGameAction(new WaitLifecycle.WaitAction(bystander, Utils.findShortestPath(bystander, 11, 8, testMap)), game);
+    testPassed &= validate(overlay == threatOverlay(threat), "    A move across the map dropped the threat overlay.");
+    GameEventQueue farTerrain = new GameEventQueue();
+    farTerrain.add(new MapChangeEvent(new XYCoord(12, 7), Environment.getTile(TerrainType.FOREST, Weathers.CLEAR)));
+    performEvents(game, farTerrain);
+    testPassed &= validate(overlay == threatOverlay(threat), "    Terrain changing across the map dropped the threat overlay.");
+
+    overlay = threatOverlay(threat);
+    performGameAction(new WaitLifecycle.WaitAction(walker, Utils.findShortestPath(walker, 4, 1, testMap)), game);
+    testPassed &= validate(overlay != threatOverlay(threat), "    A move next to the threat didn't drop its overlay.");
+
+    overlay = threatOverlay(threat);
+    performGameAction(new BattleLifecycle.BattleAction(testMap, gunner, GamePath.stayPut(gunner), 5, 4), game);
+    testPassed &= validate(overlay != threatOverlay(threat), "    A battle in the threat's range didn't drop its overlay.");
+
+    overlay = threatOverlay(threat);
+    GameEventQueue death = new GameEventQueue();
+    death.add(new UnitDieEvent(target));
+    performEvents(game, death);
+    testPassed &= validate(overlay != threatOverlay(threat), "    A death in the threat's range didn't drop its overlay.");
+
+    overlay = threatOverlay(threat);
+    performGameAction(new UnloadLifecycle.UnloadAction(testMap, apc, GamePath.stayPut(apc), cargo, 5, 2), game);
+    testPassed &= validate(overlay != threatOverlay(threat), "    An unload in the threat's range didn't drop its overlay.");
+
+    overlay = threatOverlay(threat);
+    GameEventQueue terrain = new GameEventQueue();
+    terrain.add(new MapChangeEvent(new XYCoord(3, 4), Environment.getTile(TerrainType.MOUNTAIN, Weathers.CLEAR)));
+    performEvents(game, terrain);
+    testPassed &= validate(overlay != threatOverlay(threat), "    A terrain change in the threat's range didn't drop its overlay.");
+
+    for( Unit u : Arrays.asList(threat, walker, bystander, gunner, apc, cargo) )
+      testMap.removeUnit(u);
+    return testPassed;
+  }
+
+  /** @return The overlay drawn for this unit's threat range, as Strong sees it. */
+  private static GameOverlay threatOverlay(Unit threat)
+  {
+    ArrayList<GameOverlay> overlays = OverlayCache.instance(game).getNormalOverlays(OverlayMode.THREATS_ALL, strong.army.myView);
+    for( GameOverlay overlay : overlays )
+      if( null != overlay.origin && overlay.origin.equals(threat.x, threat.y) )
+        return overlay;
+    return null;
+  }
+
+  /**
+   * Down a one-tile corridor, an infantry's reach ends at whatever's blocking its way. When a recon at the far end
+   * spots a third army's unit in that path, the infantry's threat should shrink to match, though nothing happened
+   * anywhere near it.
+   */
+  private boolean testFogReveal()
+  {
+    final int length = 14;
+    TerrainType[][] tiles = new TerrainType[length][3];
+    for( TerrainType[] column : tiles )
+      Arrays.fill(column, TerrainType.SEA);
+    for( int x = 0; x < length; ++x )
+      tiles[x][1] = TerrainType.GRASS;
+    MapInfo corridor = new MapInfo("Corridor", tiles, new XYCoord[3][0]);
+
+    GameScenario scn = new GameScenario();
+    scn.rules.fogMode = FogMode.ON_DOR;
+    strong = new Strong(scn.rules);
+    patch = new Patch(scn.rules);
+    Commander third = new Strong(scn.rules);
+    Army[] cos = { new Army(scn, strong), new Army(scn, patch), new Army(scn, third) };
+    strong.myColor = Color.RED;
+    patch.myColor = Color.CYAN;
+    third.myColor = Color.GREEN;
+    testMap = new MapMaster(cos, corridor);
+    game = new GameInstance(scn, cos, testMap, Weathers.CLEAR, false);
+
+    Unit threat = addUnit(testMap, patch, UnitModel.TROOP, 1, 1);
+    addUnit(testMap, third, UnitModel.TROOP, 4, 1);
+    addUnit(testMap, strong, UnitModel.TROOP, 0, 1); // Keeps an eye on the threat.
+    Unit recon = addUnit(testMap, strong, UnitModel.RECON, length - 1, 1); recon.initTurn(testMap);
+    strong.army.myView.resetFog();
+
+    boolean testPassed = true;
+    testPassed &= validate(strong.army.myView.isLocationEmpty(4, 1), "    Strong can see the blocker before scouting.");
+    GameOverlay blind = threatOverlay(threat);
+    testPassed &= validate(null != blind && blind.area.contains(new XYCoord(5, 1)), "    The threat doesn't reach past the hidden blocker.");
+
+    GamePath scouting = Utils.findShortestPath(recon, 9, 1, strong.army.myView);
+    testPassed &= validate(performGameAction(new WaitLifecycle.WaitAction(recon, scouting), game), "    The recon couldn't move.");
+    testPassed &= validate(!strong.army.myView.isLocationEmpty(4, 1), "    The recon didn't spot the blocker.");
+
+    GameOverlay seen = threatOverlay(threat);
+    testPassed &= validate(null != seen && seen != blind, "    Spotting the blocker didn't drop the threat overlay.");
+    testPassed &= validate(null != seen && !seen.area.contains(new XYCoord(5, 1)), "    The threat still reaches past the blocker.");
+    return testPassed;
+  }
+}
@@ -2,19 +2,36 @@ package Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
 
 import CommandingOfficers.Commander;
+import CommandingOfficers.AWBW.NRA.Greyfield.SeaplaneAbsolutist;
 import CommandingOfficers.DefendPeace.CyanOcean.Patch;
 import CommandingOfficers.DefendPeace.RoseThorn.Strong;
+import CommandingOfficers.DefendPeace.RoseThorn.Tech;
 import Engine.Army;
+import Engine.CompactSave;
 import Engine.GameInstance;
+import Engine.GameRandom;
+import Engine.GameReplay;
 import Engine.GameScenario;
+import Engine.SaveIndex;
+import Terrain.Environment;
+import Terrain.Environment.Weathers;
+import Terrain.MapLocation;
 import Terrain.MapMaster;
+import Terrain.TerrainType;
 import Units.Unit;
 import Units.UnitModel;
+import Units.UnitModelScheme;
 
 public class TestSaveLoad extends TestCase
 {
@@ -43,6 +60,21 @@ public class TestSaveLoad extends TestCase
 
     boolean testPassed = true;
     testPassed &= validate(testSaveLoad(), "  Save/load test failed!");
+    setupTest();
+    testPassed &= validate(testFork(), "  Fork test failed!");
+    setupTest();
+    testPassed &= validate(testRandomRestore(), "  RNG restore test failed!");
+    setupTest();
+    testPassed &= validate(testCompactSave(), "  Compact save test failed!");
+    setupTest();
+    testPassed &= validate(testCompactSaveInjectedModels(), "  Compact save injected model test failed!");
+    setupTest();
+    testPassed &= validate(testThumbnailHash(), "  Save thumbnail hash test failed!");
+    setupTest();
+    testPassed &= validate(testSaveIndex(), "  Save index test failed!");
+    setupTest();
+    testPassed &= validate(testMapLocationViews(), "  Map location view test failed!");
+    testPassed &= validate(testEnvironmentFlyweights(), "  Environment flyweight test failed!");
     
     return testPassed;
   }
@@ -129,4 +161,442 @@ public class TestSaveLoad extends TestCase
 
     return testPassed;
   }
+
+  /** Forks a game and makes sure the two can go their separate ways. */
+  private boolean testFork()
+  {
+    Unit scout = addUnit(testMap, strong, UnitModel.RECON, 7, 3); scout.initTurn(testMap);
+    Unit meaty = addUnit(testMap, patch, UnitModel.ASSAULT, 7, 5);
+    turn(game);
+    for( int i = 0; i < 17; ++i )
+      game.getRN(42);
+
+    boolean testPassed = true;
+    long originalHash = GameReplay.stateHash(game);
+    GameInstance fork = game.fork();
+    testPassed &= validate(null != fork, "    Fork failed.");
+    if( !testPassed )
+      return testPassed;
+    testPassed &= validate(GameReplay.stateHash(fork) == originalHash, "    Fork doesn't match the original.");
+
+    Unit forkScout = fork.gameMap.getResident(7, 3);
+    testPassed &= validate(null != forkScout && forkScout != scout, "    Fork didn't copy units.");
+    testPassed &= validate(null != forkScout && forkScout.model == scout.model, "    Fork didn't share unit models.");
+    testPassed &= validate(fork.gameMap.getLocation(7, 3).getEnvironment() == testMap.getLocation(7, 3).getEnvironment(),
+        "    Fork didn't share environments.");
+    testPassed &= validate(null != forkScout && forkScout.CO.army.myView != null && fork.gameMap.game == fork,
+        "    Fork is still wired up to the original.");
+
+    // Same RNG position, and independent from here on.
+    for( int i = 0; i < 10; ++i )
+      testPassed &= validate(game.getRN(1000) == fork.getRN(1000), "    Fork RNG diverged at #" + i);
+    fork.gameMap.removeUnit(forkScout);
+    forkScout.damageHealth(50);
+    testPassed &= validate(testMap.getResident(7, 3) == scout && scout.getHealth() == UnitModel.MAXIMUM_HEALTH,
+        "    Changing the fork changed the original.");
+
+    testMap.removeUnit(scout);
+    testMap.removeUnit(meaty);
+    return testPassed;
+  }
+
+  /** Our RNG has to match SplittableRandom exactly, so old saves and journals still play out the same. */
+  private boolean testRandomRestore()
+  {
+    boolean testPassed = true;
+    int[] bounds = { 1, 2, 7, 42, 100, 1 << 20, Integer.MAX_VALUE - 3 }; // The last one forces resampling now and then.
+    for( long seed : new long[] { 0, 42, -6907041294726460994L } )
+    {
+      SplittableRandom reference = new SplittableRandom(seed);
+      GameRandom ours = new GameRandom(seed);
+      for( int i = 0; i < 2000; ++i )
+      {
+        int bound = bounds[i % bounds.length];
+        testPassed &= validate(reference.nextInt(bound) == ours.nextInt(bound), "    GameRandom diverged from SplittableRandom at #" + i);
+      }
+
+      reference = new SplittableRandom(seed);
+      for( int i = 0; i < 12345; ++i )
+        reference.nextInt();
+      GameRandom skipped = GameRandom.skipAhead(seed, 12345);
+      for( int i = 0; i < 10; ++i )
+        testPassed &= validate(reference.nextInt(42) == skipped.nextInt(42), "    skipAhead() landed in the wrong place");
+    }
+
+    // Saves from before the RNG was saved will have no RNG state; they should pick up where the old loader would.
+    turn(game);
+    for( int i = 0; i < 99; ++i )
+      game.getRN(42);
+    GameRandom expected = GameRandom.skipAhead(game.rngSeed, game.getNumbersGenerated());
+    GameInstance loaded = null;
+    try
+    {
+      Field rngField = GameInstance.class.getDeclaredField("rng");
+      rngField.setAccessible(true);
+      Object liveRng = rngField.get(game);
+      rngField.set(game, null);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+      {
+        game.writeSave(out, false);
+      }
+      rngField.set(game, liveRng);
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+      {
+        in.readObject(); // version info
+        loaded = (GameInstance) in.readObject();
+      }
+    }
+    catch (Exception ex)
+    {
+      System.out.println(ex.toString());
+    }
+    testPassed &= validate(null != loaded, "    Failed to load a save without RNG state");
+    if( null != loaded )
+      for( int i = 0; i < 42; ++i )
+        testPassed &= validate(expected.nextInt(42) == loaded.getRN(42), "    Migrated RNG gave the wrong #" + i);
+
+    return testPassed;
+  }
+
+  /** Round-trips a game through CompactSave, both deflated and not, and checks it comes back the same and smaller. */
+  private boolean testCompactSave()
+  {
+    Unit scout = addUnit(testMap, strong, UnitModel.RECON, 7, 3); scout.initTurn(testMap);
+    Unit meaty = addUnit(testMap, patch, UnitModel.ASSAULT, 7, 5);
+    meaty.damageHealth(35);
+    turn(game);
+    for( int i = 0; i < 23; ++i )
+      game.getRN(42);
+
+    boolean testPassed = true;
+    long originalHash = GameReplay.stateHash(game);
+    int legacySize = 0;
+    GameInstance[] loads = new GameInstance[2];
+    try
+    {
+      ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(legacy))
+      {
+        game.writeSave(out, false);
+      }
+      legacySize = legacy.size();
+
+      for( int i = 0; i < loads.length; ++i )
+      {
+        boolean compress = (0 == i);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactSave.write(game, false, bytes, compress);
+        testPassed &= validate(bytes.size() < legacySize,
+            "    Compact save (" + bytes.size() + " bytes) is no smaller than the old format (" + legacySize + ")");
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        CompactSave.Header header = CompactSave.readHeader(in);
+        testPassed &= validate(header.isCompressed() == compress, "    Header has the wrong compression flag");
+        testPassed &= validate(null != header.summary && header.summary.day == game.getCurrentTurn()
+            && header.summary.activeArmy == game.getActiveCOIndex() && header.summary.armyCOs.length == 2
+            && header.summary.armyCOs[1].equals(patch.coInfo.name), "    Header summary doesn't match the game");
+        testPassed &= validate(null != header.summary && header.summary.getWarnings(header.version).isEmpty(),
+            "    Header summary disagrees with the full save about warnings");
+        try (ObjectInputStream body = CompactSave.openBody(in, header))
+        {
+          body.readObject(); // version info
+          loads[i] = (GameInstance) body.readObject();
+        }
+        in = new ByteArrayInputStream(bytes.toByteArray());
+        try (ObjectInputStream body = CompactSave.openBody(in, CompactSave.readHeader(in)))
+        {
+          testPassed &= validate(GameInstance.getSaveWarnings(body).length() == 0, "    We are incompatible with the compact save we just made");
+        }
+      }
+    }
+    catch (Exception ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+
+    for( GameInstance loaded : loads )
+    {
+      testPassed &= validate(null != loaded, "    The compact save didn't load");
+      if( null == loaded )
+        return false;
+      testPassed &= validate(GameReplay.stateHash(loaded) == originalHash, "    Loaded game doesn't match the original");
+      GameRandom expected = GameRandom.skipAhead(game.rngSeed, game.getNumbersGenerated());
+      testPassed &= validate(expected.nextInt(1000) == loaded.getRN(1000), "    Loaded RNG doesn't match the original");
+    }
+    Unit first = loads[0].gameMap.getResident(7, 3), second = loads[1].gameMap.getResident(7, 3);
+    testPassed &= validate(null != first && null != second && first.model == second.model && first.model.name.equals(scout.model.name),
+        "    Loaded games don't share unit models.");
+    testPassed &= validate(loads[0].gameMap.getLocation(7, 3).getEnvironment() == testMap.getLocation(7, 3).getEnvironment(),
+        "    Loaded game doesn't use the shared environments.");
+
+    testMap.removeUnit(scout);
+    testMap.removeUnit(meaty);
+    return testPassed;
+  }
+
+  /**
+   * The header's thumbnailHash keys cached minimaps across runs, so it must depend only on what's on the map. Check it
+   * against one worked out from terrain names and owners, and that it follows a change of owner.
+   */
+  private boolean testThumbnailHash()
+  {
+    boolean testPassed = true;
+    MapLocation property = null;
+    for( int y = 0; y < testMap.mapHeight && null == property; ++y )
+      for( int x = 0; x < testMap.mapWidth && null == property; ++x )
+        if( testMap.getLocation(x, y).isCaptureable() )
+          property = testMap.getLocation(x, y);
+    testPassed &= validate(null != property, "    Test map has no properties");
+    if( null == property )
+      return false;
+
+    long before = 0, after = 0;
+    Commander oldOwner = property.getOwner();
+    try
+    {
+      before = thumbnailHash(game);
+      testPassed &= validate(before == expectedThumbnailHash(game), "    Thumbnail hash doesn't match the map's terrain and owners");
+      testPassed &= validate(before == thumbnailHash(game), "    Thumbnail hash changed between two saves of the same game");
+
+      property.setOwner((oldOwner == strong) ? patch : strong);
+      after = thumbnailHash(game);
+      testPassed &= validate(after == expectedThumbnailHash(game), "    Thumbnail hash doesn't match the map after a capture");
+      testPassed &= validate(after != before, "    Thumbnail hash didn't change when a property did");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    property.setOwner(oldOwner);
+    return testPassed;
+  }
+
+  private static long thumbnailHash(GameInstance gi) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompactSave.write(gi, false, bytes, false);
+    return CompactSave.readHeader(new ByteArrayInputStream(bytes.toByteArray())).summary.thumbnailHash;
+  }
+
+  /** FNV-1a over terrain names and owning army indices, written out independently of SaveHeader. */
+  private static long expectedThumbnailHash(GameInstance gi)
+  {
+    long hash = 0xcbf29ce484222325L;
+    for( int y = 0; y < gi.gameMap.mapHeight; ++y )
+      for( int x = 0; x < gi.gameMap.mapWidth; ++x )
+      {
+        MapLocation loc = gi.gameMap.getLocation(x, y);
+        int owner = -1;
+        for( int i = 0; null != loc.getOwner() && i < gi.armies.length; ++i )
+          if( gi.armies[i] == loc.getOwner().army )
+            owner = i;
+        hash = (hash ^ loc.getEnvironment().terrainType.toString().hashCode()) * 0x100000001b3L;
+        hash = (hash ^ owner) * 0x100000001b3L;
+      }
+    return hash;
+  }
+
+  /**
+   * Tech and Greyfield add unit models to their game's scheme that a new scheme doesn't have. Their games should still
+   * come back through CompactSave, and what they added shouldn't leak into any other game loaded afterward.
+   */
+  private boolean testCompactSaveInjectedModels()
+  {
+    GameScenario scn = new GameScenario();
+    Tech.getInfo().injectUnits(scn.rules.unitModelScheme.getGameReadyModels());
+    SeaplaneAbsolutist.getInfo().injectUnits(scn.rules.unitModelScheme.getGameReadyModels());
+    Commander tech = Tech.getInfo().create(scn.rules);
+    Commander greyfield = SeaplaneAbsolutist.getInfo().create(scn.rules);
+    Army[] armies = { new Army(scn, tech), new Army(scn, greyfield) };
+    MapMaster injectedMap = new MapMaster(armies, Terrain.Maps.FiringRange.getMapInfo());
+    GameInstance injected = new GameInstance(scn, armies, injectedMap, Weathers.CLEAR, false);
+    Unit mech = addUnit(injectedMap, tech, "BattleMech", 7, 3);
+    Unit seaplane = addUnit(injectedMap, greyfield, "Seaplane", 7, 5);
+    seaplane.damageHealth(25);
+
+    boolean testPassed = validate(null != mech.model && null != seaplane.model, "    The COs didn't add their unit models");
+    GameInstance[] loads = new GameInstance[2];
+    GameInstance plain = null;
+    try
+    {
+      for( int i = 0; i < loads.length; ++i )
+        loads[i] = compactRoundTrip(injected);
+      plain = compactRoundTrip(game);
+    }
+    catch (Exception ex)
+    {
+      System.out.println(ex.toString());
+      return false;
+    }
+
+    for( GameInstance loaded : loads )
+    {
+      testPassed &= validate(GameReplay.stateHash(loaded) == GameReplay.stateHash(injected), "    Loaded game doesn't match the original");
+      Unit loadedMech = loaded.gameMap.getResident(7, 3), loadedSeaplane = loaded.gameMap.getResident(7, 5);
+      List<UnitModel> loadedModels = loaded.rules.unitModelScheme.getGameReadyModels().unitModels;
+      testPassed &= validate(null != loadedMech && loadedModels.contains(loadedMech.model), "    Loaded scheme doesn't have the BattleMech");
+      testPassed &= validate(null != loadedSeaplane && loadedModels.contains(loadedSeaplane.model), "    Loaded scheme doesn't have the Seaplane");
+    }
+    testPassed &= validate(loads[0].rules.unitModelScheme != loads[1].rules.unitModelScheme, "    Two loaded games share a scheme");
+    testPassed &= validate(null == UnitModelScheme.getModelFromString("BattleMech", plain.rules.unitModelScheme.getGameReadyModels().unitModels),
+        "    Another game's added models leaked into a later load");
+    return testPassed;
+  }
+
+  private static GameInstance compactRoundTrip(GameInstance original) throws IOException, ClassNotFoundException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompactSave.write(original, false, bytes, true);
+    ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+    try (ObjectInputStream body = CompactSave.openBody(in, CompactSave.readHeader(in)))
+    {
+      body.readObject(); // version info
+      return (GameInstance) body.readObject();
+    }
+  }
+
+  /** Checks that MapLocations for one tile see the same state, and that it comes through a save intact. */
+  private boolean testMapLocationViews()
+  {
+    boolean testPassed = true;
+    MapLocation first = testMap.getLocation(3, 3), second = testMap.getLocation(3, 3);
+    testPassed &= validate(first.equals(second) && first.hashCode() == second.hashCode(), "    Two views of one tile aren't equal");
+    testPassed &= validate(!first.equals(testMap.getLocation(3, 4)), "    Views of different tiles are equal");
+    testPassed &= validate(!first.equals(new MapLocation(first.getEnvironment(), first.getCoordinates())),
+        "    A standalone location is equal to a map tile");
+
+    first.setDurability(40);
+    first.setForecast(Weathers.RAIN, 3);
+    testPassed &= validate(40 == second.getDurability(), "    Views of one tile don't share durability");
+    testPassed &= validate(second.hasForecast() && Weathers.RAIN == second.getEnvironment().weatherType,
+        "    Views of one tile don't share weather");
+
+    // Units leaving the map should free their place in the map's unit table for the next one.
+    Unit scout = addUnit(testMap, strong, UnitModel.RECON, 7, 3);
+    testMap.moveUnit(scout, 7, 4);
+    testMap.removeUnit(scout);
+    Unit meaty = addUnit(testMap, patch, UnitModel.ASSAULT, 7, 5);
+    testPassed &= validate(null == testMap.getResident(7, 3) && null == testMap.getResident(7, 4),
+        "    A removed unit is still on the map");
+    testPassed &= validate(meaty == testMap.getResident(7, 5), "    The new unit isn't where it was put");
+
+    GameInstance loaded = null;
+    try
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+      {
+        game.writeSave(out, false);
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+      {
+        in.readObject(); // version info
+        loaded = (GameInstance) in.readObject();
+      }
+    }
+    catch (Exception ex)
+    {
+      System.out.println(ex.toString());
+      return false;
+    }
+    MapLocation copy = loaded.gameMap.getLocation(3, 3);
+    testPassed &= validate(40 == copy.getDurability(), "    Durability wasn't saved");
+    ArrayDeque<Weathers> forecast = copy.copyForecast();
+    testPassed &= validate(null != forecast && 3 == forecast.size() && forecast.stream().allMatch(w -> w == Weathers.RAIN),
+        "    Forecast wasn't saved");
+    loaded.gameMap.advanceWeather(3, Weathers.CLEAR);
+    testPassed &= validate(!copy.hasForecast() && second.hasForecast(), "    Running out the loaded game's forecast changed the original's");
+    Unit loadedMeaty = loaded.gameMap.getResident(7, 5);
+    testPassed &= validate(null != loadedMeaty && loadedMeaty.CO.army == loaded.armies[1] && loaded.armies[1].getUnits().contains(loadedMeaty),
+        "    Loaded map doesn't hold the loaded game's unit");
+
+    testMap.removeUnit(meaty);
+    return testPassed;
+  }
+
+  /** Every terrain and weather should have exactly one Environment, which a deserialized copy resolves back to. */
+  private boolean testEnvironmentFlyweights()
+  {
+    boolean testPassed = true;
+    for( TerrainType terrain : TerrainType.TerrainTypeList )
+      for( Weathers weather : Weathers.values() )
+      {
+        Environment env = Environment.getTile(terrain, weather);
+        testPassed &= validate(null != env && terrain == env.terrainType && weather == env.weatherType,
+            "    Wrong tile for " + weather + " " + terrain);
+        testPassed &= validate(env == Environment.getTile(terrain.getIndex(), weather.ordinal()),
+            "    Tile lookup by index disagrees for " + weather + " " + terrain);
+      }
+
+    Environment rainyForest = Environment.getTile(TerrainType.FOREST, Weathers.RAIN);
+    try
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+      {
+        out.writeObject(rainyForest);
+      }
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+      {
+        testPassed &= validate(rainyForest == in.readObject(), "    A loaded Environment isn't the flyweight");
+      }
+    }
+    catch (Exception ex)
+    {
+      System.out.println(ex.toString());
+      return false;
+    }
+    return testPassed;
+  }
+
+  /** Lists saves through SaveIndex, and makes sure an unchanged save's header comes from the index. */
+  private boolean testSaveIndex()
+  {
+    boolean testPassed = true;
+    turn(game);
+    File folder = null;
+    try
+    {
+      folder = Files.createTempDirectory("saveindex").toFile();
+      File save = new File(folder, "test.svp");
+      CompactSave.save(game, false, save.toPath(), true);
+      long modified = save.lastModified();
+
+      List<SaveIndex.Entry> entries = SaveIndex.list(folder);
+      testPassed &= validate(entries.size() == 1 && null != entries.get(0).header, "    Didn't list the save with its header");
+      testPassed &= validate(new File(folder, SaveIndex.INDEX_FILE).exists(), "    Didn't write an index");
+      testPassed &= validate(entries.size() == 1 && entries.get(0).getWarnings().isEmpty(), "    Save shouldn't have warnings");
+
+      // Scribble over the save without changing its size or timestamp; the index should still answer for it.
+      byte[] junk = new byte[(int) save.length()];
+      Files.write(save.toPath(), junk);
+      save.setLastModified(modified);
+      entries = SaveIndex.list(folder);
+      testPassed &= validate(entries.size() == 1 && null != entries.get(0).header && null != entries.get(0).header.summary
+          && entries.get(0).header.summary.day == game.getCurrentTurn(), "    Didn't use the index for an unchanged save");
+
+      // Once it's changed, the save is read again.
+      save.setLastModified(modified + 1000);
+      entries = SaveIndex.list(folder);
+      testPassed &= validate(entries.size() == 1 && null == entries.get(0).header, "    Used a stale index entry");
+    }
+    catch (IOException ex)
+    {
+      System.out.println(ex.toString());
+      testPassed = false;
+    }
+    finally
+    {
+      if( null != folder )
+      {
+        for( File f : folder.listFiles() )
+          f.delete();
+        folder.delete();
+      }
+    }
+    return testPassed;
+  }
 }
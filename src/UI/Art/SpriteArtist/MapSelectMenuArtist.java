@@ -21,6 +21,8 @@ public class MapSelectMenuArtist
   private static final Color MENUHIGHLIGHTCOLOR = new Color(246, 234, 210);
 
   private static MapInfo selectedMapInfo = null;
+  private static MapNode prefetchedNode = null;
+  private static int prefetchedWidth, prefetchedHeight;
   private static SpriteArrows vArrows = new SpriteArrows(true);
 
   public static void draw(Graphics g, MapSelectController gameSetup)
@@ -148,17 +150,21 @@ public class MapSelectMenuArtist
     menuGraphics.setColor(MENUFRAMECOLOR);
     menuGraphics.fillRect(nameSectionDrawWidth, maxMiniMapHeight, drawableWidth-nameSectionDrawWidth, 1);
 
-    // Draw the mini-map representation of the highlighted map.
-    MapNode selNode = mapInfos.get(highlightedOption);
-    while (null == selNode.result)
-      selNode = selNode.children.get(0);
-    selectedMapInfo = selNode.result;
-    BufferedImage miniMap = MiniMapArtist.getMapImage(selectedMapInfo, drawScale*maxMiniMapWidth, drawScale*maxMiniMapHeight);
+    // Get the minimaps for this folder started in the background, so scrolling through it doesn't wait on them.
+    if( gameSetup.currentNode != prefetchedNode || drawScale*maxMiniMapWidth != prefetchedWidth || drawScale*maxMiniMapHeight != prefetchedHeight )
+    {
+      prefetchedNode = gameSetup.currentNode;
+      prefetchedWidth = drawScale*maxMiniMapWidth;
+      prefetchedHeight = drawScale*maxMiniMapHeight;
+      ArrayList<MapInfo> shownMaps = new ArrayList<>();
+      for( MapNode node : mapInfos )
+        shownMaps.add(getShownMap(node));
+      MiniMapArtist.prefetchMapImages(shownMaps, prefetchedWidth, prefetchedHeight);
+    }
 
-    // Figure out how large to draw the minimap. We want to make it as large as possible, but still fit inside the available space.
-    int mmWScale = drawScale*maxMiniMapWidth / miniMap.getWidth();
-    int mmHScale = drawScale*maxMiniMapHeight / miniMap.getHeight();
-    int mmScale = (mmWScale > mmHScale)? mmHScale : mmWScale;
+    // Draw the mini-map representation of the highlighted map, if it's ready; if not, it will be soon.
+    selectedMapInfo = getShownMap(mapInfos.get(highlightedOption));
+    BufferedImage miniMap = MiniMapArtist.getMapImageIfReady(selectedMapInfo, drawScale*maxMiniMapWidth, drawScale*maxMiniMapHeight);
 
     /////////////// Map Information ///////////////////////
     int buffer = 3;
@@ -204,7 +210,22 @@ public class MapSelectMenuArtist
     g.drawImage(menuImage, 0, 0, menuImage.getWidth()*drawScale, menuImage.getHeight()*drawScale, null);
 
     // Draw the mini map on top.
-    SpriteUIUtils.drawImageCenteredOnPoint(g, miniMap, drawScale*miniMapCenterX, drawScale*miniMapCenterY, mmScale);
+    if( null != miniMap )
+    {
+      // Figure out how large to draw the minimap. We want to make it as large as possible, but still fit inside the available space.
+      int mmWScale = drawScale*maxMiniMapWidth / miniMap.getWidth();
+      int mmHScale = drawScale*maxMiniMapHeight / miniMap.getHeight();
+      int mmScale = (mmWScale > mmHScale)? mmHScale : mmWScale;
+      SpriteUIUtils.drawImageCenteredOnPoint(g, miniMap, drawScale*miniMapCenterX, drawScale*miniMapCenterY, mmScale);
+    }
+  }
+
+  /** @return The map to preview for a list entry: the map itself, or for a folder, the first map in it. */
+  private static MapInfo getShownMap(MapNode node)
+  {
+    while (null == node.result)
+      node = node.children.get(0);
+    return node.result;
   }
 
   private static void countCapturables(MapInfo mapInfo, Map<TerrainType, Integer> propCounts)
@@ -213,7 +234,7 @@ public class MapSelectMenuArtist
     {
       for(int x = 0; x < mapInfo.getWidth(); ++x)
       {
-        TerrainType tt = mapInfo.terrain[x][y];
+        TerrainType tt = mapInfo.getTerrain()[x][y];
         if( tt.isCapturable() )
         {
           int oldCount = propCounts.getOrDefault(tt, 0);
@@ -78,7 +78,7 @@ public class MapTileDetailsArtist
     // Collect terrain attributes to draw.
     ArrayList<AttributeArtist> terrainAttrs = new ArrayList<AttributeArtist>();
     terrainAttrs.add(new AttributeArtist(SpriteLibrary.MapIcons.SHIELD.getIcon(), terrain.getDefLevel()));
-    if( loc.durability < 99 ) terrainAttrs.add(new AttributeArtist(SpriteLibrary.MapIcons.HEART.getIcon(), loc.durability));
+    if( loc.getDurability() < 99 ) terrainAttrs.add(new AttributeArtist(SpriteLibrary.MapIcons.HEART.getIcon(), loc.getDurability()));
 
     // Collect any unit and its cargo
     ArrayList<ArrayList<AttributeArtist>> unitAttrCache = new ArrayList<>();
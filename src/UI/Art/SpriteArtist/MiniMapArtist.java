@@ -5,6 +5,9 @@ import java.awt.Graphics;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+
 import Engine.XYCoord;
 import Terrain.MapInfo;
 import UI.UIUtils;
@@ -14,14 +17,12 @@ import UI.Art.SpriteArtist.UnitSpriteSet.AnimState;
 
 public class MiniMapArtist
 {
-  private static MapInfo lastMapDrawn;
-  private static Color[] lastTeamColors;
-  private static BufferedImage lastFullMapImage;
+  private static final MiniMapCache cache = new MiniMapCache(new File(Engine.Driver.JAR_DIR + "res/map/thumbs"), 32);
 
   /**
    * Retrieve a BufferedImage with a 1-pixel-per-tile representation of the provided MapInfo.
-   * Requested images are generated and store on first call, then simply fetched and returned
-   * if this function is called again with the same MapInfo.
+   * Requested images are generated and cached on first call (in memory, and on disk for later runs),
+   * then simply fetched and returned if this function is called again with the same map, palette and size.
    * Teams will be colored according to the default color ordering.
    */
   public static BufferedImage getMapImage(MapInfo mapInfo, int maxWidth, int maxHeight)
@@ -31,8 +32,8 @@ public class MiniMapArtist
 
   /**
    * Retrieve a BufferedImage with a 1-pixel-per-tile representation of the provided MapInfo.
-   * Requested images are generated and store on first call, then simply fetched and returned
-   * if this function is called again with the same MapInfo.
+   * Requested images are generated and cached on first call (in memory, and on disk for later runs),
+   * then simply fetched and returned if this function is called again with the same map, palette and size.
    * @param teamColors A set of colors to be used for drawing each team. If insufficient colors
    *        are provided, black will be used for any remaining ones. If null is passed in,
    *        the default team-color ordering will be used.
@@ -40,18 +41,52 @@ public class MiniMapArtist
    */
   public static BufferedImage getMapImage(MapInfo mapInfo, Faction[] factions, Color[] teamColors, int maxWidth, int maxHeight)
   {
-    if( mapInfo != lastMapDrawn || palettesDiffer(teamColors) )
-    {
-      // If we don't already have an image, generate and store it for later.
-      lastFullMapImage = generateFullMapImage(mapInfo, factions, teamColors);
-      lastMapDrawn = mapInfo;
-      lastTeamColors = teamColors;
-    }
+    final Color[] colors = (null == teamColors) ? UIUtils.getCOColors() : teamColors;
+    return cache.get(keyFor(mapInfo, factions, colors, maxWidth, maxHeight),
+        () -> generateMiniMap(mapInfo, factions, colors, maxWidth, maxHeight));
+  }
+
+  /**
+   * Like getMapImage() with the default palette, but never stops to draw: if the image isn't ready,
+   * it's queued to be drawn in the background and this returns null. Call again on a later frame.
+   */
+  public static BufferedImage getMapImageIfReady(MapInfo mapInfo, int maxWidth, int maxHeight)
+  {
+    final Faction[] factions = UIUtils.getFactions();
+    final Color[] colors = UIUtils.getCOColors();
+    MiniMapCache.Key key = keyFor(mapInfo, factions, colors, maxWidth, maxHeight);
+    BufferedImage image = cache.getIfReady(key);
+    if( null == image )
+      cache.request(key, () -> generateMiniMap(mapInfo, factions, colors, maxWidth, maxHeight));
+    return image;
+  }
+
+  /**
+   * Queues minimaps for the given maps to be drawn in the background with the default palette, so they're
+   * ready by the time the player browses to them. The first map in the list is drawn first.
+   */
+  public static void prefetchMapImages(List<MapInfo> maps, int maxWidth, int maxHeight)
+  {
+    // The cache works on the newest request first, so queue them back to front.
+    for( int i = maps.size() - 1; i >= 0; --i )
+      getMapImageIfReady(maps.get(i), maxWidth, maxHeight);
+  }
 
-    BufferedImage miniMap = lastFullMapImage;
+  private static MiniMapCache.Key keyFor(MapInfo mapInfo, Faction[] factions, Color[] teamColors, int maxWidth, int maxHeight)
+  {
+    return new MiniMapCache.Key(mapInfo.getContentHash(), MiniMapCache.hashPalette(factions, teamColors), maxWidth, maxHeight);
+  }
+
+  /**
+   * Draws the map, crunched down a bit if it won't fit in the given space.
+   */
+  private static BufferedImage generateMiniMap(MapInfo mapInfo, Faction[] factions, Color[] teamColors, int maxWidth, int maxHeight)
+  {
+    BufferedImage fullMapImage = generateFullMapImage(mapInfo, factions, teamColors);
+    BufferedImage miniMap = fullMapImage;
     // Crunch it down a bit if it won't fit
-    final int mapHeight = lastFullMapImage.getHeight();
-    final int mapWidth = lastFullMapImage.getWidth();
+    final int mapHeight = fullMapImage.getHeight();
+    final int mapWidth = fullMapImage.getWidth();
     if(   maxHeight < mapHeight
         || maxWidth < mapWidth )
     {
@@ -65,7 +100,7 @@ public class MiniMapArtist
 
       final AffineTransform at = AffineTransform.getScaleInstance(finalRatio, finalRatio);
       final AffineTransformOp ato = new AffineTransformOp(at, AffineTransformOp.TYPE_BICUBIC);
-      miniMap = ato.filter(lastFullMapImage, miniMap);
+      miniMap = ato.filter(fullMapImage, miniMap);
     }
 
     return miniMap;
@@ -76,9 +111,6 @@ public class MiniMapArtist
    */
   private static BufferedImage generateFullMapImage(MapInfo mapInfo, Faction[] factions, Color[] teamColors)
   {
-    // If we don't have a palette yet, just get the default one from UIUtis.
-    if( null == teamColors ) teamColors = UIUtils.getCOColors();
-
     BufferedImage image = new BufferedImage(
         mapInfo.getWidth() * SpriteLibrary.baseSpriteSize,
         mapInfo.getHeight() * SpriteLibrary.baseSpriteSize,
@@ -92,25 +124,25 @@ public class MiniMapArtist
         XYCoord coord = new XYCoord(x, y);
         COSpriteSpec spec = null;
 
-        boolean anyUnits = (mapInfo.mapUnits.size() > 0);
+        boolean anyUnits = (mapInfo.getMapUnits().size() > 0);
         String unitName = null;
         COSpriteSpec unitSpec = null;
         boolean unitFlip = false, unitBuff = false;
 
-        for( int co = 0; co < mapInfo.playerProps.length; ++co )
+        for( int co = 0; co < mapInfo.getPlayerProps().length; ++co )
         {
           // Figure out unit details, if any
-          if( anyUnits && mapInfo.mapUnits.get(co).containsKey(coord) )
+          if( anyUnits && mapInfo.getMapUnits().get(co).containsKey(coord) )
           {
-            unitName = mapInfo.mapUnits.get(co).get(coord);
+            unitName = mapInfo.getMapUnits().get(co).get(coord);
             unitSpec = getNthSpriteSpec(factions, teamColors, co);
             unitFlip = (co % 2) == 1;
           }
 
           // Figure out team color, if any
-          for( int i = 0; i < mapInfo.playerProps[co].length; ++i )
+          for( int i = 0; i < mapInfo.getPlayerProps()[co].length; ++i )
           {
-            if( coord.equals(mapInfo.playerProps[co][i]) )
+            if( coord.equals(mapInfo.getPlayerProps()[co][i]) )
             {
               spec = getNthSpriteSpec(factions, teamColors, co);
               break;
@@ -121,7 +153,7 @@ public class MiniMapArtist
         }
 
         // Fetch the relevant sprite set for this terrain type and have it draw itself.
-        TerrainSpriteSet spriteSet = SpriteLibrary.getTerrainSpriteSet(mapInfo.terrain[x][y], spec);
+        TerrainSpriteSet spriteSet = SpriteLibrary.getTerrainSpriteSet(mapInfo.getTerrain()[x][y], spec);
         spriteSet.drawTerrain(g, mapInfo, x, y, false);
         spriteSet.drawTerrainObject(g, mapInfo, x, y, false);
 
@@ -155,24 +187,4 @@ public class MiniMapArtist
     spec = new COSpriteSpec(faction, coColor);
     return spec;
   }
-
-  private static boolean palettesDiffer(Color[] newColors)
-  {
-    if( null == lastTeamColors || null == newColors )
-      return true;
-    if( lastTeamColors.length != newColors.length )
-      return true;
-
-    boolean colorsDiffer = false;
-    for( int i = 0; i < newColors.length; ++i )
-    {
-      if( !newColors[i].equals(lastTeamColors[i]) )
-      {
-        colorsDiffer = true;
-        break;
-      }
-    }
-
-    return colorsDiffer;
-  }
 }
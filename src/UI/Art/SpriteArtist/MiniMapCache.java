@@ -0,0 +1,260 @@
+package UI.Art.SpriteArtist;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+import UI.UIUtils.Faction;
+
+/**
+ * Holds minimap thumbnails so they only have to be drawn once: the most recently used ones in memory, and all of
+ * them as PNGs on disk, so they survive a restart.
+ * <p>
+ * A thumbnail is identified by what goes into it - the map's contents hash, the factions and colors it's drawn in,
+ * and the space it was scaled to fit - so an edited map or a new palette simply misses and gets drawn fresh.
+ * <p>
+ * request() fetches or draws thumbnails on a background pool. The most recent request runs first, so whatever the
+ * player is looking at now gets drawn ahead of anything queued earlier - including a thumbnail that was already
+ * queued, say by a prefetch, which moves back to the front when it's asked for again.
+ */
+public class MiniMapCache
+{
+  private static final int MAX_DISK_FILES = 1024;
+
+  /** What a thumbnail was drawn from. */
+  public static final class Key
+  {
+    final long contentHash;
+    final int paletteHash;
+    final int maxWidth, maxHeight;
+
+    public Key(long contentHash, int paletteHash, int maxWidth, int maxHeight)
+    {
+      this.contentHash = contentHash;
+      this.paletteHash = paletteHash;
+      this.maxWidth = maxWidth;
+      this.maxHeight = maxHeight;
+    }
+
+    String fileName()
+    {
+      return String.format("%016x-%08x-%dx%d.png", contentHash, paletteHash, maxWidth, maxHeight);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Long.hashCode(contentHash) * 31 * 31 * 31 + paletteHash * 31 * 31 + maxWidth * 31 + maxHeight;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if( !(obj instanceof Key) )
+        return false;
+      Key other = (Key) obj;
+      return contentHash == other.contentHash && paletteHash == other.paletteHash
+          && maxWidth == other.maxWidth && maxHeight == other.maxHeight;
+    }
+  }
+
+  /** @return A hash of the factions and colors each player's pieces would be drawn in. */
+  static int hashPalette(Faction[] factions, Color[] teamColors)
+  {
+    int hash = 1;
+    for( Faction faction : factions )
+      hash = hash * 31 + faction.name.hashCode() * 17 + faction.basis.hashCode();
+    hash = hash * 31 + teamColors.length;
+    for( Color color : teamColors )
+      hash = hash * 31 + color.getRGB();
+    return hash;
+  }
+
+  private final File folder;
+  private final Map<Key, BufferedImage> memory;
+  /** The task queued or running for each thumbnail on its way. Guarded by itself. */
+  private final Map<Key, Runnable> pending = new HashMap<Key, Runnable>();
+  private final ThreadPoolExecutor pool;
+
+  MiniMapCache(File folder, final int memoryEntries)
+  {
+    this(folder, memoryEntries, Math.max(1, Runtime.getRuntime().availableProcessors() - 1)); // Leave a core for the UI.
+  }
+
+  public MiniMapCache(File folder, final int memoryEntries, int threads)
+  {
+    this.folder = folder;
+    memory = new LinkedHashMap<Key, BufferedImage>(memoryEntries, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest)
+      {
+        return size() > memoryEntries;
+      }
+    };
+
+    // Last in, first out: the pool queues tasks with offer(), so send them to the front.
+    LinkedBlockingDeque<Runnable> newestFirst = new LinkedBlockingDeque<Runnable>()
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean offer(Runnable r)
+      {
+        return offerFirst(r);
+      }
+    };
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, newestFirst, r -> {
+      Thread t = new Thread(r, "MiniMap");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    pool = executor;
+    pool.execute(this::pruneDisk);
+  }
+
+  /** @return The thumbnail if it's in memory, or null. Never blocks on drawing or disk. */
+  public BufferedImage getIfReady(Key key)
+  {
+    synchronized (memory)
+    {
+      return memory.get(key);
+    }
+  }
+
+  /** @return The thumbnail, reading it from disk or drawing it on this thread if need be. */
+  BufferedImage get(Key key, Supplier<BufferedImage> render)
+  {
+    BufferedImage image = getIfReady(key);
+    if( null != image )
+      return image;
+    image = readFromDisk(key);
+    if( null == image )
+    {
+      image = render.get();
+      final BufferedImage toWrite = image;
+      pool.execute(() -> writeToDisk(key, toWrite));
+    }
+    put(key, image);
+    return image;
+  }
+
+  /**
+   * Queues the thumbnail to be read from disk or drawn in the background, ahead of anything queued so far. If it's
+   * already queued, it moves to the front; if it's in hand or already being drawn, there's nothing to do.
+   */
+  public void request(Key key, Supplier<BufferedImage> render)
+  {
+    if( null != getIfReady(key) )
+      return;
+    synchronized (pending)
+    {
+      Runnable queued = pending.get(key);
+      if( null != queued && !pool.remove(queued) )
+        return; // Already being drawn.
+      Runnable task = new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            if( null != getIfReady(key) )
+              return; // get() drew it while we were queued.
+            BufferedImage image = readFromDisk(key);
+            if( null == image )
+            {
+              image = render.get();
+              writeToDisk(key, image);
+            }
+            put(key, image);
+          }
+          catch (RuntimeException ex)
+          {
+            System.out.println("WARNING! Unable to draw minimap: " + ex.toString());
+          }
+          finally
+          {
+            synchronized (pending)
+            {
+              pending.remove(key, this);
+            }
+          }
+        }
+      };
+      pending.put(key, task);
+      pool.execute(task);
+    }
+  }
+
+  private void put(Key key, BufferedImage image)
+  {
+    synchronized (memory)
+    {
+      memory.put(key, image);
+    }
+  }
+
+  private BufferedImage readFromDisk(Key key)
+  {
+    File file = new File(folder, key.fileName());
+    if( !file.canRead() )
+      return null;
+    try
+    {
+      BufferedImage image = ImageIO.read(file);
+      file.setLastModified(System.currentTimeMillis()); // So pruneDisk() keeps the ones still in use.
+      return image;
+    }
+    catch (IOException ex)
+    {
+      return null; // We'll just draw it again.
+    }
+  }
+
+  private void writeToDisk(Key key, BufferedImage image)
+  {
+    File target = new File(folder, key.fileName());
+    File temp = new File(folder, key.fileName() + ".tmp");
+    try
+    {
+      folder.mkdirs();
+      ImageIO.write(image, "png", temp);
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException ex)
+    {
+      System.out.println("WARNING! Unable to cache minimap " + target.getName() + ": " + ex.toString());
+      temp.delete();
+    }
+  }
+
+  /** Deletes the least recently used thumbnails on disk, past MAX_DISK_FILES. */
+  private void pruneDisk()
+  {
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(".png"));
+    if( null == files || files.length <= MAX_DISK_FILES )
+      return;
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    for( int i = MAX_DISK_FILES; i < files.length; ++i )
+      files[i].delete();
+  }
+}
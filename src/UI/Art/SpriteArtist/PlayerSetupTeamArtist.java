@@ -210,9 +210,9 @@ public class PlayerSetupTeamArtist
     g.setColor(Color.WHITE);
     ArrayList<XYCoord> ownedCoords = new ArrayList<>();
 
-    for( XYCoord coord : mapInfo.playerProps[faction] )
+    for( XYCoord coord : mapInfo.getPlayerProps()[faction] )
       ownedCoords.add(coord);
-    ownedCoords.addAll(mapInfo.mapUnits.get(faction).keySet());
+    ownedCoords.addAll(mapInfo.getMapUnits().get(faction).keySet());
 
     for( XYCoord coord : ownedCoords )
     {
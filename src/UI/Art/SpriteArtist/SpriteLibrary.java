@@ -36,6 +36,7 @@ public class SpriteLibrary
   public static final String charKey = "%./-~,;:!?'&()_+Ⅱ";
   public static final String DEFAULT_FACTION = "Thorn";
 
+  // MiniMapArtist draws from background threads as well, so the sprite set lookups are synchronized.
   private static HashMap<SpriteSetKey, TerrainSpriteSet> spriteSetMap = new HashMap<SpriteSetKey, TerrainSpriteSet>();
   private static HashMap<UnitSpriteSetKey, UnitSpriteSet> mapUnitSpriteSetMap = new HashMap<UnitSpriteSetKey, UnitSpriteSet>();
 
@@ -106,7 +107,7 @@ public class SpriteLibrary
    * Retrieve (loading if needed) the sprites associated with the given terrain type. For ownable terrain types
    * (e.g. cities), the unowned variant of the sprite will be returned.
    */
-  public static TerrainSpriteSet getTerrainSpriteSet(TerrainType terrain)
+  public static synchronized TerrainSpriteSet getTerrainSpriteSet(TerrainType terrain)
   {
     SpriteSetKey spriteKey = SpriteSetKey.instance(terrain, null);
     if( !spriteSetMap.containsKey(spriteKey) )
@@ -122,7 +123,7 @@ public class SpriteLibrary
    * Retrieve (loading if needed) the sprites associated with the terrain type at the specified location.
    * This function returns the owner-appropriate version of the tile for ownable terrain types.
    */
-  public static TerrainSpriteSet getTerrainSpriteSet(MapLocation loc)
+  public static synchronized TerrainSpriteSet getTerrainSpriteSet(MapLocation loc)
   {
     SpriteSetKey spriteKey = SpriteSetKey.instance(loc.getEnvironment().terrainType, COSpriteSpec.instance(loc.getOwner()));
     if( !spriteSetMap.containsKey(spriteKey) )
@@ -137,7 +138,7 @@ public class SpriteLibrary
   /**
    * Retrieve (loading if needed) the sprites associated with the given terrain type and faction/color
    */
-  public static TerrainSpriteSet getTerrainSpriteSet(TerrainType terrain, COSpriteSpec spec)
+  public static synchronized TerrainSpriteSet getTerrainSpriteSet(TerrainType terrain, COSpriteSpec spec)
   {
     SpriteSetKey spriteKey = SpriteSetKey.instance(terrain, spec);
     if( !spriteSetMap.containsKey(spriteKey) )
@@ -325,7 +326,7 @@ public class SpriteLibrary
     return getMapUnitSpriteSet(unit.model.name, unit.CO.faction, unit.CO.myColor);
   }
 
-  public static UnitSpriteSet getMapUnitSpriteSet(String type, Faction faction, Color color)
+  public static synchronized UnitSpriteSet getMapUnitSpriteSet(String type, Faction faction, Color color)
   {
     UnitSpriteSetKey key = UnitSpriteSetKey.instance(type, faction, color);
     if( !mapUnitSpriteSetMap.containsKey(key) )
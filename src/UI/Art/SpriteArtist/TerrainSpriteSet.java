@@ -414,7 +414,7 @@ public class TerrainSpriteSet
   }
 
   /** Return true if this terrain type takes up more than one tile when drawn. */
-  public static boolean isTerrainObject(TerrainType terrainType)
+  public static synchronized boolean isTerrainObject(TerrainType terrainType)
   {
     if( null == terrainObjects )
     {
@@ -491,7 +491,7 @@ public class TerrainSpriteSet
    * For example, FOREST is a tile type, but the trees sit on a plain, so for drawing
    * purposes (esp. terrain transitions), the base tile type of FOREST is actually GRASS.
    */
-  private static TerrainType getBaseTerrainType(TerrainType terrain)
+  private static synchronized TerrainType getBaseTerrainType(TerrainType terrain)
   {
     if( null == terrainBases )
     {
@@ -32,12 +32,32 @@ public class InputOptionsController implements IController
     }
   };
 
+  /** How long an AI may spend thinking each turn, not counting time spent animating its actions. */
+  public enum AIThinkTime
+  {
+    NO_LIMIT("No Limit", 0), SHORT("5 sec", 5), MEDIUM("15 sec", 15), LONG("60 sec", 60);
+    private final String label;
+    public final int turnSeconds;
+    private AIThinkTime(String label, int turnSeconds)
+    {
+      this.label = label;
+      this.turnSeconds = turnSeconds;
+    }
+    @Override
+    public String toString()
+    {
+      return label;
+    }
+  }
+
   public static GameOptionBool seekBuildingsLastOption = new GameOptionBool("Seek Units First", true);
   public static GameOption<HideAbilityPreviews> previewFogPowersOption
                            = new GameOption<HideAbilityPreviews>("Hide Ability Previews", HideAbilityPreviews.values(), 2);
   public static GameOption<InputCalcType> damagePreviewTypeOption
                            = new GameOption<InputCalcType>("Damage Preview", InputCalcType.values(), 1);
-  public static GameOption<?>[] allOptions = { seekBuildingsLastOption, previewFogPowersOption, damagePreviewTypeOption };
+  public static GameOption<AIThinkTime> aiThinkTimeOption
+                           = new GameOption<AIThinkTime>("AI Think Time", AIThinkTime.values(), 0);
+  public static GameOption<?>[] allOptions = { seekBuildingsLastOption, previewFogPowersOption, damagePreviewTypeOption, aiThinkTimeOption };
   public static OptionSelector actionCommandSelector = new OptionSelector( allOptions.length );
 
   static
@@ -5,11 +5,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import Engine.Autosave;
 import Engine.Driver;
 import Engine.GameInstance;
 import Engine.IController;
 import Engine.MapController;
 import Engine.OptionSelector;
+import Engine.SaveIndex;
 import Engine.SerializationUtils;
 
 public class MainUIController implements IController
@@ -127,20 +129,22 @@ public class MainUIController implements IController
             final File folder = new File(Engine.Driver.JAR_DIR + "save/");
             if( folder.canRead() )
             {
-              for( final File fileEntry : folder.listFiles() )
+              // Look for files with our extension; the index lets us skip opening each one.
+              for( SaveIndex.Entry entry : SaveIndex.list(folder) )
               {
-                String filepath = fileEntry.getAbsolutePath();
-                // Look for files with our extension
-                if( !fileEntry.isDirectory() && filepath.endsWith(".svp") )
-                {
-                  String filename = fileEntry.getName();
-                  String prettyName = filename.substring(0, filename.length()-4);
+                String filename = entry.file.getName();
+                String prettyName = filename.substring(0, filename.length()-4);
 
-                  // Get any warning symbols for save-file incompatibilities.
-                  String prepends = SerializationUtils.getSaveWarnings(filepath);
-                  saves.add(new SaveInfo(filepath, filename, prepends + prettyName));
-                }
+                // Get any warning symbols for save-file incompatibilities.
+                String prepends = entry.getWarnings();
+                saves.add(new SaveInfo(entry.file.getAbsolutePath(), filename, prepends + prettyName));
               }
+              // Offer to recover any autosaved games too.
+              File[] autosaves = new File(folder, "autosave").listFiles();
+              if( null != autosaves )
+                for( File autosave : autosaves )
+                  if( Autosave.hasAutosave(autosave) )
+                    saves.add(new SaveInfo(autosave.getAbsolutePath(), autosave.getName() + ".svp", "(autosave) " + autosave.getName()));
             }
 
             if( !saves.isEmpty() )
@@ -214,7 +218,8 @@ public class MainUIController implements IController
         SaveInfo chosenOption = saveMenu.getSelectedOption().item;
 
         // We've already successfully read the save file, so let's assume the user isn't messing with us
-        GameInstance oldGame = SerializationUtils.loadSave(chosenOption.filePath);
+        File chosenFile = new File(chosenOption.filePath);
+        GameInstance oldGame = chosenFile.isDirectory() ? Autosave.recover(chosenFile) : SerializationUtils.loadSave(chosenOption.filePath);
         if( null != oldGame )
         {
           oldGame.saveFile = chosenOption.saveName; // Keep whatever name the user set
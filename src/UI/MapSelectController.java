@@ -79,6 +79,16 @@ public class MapSelectController implements IController
           optionSelector.reset(optCount());
           break;
         }
+        if( !pick.result.load() )
+        {
+          // The file's gone or broken since the map list was built; forget it.
+          MapLibrary.dropMap(pick);
+          if( optCount() > 0 || currentNode.parent == null )
+            optionSelector.reset(optCount());
+          else
+            exitMenu = handleMapSelectInput(InputAction.BACK);
+          break;
+        }
         // Create the GameBuilder with the selected map, and transition to the CO select screen.
         // If we go forward/back a few times, the old copies of these get replaced and garbage-collected.
         GameBuilder gameBuilder = new GameBuilder( pick.result );
@@ -105,14 +105,14 @@ public class PlayerSetupInfo
     deets.faction = thisPlayer % factionList.length;
     coList.add(deets);
     flipUnits = false;
-    for( int i = 0; i < mi.playerProps[thisPlayer].length; ++i )
+    for( int i = 0; i < mi.getPlayerProps()[thisPlayer].length; ++i )
     {
-      XYCoord coord = mi.playerProps[thisPlayer][i];
-      final TerrainType terrainType = mi.terrain[coord.x][coord.y];
+      XYCoord coord = mi.getPlayerProps()[thisPlayer][i];
+      final TerrainType terrainType = mi.getTerrain()[coord.x][coord.y];
       if( terrainType == TerrainType.HEADQUARTERS
           || terrainType == TerrainType.LAB)
       {
-        flipUnits = (coord.x > mi.terrain.length / 2);
+        flipUnits = (coord.x > mi.getTerrain().length / 2);
         break;
       }
     }
@@ -67,7 +67,7 @@ public class UIUtils
    * For factions:
    *   The name of the folder is simply collected; no further work is done until units are drawn.
    */
-  private static void initCosmetics()
+  private static synchronized void initCosmetics()
   {
     if (null == mapUnitColorPalettes )
     {
@@ -8,7 +8,6 @@ import Engine.Army;
 import Engine.XYCoord;
 import Terrain.Environment;
 import Terrain.GameMap;
-import Terrain.MapLocation;
 import Terrain.Environment.Weathers;
 import Terrain.TerrainType;
 import Units.Unit;
@@ -82,7 +81,7 @@ public class MoveType implements Serializable
 
     if( !canTravelThroughEnemies )
     {
-      final Unit blocker = map.getLocation(to).getResident();
+      final Unit blocker = map.getResident(to);
       // if there is an enemy unit in that space
       if( blocker != null && blocker.CO.isEnemy(team) )
         cost = MoveType.IMPASSABLE;
@@ -110,11 +109,10 @@ public class MoveType implements Serializable
     if(null != mover && end.equals(mover.x, mover.y))
       return true; // If we're already there, seems like we can probably stand on it
 
-    final MapLocation loc = map.getLocation(end);
-    if(!canStandOn(loc.getEnvironment()))
+    if(!canStandOn(map.getEnvironment(end)))
       return false;
 
-    Unit obstacle = loc.getResident();
+    Unit obstacle = map.getResident(end);
     if( obstacle == null || obstacle == mover)
       return true;
     return includeOccupiedDestinations;
@@ -34,7 +34,7 @@ public class MoveTypeFey extends MoveType
     Environment endEnv = map.getEnvironment(to);
     // Fey units cannot enter enemy-controlled spaces.
     if( endEnv.terrainType.isCapturable() &&
-        (null == team || team.isEnemy(map.getLocation(to).getOwner())) )
+        (null == team || team.isEnemy(map.getOwner(to))) )
       return IMPASSABLE;
 
     return super.getTransitionCost(map, from, to, team, canTravelThroughEnemies);
@@ -23,7 +23,49 @@ public class Unit extends UnitState implements UnitModList
 
   public Unit(Commander co, UnitModel um)
   {
-    super(co, um);
+    super(co, um, (null == co) ? um.hashCode() : 31 * co.hashCode() + co.nextUnitSerial());
+  }
+
+  /** Fixed at creation, so hash-ordered collections of units iterate the same way from run to run. */
+  @Override
+  public int hashCode()
+  {
+    return stableHash;
+  }
+
+  /** Everything about a Unit that GameEvents can change, so it can be put back later; see UndoLog. */
+  public static class Snapshot extends UnitState
+  {
+    private static final long serialVersionUID = 1L;
+    public final int x, y;
+    Snapshot(Unit unit)
+    {
+      super(unit);
+      isStunned = unit.isStunned;
+      x = unit.x;
+      y = unit.y;
+    }
+  }
+
+  public Snapshot snapshot()
+  {
+    return new Snapshot(this);
+  }
+
+  /** Puts this unit back the way it was when the snapshot was taken. Doesn't touch the map. */
+  public void restore(Snapshot snap)
+  {
+    CO = snap.CO;
+    model = snap.model;
+    copyUnitState(snap);
+    isTurnOver = snap.isTurnOver;
+    isStunned = snap.isStunned;
+    captureProgress = snap.captureProgress;
+    captureTarget = snap.captureTarget;
+    heldUnits.clear();
+    heldUnits.addAll(snap.heldUnits);
+    x = snap.x;
+    y = snap.y;
   }
 
   /**
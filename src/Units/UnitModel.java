@@ -262,6 +262,13 @@ public class UnitModel implements Serializable, ITargetable, UnitModList
     return name;
   }
 
+  /** Still compared by identity, but hashed by name so that hash-ordered iteration is the same from run to run. */
+  @Override
+  public int hashCode()
+  {
+    return name.hashCode();
+  }
+
   public boolean isAny(long input)
   {
     return (role & input) > 0;
@@ -43,6 +43,22 @@ public abstract class UnitModelScheme implements Serializable
   }
   protected abstract GameReadyModels buildGameReadyModels();
 
+  /**
+   * @return A new scheme of the same kind that hands out the same UnitModels, but in lists of its own, so models
+   * a CO adds to one game's scheme (see CommanderInfo.injectUnits()) don't turn up in another's.
+   */
+  public UnitModelScheme copyWithOwnModelLists() throws ReflectiveOperationException
+  {
+    UnitModelScheme copy = getClass().getDeclaredConstructor().newInstance();
+    GameReadyModels models = getGameReadyModels();
+    copy.grms = new GameReadyModels();
+    for( TerrainType tt : models.shoppingList.keySet() )
+      copy.grms.shoppingList.put(tt, new ArrayList<>(models.shoppingList.get(tt)));
+    copy.grms.unitModels.addAll(models.unitModels);
+    copy.schemeValid = schemeValid;
+    return copy;
+  }
+
   public void registerStateTrackers(GameInstance gi)
   {
     for( UnitModel um : getGameReadyModels().unitModels )
@@ -33,11 +33,22 @@ public abstract class UnitState implements Serializable
   protected int captureProgress;
   protected XYCoord captureTarget;
 
+  /**
+   * Unit.hashCode(). It lives here, not in Unit, because deserialization restores superclass fields first and primitive
+   * fields before object ones; a Unit reached again through a cycle in its own UnitState can then already be hashed.
+   */
+  protected final int stableHash;
+
 
   public UnitState(Commander co, UnitModel um)
+  {
+    this(co, um, 0);
+  }
+  protected UnitState(Commander co, UnitModel um, int stableHash)
   {
     CO = co;
     model = um;
+    this.stableHash = stableHash;
     ammo = model.maxAmmo;
     fuel = model.maxFuel;
     materials = model.maxMaterials;
@@ -52,6 +63,7 @@ public abstract class UnitState implements Serializable
   {
     CO = other.CO;
     model = other.model;
+    stableHash = other.stableHash;
     isTurnOver = other.isTurnOver;
     copyUnitState(other);
     captureProgress = other.captureProgress;